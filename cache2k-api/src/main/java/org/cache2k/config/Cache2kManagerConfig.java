@@ -36,6 +36,8 @@ public class Cache2kManagerConfig
   private boolean ignoreMissingCacheConfiguration = false;
   private boolean skipCheckOnStartup = false;
   private boolean ignoreAnonymousCache = false;
+  private long weightBudget = -1;
+  private boolean sharedTimer = false;
 
   public boolean isIgnoreMissingCacheConfiguration() {
     return ignoreMissingCacheConfiguration;
@@ -94,6 +96,40 @@ public class Cache2kManagerConfig
     ignoreAnonymousCache = f;
   }
 
+  public long getWeightBudget() {
+    return weightBudget;
+  }
+
+  /**
+   * Total capacity shared by all caches of the manager. The budget is in the unit of
+   * the capacity limit of each cache, which is the maximum weight if a weigher is
+   * present or the number of entries otherwise. Only caches with the same unit as the first
+   * cache of the manager share the budget. The caches start with their configured
+   * capacity, and the budget is divided dynamically, so caches which would gain more hits
+   * from additional capacity grow and caches that are idle or do not profit shrink.
+   * A negative value, which is the default, means no budget.
+   *
+   * @since 2.8
+   */
+  public void setWeightBudget(long v) {
+    weightBudget = v;
+  }
+
+  public boolean isSharedTimer() {
+    return sharedTimer;
+  }
+
+  /**
+   * All caches of the manager with expiry share one timer structure and one scheduler
+   * wakeup, instead of running a timer per cache. Only caches with the default time
+   * reference, scheduler, executor and timer lag take part. Default is {@code false}.
+   *
+   * @since 2.8
+   */
+  public void setSharedTimer(boolean f) {
+    sharedTimer = f;
+  }
+
   /**
    * Not supported, but will eventually get one.
    */
@@ -0,0 +1,55 @@
+package org.cache2k.event;
+
+/*-
+ * #%L
+ * cache2k API
+ * %%
+ * Copyright (C) 2000 - 2022 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.Cache;
+import org.cache2k.CacheEntry;
+
+import java.util.List;
+
+/**
+ * Called with all entries evicted in one go. The cache evicts entries in chunks,
+ * a batch listener is called once per chunk instead of once per entry. This allows
+ * to pass on eviction events, for example to a remote system, with less overhead.
+ *
+ * <p>A listener may implement {@link CacheEntryEvictedListener} as well, in this case
+ * both methods are called. A {@link CacheEntryEvictedListener} is always called per entry
+ * before the entry is removed, also when a batch listener is present. The batch listener
+ * is called after the entries of the chunk are removed.
+ *
+ * @author Jens Wilke
+ * @see CacheEntryEvictedListener
+ */
+public interface CacheEntryEvictedBatchListener<K, V> extends CacheEntryOperationListener<K, V> {
+
+  /**
+   * Called upon eviction of a chunk of cache entries. The entries are already removed from
+   * the cache and the passed entries are immutable copies. When used as synchronous listener
+   * the call only delays the thread doing the eviction, other cache operations, also on the
+   * evicted keys, can proceed. When used as asynchronous listener, there is no ordering
+   * guarantee relative to other events of the same key.
+   *
+   * @param cache The cache that generated the event
+   * @param entries Entries containing the recent data, at least one entry
+   */
+  void onEntriesEvicted(Cache<K, V> cache, List<CacheEntry<K, V>> entries) throws Exception;
+
+}
@@ -149,4 +149,20 @@ public interface CacheInfo {
    */
   TimeReference getTimeReference();
 
+  /**
+   * Number of capacity changes done by a controller at runtime, for example because of
+   * memory pressure.
+   *
+   * @since 2.8
+   */
+  default long getCapacityAdjustmentCount() { return 0; }
+
+  /**
+   * Description of the last capacity change done by a controller, including the new
+   * capacity and the reason, or {@code null} if not changed.
+   *
+   * @since 2.8
+   */
+  default @Nullable String getLastCapacityAdjustment() { return null; }
+
 }
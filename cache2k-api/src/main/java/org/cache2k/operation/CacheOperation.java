@@ -22,6 +22,7 @@ package org.cache2k.operation;
 
 import org.cache2k.Cache;
 
+import java.nio.file.Path;
 import java.util.concurrent.CompletableFuture;
 
 /**
@@ -92,4 +93,28 @@ public interface CacheOperation {
    */
   CompletableFuture<Void> changeCapacity(long entryCountOrWeight);
 
+  /**
+   * Write the cache contents to a local file. Entries with valid values are written together
+   * with their expiry time and eviction state. Exceptions are not included. Entries that are
+   * modified during the snapshot are either included with the old or the new value.
+   * The file is written completely or not at all.
+   *
+   * <p>The snapshot is read when the cache is built and the implementation is configured to
+   * restore it. Restored entries are inserted without calling the loader.
+   *
+   * <p>The default implementation completes exceptionally with an
+   * {@link UnsupportedOperationException}.
+   *
+   * @param path the target file, an existing file is replaced
+   * @return See class description. Completes exceptionally with an {@link java.io.IOException}
+   *         if the file could not be written, or with a runtime exception if a key or value
+   *         could not be serialized
+   * @since 2.8
+   */
+  default CompletableFuture<Void> snapshot(Path path) {
+    CompletableFuture<Void> future = new CompletableFuture<>();
+    future.completeExceptionally(new UnsupportedOperationException("snapshot"));
+    return future;
+  }
+
 }
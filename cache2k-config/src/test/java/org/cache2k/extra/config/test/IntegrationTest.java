@@ -28,6 +28,7 @@ import org.cache2k.config.CustomizationSupplierByClassName;
 import org.cache2k.core.spi.CacheConfigProvider;
 import org.cache2k.extra.config.provider.CacheConfigProviderImpl;
 import org.cache2k.extra.config.generic.ConfigurationException;
+import org.cache2k.operation.CacheInfo;
 import org.junit.jupiter.api.Test;
 
 import java.io.Serializable;
@@ -358,4 +359,25 @@ public class IntegrationTest {
     c.close();
   }
 
+  /**
+   * Both caches are configured with the whole budget and share it.
+   */
+  @Test
+  public void weightBudget() {
+    CacheManager mgr = CacheManager.getInstance("weightBudget");
+    Cache c1 = new Cache2kBuilder<String, String>() { }
+      .manager(mgr)
+      .name("first")
+      .build();
+    assertThat(CacheInfo.of(c1).getEntryCapacity()).isBetween(1000L, 1020L);
+    Cache c2 = new Cache2kBuilder<String, String>() { }
+      .manager(mgr)
+      .name("second")
+      .build();
+    assertThat(CacheInfo.of(c1).getEntryCapacity()).isBetween(500L, 520L);
+    assertThat(CacheInfo.of(c2).getEntryCapacity()).isBetween(500L, 520L);
+    assertThat(CacheInfo.of(c2).getLastCapacityAdjustment()).contains("weight budget 1000");
+    mgr.close();
+  }
+
 }
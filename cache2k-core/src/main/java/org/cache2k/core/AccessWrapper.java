@@ -32,10 +32,12 @@ public class AccessWrapper<V> extends ValueWrapper<V> {
   private volatile int countDown;
   private final V value;
   private final int initialCount;
+  private final HeapCache<?, V> cache;
   private final Entry<?, V> entry;
 
-  public static <V> Object of(Entry<?, V> e, V value, int accessCount) {
-    return new AccessWrapper<V>(e, value, accessCount + 1);
+  public static <K, V> Object of(HeapCache<K, V> cache, Entry<K, V> e, V value,
+                                 int accessCount) {
+    return new AccessWrapper<V>(cache, e, value, accessCount + 1);
   }
 
   public static boolean shouldRefresh(Object valueOrWrapper) {
@@ -53,7 +55,8 @@ public class AccessWrapper<V> extends ValueWrapper<V> {
     return true;
   }
 
-  private AccessWrapper(Entry<?, V> entry, V value, int accessCount) {
+  private AccessWrapper(HeapCache<?, V> cache, Entry<?, V> entry, V value, int accessCount) {
+    this.cache = cache;
     this.value = value;
     this.entry = entry;
     this.countDown = accessCount;
@@ -70,20 +73,26 @@ public class AccessWrapper<V> extends ValueWrapper<V> {
   }
 
   /**
-   * Count down and reset wrapper when zero is reached.
+   * Count down and reset wrapper when zero is reached. The value is stored via the
+   * cache, so it moves to the off-heap storage if configured.
    */
   public V getValueOrException() {
     int countResult = UPDATER.decrementAndGet(this);
     if (countResult <= 0) {
       synchronized (entry) {
-        if (entry.getValueOrWrapper() == this) {
-          entry.setValueOrWrapper(value);
+        if (entry.getRawValueOrWrapper() == this) {
+          storeUnwrapped(cache, entry, value);
         }
       }
     }
     return value;
   }
 
+  @SuppressWarnings("unchecked")
+  private static <K, V> void storeUnwrapped(HeapCache<K, V> cache, Entry<?, V> entry, V value) {
+    cache.storeValue((Entry<K, V>) entry, value);
+  }
+
   public V getValueNoTouch() {
     return value;
   }
@@ -26,6 +26,7 @@ import org.cache2k.CacheEntry;
 import org.cache2k.CacheException;
 import org.cache2k.core.api.InternalCache;
 import org.cache2k.core.api.InternalCacheInfo;
+import org.cache2k.core.api.PrimitiveValueCache;
 import org.cache2k.core.common.BaseCacheControl;
 import org.cache2k.core.operation.Operations;
 import org.cache2k.operation.CacheOperation;
@@ -49,7 +50,7 @@ import java.util.concurrent.Executor;
  *
  * @author Jens Wilke
  */
-public abstract class BaseCache<K, V> implements InternalCache<K, V> {
+public abstract class BaseCache<K, V> implements InternalCache<K, V>, PrimitiveValueCache<K> {
 
   public abstract Executor getExecutor();
 
@@ -115,6 +116,24 @@ public abstract class BaseCache<K, V> implements InternalCache<K, V> {
   }
 
   @SuppressWarnings("unchecked")
+  @Override
+  public long getLong(K key, long absentValue) {
+    Object v = get(key);
+    return v != null ? ((Number) v).longValue() : absentValue;
+  }
+
+  @Override
+  public int getInt(K key, int absentValue) {
+    Object v = get(key);
+    return v != null ? ((Number) v).intValue() : absentValue;
+  }
+
+  @Override
+  public double getDouble(K key, double absentValue) {
+    Object v = get(key);
+    return v != null ? ((Number) v).doubleValue() : absentValue;
+  }
+
   @Override
   public <X> X requestInterface(Class<X> type) {
     if (type.equals(ConcurrentMap.class) ||
@@ -58,6 +58,8 @@ class CacheBaseInfo implements InternalCacheInfo {
   private final long clearRemovedCnt;
   private final long clearCnt;
   private final long internalExceptionCnt;
+  private final long hashTableSize;
+  private final long timerTasksAvoidedCnt;
   private final String evictionToString;
 
   CacheBaseInfo(HeapCache heapCache, InternalCache userCache, long now) {
@@ -71,6 +73,8 @@ class CacheBaseInfo implements InternalCacheInfo {
     clearRemovedCnt = heapCache.clearRemovedCnt;
     clearCnt = heapCache.clearCnt;
     internalExceptionCnt = heapCache.internalExceptionCnt;
+    hashTableSize = heapCache.getHashTableSize();
+    timerTasksAvoidedCnt = heapCache.timing.getTimerTasksAvoidedCount();
     if (Thread.holdsLock(heapCache.lock)) {
       evictionToString = heapCache.eviction.toString();
       integrityState = heapCache.getIntegrityState();
@@ -127,6 +131,11 @@ class CacheBaseInfo implements InternalCacheInfo {
     return evictionMetrics.getScanCount();
   }
 
+  @Override
+  public long getHashTableSize() {
+    return hashTableSize;
+  }
+
   @Override
   public long getGetCount() {
     return
@@ -175,6 +184,8 @@ class CacheBaseInfo implements InternalCacheInfo {
   @Override
   public long getTimerEventCount() { return metrics.getTimerEventCount(); }
   @Override
+  public long getTimerTasksAvoidedCount() { return timerTasksAvoidedCnt; }
+  @Override
   public double getHitRate() {
     long cnt = getGetCount();
     return cnt == 0 ? 0.0 : ((cnt - missCnt) * 100D / cnt);
@@ -255,6 +266,7 @@ class CacheBaseInfo implements InternalCacheInfo {
       .append("removeByClear=").append(getClearedEntriesCount()).append(", ")
       .append("evict=").append(getEvictedCount()).append(", ")
       .append("timer=").append(getTimerEventCount()).append(", ")
+      .append("timerAvoided=").append(getTimerTasksAvoidedCount()).append(", ")
       .append("goneSpin=").append(getGoneSpinCount()).append(", ")
       .append("hitRate=").append(getHitRateString()).append(", ")
       .append("msecs/load=").append(formatMillisPerLoad(getMillisPerLoad())).append(", ")
@@ -266,6 +278,7 @@ class CacheBaseInfo implements InternalCacheInfo {
       .append("keyMutation=").append(getKeyMutationCount()).append(", ")
       .append("evictionScanCount=").append(evictionMetrics.getScanCount()).append(", ")
       .append("internalException=").append(getInternalExceptionCount()).append(", ")
+      .append("hashTableSize=").append(getHashTableSize()).append(", ")
       .append("version=").append(cm.getProvider().getVersion());
     if (evictionToString != null && !evictionToString.isEmpty()) {
       sb.append(", ");
@@ -25,11 +25,15 @@ import org.cache2k.Cache2kBuilder;
 import org.cache2k.CacheClosedException;
 import org.cache2k.CacheException;
 import org.cache2k.CacheManager;
+import org.cache2k.annotation.Nullable;
 import org.cache2k.config.Cache2kConfig;
+import org.cache2k.config.Cache2kManagerConfig;
 import org.cache2k.core.api.InternalCacheCloseContext;
 import org.cache2k.core.api.InternalCache;
 import org.cache2k.core.api.InternalCacheBuildContext;
+import org.cache2k.core.capacity.CapacityBudget;
 import org.cache2k.core.spi.CacheLifeCycleListener;
+import org.cache2k.core.timing.SharedTimer;
 import org.cache2k.core.spi.CacheManagerLifeCycleListener;
 import org.cache2k.core.log.Log;
 import org.cache2k.spi.Cache2kCoreProvider;
@@ -107,6 +111,10 @@ public class CacheManagerImpl extends CacheManager {
   private final boolean defaultManager;
   private final Cache2kCoreProviderImpl provider;
   private boolean closing;
+  private boolean managerConfigResolved;
+  private @Nullable CapacityBudget capacityBudget;
+  private boolean sharedTimerConfigured;
+  private final SharedTimer sharedTimer = new SharedTimer();
 
   public CacheManagerImpl(Cache2kCoreProviderImpl provider, ClassLoader cl, String name,
                           boolean defaultManager) {
@@ -187,6 +195,53 @@ public class CacheManagerImpl extends CacheManager {
     }
   }
 
+  /**
+   * The budget shared by the caches of this manager, or {@code null} if no weight budget
+   * is configured. The configuration is read on the first call.
+   *
+   * @see Cache2kManagerConfig#setWeightBudget(long)
+   */
+  public @Nullable CapacityBudget getCapacityBudget() {
+    synchronized (lock) {
+      resolveManagerConfig();
+      return capacityBudget;
+    }
+  }
+
+  /**
+   * True, if the caches of this manager share one timer by configuration.
+   *
+   * @see Cache2kManagerConfig#setSharedTimer(boolean)
+   */
+  public boolean isSharedTimerConfigured() {
+    synchronized (lock) {
+      resolveManagerConfig();
+      return sharedTimerConfigured;
+    }
+  }
+
+  /**
+   * The timer that caches of this manager may share.
+   */
+  public SharedTimer getSharedTimer() {
+    return sharedTimer;
+  }
+
+  private void resolveManagerConfig() {
+    if (managerConfigResolved) {
+      return;
+    }
+    Cache2kManagerConfig cfg =
+      Cache2kCoreProviderImpl.CACHE_CONFIGURATION_PROVIDER.getManagerConfig(this);
+    if (cfg != null) {
+      if (cfg.getWeightBudget() > 0) {
+        capacityBudget = new CapacityBudget(cfg.getWeightBudget());
+      }
+      sharedTimerConfigured = cfg.isSharedTimer();
+    }
+    managerConfigResolved = true;
+  }
+
   @Override
   public boolean isDefaultManager() {
     return defaultManager;
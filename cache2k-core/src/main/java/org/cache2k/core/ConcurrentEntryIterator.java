@@ -33,7 +33,8 @@ import java.util.NoSuchElementException;
  * entry is rehashed. In this case it is most likely that entries are missed.
  * If an expansion occurred, the iteration will restart from the beginning. To ensure that every
  * entry is only iterated once, the iterator has an internal bookkeeping, what was previously
- * iterated.
+ * iterated. Placeholders in the table slots, e.g. buckets already moved by an incremental
+ * expansion, are skipped. An expansion in progress is completed before a new scan starts.
  *
  * <p>Clear: A clear operation stops current iterations.
  *
@@ -47,8 +48,11 @@ public class ConcurrentEntryIterator<K, V> implements Iterator<Entry<K, V>> {
   private Entry<K, V> lastEntry = null;
   private Entry<K, V> nextEntry = null;
   private long clearCount;
-  private StampedHash<K, V> hash;
-  private Entry<K, V>[] hashArray;
+  private SegmentedHash<K, V> hash;
+  private Entry<K, V>[][] tables;
+  private int tableIdx;
+  private int idx;
+  private int rehashCount = -1;
   private HashMap<K, K> seen = new HashMap<>();
 
   public ConcurrentEntryIterator(HeapCache<K, V> cache) {
@@ -100,7 +104,7 @@ public class ConcurrentEntryIterator<K, V> implements Iterator<Entry<K, V>> {
 
   private Entry<K, V> nextEntry() {
     Entry<K, V> e;
-    if (hashArray == null) {
+    if (tables == null) {
       return null;
     }
     if (needsAbort()) {
@@ -111,7 +115,6 @@ public class ConcurrentEntryIterator<K, V> implements Iterator<Entry<K, V>> {
       clearOutReferences();
       return null;
     }
-    int idx = 0;
     if (lastEntry != null) {
       e = lastEntry.another;
       if (e != null) {
@@ -121,17 +124,23 @@ public class ConcurrentEntryIterator<K, V> implements Iterator<Entry<K, V>> {
           return e;
         }
       }
-      idx = (cache.spreadHashFromEntry(lastEntry) & (hashArray.length - 1)) + 1;
+      lastEntry = null;
+      idx++;
     }
     for (;;) {
-      if (idx >= hashArray.length) {
-        if (switchAndCheckAbort()) {
-          return null;
-        }
+      Entry<K, V>[] tab = tables[tableIdx];
+      if (idx >= tab.length) {
         idx = 0;
+        if (++tableIdx >= tables.length) {
+          if (switchAndCheckAbort()) {
+            return null;
+          }
+          tableIdx = 0;
+        }
+        continue;
       }
-      e = hashArray[idx];
-      if (e != null) {
+      e = tab[idx];
+      if (e != null && !SegmentedHash.isPlaceholder(e)) {
         e = checkIteratedOrNext(e);
         if (e != null) {
           lastEntry = e;
@@ -177,13 +186,15 @@ public class ConcurrentEntryIterator<K, V> implements Iterator<Entry<K, V>> {
    * @return true, if iteration should abort
    */
   private Boolean switchCheckAndAbortLocked() {
+    hash.completeExpansionWhenLocked();
     if (!hasExpansionOccurred()) {
       clearOutReferences();
       return true;
     }
-    hashArray = hash.getEntries();
+    tables = hash.getTables();
+    rehashCount = hash.getRehashCount();
     clearCount = hash.getClearOrCloseCount();
-    boolean cacheClosed = hashArray == null;
+    boolean cacheClosed = tables == null;
     if (cacheClosed) {
       clearOutReferences();
       throw new CacheClosedException(cache);
@@ -198,16 +209,16 @@ public class ConcurrentEntryIterator<K, V> implements Iterator<Entry<K, V>> {
    */
   private void clearOutReferences() {
     hash = null;
-    hashArray = null;
+    tables = null;
     seen = null;
   }
 
   /**
-   * True if hash table expanded while iterating. Triggers another
+   * True if a hash table was replaced while iterating. Triggers another
    * scan over the hash tables. True also before first run.
    */
   private boolean hasExpansionOccurred() {
-    return hashArray != hash.getEntries();
+    return rehashCount != hash.getRehashCount();
   }
 
 }
@@ -26,6 +26,7 @@ import org.cache2k.operation.TimeReference;
 import org.cache2k.core.timing.TimerTask;
 import org.cache2k.expiry.ExpiryPolicy;
 import org.cache2k.core.operation.ExaminationEntry;
+import org.cache2k.core.storage.OffHeapValue;
 import org.cache2k.expiry.ExpiryTimeValues;
 import org.cache2k.io.LoadExceptionInfo;
 
@@ -110,14 +111,14 @@ class CompactEntry<K, V> implements CacheEntry<K, V> {
    * handed to the expiry policy directly, only in case it is not an exception wrapper.
    */
   public V getValue() {
-    return HeapCache.returnValue(valueOrWrapper);
+    return HeapCache.returnValue(getValueOrWrapper());
   }
 
   /**
    * The value of the entry or an {@link ExceptionWrapper}.
    */
   public Object getValueOrException() {
-    Object v = valueOrWrapper;
+    Object v = getValueOrWrapper();
     if (v instanceof AccessWrapper) {
       return ((AccessWrapper<?>) v).getValueOrException();
     }
@@ -125,6 +126,19 @@ class CompactEntry<K, V> implements CacheEntry<K, V> {
   }
 
   public Object getValueOrWrapper() {
+    Object v = valueOrWrapper;
+    if (v instanceof OffHeapValue) {
+      return ((OffHeapValue) v).load((Entry<?, ?>) this);
+    }
+    return v;
+  }
+
+  /**
+   * The reference as stored in the entry. This is the {@link PrimitiveValue} type
+   * if the value is stored as primitive, or the {@link OffHeapValue} if the value
+   * is stored outside the heap.
+   */
+  public final Object getRawValueOrWrapper() {
     return valueOrWrapper;
   }
 
@@ -137,7 +151,8 @@ class CompactEntry<K, V> implements CacheEntry<K, V> {
   }
 
   /**
-   * Get the raw object reference. Is {@code null} for the {@link IntHeapCache}.
+   * Get the raw object reference. Is {@code null} for the {@link IntHeapCache}
+   * and the {@link LongHeapCache}.
    */
   public K getKeyObj() {
     return key;
@@ -563,6 +578,20 @@ public class Entry<K, V> extends CompactEntry<K, V>
     }
   }
 
+  /**
+   * Additional marker for the eviction algorithm, e.g. to record the queue
+   * the entry is in.
+   */
+  public boolean isEvictionFlag() { return (hotAndWeight & 0x40000000) != 0; }
+
+  public void setEvictionFlag(boolean f) {
+    if (f) {
+      hotAndWeight = hotAndWeight | 0x40000000;
+    } else {
+      hotAndWeight = hotAndWeight & ~0x40000000;
+    }
+  }
+
   /**
    * Store weight as 16 bit floating point number.
    */
@@ -585,6 +614,32 @@ public class Entry<K, V> extends CompactEntry<K, V>
     return hotAndWeight >> SCAN_ROUND_POS & SCAN_ROUND_MASK;
   }
 
+  public static final int LOAD_COST_BITS = 5;
+  public static final int LOAD_COST_POS = 20;
+  public static final int COST_CREDIT_POS = 25;
+  /** Mask and max value for load cost and cost credit */
+  public static final int LOAD_COST_MASK = (1 << LOAD_COST_BITS) - 1;
+
+  /**
+   * Store the logarithmic load cost, used by the cost aware eviction.
+   */
+  public void setLoadCost(int v) {
+    hotAndWeight = hotAndWeight & ~(LOAD_COST_MASK << LOAD_COST_POS) | v << LOAD_COST_POS;
+  }
+  public int getLoadCost() {
+    return hotAndWeight >> LOAD_COST_POS & LOAD_COST_MASK;
+  }
+
+  /**
+   * Remaining rounds the entry is passed over by the eviction, before it is evicted.
+   */
+  public void setCostCredit(int v) {
+    hotAndWeight = hotAndWeight & ~(LOAD_COST_MASK << COST_CREDIT_POS) | v << COST_CREDIT_POS;
+  }
+  public int getCostCredit() {
+    return hotAndWeight >> COST_CREDIT_POS & LOAD_COST_MASK;
+  }
+
   public String toString(HeapCache c) {
     StringBuilder sb = new StringBuilder();
     sb.append("Entry{");
@@ -593,7 +648,7 @@ public class Entry<K, V> extends CompactEntry<K, V>
     sb.append(", key=");
     Object key = getKeyObj();
     if (key == null) {
-      sb.append(hashCode);
+      sb.append(getKey());
     } else {
       sb.append(key);
       if (c != null && (HeapCache.spreadHash(key.hashCode()) != hashCode)) {
@@ -583,7 +583,8 @@ public abstract class EntryAction<K, V, R> extends Entry.PiggyBack implements
   }
 
   private boolean needsLoadTimes() {
-    return heapCache.isModificationTimeNeeded() || !metrics().isDisabled();
+    return heapCache.isModificationTimeNeeded() || !metrics().isDisabled() ||
+      heapCache.isLoadCostNeeded();
   }
 
   @Override
@@ -1219,15 +1220,16 @@ public abstract class EntryAction<K, V, R> extends Entry.PiggyBack implements
       if (remove) {
         if (expiredImmediately) {
           heapEntry.setRawExpiry(Entry.EXPIRED);
-          heapEntry.setValueOrWrapper(newValueOrException);
+          heapCache.storeValue(heapEntry, newValueOrException);
         } else {
           if (!heapEntry.isVirgin()) {
             heapEntry.setRawExpiry(Entry.REMOVE_PENDING);
           }
         }
       } else {
-        heapEntry.setValueOrWrapper(
-          timing().wrapLoadValueForRefresh(this, heapEntry, newValueOrException));
+        heapCache.storeValue(heapEntry,
+          timing().wrapLoadValueForRefresh(heapCache, this, heapEntry,
+            newValueOrException));
         evictionHint = heapCache.eviction.updateWeight(heapEntry);
       }
       if (remove) {
@@ -1291,6 +1293,9 @@ public abstract class EntryAction<K, V, R> extends Entry.PiggyBack implements
     }
     if (loaderWasCalled) {
       long delta = loadCompletedTime - loadStartedTime;
+      if (heapCache.isLoadCostNeeded()) {
+        heapCache.eviction.updateLoadCost(heapEntry, delta);
+      }
       if (refresh) {
         metrics().refresh(delta);
       } else if (isGetLike()) {
@@ -23,24 +23,37 @@ package org.cache2k.core;
 import org.cache2k.Cache;
 import org.cache2k.CacheClosedException;
 import org.cache2k.CacheEntry;
+import org.cache2k.CacheException;
 import org.cache2k.CacheManager;
+import org.cache2k.annotation.Nullable;
 import org.cache2k.config.Cache2kConfig;
 import org.cache2k.config.CacheType;
 import org.cache2k.core.api.InternalCacheBuildContext;
 import org.cache2k.core.api.CommonMetrics;
 import org.cache2k.core.api.InternalCache;
 import org.cache2k.core.api.InternalCacheInfo;
+import org.cache2k.core.capacity.ControlledCapacity;
 import org.cache2k.core.eviction.Eviction;
 import org.cache2k.core.eviction.EvictionMetrics;
 import org.cache2k.core.eviction.HeapCacheForEviction;
 import org.cache2k.core.operation.ExaminationEntry;
 import org.cache2k.core.operation.Semantic;
 import org.cache2k.core.operation.Operations;
+import org.cache2k.core.storage.OffHeapConfig;
+import org.cache2k.core.storage.OffHeapEntry;
+import org.cache2k.core.storage.JavaSerializer;
+import org.cache2k.core.storage.OffHeapStorage;
+import org.cache2k.core.storage.OverflowConfig;
+import org.cache2k.core.storage.OverflowStore;
+import org.cache2k.core.storage.SnapshotConfig;
+import org.cache2k.core.storage.SnapshotFile;
+import org.cache2k.core.storage.ValueSerializer;
 import org.cache2k.core.concurrency.ThreadFactoryProvider;
 
 import org.cache2k.core.timing.TimeAgnosticTiming;
 import org.cache2k.core.timing.Timing;
 import org.cache2k.core.util.Util;
+import org.cache2k.expiry.ExpiryTimeValues;
 import org.cache2k.expiry.RefreshAheadPolicy;
 import org.cache2k.io.CacheLoader;
 import org.cache2k.operation.TimeReference;
@@ -50,6 +63,12 @@ import org.cache2k.io.AdvancedCacheLoader;
 import org.cache2k.io.ExceptionPropagator;
 import org.cache2k.io.LoadExceptionInfo;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -98,6 +117,11 @@ public class HeapCache<K, V> extends BaseCache<K, V> implements HeapCacheForEvic
     return timing;
   }
 
+  @Override
+  public @Nullable ControlledCapacity getControlledCapacity() {
+    return controlledCapacity;
+  }
+
   public TimeReference getTimeReference() {
     return clock;
   }
@@ -181,7 +205,33 @@ public class HeapCache<K, V> extends BaseCache<K, V> implements HeapCacheForEvic
     }
   }
 
-  protected final StampedHash<K, V> hash;
+  protected final SegmentedHash<K, V> hash;
+
+  private final boolean openAddressingHash;
+
+  /**
+   * Tier for evicted entries or {@code null} if not configured.
+   */
+  private final OverflowStore<K, V> overflowStore;
+
+  /**
+   * Snapshot file to restore from or {@code null}.
+   */
+  private final String snapshotRestoreFile;
+  private final ValueSerializer<K> snapshotKeySerializer;
+  private final ValueSerializer<V> snapshotValueSerializer;
+
+  /**
+   * Storage for values outside the heap or {@code null} if not configured.
+   */
+  private final OffHeapStorage<V> offHeapStorage;
+
+  /**
+   * Primitive values are requested via the internal configuration and the value type is
+   * {@code Long}, {@code Integer} or {@code Double}. Values are stored as primitive
+   * in a {@link PrimitiveValueEntry}. Not used if values are stored off-heap.
+   */
+  private final boolean primitiveValues;
 
   private volatile boolean closing = true;
 
@@ -194,6 +244,11 @@ public class HeapCache<K, V> extends BaseCache<K, V> implements HeapCacheForEvic
 
   Collection<CacheClosedListener> cacheClosedListeners = Collections.emptyList();
 
+  /**
+   * Set by the builder, if the capacity is changed by a controller.
+   */
+  @Nullable ControlledCapacity controlledCapacity;
+
   private int featureBits;
 
   private static final int KEEP_AFTER_EXPIRED = 2;
@@ -201,6 +256,8 @@ public class HeapCache<K, V> extends BaseCache<K, V> implements HeapCacheForEvic
   private static final int BACKGROUND_REFRESH = 16;
   private static final int MODIFICATION_TIME_NEEDED = 32;
   private static final int RECORD_MODIFICATION_TIME = 64;
+  private static final int LOAD_COST_NEEDED = 128;
+  private static final int LAZY_EXPIRY = 256;
 
   private final ThreadFactoryProvider threadFactoryProvider;
 
@@ -222,8 +279,18 @@ public class HeapCache<K, V> extends BaseCache<K, V> implements HeapCacheForEvic
    */
   protected final boolean isModificationTimeNeeded() { return (featureBits & MODIFICATION_TIME_NEEDED) > 0; }
 
+  /**
+   * Eviction needs the load time of each entry.
+   */
+  protected final boolean isLoadCostNeeded() { return (featureBits & LOAD_COST_NEEDED) > 0; }
+
   protected final boolean isRecordModificationTime() { return (featureBits & RECORD_MODIFICATION_TIME) > 0; }
 
+  /**
+   * Expiry is checked on access, no timer is running.
+   */
+  protected final boolean isLazyExpiry() { return (featureBits & LAZY_EXPIRY) > 0; }
+
   private static int featureBit(int bitmask, boolean flag) {
     return flag ? bitmask : 0;
   }
@@ -249,6 +316,20 @@ public class HeapCache<K, V> extends BaseCache<K, V> implements HeapCacheForEvic
     keyType = cfg.getKeyType();
     name = cfg.getName();
     manager = (CacheManagerImpl) ctx.getCacheManager();
+    openAddressingHash = ctx.internalConfig().isOpenAddressingHash();
+    offHeapStorage = createOffHeapStorage(ctx);
+    primitiveValues = offHeapStorage == null && ctx.internalConfig().isPrimitiveValues() &&
+      valueType != null && PrimitiveValue.isPrimitiveValueType(valueType.getType());
+    overflowStore = createOverflowStore(ctx);
+    SnapshotConfig snapshotConfig = cfg.getSections().getSection(SnapshotConfig.class);
+    if (snapshotConfig == null) {
+      snapshotConfig = new SnapshotConfig();
+    }
+    snapshotRestoreFile = snapshotConfig.getRestoreFile();
+    snapshotKeySerializer = (ValueSerializer<K>) ctx.createCustomization(
+      snapshotConfig.getKeySerializer(), JavaSerializer.INSTANCE);
+    snapshotValueSerializer = (ValueSerializer<V>) ctx.createCustomization(
+      snapshotConfig.getValueSerializer(), JavaSerializer.INSTANCE);
     hash = createHashTable();
     clock = ctx.getTimeReference();
     featureBits =
@@ -256,7 +337,8 @@ public class HeapCache<K, V> extends BaseCache<K, V> implements HeapCacheForEvic
       featureBit(REJECT_NULL_VALUES, !cfg.isPermitNullValues()) |
       featureBit(BACKGROUND_REFRESH, cfg.isRefreshAhead()) |
       featureBit(MODIFICATION_TIME_NEEDED, cfg.isRecordModificationTime()) |
-      featureBit(RECORD_MODIFICATION_TIME, cfg.isRecordModificationTime());
+      featureBit(RECORD_MODIFICATION_TIME, cfg.isRecordModificationTime()) |
+      featureBit(LAZY_EXPIRY, ctx.internalConfig().isLazyExpiry());
     if (cfg.getLoader() != null) {
       Object obj = ctx.createCustomization(cfg.getLoader());
       CacheLoader<K, V> simpleLoader = (CacheLoader) obj;
@@ -324,6 +406,9 @@ public class HeapCache<K, V> extends BaseCache<K, V> implements HeapCacheForEvic
 
   public void initWithoutTimerHandler() {
     startedTime = clock.ticks();
+    if (eviction.isLoadCostNeeded()) {
+      featureBits = featureBits | LOAD_COST_NEEDED;
+    }
     if (isRefreshAhead() && timing instanceof TimeAgnosticTiming) {
       throw new IllegalArgumentException("refresh ahead enabled, but no expiry variant defined");
     }
@@ -347,8 +432,14 @@ public class HeapCache<K, V> extends BaseCache<K, V> implements HeapCacheForEvic
     long removed = eviction.removeAll();
     clearRemovedCnt += removed;
     clearCnt++;
-    timing.cancelAll();
+    cancelTimerTasksWhenLocked();
     hash.clearWhenLocked();
+    if (offHeapStorage != null) {
+      offHeapStorage.clear();
+    }
+    if (overflowStore != null) {
+      overflowStore.clear();
+    }
     clearedTime = clock.ticks();
   }
 
@@ -358,9 +449,41 @@ public class HeapCache<K, V> extends BaseCache<K, V> implements HeapCacheForEvic
    */
   @Override
   public void cancelTimerJobs() {
+    if (timing.isTimerShared()) {
+      executeWithGlobalLock(() -> {
+        cancelTimerTasksWhenLocked();
+        return null;
+      }, false);
+      return;
+    }
     timing.cancelAll();
   }
 
+  /**
+   * Cancel all timer tasks. A timer shared with other caches cannot be dropped at once,
+   * so the timer of each entry in the hash table is cancelled. Called with total lock.
+   */
+  private void cancelTimerTasksWhenLocked() {
+    if (!timing.isTimerShared()) {
+      timing.cancelAll();
+      return;
+    }
+    hash.completeExpansionWhenLocked();
+    Entry<K, V>[][] tables = hash.getTables();
+    if (tables == null) {
+      return;
+    }
+    for (Entry<K, V>[] tab : tables) {
+      for (Entry<K, V> e : tab) {
+        for (; e != null; e = e.another) {
+          if (!SegmentedHash.isPlaceholder(e)) {
+            timing.cancelExpiryTimer(e);
+          }
+        }
+      }
+    }
+  }
+
   @Override
   public boolean isClosed() {
     return closing;
@@ -394,6 +517,10 @@ public class HeapCache<K, V> extends BaseCache<K, V> implements HeapCacheForEvic
       eviction.close(HeapCache.this);
       timing.close(HeapCache.this);
       hash.close();
+      if (offHeapStorage != null) {
+        offHeapStorage.clear();
+      }
+      closeCustomization(overflowStore, "overflowStore");
       closeCustomization(loader, "loader");
       closeCustomization(clock, "timeReference");
       for (CacheClosedListener s : cacheClosedListeners) {
@@ -540,6 +667,56 @@ public class HeapCache<K, V> extends BaseCache<K, V> implements HeapCacheForEvic
     return returnValue(loadedValueOrException);
   }
 
+  /**
+   * Return the value without boxing, if it is stored as primitive and fresh.
+   * Otherwise use {@link #get(Object)}.
+   */
+  @Override
+  public long getLong(K key, long absentValue) {
+    PrimitiveValueHolder e = lookupPrimitiveValue(key, PrimitiveValue.LONG);
+    if (e != null) {
+      return e.getPrimitiveValueBits();
+    }
+    return super.getLong(key, absentValue);
+  }
+
+  @Override
+  public int getInt(K key, int absentValue) {
+    PrimitiveValueHolder e = lookupPrimitiveValue(key, PrimitiveValue.INT);
+    if (e != null) {
+      return (int) e.getPrimitiveValueBits();
+    }
+    return super.getInt(key, absentValue);
+  }
+
+  @Override
+  public double getDouble(K key, double absentValue) {
+    PrimitiveValueHolder e = lookupPrimitiveValue(key, PrimitiveValue.DOUBLE);
+    if (e != null) {
+      return Double.longBitsToDouble(e.getPrimitiveValueBits());
+    }
+    return super.getDouble(key, absentValue);
+  }
+
+  /**
+   * Entry with fresh data and a value stored as primitive of the requested type. The hit
+   * is only recorded when the entry is returned, in all other cases the caller does
+   * a regular {@code get}, which records the hit or miss.
+   */
+  private PrimitiveValueHolder lookupPrimitiveValue(K key, PrimitiveValue type) {
+    if (!primitiveValues) {
+      return null;
+    }
+    int hc = spreadHash(key.hashCode());
+    Entry<K, V> e = lookupEntryNoHitRecord(key, hc, toStoredHashCodeOrKey(key, hc));
+    if (e instanceof PrimitiveValueHolder &&
+      e.getRawValueOrWrapper() == type && e.hasFreshData(clock)) {
+      recordHit(e);
+      return (PrimitiveValueHolder) e;
+    }
+    return null;
+  }
+
   /**
    * Wrap entry in a separate object instance. We can return the entry directly, however we lock on
    * the entry object.
@@ -683,12 +860,16 @@ public class HeapCache<K, V> extends BaseCache<K, V> implements HeapCacheForEvic
     try {
       removed = hash.removeWithinLock(e, hc);
       e.setGone();
+      if (offHeapStorage != null) {
+        offHeapStorage.remove(e);
+      }
       if (removed) {
         eviction.submitWithoutTriggeringEviction(e);
       }
     } finally {
       l.unlockWrite(stamp);
     }
+    hash.checkShrink(hc);
     checkForHashCodeChange(e);
     timing.cancelExpiryTimer(e);
     return removed;
@@ -1198,8 +1379,16 @@ public class HeapCache<K, V> extends BaseCache<K, V> implements HeapCacheForEvic
     return null;
   }
 
+  /**
+   * Lookup the entry in the hash table. If not present, but the key is in the overflow tier,
+   * the entry is moved back to the heap.
+   */
   protected final Entry<K, V> lookupEntryNoHitRecord(K key, int hc, int val) {
-    return hash.lookup(toEntryKey(key), hc, val);
+    Entry<K, V> e = hash.lookup(toEntryKey(key), hc, val);
+    if (e == null && overflowStore != null && overflowStore.containsKey(key)) {
+      return insertNewEntry(key, hc, val);
+    }
+    return e;
   }
 
   /**
@@ -1207,7 +1396,62 @@ public class HeapCache<K, V> extends BaseCache<K, V> implements HeapCacheForEvic
    * needs to be done under the same lock, to allow a check of the consistency.
    */
   protected Entry<K, V> insertNewEntry(K key, int hc, int val) {
-    Entry<K, V> e = new Entry<>(toEntryKey(key), val);
+    Entry<K, V> e = newEntry(key, val);
+    if (overflowStore == null) {
+      return insertNewEntry(e, hc, val);
+    }
+    synchronized (e) {
+      Entry<K, V> e2 = insertNewEntry(e, hc, val);
+      if (e2 == e) {
+        promoteFromOverflow(e, key);
+      }
+      return e2;
+    }
+  }
+
+  /**
+   * Move the entry from the overflow tier into the new heap entry. Called when the new entry
+   * is inserted into the hash table and still locked, so no other operation sees it empty.
+   * The key is removed from the tier in any case, since the heap entry is now the
+   * valid one.
+   */
+  private void promoteFromOverflow(Entry<K, V> e, K key) {
+    OverflowStore.Demoted<V> d = overflowStore.take(key, clock.ticks());
+    if (d == null) {
+      return;
+    }
+    if (d.getValue() == null && isRejectNullValues()) {
+      return;
+    }
+    insertWithoutLoad(e, d.getValue(),
+      d.getExpiryTime() == OverflowStore.ETERNAL ? ExpiryTimeValues.ETERNAL : d.getExpiryTime());
+  }
+
+  /**
+   * Pass an entry evicted from the heap to the overflow tier, if it has a valid value.
+   * The tier serializes and writes the value in a separate task, so this adds no
+   * serialization to the eviction.
+   */
+  @SuppressWarnings("unchecked")
+  private void demoteToOverflow(Entry<K, V> e) {
+    if (!e.hasFreshData(clock)) {
+      return;
+    }
+    Object v = e.getValueOrException();
+    if (v instanceof ExceptionWrapper) {
+      return;
+    }
+    long expiry = e.getExpiryTime();
+    if (expiry < Entry.EXPIRY_TIME_MIN || expiry == ExpiryTimeValues.ETERNAL) {
+      expiry = OverflowStore.ETERNAL;
+    }
+    overflowStore.demote(keyObjFromEntry(e), (V) v, expiry);
+  }
+
+  /**
+   * Insert the entry or return the existing entry for the key.
+   */
+  private Entry<K, V> insertNewEntry(Entry<K, V> e, int hc, int val) {
     Entry<K, V> e2;
     eviction.evictEventuallyBeforeInsertOnSegment(hc);
     StampedLock l = hash.getSegmentLock(hc);
@@ -1224,11 +1468,6 @@ public class HeapCache<K, V> extends BaseCache<K, V> implements HeapCacheForEvic
     return e2;
   }
 
-  @Override
-  public Entry<K, V>[] getHashEntries() {
-    return hash.getEntries();
-  }
-
   /**
    * Remove the entry from the hash table. The entry is already removed from the replacement list.
    * Stop the timer, if needed. The remove races with a clear. The clear
@@ -1239,10 +1478,16 @@ public class HeapCache<K, V> extends BaseCache<K, V> implements HeapCacheForEvic
    * return the entry contents.
    */
   public void removeEntryForEviction(Entry<K, V> e) {
+    if (overflowStore != null) {
+      demoteToOverflow(e);
+    }
     boolean f = hash.remove(e);
     checkForHashCodeChange(e);
     timing.cancelExpiryTimer(e);
     e.setGone();
+    if (offHeapStorage != null) {
+      offHeapStorage.remove(e);
+    }
   }
 
   /**
@@ -1276,7 +1521,9 @@ public class HeapCache<K, V> extends BaseCache<K, V> implements HeapCacheForEvic
   @SuppressWarnings("unchecked")
   protected Object load(Entry<K, V> e) {
     V v;
-    long t0 = !isModificationTimeNeeded() ? 0 : clock.ticks();
+    boolean loadTimeNeeded = isLoadCostNeeded() ||
+      !metrics.isDisabled() && isModificationTimeNeeded();
+    long t0 = !isModificationTimeNeeded() && !isLoadCostNeeded() ? 0 : clock.ticks();
     try {
       checkLoaderPresent();
       if (e.isVirgin()) {
@@ -1286,13 +1533,13 @@ public class HeapCache<K, V> extends BaseCache<K, V> implements HeapCacheForEvic
       }
     } catch (Throwable ouch) {
       long t = t0;
-      if (!metrics.isDisabled() && isModificationTimeNeeded()) {
+      if (loadTimeNeeded) {
         t = clock.ticks();
       }
       return loadGotException(e, t0, t, ouch);
     }
     long t = t0;
-    if (!metrics.isDisabled() && isModificationTimeNeeded()) {
+    if (loadTimeNeeded) {
       t = clock.ticks();
     }
     return insertOrUpdateAndCalculateExpiry(e, v, t0, t, true);
@@ -1331,7 +1578,7 @@ public class HeapCache<K, V> extends BaseCache<K, V> implements HeapCacheForEvic
     exceptionWrapper = new ExceptionWrapper<>(exceptionWrapper, Math.abs(expiry));
     Object wrappedValue = exceptionWrapper;
     if (expiry != 0) {
-      wrappedValue = timing.wrapLoadValueForRefresh(refreshCtx, e, exceptionWrapper);
+      wrappedValue = timing.wrapLoadValueForRefresh(this, refreshCtx, e, exceptionWrapper);
     }
     Object loadResult;
     synchronized (e) {
@@ -1343,7 +1590,7 @@ public class HeapCache<K, V> extends BaseCache<K, V> implements HeapCacheForEvic
         if (isRecordModificationTime()) {
           e.setModificationTime(t0);
         }
-        e.setValueOrWrapper(exceptionWrapper);
+        storeValue(e, exceptionWrapper);
         loadResult = exceptionWrapper;
       }
       finishLoadOrEviction(e, expiry, refreshTime);
@@ -1488,8 +1735,8 @@ public class HeapCache<K, V> extends BaseCache<K, V> implements HeapCacheForEvic
           e.setModificationTime(t0);
         }
         insertUpdateStats(e, valueOrException, t0, t, load, expiry, false);
-        Object wrappedValue = timing.wrapLoadValueForRefresh(refreshCtx, e, valueOrException);
-        e.setValueOrWrapper(wrappedValue);
+        Object wrappedValue = timing.wrapLoadValueForRefresh(this, refreshCtx, e, valueOrException);
+        storeValue(e, wrappedValue);
         e.resetSuppressedLoadExceptionInformation();
         finishLoadOrEviction(e, expiry, refreshTime);
       }
@@ -1500,7 +1747,7 @@ public class HeapCache<K, V> extends BaseCache<K, V> implements HeapCacheForEvic
       if (isRecordModificationTime()) {
         e.setModificationTime(t0);
       }
-      e.setValueOrWrapper(valueOrException);
+      storeValue(e, valueOrException);
       e.resetSuppressedLoadExceptionInformation();
       insertUpdateStats(e, valueOrException, t0, t, load, expiry, false);
       restartTimer(e, expiry, refreshTime);
@@ -1519,6 +1766,9 @@ public class HeapCache<K, V> extends BaseCache<K, V> implements HeapCacheForEvic
         }
       }
       long millis = t - t0;
+      if (isLoadCostNeeded()) {
+        eviction.updateLoadCost(e, millis);
+      }
       if (false) {
         metrics.refresh(millis);
       } else {
@@ -1576,6 +1826,81 @@ public class HeapCache<K, V> extends BaseCache<K, V> implements HeapCacheForEvic
     }
   }
 
+  /**
+   * Expire a batch of entries, typically after a bulk load with the same expiry time.
+   * Entries that need to be removed are put into processing state, so other operations
+   * wait, and then removed from the hash table with one lock acquisition per segment.
+   */
+  @Override
+  public void timerEventExpireEntries(Entry<K, V>[] entries, Object[] tasks) {
+    int count = 0;
+    for (int i = 0; i < entries.length; i++) {
+      Entry<K, V> e = entries[i];
+      metrics.timerEvent();
+      synchronized (e) {
+        if (e.getTask() != tasks[i] || e.isGone() || e.isExpiredState()) {
+          continue;
+        }
+        e.setRawExpiry(Entry.EXPIRED);
+        if (isKeepAfterExpired() || e.isProcessing()) {
+          metrics.expiredKept();
+          continue;
+        }
+        e.startProcessing(Entry.ProcessingState.EXPIRE, null);
+      }
+      entries[count++] = e;
+    }
+    if (count > 0) {
+      removeExpiredEntries(entries, count);
+    }
+  }
+
+  /**
+   * Remove the entries in processing state from the hash, grouped by segment.
+   */
+  private void removeExpiredEntries(Entry<K, V>[] entries, int count) {
+    long[] segmentAndIndex = new long[count];
+    for (int i = 0; i < count; i++) {
+      int segment = hash.getSegmentIndex(spreadHashFromEntry(entries[i]));
+      segmentAndIndex[i] = ((long) segment << 32) | i;
+    }
+    Arrays.sort(segmentAndIndex);
+    try {
+      int i = 0;
+      while (i < count) {
+        int hc = spreadHashFromEntry(entries[(int) segmentAndIndex[i]]);
+        long segment = segmentAndIndex[i] >>> 32;
+        StampedLock l = hash.getSegmentLock(hc);
+        long stamp = l.writeLock();
+        try {
+          for (; i < count && segmentAndIndex[i] >>> 32 == segment; i++) {
+            Entry<K, V> e = entries[(int) segmentAndIndex[i]];
+            boolean removed = hash.removeWithinLock(e, spreadHashFromEntry(e));
+            e.setGone();
+            if (offHeapStorage != null) {
+              offHeapStorage.remove(e);
+            }
+            if (removed) {
+              eviction.submitWithoutTriggeringEviction(e);
+            }
+          }
+        } finally {
+          l.unlockWrite(stamp);
+        }
+        hash.checkShrink(hc);
+      }
+    } finally {
+      for (int i = 0; i < count; i++) {
+        Entry<K, V> e = entries[i];
+        synchronized (e) {
+          timing.cancelExpiryTimer(e);
+          e.processingDone();
+        }
+        checkForHashCodeChange(e);
+      }
+    }
+  }
+
   private void expireOrScheduleFinalExpireEvent(Entry<K, V> e) {
     try {
       expireEntry(e);
@@ -1731,6 +2056,13 @@ public class HeapCache<K, V> extends BaseCache<K, V> implements HeapCacheForEvic
     return hash.getSize();
   }
 
+  /**
+   * Current size of the hash table, the number of slots in all segment tables.
+   */
+  public final long getHashTableSize() {
+    return hash.getTableSize();
+  }
+
   protected IntegrityState getIntegrityState() {
     EvictionMetrics em = eviction.getMetrics();
     IntegrityState is = new IntegrityState()
@@ -1844,6 +2176,16 @@ public class HeapCache<K, V> extends BaseCache<K, V> implements HeapCacheForEvic
     return clock;
   }
 
+  @Override
+  public long getHeapHitCount() {
+    return metrics.getHeapHitCount();
+  }
+
+  @Override
+  public boolean isExpired(@Nullable Entry<K, V> e) {
+    return isLazyExpiry() && e != null && !e.hasFreshData(clock);
+  }
+
   @Override
   public final Eviction getEviction() { return eviction; }
 
@@ -1894,12 +2236,218 @@ public class HeapCache<K, V> extends BaseCache<K, V> implements HeapCacheForEvic
     return e.hashCode;
   }
 
+  /**
+   * Create a new entry for the hash table. Overwritten by caches that store
+   * the key in a specialized entry.
+   */
+  protected Entry<K, V> newEntry(K key, int val) {
+    if (offHeapStorage != null) {
+      return new OffHeapValueEntry<>(toEntryKey(key), val);
+    }
+    if (primitiveValues) {
+      return new PrimitiveValueEntry<>(toEntryKey(key), val);
+    }
+    return new Entry<>(toEntryKey(key), val);
+  }
+
+  /**
+   * Write the entries with valid values to the snapshot file. The entry is locked while
+   * the value and expiry time is read, serialization happens without the lock.
+   */
+  @Override
+  public void snapshot(Path path) throws IOException {
+    try (SnapshotFile.Writer writer = new SnapshotFile.Writer(path)) {
+      ConcurrentEntryIterator<K, V> it = iterateAllHeapEntries();
+      while (it.hasNext()) {
+        Entry<K, V> e = it.next();
+        Object v;
+        long expiry;
+        synchronized (e) {
+          if (e.isGone() || !e.hasFreshData(clock)) {
+            continue;
+          }
+          v = e.getValueOrException();
+          expiry = e.getExpiryTime();
+        }
+        if (v instanceof ExceptionWrapper) {
+          continue;
+        }
+        long expiryMillis =
+          expiry < Entry.EXPIRY_TIME_MIN || expiry == ExpiryTimeValues.ETERNAL ?
+            SnapshotFile.ETERNAL : clock.ticksToInstant(expiry).toEpochMilli();
+        writer.write(e.isHot(), expiryMillis,
+          snapshotKeySerializer.serialize(keyObjFromEntry(e)),
+          v == null ? null : snapshotValueSerializer.serialize((V) v));
+      }
+      writer.commit();
+    }
+  }
+
+  /**
+   * Insert the contents of the configured snapshot file, if present. Called after the cache
+   * is initialized. The loader is not called. Expired entries are skipped. If the file cannot
+   * be read, a warning is logged and the cache contains the entries restored so far.
+   *
+   * @see SnapshotConfig.Builder#restoreFile(String)
+   */
+  public void restoreSnapshot() {
+    if (snapshotRestoreFile == null) {
+      return;
+    }
+    Path path = Paths.get(snapshotRestoreFile);
+    if (!Files.exists(path)) {
+      return;
+    }
+    try (SnapshotFile.Reader reader = new SnapshotFile.Reader(path)) {
+      long now = clock.ticks();
+      long nowMillis = clock.ticksToInstant(now).toEpochMilli();
+      while (reader.next()) {
+        long expiry = ExpiryTimeValues.ETERNAL;
+        if (reader.getExpiryMillis() != SnapshotFile.ETERNAL) {
+          expiry = now + clock.toTicks(Duration.ofMillis(reader.getExpiryMillis() - nowMillis));
+          if (expiry <= now) {
+            continue;
+          }
+        }
+        V value = reader.getValue() == null ? null :
+          snapshotValueSerializer.deserialize(reader.getValue());
+        if (value == null && isRejectNullValues()) {
+          continue;
+        }
+        restoreEntry(snapshotKeySerializer.deserialize(reader.getKey()), value, expiry,
+          reader.isHot());
+      }
+    } catch (IOException | RuntimeException ex) {
+      getLog().warn("Restoring snapshot failed, file=" + path, ex);
+    }
+  }
+
+  /**
+   * Insert an entry with the value and expiry time from the snapshot. The hot flag is set
+   * before the entry is inserted in the eviction data structure. An existing entry
+   * is not changed.
+   */
+  private void restoreEntry(K key, V value, long expiry, boolean hot) {
+    int hc = spreadHash(key.hashCode());
+    int val = toStoredHashCodeOrKey(key, hc);
+    Entry<K, V> e = newEntry(key, val);
+    e.setHot(hot);
+    if (insertNewEntry(e, hc, val) != e) {
+      return;
+    }
+    synchronized (e) {
+      if (e.isGone()) {
+        return;
+      }
+      insertWithoutLoad(e, value, expiry);
+    }
+  }
+
+  /**
+   * Set the value of a new entry from a snapshot or the overflow tier. Statistics are
+   * not updated, since this is no user operation.
+   */
+  private void insertWithoutLoad(Entry<K, V> e, V value, long expiry) {
+    if (isRecordModificationTime()) {
+      e.setModificationTime(clock.ticks());
+    }
+    storeValue(e, value);
+    if (eviction.isWeigherPresent()) {
+      eviction.updateWeight(e);
+    }
+    restartTimer(e, expiry, 0);
+  }
+
+  /**
+   * Set a new value or wrapper in the entry. The value is moved to the off-heap storage,
+   * if configured. The entry must be locked.
+   */
+  public final void storeValue(Entry<K, V> e, Object valueOrWrapper) {
+    if (offHeapStorage != null) {
+      Object previous = e.getRawValueOrWrapper();
+      long previousAddress = ((OffHeapEntry) e).getOffHeapAddress();
+      e.setValueOrWrapper(offHeapStorage.store(e, valueOrWrapper));
+      offHeapStorage.replaced(previous, previousAddress);
+      return;
+    }
+    e.setValueOrWrapper(valueOrWrapper);
+  }
+
+  @SuppressWarnings("unchecked")
+  private OffHeapStorage<V> createOffHeapStorage(InternalCacheBuildContext<K, V> ctx) {
+    OffHeapConfig cfg = ctx.getConfig().getSections().getSection(OffHeapConfig.class);
+    if (cfg == null) {
+      return null;
+    }
+    ValueSerializer<V> serializer = (ValueSerializer<V>) ctx.createCustomization(cfg.getSerializer());
+    if (serializer == null) {
+      throw new IllegalArgumentException("Serializer missing for off-heap storage");
+    }
+    return new OffHeapStorage<>(serializer, cfg.getSlabSize(), cfg.getMaximumBytes());
+  }
+
+  private OverflowStore<K, V> createOverflowStore(InternalCacheBuildContext<K, V> ctx) {
+    OverflowConfig cfg = ctx.getConfig().getSections().getSection(OverflowConfig.class);
+    if (cfg == null) {
+      return null;
+    }
+    @SuppressWarnings("unchecked")
+    ValueSerializer<K> keySerializer = (ValueSerializer<K>) ctx.createCustomization(
+      cfg.getKeySerializer(), JavaSerializer.INSTANCE);
+    @SuppressWarnings("unchecked")
+    ValueSerializer<V> valueSerializer = (ValueSerializer<V>) ctx.createCustomization(
+      cfg.getValueSerializer(), JavaSerializer.INSTANCE);
+    try {
+      return new OverflowStore<>(keySerializer, valueSerializer,
+        cfg.getDirectory() == null ? null : Paths.get(cfg.getDirectory()),
+        cfg.getMaximumBytes(), cfg.getSegmentSize(), cfg.getMaximumEntries(),
+        ctx.getExecutor());
+    } catch (IOException ex) {
+      throw new CacheException("Cannot create overflow file", ex);
+    }
+  }
+
+  /**
+   * The tier for evicted entries or {@code null}.
+   */
+  public final OverflowStore<K, V> getOverflowStore() {
+    return overflowStore;
+  }
+
+  /**
+   * The storage for values outside the heap or {@code null}.
+   */
+  public final OffHeapStorage<V> getOffHeapStorage() {
+    return offHeapStorage;
+  }
+
+  /**
+   * True, if values are stored as primitives.
+   *
+   * @see PrimitiveValueEntry
+   */
+  protected final boolean isPrimitiveValues() {
+    return primitiveValues;
+  }
+
   /**
    * Either returns the stored key object or the integer object created from the hashCode field.
    */
   public K keyObjFromEntry(Entry<K, V> e) { return e.getKeyObj(); }
 
-  public StampedHash<K, V> createHashTable() {
+  /**
+   * True, if the open addressing hash table was requested via the internal configuration.
+   *
+   * @see org.cache2k.core.api.InternalConfig.Builder#openAddressingHash(boolean)
+   */
+  protected final boolean isOpenAddressingHash() {
+    return openAddressingHash;
+  }
+
+  public SegmentedHash<K, V> createHashTable() {
+    if (openAddressingHash) {
+      return new OpenAddressingHash<>(this);
+    }
     return new StampedHash<>(this);
   }
 
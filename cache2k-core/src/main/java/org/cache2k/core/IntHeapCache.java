@@ -58,7 +58,20 @@ public class IntHeapCache<V> extends HeapCache<Integer, V> {
    * Modified hash table implementation. Rehash needs to calculate the correct hash code again.
    */
   @Override
-  public StampedHash<Integer, V> createHashTable() {
+  public SegmentedHash<Integer, V> createHashTable() {
+    if (isOpenAddressingHash()) {
+      return new OpenAddressingHash<Integer, V>(this) {
+        @Override
+        protected int spreadHashFromEntry(int hc) {
+          return spreadHash(hc);
+        }
+
+        @Override
+        protected boolean keyObjIsEqual(Integer key, Entry e) {
+          return true;
+        }
+      };
+    }
     return new StampedHash<Integer, V>(this) {
       @Override
       protected int spreadHashFromEntry(int hc) {
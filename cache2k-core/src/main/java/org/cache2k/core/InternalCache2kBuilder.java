@@ -23,19 +23,27 @@ package org.cache2k.core;
 import org.cache2k.Cache2kBuilder;
 import org.cache2k.CacheEntry;
 import org.cache2k.CustomizationException;
+import org.cache2k.annotation.Nullable;
 import org.cache2k.config.CacheType;
 import org.cache2k.config.CustomizationSupplier;
+import org.cache2k.core.api.InternalCache;
 import org.cache2k.core.api.InternalCacheBuildContext;
+import org.cache2k.core.capacity.CapacityBudget;
+import org.cache2k.core.capacity.ControlledCapacity;
+import org.cache2k.core.capacity.MemoryPressureController;
+import org.cache2k.core.eviction.Eviction;
 import org.cache2k.core.eviction.EvictionFactory;
 import org.cache2k.core.eviction.InternalEvictionListener;
 import org.cache2k.core.timing.DefaultSchedulerProvider;
 import org.cache2k.core.timing.Timing;
 import org.cache2k.io.BulkCacheLoader;
+import org.cache2k.operation.CacheControl;
 import org.cache2k.operation.Scheduler;
 import org.cache2k.operation.TimeReference;
 import org.cache2k.event.CacheClosedListener;
 import org.cache2k.event.CacheCreatedListener;
 import org.cache2k.event.CacheEntryCreatedListener;
+import org.cache2k.event.CacheEntryEvictedBatchListener;
 import org.cache2k.event.CacheEntryEvictedListener;
 import org.cache2k.event.CacheEntryExpiredListener;
 import org.cache2k.event.CacheEntryOperationListener;
@@ -52,6 +60,7 @@ import org.cache2k.io.CacheLoader;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.atomic.AtomicLong;
@@ -214,6 +223,9 @@ public class InternalCache2kBuilder<K, V> implements InternalCacheBuildContext<K
     if (keyType == Integer.class) {
       bc = (HeapCache<K, V>)
         new IntHeapCache<>((InternalCacheBuildContext<Integer, V>) this);
+    } else if (keyType == Long.class) {
+      bc = (HeapCache<K, V>)
+        new LongHeapCache<>((InternalCacheBuildContext<Long, V>) this);
     } else {
       bc = new HeapCache<>(this);
     }
@@ -267,6 +279,8 @@ public class InternalCache2kBuilder<K, V> implements InternalCacheBuildContext<K
         new ArrayList<>();
       List<CacheEntryEvictedListener<K, V>> syncEvictedListeners =
         new ArrayList<>();
+      List<CacheEntryEvictedBatchListener<K, V>> syncEvictedBatchListeners =
+        new ArrayList<>();
       if (config.hasListeners()) {
         for (CustomizationSupplier<CacheEntryOperationListener<K, V>> f : config.getListeners()) {
           CacheEntryOperationListener<K, V> el =
@@ -286,6 +300,9 @@ public class InternalCache2kBuilder<K, V> implements InternalCacheBuildContext<K
           if (el instanceof CacheEntryEvictedListener) {
             syncEvictedListeners.add((CacheEntryEvictedListener) el);
           }
+          if (el instanceof CacheEntryEvictedBatchListener) {
+            syncEvictedBatchListeners.add((CacheEntryEvictedBatchListener) el);
+          }
         }
       }
       if (config.hasAsyncListeners()) {
@@ -304,6 +321,8 @@ public class InternalCache2kBuilder<K, V> implements InternalCacheBuildContext<K
           new ArrayList<>();
         List<CacheEntryEvictedListener<K, V>> evl =
           new ArrayList<>();
+        List<CacheEntryEvictedBatchListener<K, V>> ebl =
+          new ArrayList<>();
         for (CustomizationSupplier<CacheEntryOperationListener<K, V>> f :
           config.getAsyncListeners()) {
           CacheEntryOperationListener<K, V> el =
@@ -323,6 +342,9 @@ public class InternalCache2kBuilder<K, V> implements InternalCacheBuildContext<K
           if (el instanceof CacheEntryEvictedListener) {
             evl.add((CacheEntryEvictedListener) el);
           }
+          if (el instanceof CacheEntryEvictedBatchListener) {
+            ebl.add((CacheEntryEvictedBatchListener) el);
+          }
         }
         for (CacheEntryCreatedListener l : cll) {
           syncCreatedListeners.add(new AsyncCreatedListener<K, V>(asyncDispatcher, l));
@@ -339,6 +361,9 @@ public class InternalCache2kBuilder<K, V> implements InternalCacheBuildContext<K
         for (CacheEntryEvictedListener l : evl) {
           syncEvictedListeners.add(new AsyncEvictedListener<K, V>(asyncDispatcher, l));
         }
+        for (CacheEntryEvictedBatchListener l : ebl) {
+          syncEvictedBatchListeners.add(new AsyncEvictedBatchListener<K, V>(asyncExecutor, wc, l));
+        }
       }
       if (!syncCreatedListeners.isEmpty()) {
         wc.syncEntryCreatedListeners =
@@ -353,6 +378,10 @@ public class InternalCache2kBuilder<K, V> implements InternalCacheBuildContext<K
           syncRemovedListeners.toArray(new CacheEntryRemovedListener[0]);
       }
       if (!syncExpiredListeners.isEmpty()) {
+        if (internalConfig().isLazyExpiry()) {
+          throw new IllegalArgumentException(
+            "lazyExpiry cannot be combined with expiry listeners");
+        }
         wc.syncEntryExpiredListeners =
           syncExpiredListeners.toArray(new CacheEntryExpiredListener[0]);
       }
@@ -360,6 +389,10 @@ public class InternalCache2kBuilder<K, V> implements InternalCacheBuildContext<K
         wc.syncEntryEvictedListeners =
           syncEvictedListeners.toArray(new CacheEntryEvictedListener[0]);
       }
+      if (!syncEvictedBatchListeners.isEmpty()) {
+        wc.syncEntryEvictedBatchListeners =
+          syncEvictedBatchListeners.toArray(new CacheEntryEvictedBatchListener[0]);
+      }
       bc.eviction = EVICTION_FACTORY.constructEviction(
         this, bc, wc, config, Runtime.getRuntime().availableProcessors());
       Timing rh = Timing.of(this);
@@ -373,8 +406,36 @@ public class InternalCache2kBuilder<K, V> implements InternalCacheBuildContext<K
         Runtime.getRuntime().availableProcessors());
       bc.init();
     }
+    bc.restoreSnapshot();
+    List<CacheClosedListener> closedListeners = new ArrayList<>();
+    CapacityBudget budget = manager.getCapacityBudget();
+    if (budget != null && CacheControl.of(cache).getCapacityLimit() == Long.MAX_VALUE) {
+      budget = null;
+    }
+    if (internalConfig().isMemoryPressureControl() || budget != null) {
+      ControlledCapacity capacity = createControlledCapacity(cache, budget);
+      bc.controlledCapacity = capacity;
+      if (internalConfig().isMemoryPressureControl()) {
+        MemoryPressureController controller = MemoryPressureController.getInstance();
+        controller.register(capacity);
+        closedListeners.add(c -> {
+          controller.unregister(capacity);
+          return CompletableFuture.completedFuture(null);
+        });
+      }
+      if (budget != null) {
+        CapacityBudget sharedBudget = budget;
+        Eviction eviction = bc.getEviction();
+        if (sharedBudget.register(capacity, eviction.isWeigherPresent(), eviction::getMetrics)) {
+          sharedBudget.startRebalancing(this::createScheduler);
+          closedListeners.add(c -> {
+            sharedBudget.unregister(capacity);
+            return CompletableFuture.completedFuture(null);
+          });
+        }
+      }
+    }
     if (config.hasLifecycleListeners()) {
-      List<CacheClosedListener> closedListeners = new ArrayList<>();
       for (CustomizationSupplier<? extends CacheLifecycleListener> sup :
         config.getLifecycleListeners()) {
         CacheLifecycleListener l = createCustomization(sup);
@@ -385,12 +446,35 @@ public class InternalCache2kBuilder<K, V> implements InternalCacheBuildContext<K
           ((CacheCreatedListener) l).onCacheCreated(cache, this);
         }
       }
+    }
+    if (!closedListeners.isEmpty()) {
       bc.cacheClosedListeners = closedListeners;
     }
     manager.sendCreatedEvent(cache, this);
     return cache;
   }
 
+  /**
+   * Capacity bounds for the capacity control. Default is 10% of the configured capacity
+   * up to the configured capacity, or up to the whole budget, if the cache shares a
+   * weight budget with the other caches of the manager.
+   */
+  private ControlledCapacity createControlledCapacity(Cache<K, V> cache,
+                                                      @Nullable CapacityBudget budget) {
+    CacheControl control = CacheControl.of(cache);
+    long capacity = control.getCapacityLimit();
+    long minimum = internalConfig().getMinimumCapacity();
+    if (minimum < 0) {
+      minimum = Math.max(1, capacity / 10);
+    }
+    long maximum = internalConfig().getMaximumCapacity();
+    if (maximum < 0) {
+      maximum = budget != null ? budget.getBudget() : capacity;
+    }
+    minimum = Math.min(minimum, maximum);
+    return new ControlledCapacity(control, minimum, maximum, capacity);
+  }
+
   static final EvictionFactory EVICTION_FACTORY = new EvictionFactory();
 
   static class AsyncCreatedListener<K, V> implements CacheEntryCreatedListener<K, V> {
@@ -526,4 +610,33 @@ public class InternalCache2kBuilder<K, V> implements InternalCacheBuildContext<K
     }
   }
 
+  /**
+   * Runs the batch listener in the async executor. The entries of a chunk have
+   * distinct keys, so there is no per key ordering via the {@link AsyncDispatcher}.
+   */
+  private static class AsyncEvictedBatchListener<K, V>
+    implements CacheEntryEvictedBatchListener<K, V> {
+    Executor executor;
+    InternalCache<K, V> cache;
+    CacheEntryEvictedBatchListener<K, V> listener;
+
+    AsyncEvictedBatchListener(Executor executor, InternalCache<K, V> cache,
+                              CacheEntryEvictedBatchListener<K, V> listener) {
+      this.executor = executor;
+      this.cache = cache;
+      this.listener = listener;
+    }
+
+    @Override
+    public void onEntriesEvicted(Cache<K, V> c, List<CacheEntry<K, V>> entries) {
+      executor.execute(() -> {
+        try {
+          listener.onEntriesEvicted(c, entries);
+        } catch (Throwable t) {
+          cache.getLog().warn("Async event exception", t);
+        }
+      });
+    }
+  }
+
 }
@@ -0,0 +1,168 @@
+package org.cache2k.core;
+
+/*-
+ * #%L
+ * cache2k core implementation
+ * %%
+ * Copyright (C) 2000 - 2022 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.core.api.InternalCacheBuildContext;
+import org.cache2k.core.storage.OffHeapEntry;
+
+/**
+ * Cache for long keys. The key is stored as primitive within a specialized entry and
+ * the key object in the entry is {@code null}. The hash table compares the primitive
+ * key directly, so no boxed key is retained per entry and no {@code equals} call is
+ * needed on a lookup.
+ *
+ * @author Jens Wilke
+ * @see IntHeapCache
+ */
+public class LongHeapCache<V> extends HeapCache<Long, V> {
+
+  public LongHeapCache(InternalCacheBuildContext<Long, V> ctx) {
+    super(ctx);
+  }
+
+  @Override
+  protected Entry<Long, V> newEntry(Long key, int val) {
+    if (getOffHeapStorage() != null) {
+      return new LongOffHeapValueEntry<>(key, val);
+    }
+    if (isPrimitiveValues()) {
+      return new LongPrimitiveValueEntry<>(key, val);
+    }
+    return new LongEntry<>(key, val);
+  }
+
+  @Override
+  public Long keyObjFromEntry(Entry<Long, V> e) {
+    return ((LongEntry<V>) e).longKey;
+  }
+
+  /**
+   * Modified hash table implementation comparing the primitive key.
+   */
+  @Override
+  public SegmentedHash<Long, V> createHashTable() {
+    if (isOpenAddressingHash()) {
+      return new OpenAddressingHash<Long, V>(this) {
+        @Override
+        protected boolean keyObjIsEqual(Long key, Entry e) {
+          return ((LongEntry) e).longKey == key;
+        }
+
+        @Override
+        protected boolean entryKeyIsEqual(Entry<Long, V> e, Entry f) {
+          return ((LongEntry) e).longKey == ((LongEntry) f).longKey;
+        }
+      };
+    }
+    return new StampedHash<Long, V>(this) {
+      @Override
+      protected boolean keyObjIsEqual(Long key, Entry e) {
+        return ((LongEntry) e).longKey == key;
+      }
+
+      @Override
+      protected boolean entryKeyIsEqual(Entry<Long, V> e, Entry f) {
+        return ((LongEntry) e).longKey == ((LongEntry) f).longKey;
+      }
+    };
+  }
+
+  /**
+   * Entry holding the primitive key. The key object is {@code null}.
+   */
+  static class LongEntry<V> extends Entry<Long, V> {
+
+    final long longKey;
+
+    LongEntry(long key, int hashCode) {
+      super(null, hashCode);
+      longKey = key;
+    }
+
+    @Override
+    public Long getKey() {
+      return longKey;
+    }
+
+  }
+
+  /**
+   * Entry holding the primitive key and a primitive value.
+   *
+   * @see PrimitiveValueEntry
+   */
+  static final class LongPrimitiveValueEntry<V> extends LongEntry<V>
+    implements PrimitiveValueHolder {
+
+    private volatile long bits;
+
+    LongPrimitiveValueEntry(long key, int hashCode) {
+      super(key, hashCode);
+    }
+
+    @Override
+    public void setValueOrWrapper(Object v) {
+      super.setValueOrWrapper(PrimitiveValue.encode(this, v));
+    }
+
+    @Override
+    public Object getValueOrWrapper() {
+      return PrimitiveValue.decode(this, super.getValueOrWrapper());
+    }
+
+    @Override
+    public long getPrimitiveValueBits() {
+      return bits;
+    }
+
+    @Override
+    public void setPrimitiveValueBits(long bits) {
+      this.bits = bits;
+    }
+
+  }
+
+  /**
+   * Entry holding the primitive key and the address of a value in the off-heap storage.
+   *
+   * @see OffHeapValueEntry
+   */
+  static final class LongOffHeapValueEntry<V> extends LongEntry<V> implements OffHeapEntry {
+
+    private volatile long offHeapAddress;
+
+    LongOffHeapValueEntry(long key, int hashCode) {
+      super(key, hashCode);
+    }
+
+    @Override
+    public long getOffHeapAddress() {
+      return offHeapAddress;
+    }
+
+    @Override
+    public void setOffHeapAddress(long address) {
+      offHeapAddress = address;
+    }
+
+  }
+
+}
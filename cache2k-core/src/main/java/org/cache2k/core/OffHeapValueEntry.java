@@ -0,0 +1,49 @@
+package org.cache2k.core;
+
+/*-
+ * #%L
+ * cache2k core implementation
+ * %%
+ * Copyright (C) 2000 - 2022 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.core.storage.OffHeapEntry;
+
+/**
+ * Entry holding the address of a value in the off-heap storage.
+ *
+ * @author Jens Wilke
+ * @see org.cache2k.core.storage.OffHeapStorage
+ */
+public class OffHeapValueEntry<K, V> extends Entry<K, V> implements OffHeapEntry {
+
+  private volatile long offHeapAddress;
+
+  public OffHeapValueEntry(K key, int hashCode) {
+    super(key, hashCode);
+  }
+
+  @Override
+  public long getOffHeapAddress() {
+    return offHeapAddress;
+  }
+
+  @Override
+  public void setOffHeapAddress(long address) {
+    offHeapAddress = address;
+  }
+
+}
@@ -0,0 +1,348 @@
+package org.cache2k.core;
+
+/*-
+ * #%L
+ * cache2k core implementation
+ * %%
+ * Copyright (C) 2000 - 2022 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.Cache;
+import org.cache2k.CacheClosedException;
+
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Hash table with open addressing and linear probing as alternative to the chained
+ * {@link StampedHash}. Each lock segment has its own table, consisting of parallel arrays
+ * for the stored hash codes and the entries. A lookup compares the hash codes in the
+ * {@code int} array and only dereferences an entry on a hash code match, so a miss or a
+ * collision does not need to follow entry references.
+ *
+ * <p>Removed entries are replaced by a placeholder, so other entries never move while the
+ * table is in use. This keeps optimistic reads and the iterator simple. The placeholders are
+ * reused by inserts and dropped when the segment table is rebuilt. A segment table is
+ * expanded, rebuilt or shrunk within the segment lock, so other segments are not blocked.
+ * A segment table is shrunk, when the entries drop below an eighth of the fill limit and
+ * rebuilt with a size that is filled to the half of the fill limit. After an expansion the
+ * table is filled at least to a quarter of the fill limit, the gap avoids that a table is
+ * expanded and shrunk repeatedly.
+ *
+ * @author Jens Wilke
+ */
+@SuppressWarnings({"WeakerAccess", "rawtypes", "unchecked"})
+public class OpenAddressingHash<K, V> extends SegmentedHash<K, V> {
+
+  /**
+   * Size of a segment table before inserting the first entry. Must be power
+   * of two. Default: 16.
+   */
+  private static final int INITIAL_SEGMENT_SIZE = 16;
+
+  /**
+   * Fill percentage limit including removed entries. When this is reached the segment
+   * table will get expanded or rebuilt. Default: 50.
+   */
+  private static final int LOAD_PERCENT = 50;
+
+  /**
+   * Multiplier to distribute the hash codes within a segment table, which also
+   * takes the high bits into account. The lower bits of the hash code select the segment
+   * and are identical for all entries within a segment table.
+   */
+  private static final int PHI = 0x9E3779B9;
+
+  private static final Entry DELETED = new Placeholder();
+
+  /**
+   * Table for each segment. An element is only replaced within the segment lock.
+   */
+  private volatile Table<K, V>[] segments;
+
+  /**
+   * @param cache Cache reference only needed for the cache name in case of an exception
+   */
+  public OpenAddressingHash(Cache<?, ?> cache) {
+    super(cache);
+    initTables();
+  }
+
+  @Override
+  protected void initTables() {
+    Table<K, V>[] tabs = new Table[LOCK_SEGMENTS];
+    for (int i = 0; i < tabs.length; i++) {
+      tabs[i] = new Table<>(INITIAL_SEGMENT_SIZE);
+    }
+    segments = tabs;
+  }
+
+  @Override
+  protected void discardTables() {
+    segments = null;
+  }
+
+  @Override
+  public Entry<K, V> lookup(K key, int hash, int keyValue) {
+    int si = hash & LOCK_MASK;
+    StampedLock l = locks[si];
+    long stamp = l.tryOptimisticRead();
+    Table<K, V>[] tabs = segments;
+    if (tabs == null) {
+      throw new CacheClosedException(maybeClosedCache);
+    }
+    Entry<K, V> e = find(tabs[si], key, hash, keyValue);
+    if (e != null || l.validate(stamp)) {
+      return e;
+    }
+    stamp = l.readLock();
+    try {
+      tabs = segments;
+      if (tabs == null) {
+        throw new CacheClosedException(maybeClosedCache);
+      }
+      return find(tabs[si], key, hash, keyValue);
+    } finally {
+      l.unlockRead(stamp);
+    }
+  }
+
+  /**
+   * Probe for the key. The number of probes is limited by the table size, so concurrent
+   * updates during an optimistic read cannot lead to an endless loop.
+   */
+  private Entry<K, V> find(Table<K, V> t, K key, int hash, int keyValue) {
+    int[] hashes = t.hashes;
+    Entry<K, V>[] tab = t.entries;
+    int mask = tab.length - 1;
+    int idx = (hash * PHI) >>> t.shift;
+    Entry<K, V> e;
+    for (int i = 0; i <= mask; i++) {
+      if ((e = tab[idx]) == null) {
+        return null;
+      }
+      if (hashes[idx] == keyValue && e != DELETED && e.hashCode == keyValue &&
+        keyObjIsEqual(key, e)) {
+        return e;
+      }
+      idx = (idx + 1) & mask;
+    }
+    return null;
+  }
+
+  private Table<K, V> tableWithinLock(int si) {
+    Table<K, V>[] tabs = segments;
+    if (tabs == null) {
+      throw new CacheClosedException(maybeClosedCache);
+    }
+    return tabs[si];
+  }
+
+  @Override
+  public Entry<K, V> insertWithinLock(Entry<K, V> e, int hash, int keyValue) {
+    int si = hash & LOCK_MASK;
+    Table<K, V> t = tableWithinLock(si);
+    int[] hashes = t.hashes;
+    Entry<K, V>[] tab = t.entries;
+    int mask = tab.length - 1;
+    int idx = (hash * PHI) >>> t.shift;
+    int reuseIdx = -1;
+    Entry<K, V> f;
+    while ((f = tab[idx]) != null) {
+      if (f == DELETED) {
+        if (reuseIdx < 0) {
+          reuseIdx = idx;
+        }
+      } else if (hashes[idx] == keyValue && f.hashCode == keyValue && entryKeyIsEqual(e, f)) {
+        return f;
+      }
+      idx = (idx + 1) & mask;
+    }
+    if (reuseIdx >= 0) {
+      idx = reuseIdx;
+    } else if (t.used >= t.maxFill) {
+      t = rehashWithinLock(si, t);
+      idx = freeSlot(t, hash);
+      t.used++;
+    } else {
+      t.used++;
+    }
+    t.hashes[idx] = keyValue;
+    t.entries[idx] = e;
+    segmentSize[si]++;
+    return e;
+  }
+
+  /**
+   * The segment table is expanded within the insert, nothing to do.
+   */
+  @Override
+  public void checkExpand(int hash) { }
+
+  @Override
+  public boolean removeWithinLock(Entry<K, V> e, int hash) {
+    int si = hash & LOCK_MASK;
+    Table<K, V> t = tableWithinLock(si);
+    Entry<K, V>[] tab = t.entries;
+    int mask = tab.length - 1;
+    int idx = (hash * PHI) >>> t.shift;
+    Entry<K, V> f;
+    while ((f = tab[idx]) != null) {
+      if (f == e) {
+        if (tab[(idx + 1) & mask] == null) {
+          do {
+            tab[idx] = null;
+            t.used--;
+            idx = (idx - 1) & mask;
+          } while (tab[idx] == DELETED);
+        } else {
+          tab[idx] = DELETED;
+        }
+        segmentSize[si]--;
+        return true;
+      }
+      idx = (idx + 1) & mask;
+    }
+    return false;
+  }
+
+  @Override
+  public void checkShrink(int hash) {
+    int si = hash & LOCK_MASK;
+    Table<K, V>[] tabs = segments;
+    if (tabs == null) {
+      return;
+    }
+    Table<K, V> t = tabs[si];
+    if (t.entries.length > INITIAL_SEGMENT_SIZE && segmentSize[si] < t.maxFill / 8) {
+      StampedLock l = locks[si];
+      long stamp = l.writeLock();
+      try {
+        tabs = segments;
+        if (tabs == null) {
+          return;
+        }
+        t = tabs[si];
+        if (t.entries.length > INITIAL_SEGMENT_SIZE && segmentSize[si] < t.maxFill / 8) {
+          rehashWithinLock(si, t);
+        }
+      } finally {
+        l.unlockWrite(stamp);
+      }
+    }
+  }
+
+  /**
+   * Expand the segment table, rebuild it with the same size, if it is filled mostly with
+   * removed entries, or shrink it, if it contains only few entries. The new table is
+   * filled before it gets visible to readers.
+   */
+  private Table<K, V> rehashWithinLock(int si, Table<K, V> t) {
+    long size = segmentSize[si];
+    int len = t.entries.length;
+    if (size * 100 >= (long) len * LOAD_PERCENT / 2) {
+      len = len * 2;
+    } else if (size * 100 < (long) len * LOAD_PERCENT / 8) {
+      len = INITIAL_SEGMENT_SIZE;
+      while (size * 200 > (long) len * LOAD_PERCENT) {
+        len = len << 1;
+      }
+    }
+    Table<K, V> nt = new Table<>(len);
+    for (Entry<K, V> e : t.entries) {
+      if (e != null && e != DELETED) {
+        int idx = freeSlot(nt, spreadHashFromEntry(e.hashCode));
+        nt.hashes[idx] = e.hashCode;
+        nt.entries[idx] = e;
+        nt.used++;
+      }
+    }
+    segments[si] = nt;
+    incrementRehashCount();
+    return nt;
+  }
+
+  private static int freeSlot(Table<?, ?> t, int hash) {
+    Entry[] tab = t.entries;
+    int mask = tab.length - 1;
+    int idx = (hash * PHI) >>> t.shift;
+    while (tab[idx] != null) {
+      idx = (idx + 1) & mask;
+    }
+    return idx;
+  }
+
+  @Override
+  public long calcEntryCount() {
+    long count = 0;
+    for (Table<K, V> t : segments) {
+      for (Entry<K, V> e : t.entries) {
+        if (e != null && e != DELETED) {
+          count++;
+        }
+      }
+    }
+    return count;
+  }
+
+  @Override
+  public Entry<K, V>[][] getTables() {
+    Table<K, V>[] tabs = segments;
+    if (tabs == null) {
+      return null;
+    }
+    Entry<K, V>[][] result = new Entry[tabs.length][];
+    for (int i = 0; i < tabs.length; i++) {
+      result[i] = tabs[i].entries;
+    }
+    return result;
+  }
+
+  @Override
+  public long getTableSize() {
+    Table<K, V>[] tabs = segments;
+    if (tabs == null) {
+      return 0;
+    }
+    long count = 0;
+    for (Table<K, V> t : tabs) {
+      count += t.entries.length;
+    }
+    return count;
+  }
+
+  /**
+   * Table of one segment. The arrays are final, so a reader always sees arrays of
+   * matching size.
+   */
+  static final class Table<K, V> {
+
+    final int[] hashes;
+    final Entry<K, V>[] entries;
+    final int shift;
+    final int maxFill;
+    /** Slots in use by entries or placeholders. Guarded by the segment lock */
+    int used;
+
+    Table(int size) {
+      hashes = new int[size];
+      entries = new Entry[size];
+      shift = Integer.numberOfLeadingZeros(size) + 1;
+      maxFill = size * LOAD_PERCENT / 100;
+    }
+
+  }
+
+}
@@ -0,0 +1,105 @@
+package org.cache2k.core;
+
+/*-
+ * #%L
+ * cache2k core implementation
+ * %%
+ * Copyright (C) 2000 - 2022 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * Type of a primitive value stored in an entry. The constant is stored as value reference
+ * within the entry and the value bits are held in a separate {@code long} field.
+ *
+ * @author Jens Wilke
+ * @see PrimitiveValueHolder
+ */
+public enum PrimitiveValue {
+
+  LONG {
+    @Override
+    public Object box(long bits) { return bits; }
+    @Override
+    long toBits(Object v) { return (Long) v; }
+  },
+  INT {
+    @Override
+    public Object box(long bits) { return (int) bits; }
+    @Override
+    long toBits(Object v) { return (Integer) v; }
+  },
+  DOUBLE {
+    @Override
+    public Object box(long bits) { return Double.longBitsToDouble(bits); }
+    @Override
+    long toBits(Object v) { return Double.doubleToRawLongBits((Double) v); }
+  };
+
+  /**
+   * Create the value object from the stored bits.
+   */
+  public abstract Object box(long bits);
+
+  abstract long toBits(Object v);
+
+  /**
+   * The primitive type of the value, or {@code null} if the value needs to be stored
+   * as object reference.
+   */
+  public static PrimitiveValue of(Object v) {
+    if (v instanceof Long) {
+      return LONG;
+    } else if (v instanceof Integer) {
+      return INT;
+    } else if (v instanceof Double) {
+      return DOUBLE;
+    }
+    return null;
+  }
+
+  /**
+   * Value reference to store in the entry. For a primitive value the bits are written
+   * to the entry and the type is returned, other values are returned unchanged.
+   * The bits are written first, so a reader that sees the type also sees the bits
+   * of the value or of a later update.
+   */
+  static Object encode(PrimitiveValueHolder entry, Object v) {
+    PrimitiveValue type = of(v);
+    if (type == null) {
+      return v;
+    }
+    entry.setPrimitiveValueBits(type.toBits(v));
+    return type;
+  }
+
+  /**
+   * Value from the stored value reference, boxing the bits of a primitive value.
+   */
+  static Object decode(PrimitiveValueHolder entry, Object v) {
+    if (v instanceof PrimitiveValue) {
+      return ((PrimitiveValue) v).box(entry.getPrimitiveValueBits());
+    }
+    return v;
+  }
+
+  /**
+   * True, if values of the type can be stored as primitive.
+   */
+  public static boolean isPrimitiveValueType(Class<?> type) {
+    return type == Long.class || type == Integer.class || type == Double.class;
+  }
+
+}
@@ -0,0 +1,61 @@
+package org.cache2k.core;
+
+/*-
+ * #%L
+ * cache2k core implementation
+ * %%
+ * Copyright (C) 2000 - 2022 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * Entry storing a {@code Long}, {@code Integer} or {@code Double} value as primitive.
+ * The value reference in the entry is the {@link PrimitiveValue} type, so no boxed
+ * value is retained. Other values, like exceptions or wrappers, are stored as usual.
+ *
+ * <p>The bits are written before the type is written to the volatile value reference,
+ * so a reader that sees the type also sees the bits of the value or of a later update.
+ *
+ * @author Jens Wilke
+ */
+public class PrimitiveValueEntry<K, V> extends Entry<K, V> implements PrimitiveValueHolder {
+
+  private volatile long bits;
+
+  public PrimitiveValueEntry(K key, int hashCode) {
+    super(key, hashCode);
+  }
+
+  @Override
+  public void setValueOrWrapper(Object v) {
+    super.setValueOrWrapper(PrimitiveValue.encode(this, v));
+  }
+
+  @Override
+  public Object getValueOrWrapper() {
+    return PrimitiveValue.decode(this, super.getValueOrWrapper());
+  }
+
+  @Override
+  public long getPrimitiveValueBits() {
+    return bits;
+  }
+
+  @Override
+  public void setPrimitiveValueBits(long bits) {
+    this.bits = bits;
+  }
+
+}
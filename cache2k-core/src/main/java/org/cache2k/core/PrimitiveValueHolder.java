@@ -0,0 +1,41 @@
+package org.cache2k.core;
+
+/*-
+ * #%L
+ * cache2k core implementation
+ * %%
+ * Copyright (C) 2000 - 2022 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * Entry that stores a {@code Long}, {@code Integer} or {@code Double} value as primitive.
+ * Implemented by {@link PrimitiveValueEntry} and the primitive value entry of
+ * {@link LongHeapCache}. The encoding is done in {@link PrimitiveValue}, the
+ * implementations only hold the bits.
+ *
+ * @author Jens Wilke
+ */
+interface PrimitiveValueHolder {
+
+  /**
+   * The bits of the value. Only valid if the value reference in the entry is
+   * a {@link PrimitiveValue} type.
+   */
+  long getPrimitiveValueBits();
+
+  void setPrimitiveValueBits(long bits);
+
+}
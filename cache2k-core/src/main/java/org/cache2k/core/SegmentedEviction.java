@@ -26,6 +26,7 @@ import org.cache2k.core.eviction.EvictionFactory;
 import org.cache2k.core.eviction.EvictionMetrics;
 
 import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
 
 /**
  * Forwards eviction operations to segments based on the hash code.
@@ -59,6 +60,20 @@ public class SegmentedEviction implements Eviction {
     return sgs[idx].updateWeight(e);
   }
 
+  @Override
+  public boolean isLoadCostNeeded() {
+    return segments[0].isLoadCostNeeded();
+  }
+
+  @Override
+  public void updateLoadCost(Entry e, long loadTime) {
+    int hc = e.hashCode;
+    Eviction[] sgs = segments;
+    int mask = sgs.length - 1;
+    int idx = hc & mask;
+    sgs[idx].updateLoadCost(e, loadTime);
+  }
+
   @Override
   public boolean submitWithoutTriggeringEviction(Entry e) {
     int hc = e.hashCode;
@@ -83,6 +98,13 @@ public class SegmentedEviction implements Eviction {
     }
   }
 
+  @Override
+  public void evictToCapacity() {
+    for (Eviction ev : segments) {
+      ev.evictToCapacity();
+    }
+  }
+
   @Override
   public void evictEventually() {
     for (Eviction ev : segments) {
@@ -181,6 +203,12 @@ public class SegmentedEviction implements Eviction {
     int evictionRunningCount = (int) sum;
     sum = 0; for (EvictionMetrics m : metrics) { sum += m.getIdleNonEvictDrainCount(); }
     long removeAfterScanCount = sum;
+    long hotMaxSize = sumLimits(metrics, EvictionMetrics::getHotMaxSize);
+    long ghostMaxSize = sumLimits(metrics, EvictionMetrics::getGhostMaxSize);
+    sum = 0; for (EvictionMetrics m : metrics) { sum += m.getGhostHitCount(); }
+    long ghostHitCount = sum;
+    sum = 0; for (EvictionMetrics m : metrics) { sum += m.getMaxOvershoot(); }
+    long maxOvershoot = sum;
     return new EvictionMetrics() {
       @Override public long getSize() { return size; }
       @Override public long getNewEntryCount() { return newEntryCount; }
@@ -195,9 +223,27 @@ public class SegmentedEviction implements Eviction {
       @Override public int getEvictionRunningCount() { return evictionRunningCount; }
       @Override public long getScanCount() { return scanCount; }
       @Override public long getIdleNonEvictDrainCount() { return removeAfterScanCount; }
+      @Override public long getHotMaxSize() { return hotMaxSize; }
+      @Override public long getGhostMaxSize() { return ghostMaxSize; }
+      @Override public long getGhostHitCount() { return ghostHitCount; }
+      @Override public long getMaxOvershoot() { return maxOvershoot; }
     };
   }
 
+  /**
+   * Sum up a limit of the segments. A limit of -1 or {@code Long.MAX_VALUE} in any
+   * segment is the result.
+   */
+  private static long sumLimits(EvictionMetrics[] metrics, ToLongFunction<EvictionMetrics> f) {
+    long sum = 0;
+    for (EvictionMetrics m : metrics) {
+      long v = f.applyAsLong(m);
+      if (v == Long.MAX_VALUE || v < 0) { return v; }
+      sum += v;
+    }
+    return sum;
+  }
+
   @Override
   public boolean isWeigherPresent() {
     return segments[0].isWeigherPresent();
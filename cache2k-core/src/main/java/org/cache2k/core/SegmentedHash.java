@@ -0,0 +1,318 @@
+package org.cache2k.core;
+
+/*-
+ * #%L
+ * cache2k core implementation
+ * %%
+ * Copyright (C) 2000 - 2022 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.Cache;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Supplier;
+
+/**
+ * Common base of the hash table implementations. Entries are partitioned by the lowest bits
+ * of the spread hash code into lock segments, each guarded by a {@link StampedLock}. Readers
+ * first try an optimistic read. Writers obtain the segment lock via
+ * {@link #getSegmentLock(int)} and do the modification via the {@code WithinLock} methods.
+ *
+ * @author Jens Wilke
+ * @see StampedHash
+ * @see OpenAddressingHash
+ */
+@SuppressWarnings({"WeakerAccess", "rawtypes"})
+public abstract class SegmentedHash<K, V> {
+
+  protected static final int LOCK_SEGMENTS;
+  protected static final int LOCK_MASK;
+
+  /* GraalVM: This runs at runtime, see native-image.properties */
+  static {
+    int ncpu = Runtime.getRuntime().availableProcessors();
+    LOCK_SEGMENTS = 2 << (31 - Integer.numberOfLeadingZeros(ncpu));
+    LOCK_MASK = LOCK_SEGMENTS - 1;
+  }
+
+  /**
+   * Counts clear and close operation on the hash.
+   * Needed for the iterator to detect the need for an abort.
+   */
+  private volatile int clearOrCloseCount = 0;
+
+  /**
+   * Counts the replacements of an entry table. Needed for the iterator to detect the need
+   * for another scan.
+   */
+  private final AtomicInteger rehashCount = new AtomicInteger();
+
+  protected final StampedLock[] locks;
+  protected final long[] segmentSize;
+
+  /** Cache reference, only used for CacheClosedException */
+  protected final Cache<?, ?> maybeClosedCache;
+
+  /**
+   * @param cache Cache reference only needed for the cache name in case of an exception
+   */
+  protected SegmentedHash(Cache<?, ?> cache) {
+    maybeClosedCache = cache;
+    locks = new StampedLock[LOCK_SEGMENTS];
+    for (int i = 0; i < LOCK_SEGMENTS; i++) {
+      locks[i] = new StampedLock();
+    }
+    segmentSize = new long[LOCK_SEGMENTS];
+  }
+
+  /**
+   * Lookup the entry in the hash table and return it. First tries an optimistic read.
+   */
+  public abstract Entry<K, V> lookup(K key, int hash, int keyValue);
+
+  /**
+   * Insert an entry. Checks if an entry already exists. Needs the segment lock.
+   *
+   * @return the inserted entry or the entry already present for the key
+   */
+  public abstract Entry<K, V> insertWithinLock(Entry<K, V> e, int hash, int keyValue);
+
+  /**
+   * Remove existing entry. Needs the segment lock.
+   *
+   * @return true, if entry was found and removed.
+   */
+  public abstract boolean removeWithinLock(Entry<K, V> e, int hash);
+
+  /**
+   * Checks whether expansion is needed and expand. Called after an insert after
+   * giving up the segment lock. No lock may be hold when calling this method.
+   */
+  public abstract void checkExpand(int hash);
+
+  /**
+   * Checks whether the segment table is mostly empty and shrink it. Called after a remove
+   * after giving up the segment lock. No lock may be hold when calling this method.
+   */
+  public abstract void checkShrink(int hash);
+
+  /**
+   * Total number of slots in all tables. Read without locking, so the value might not
+   * reflect the latest changes.
+   */
+  public abstract long getTableSize();
+
+  /**
+   * Complete a pending expansion, if the implementation expands incrementally.
+   * Assumes total lock.
+   */
+  public void completeExpansionWhenLocked() { }
+
+  /**
+   * Count the entries in the hash table, by scanning through the hash table.
+   * This is used for integrity checks. Assumes total lock.
+   */
+  public abstract long calcEntryCount();
+
+  /**
+   * Entry tables used by the iterator or {@code null} if closed. Entries in a table slot
+   * may be linked via {@link Entry#another}. Slots may contain placeholders that need to
+   * be skipped, see {@link #isPlaceholder(Entry)}. Called with total lock.
+   */
+  public abstract Entry<K, V>[][] getTables();
+
+  /**
+   * Initialize empty tables after a clear. Assumes total lock.
+   */
+  protected abstract void initTables();
+
+  /**
+   * Discard the tables, further access yields a {@link org.cache2k.CacheClosedException}.
+   * Assumes total lock.
+   */
+  protected abstract void discardTables();
+
+  public StampedLock getSegmentLock(int hash) {
+    return locks[hash & LOCK_MASK];
+  }
+
+  /**
+   * Index of the lock segment for the hash, to group operations by segment.
+   */
+  public int getSegmentIndex(int hash) {
+    return hash & LOCK_MASK;
+  }
+
+  /**
+   * Remove existing entry from the hash and shrink the segment table if needed.
+   *
+   * @return true, if entry was found and removed.
+   */
+  public boolean remove(Entry<K, V> e) {
+    int hash = spreadHashFromEntry(e.hashCode);
+    StampedLock l = locks[hash & LOCK_MASK];
+    long stamp = l.writeLock();
+    boolean removed;
+    try {
+      removed = removeWithinLock(e, hash);
+    } finally {
+      l.unlockWrite(stamp);
+    }
+    checkShrink(hash);
+    return removed;
+  }
+
+  protected boolean keyObjIsEqual(K key, Entry e) {
+    Object ek;
+    return (ek = e.getKeyObj()) == key || (ek.equals(key));
+  }
+
+  /**
+   * Compare the keys of an entry about to be inserted and an entry already in the table.
+   * Overwritten by caches that don't store the key object in the entry.
+   */
+  protected boolean entryKeyIsEqual(Entry<K, V> e, Entry f) {
+    return keyObjIsEqual(e.getKeyObj(), f);
+  }
+
+  /**
+   * Return the spreaded hash code from the hash code that is stored in the entry.
+   * For integer keys we store the key directly, so we need to calculate the spread
+   * again.
+   */
+  protected int spreadHashFromEntry(int hc) {
+    return hc;
+  }
+
+  /**
+   * Acquire all segment locks and return an array with the lock stamps.
+   */
+  private long[] lockAll() {
+    StampedLock[] locks = this.locks;
+    int sn = locks.length;
+    long[] stamps = new long[this.locks.length];
+    for (int i = 0; i < sn; i++) {
+      StampedLock l = locks[i];
+      stamps[i] = l.writeLock();
+    }
+    return stamps;
+  }
+
+  /**
+   * Release the all segment locks.
+   *
+   * @param stamps array with the lock stamps.
+   */
+  private void unlockAll(long[] stamps) {
+    StampedLock[] locks = this.locks;
+    int sn = locks.length;
+    for (int i = 0; i < sn; i++) {
+      locks[i].unlockWrite(stamps[i]);
+    }
+  }
+
+  /**
+   * Number of hash table entries. Uses locking to read the latest changes and consistent
+   * long values for 23 bit systems. May not be called when lock is held.
+   */
+  public long getSize() {
+    long sum = 0;
+    for (int i = 0; i < segmentSize.length; i++) {
+      long stamp = locks[i].tryOptimisticRead();
+      long v = segmentSize[i];
+      if (!locks[i].validate(stamp)) {
+        stamp = locks[i].readLock();
+        v = segmentSize[i];
+        locks[i].unlockRead(stamp);
+      }
+      sum += v;
+    }
+    return sum;
+  }
+
+  /**
+   * Separate version of getSize expected all segments are locked.
+   */
+  public long getSizeWithGlobalLock() {
+    long sum = 0;
+    for (long l : segmentSize) {
+      sum += l;
+    }
+    return sum;
+  }
+
+  /**
+   * Lock all segments and run the job.
+   */
+  public <T> T runTotalLocked(Supplier<T> j) {
+    long[] stamps = lockAll();
+    try {
+      return j.get();
+    } finally {
+      unlockAll(stamps);
+    }
+  }
+
+  public void clearWhenLocked() {
+    for (int i = 0; i < segmentSize.length; i++) {
+      segmentSize[i] = 0;
+    }
+    clearOrCloseCount++;
+    initTables();
+  }
+
+  public int getClearOrCloseCount() {
+    return clearOrCloseCount;
+  }
+
+  /**
+   * Number of table replacements, because of expansion or reorganization.
+   */
+  public int getRehashCount() {
+    return rehashCount.get();
+  }
+
+  protected void incrementRehashCount() {
+    rehashCount.incrementAndGet();
+  }
+
+  /**
+   * Close the cache by discarding the entry tables. Assumes total lock.
+   *
+   * <p>Closing will be visible to other threads, because of the guarantees of the locking.
+   * Using the entry table for closing has the advantage that the close check collapses with
+   * the implicit null check and has no additional overhead.
+   */
+  public void close() {
+    clearOrCloseCount++;
+    discardTables();
+  }
+
+  /**
+   * True, if the table slot contains a placeholder and no cache entry.
+   */
+  public static boolean isPlaceholder(Entry<?, ?> e) {
+    return e instanceof Placeholder;
+  }
+
+  /**
+   * Marks a table slot that contains no cache entry, e.g. a moved bucket or
+   * a removed entry.
+   */
+  protected static class Placeholder<K, V> extends Entry<K, V> { }
+
+}
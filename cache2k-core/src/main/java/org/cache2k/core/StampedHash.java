@@ -24,16 +24,34 @@ import org.cache2k.Cache;
 import org.cache2k.CacheClosedException;
 
 import java.util.concurrent.locks.StampedLock;
-import java.util.function.Supplier;
 
 /**
  * Simple concurrent hash table implementation using optimistic locking
  * via StampedLock for the segments locks.
  *
+ * <p>Each lock segment has its own table, which grows independently. Within the segment
+ * table the bits of the spread hash code above the segment bits select the bucket.
+ * Skewed key distributions only lead to expansion of the hot segments, an expansion
+ * never blocks other segments.
+ *
+ * <p>Expansion: A segment table doubles incrementally. The entries of a bucket are moved
+ * into two buckets of the new table. Buckets are moved in small chunks by inserts and removes
+ * in the segment, while holding the segment lock. Lookups move a chunk as well, if the segment
+ * lock is free, so an expansion completes also when no more entries are inserted.
+ * A moved bucket is marked with a
+ * {@link ForwardingEntry} in the old table, which redirects readers and writers to the new
+ * table. When all buckets are moved, the new table replaces the old one.
+ *
+ * <p>Shrinking: When the fill of a segment drops below a quarter of the expansion limit,
+ * e.g. after mass eviction, the segment table is rebuilt with a size that is filled to half
+ * of the expansion limit. The gap between the two limits avoids that a table is expanded and
+ * shrunk repeatedly. Shrinking happens at once within the segment lock, since the table
+ * only contains few entries.
+ *
  * @author Jens Wilke
  */
-@SuppressWarnings({"WeakerAccess", "rawtypes"})
-public class StampedHash<K, V> {
+@SuppressWarnings({"WeakerAccess", "rawtypes", "unchecked"})
+public class StampedHash<K, V> extends SegmentedHash<K, V> {
 
   /**
    * Size of the hash table before inserting the first entry. Must be power
@@ -47,90 +65,111 @@ public class StampedHash<K, V> {
    */
   private static final int HASH_LOAD_PERCENT = 64;
 
-  private static final int LOCK_SEGMENTS;
-  private static final int LOCK_MASK;
-
-  /* GraalVM: This runs at runtime, see native-image.properties */
-  static {
-    int ncpu = Runtime.getRuntime().availableProcessors();
-    LOCK_SEGMENTS = 2 << (31 - Integer.numberOfLeadingZeros(ncpu));
-    LOCK_MASK = LOCK_SEGMENTS - 1;
-  }
+  /**
+   * Number of buckets moved to the new table by one insert, remove or lookup, while an
+   * expansion of the segment table is in progress. Default: 16.
+   */
+  private static final int TRANSFER_CHUNK_SIZE = 16;
 
   /**
-   * Counts clear and close operation on the hash.
-   * Needed for the iterator to detect the need for an abort.
+   * Initial size of a segment table. Keeps the initial size of all tables to
+   * {@value INITIAL_HASH_SIZE} for up to 16 segments.
    */
-  private volatile int clearOrCloseCount = 0;
+  private static final int INITIAL_SEGMENT_SIZE = Math.max(INITIAL_HASH_SIZE / LOCK_SEGMENTS, 4);
 
   /**
-   * Maximum size of one segment, after we expand. Although there are concurrent updates/reads
-   * this field does not need to be volatile, since expansion occurs very seldom.
-   * Instead of adding volatile overhead, there might be unnecessary locks immediately after
-   * an expansion.
+   * The lower bits of the hash code select the segment, the remaining bits select the
+   * bucket in the segment table.
    */
-  private long segmentMaxFill;
+  private static final int SEGMENT_SHIFT = Integer.numberOfTrailingZeros(LOCK_SEGMENTS);
 
-  private Entry<K, V>[] entries;
-  private final StampedLock[] locks;
-  private final long[] segmentSize;
+  /**
+   * Table for each segment. An element and its content is only modified within the
+   * segment lock. Volatile, since replaced by clear and close.
+   */
+  private volatile Entry<K, V>[][] segments;
 
-  /** Cache reference, only used for CacheClosedException */
-  private final Cache<?, ?> maybeClosedCache;
+  /**
+   * Expansion in progress for each segment or {@code null}. Guarded by the segment lock.
+   */
+  private Transfer<K, V>[] transfers;
 
   /**
    * @param cache Cache reference only needed for the cache name in case of an exception
    */
   public StampedHash(Cache<?, ?> cache) {
-    maybeClosedCache = cache;
+    super(cache);
+    initTables();
   }
 
-  {
-    locks = new StampedLock[LOCK_SEGMENTS];
-    for (int i = 0; i < LOCK_SEGMENTS; i++) {
-      locks[i] = new StampedLock();
+  @Override
+  protected void initTables() {
+    Entry<K, V>[][] tabs = new Entry[LOCK_SEGMENTS][];
+    for (int i = 0; i < tabs.length; i++) {
+      tabs[i] = new Entry[INITIAL_SEGMENT_SIZE];
     }
-    segmentSize = new long[LOCK_SEGMENTS];
-    initArray();
+    transfers = new Transfer[LOCK_SEGMENTS];
+    segments = tabs;
   }
 
-  @SuppressWarnings("unchecked")
-  private void initArray() {
-    int len = Math.max(INITIAL_HASH_SIZE, LOCK_SEGMENTS * 4);
-    entries = new Entry[len];
-    calcMaxFill();
+  @Override
+  protected void discardTables() {
+    transfers = new Transfer[LOCK_SEGMENTS];
+    segments = null;
   }
 
-  public long getEntryCapacity() {
-    return entries.length * 1L * HASH_LOAD_PERCENT / 100;
+  /** For testing */
+  public long getSegmentMaxFill() {
+    return maxFill(segments[0]);
   }
 
   /** For testing */
-  public long getSegmentMaxFill() {
-    return segmentMaxFill;
+  public boolean isExpanding() {
+    for (Transfer<K, V> t : transfers) {
+      if (t != null) {
+        return true;
+      }
+    }
+    return false;
   }
 
-  private void calcMaxFill() {
-    segmentMaxFill = getEntryCapacity() / LOCK_SEGMENTS;
+  private static long maxFill(Entry[] tab) {
+    return maxFill(tab.length);
+  }
+
+  private static long maxFill(int length) {
+    return length * 1L * HASH_LOAD_PERCENT / 100;
   }
 
   /**
-   * Lookup the entry in the hash table and return it. First tries an optimistic read.
+   * Fill limit below which a segment table gets shrunk.
    */
+  private static long shrinkFill(Entry[] tab) {
+    return maxFill(tab) / 4;
+  }
+
+  private static int bucket(int hash, int length) {
+    return (hash >>> SEGMENT_SHIFT) & (length - 1);
+  }
+
+  @Override
   public Entry<K, V> lookup(K key, int hash, int keyValue) {
-    StampedLock[] locks = this.locks;
     int si = hash & LOCK_MASK;
+    if (transfers[si] != null) {
+      tryTransferChunk(si);
+    }
     StampedLock l = locks[si];
     long stamp = l.tryOptimisticRead();
-    Entry<K, V>[] tab = entries;
-    if (tab == null) {
+    Entry<K, V>[][] tabs = segments;
+    if (tabs == null) {
       throw new CacheClosedException(maybeClosedCache);
     }
-    Entry<K, V> e;
-    int n = tab.length;
-    int mask = n - 1;
-    int idx = hash & (mask);
-    e = tab[idx];
+    Entry<K, V>[] tab = tabs[si];
+    Entry<K, V> e = tab[bucket(hash, tab.length)];
+    while (e instanceof ForwardingEntry) {
+      tab = ((ForwardingEntry<K, V>) e).table;
+      e = tab[bucket(hash, tab.length)];
+    }
     for (;;) {
       if (e == null) {
         if (l.validate(stamp)) { return null; }
@@ -143,14 +182,16 @@ public class StampedHash<K, V> {
     }
     stamp = l.readLock();
     try {
-      tab = entries;
-      if (tab == null) {
+      tabs = segments;
+      if (tabs == null) {
         throw new CacheClosedException(maybeClosedCache);
       }
-      n = tab.length;
-      mask = n - 1;
-      idx = hash & (mask);
-      e = tab[idx];
+      tab = tabs[si];
+      e = tab[bucket(hash, tab.length)];
+      while (e instanceof ForwardingEntry) {
+        tab = ((ForwardingEntry<K, V>) e).table;
+        e = tab[bucket(hash, tab.length)];
+      }
       while (e != null) {
         if (e.hashCode == keyValue && (keyObjIsEqual(key, e))) {
           return e;
@@ -163,27 +204,36 @@ public class StampedHash<K, V> {
     }
   }
 
-  protected boolean keyObjIsEqual(K key, Entry e) {
-    Object ek;
-    return (ek = e.getKeyObj()) == key || (ek.equals(key));
+  /**
+   * Resolve the table that holds the bucket for the hash code, which is the new table if
+   * the bucket is already moved by an expansion in progress. Needs the segment lock.
+   */
+  private Entry<K, V>[] tableWithinLock(int hash) {
+    Entry<K, V>[][] tabs = segments;
+    if (tabs == null) {
+      throw new CacheClosedException(maybeClosedCache);
+    }
+    Entry<K, V>[] tab = tabs[hash & LOCK_MASK];
+    Entry<K, V> e;
+    while ((e = tab[bucket(hash, tab.length)]) instanceof ForwardingEntry) {
+      tab = ((ForwardingEntry<K, V>) e).table;
+    }
+    return tab;
   }
 
-
-
   /**
-   * Insert an entry. Checks if an entry already exists.
+   * Insert an entry. Checks if an entry already exists. If an expansion of the segment
+   * table is in progress, a chunk of buckets is moved to the new table.
    */
+  @Override
   public Entry<K, V> insertWithinLock(Entry<K, V> e, int hash, int keyValue) {
-    K key = e.getKeyObj();
     int si = hash & LOCK_MASK;
-    Entry<K, V> f; Object ek; Entry<K, V>[] tab = entries;
-    if (tab == null) {
-      throw new CacheClosedException(maybeClosedCache);
-    }
-    int n = tab.length, mask = n - 1, idx = hash & (mask);
+    continueTransferWithinLock(si);
+    Entry<K, V> f; Entry<K, V>[] tab = tableWithinLock(hash);
+    int idx = bucket(hash, tab.length);
     f = tab[idx];
     while (f != null) {
-      if (f.hashCode == keyValue && ((ek = f.getKeyObj()) == key || (ek.equals(key)))) {
+      if (f.hashCode == keyValue && entryKeyIsEqual(e, f)) {
         return f;
       }
       f = f.another;
@@ -195,70 +245,39 @@ public class StampedHash<K, V> {
   }
 
   /**
-   * Checks whether expansion is needed and expand when {@link #insertWithinLock(Entry, int, int)}
-   * is used. No lock may be hold when calling this method, since the table must be locked
-   * completely using the proper lock order.
+   * Checks whether expansion is needed and start the expansion of the segment table
+   * when {@link #insertWithinLock(Entry, int, int)} is used. No lock may be hold when
+   * calling this method. The new table is allocated without holding the lock,
+   * only the segment of the hash is locked.
    *
    * <p>Need for expansion is only checked by comparing whether the associated segment is
-   * full. Should be called after insert after giving up the lock.
+   * full. Should be called after insert after giving up the lock. The check reads the
+   * expansion state without lock, which might lead to an unneeded allocation in rare cases.
+   * If an expansion is in progress, a chunk of buckets is moved.
    */
+  @Override
   public void checkExpand(int hash) {
     int si = hash & LOCK_MASK;
-    long size = segmentSize[si];
-    if (size > segmentMaxFill) {
-      eventuallyExpand(si);
+    Entry<K, V>[][] tabs = segments;
+    if (tabs == null) {
+      return;
     }
-  }
-
-  public StampedLock getSegmentLock(int hash) {
-    return locks[hash & LOCK_MASK];
-  }
-
-  /**
-   * Remove existing entry from the hash.
-   *
-   * @return true, if entry was found and removed.
-   */
-  public boolean remove(Entry<K, V> e) {
-    int hash = spreadHashFromEntry(e.hashCode);
-    StampedLock[] locks = this.locks;
-    int si = hash & LOCK_MASK;
-    StampedLock l = locks[si];
-    long stamp = l.writeLock();
-    try {
-      Entry<K, V> f; Entry<K, V>[] tab = entries;
-      if (tab == null) {
-        throw new CacheClosedException(maybeClosedCache);
-      }
-      int n = tab.length, mask = n - 1, idx = hash & (mask);
-      f = tab[idx];
-      if (f == e) {
-        tab[idx] = f.another;
-        segmentSize[si]--;
-        return true;
-      }
-      while (f != null) {
-        Entry<K, V> another = f.another;
-        if (another == e) {
-          f.another = another.another;
-          segmentSize[si]--;
-          return true;
-        }
-        f = another;
-      }
-    } finally {
-      l.unlockWrite(stamp);
+    if (transfers[si] != null) {
+      tryTransferChunk(si);
+      return;
+    }
+    Entry<K, V>[] tab = tabs[si];
+    if (segmentSize[si] > maxFill(tab)) {
+      eventuallyExpand(si, tab);
     }
-    return false;
   }
 
+  @Override
   public boolean removeWithinLock(Entry<K, V> e, int hash) {
     int si = hash & LOCK_MASK;
-    Entry<K, V> f; Entry<K, V>[] tab = entries;
-    if (tab == null) {
-      throw new CacheClosedException(maybeClosedCache);
-    }
-    int n = tab.length, mask = n - 1, idx = hash & (mask);
+    continueTransferWithinLock(si);
+    Entry<K, V> f; Entry<K, V>[] tab = tableWithinLock(hash);
+    int idx = bucket(hash, tab.length);
     f = tab[idx];
     if (f == e) {
       tab[idx] = f.another;
@@ -277,169 +296,258 @@ public class StampedHash<K, V> {
     return false;
   }
 
-
   /**
-   * Acquire all segment locks and rehash, if really needed.
+   * Shrink the segment table, if the fill dropped below the shrink limit and there is no
+   * expansion in progress.
    */
-  private void eventuallyExpand(int segmentIndex) {
-    long[] stamps = lockAll();
-    try {
-      long size = segmentSize[segmentIndex];
-      if (size <= segmentMaxFill) {
-        return;
+  @Override
+  public void checkShrink(int hash) {
+    int si = hash & LOCK_MASK;
+    Entry<K, V>[][] tabs = segments;
+    if (tabs == null) {
+      return;
+    }
+    Entry<K, V>[] tab = tabs[si];
+    if (tab.length > INITIAL_SEGMENT_SIZE && segmentSize[si] < shrinkFill(tab)) {
+      StampedLock l = locks[si];
+      long stamp = l.writeLock();
+      try {
+        shrinkWithinLock(si);
+      } finally {
+        l.unlockWrite(stamp);
       }
-      rehash();
-    } finally {
-      unlockAll(stamps);
     }
   }
 
-  /**
-   * Acquire all segment locks and return an array with the lock stamps.
-   */
-  private long[] lockAll() {
-    StampedLock[] locks = this.locks;
-    int sn = locks.length;
-    long[] stamps = new long[this.locks.length];
-    for (int i = 0; i < sn; i++) {
-      StampedLock l = locks[i];
-      stamps[i] = l.writeLock();
-    }
-    return stamps;
+  private void shrinkWithinLock(int si) {
+    Entry<K, V>[][] tabs = segments;
+    if (tabs == null || transfers[si] != null) {
+      return;
+    }
+    Entry<K, V>[] src = tabs[si];
+    long size = segmentSize[si];
+    if (src.length <= INITIAL_SEGMENT_SIZE || size >= shrinkFill(src)) {
+      return;
+    }
+    int len = INITIAL_SEGMENT_SIZE;
+    while (len < src.length && size * 2 > maxFill(len)) {
+      len = len << 1;
+    }
+    Entry<K, V>[] tab = new Entry[len];
+    Entry<K, V> e, next;
+    for (Entry<K, V> head : src) {
+      e = head;
+      while (e != null) {
+        next = e.another;
+        int idx = bucket(spreadHashFromEntry(e.hashCode), len);
+        e.another = tab[idx];
+        tab[idx] = e;
+        e = next;
+      }
+    }
+    tabs[si] = tab;
+    incrementRehashCount();
   }
 
   /**
-   * Release the all segment locks.
-   *
-   * @param stamps array with the lock stamps.
+   * Start an expansion of the segment table, if not already started by another thread,
+   * and move the first chunk.
    */
-  private void unlockAll(long[] stamps) {
-    StampedLock[] locks = this.locks;
-    int sn = locks.length;
-    for (int i = 0; i < sn; i++) {
-      locks[i].unlockWrite(stamps[i]);
+  private void eventuallyExpand(int si, Entry<K, V>[] tab) {
+    Entry<K, V>[] newTab = new Entry[tab.length * 2];
+    StampedLock l = locks[si];
+    long stamp = l.writeLock();
+    try {
+      Entry<K, V>[][] tabs = segments;
+      if (tabs == null || tabs[si] != tab || transfers[si] != null ||
+        segmentSize[si] <= maxFill(tab)) {
+        return;
+      }
+      Transfer<K, V> t = new Transfer<>(tab, newTab);
+      transfers[si] = t;
+      transferChunkWithinLock(t, si, TRANSFER_CHUNK_SIZE);
+    } finally {
+      l.unlockWrite(stamp);
     }
   }
 
   /**
-   * Return the spreaded hash code from the hash code that is stored in the entry.
-   * For integer keys we store the key directly, so we need to calculate the spread
-   * again.
+   * Move a chunk of buckets, if an expansion of the segment table is in progress.
+   * Needs the segment lock.
    */
-  protected int spreadHashFromEntry(int hc) {
-    return hc;
+  private void continueTransferWithinLock(int si) {
+    Transfer<K, V> t = transfers[si];
+    if (t != null) {
+      transferChunkWithinLock(t, si, TRANSFER_CHUNK_SIZE);
+    }
   }
 
   /**
-   * Double the hash table size and rehash the entries. Assumes total lock.
+   * Move a chunk of buckets, if the segment lock is free. Called without lock, after
+   * reading the expansion state without lock. Never waits for the lock, so lookups
+   * are not blocked by concurrent operations.
    */
-  @SuppressWarnings("unchecked")
-  void rehash() {
-    Entry<K, V>[] src = entries;
-    if (src == null) {
-      throw new CacheClosedException(maybeClosedCache);
+  private void tryTransferChunk(int si) {
+    StampedLock l = locks[si];
+    long stamp = l.tryWriteLock();
+    if (stamp == 0) {
+      return;
     }
-    int i, sl = src.length, n = sl * 2, mask = n - 1, idx;
-    Entry<K, V>[] tab = new Entry[n];
-    long count = 0; Entry next, e;
-    for (i = 0; i < sl; i++) {
-      e = src[i];
-      while (e != null) {
-        count++; next = e.another; idx = spreadHashFromEntry(e.hashCode) & mask;
-        e.another = tab[idx]; tab[idx] = e;
-        e = next;
+    try {
+      if (segments != null) {
+        continueTransferWithinLock(si);
       }
+    } finally {
+      l.unlockWrite(stamp);
     }
-    entries = tab;
-    calcMaxFill();
   }
 
   /**
-   * Number of hash table entries. Uses locking to read the latest changes and consistent
-   * long values for 23 bit systems. May not be called when lock is held.
+   * Move buckets of a segment table to the new table. Needs the segment lock. When the
+   * last bucket is moved, the new table replaces the old one.
+   *
+   * @param maxBuckets number of buckets to move
    */
-  public long getSize() {
-    long sum = 0;
-    for (int i = 0; i < segmentSize.length; i++) {
-      long stamp = locks[i].tryOptimisticRead();
-      long v = segmentSize[i];
-      if (!locks[i].validate(stamp)) {
-        stamp = locks[i].readLock();
-        v = segmentSize[i];
-        locks[i].unlockRead(stamp);
+  private void transferChunkWithinLock(Transfer<K, V> t, int si, int maxBuckets) {
+    Entry<K, V>[] src = t.src;
+    Entry<K, V>[] tab = t.forward.table;
+    int sl = src.length;
+    int limit = Math.min(sl, t.cursor + maxBuckets);
+    for (int idx = t.cursor; idx < limit; idx++) {
+      Entry<K, V> e = src[idx], next, lo = null, hi = null;
+      while (e != null) {
+        next = e.another;
+        if (((spreadHashFromEntry(e.hashCode) >>> SEGMENT_SHIFT) & sl) == 0) {
+          e.another = lo; lo = e;
+        } else {
+          e.another = hi; hi = e;
+        }
+        e = next;
       }
-      sum += v;
+      tab[idx] = lo;
+      tab[idx + sl] = hi;
+      src[idx] = t.forward;
+    }
+    t.cursor = limit;
+    if (limit == sl) {
+      segments[si] = tab;
+      transfers[si] = null;
+      incrementRehashCount();
     }
-    return sum;
   }
 
   /**
-   * Separate version of getSize expected all segments are locked.
+   * Complete expansions in progress. Assumes total lock.
    */
-  public long getSizeWithGlobalLock() {
-    long sum = 0;
-    for (long l : segmentSize) {
-      sum += l;
+  @Override
+  public void completeExpansionWhenLocked() {
+    for (int si = 0; si < LOCK_SEGMENTS; si++) {
+      Transfer<K, V> t = transfers[si];
+      if (t != null) {
+        transferChunkWithinLock(t, si, t.src.length);
+      }
     }
-    return sum;
   }
 
   /**
-   * Lock all segments and run the job.
+   * Double the size of all segment tables and rehash the entries at once.
+   * Assumes total lock.
    */
-  public <T> T runTotalLocked(Supplier<T> j) {
-    long[] stamps = lockAll();
-    try {
-      return j.get();
-    } finally {
-      unlockAll(stamps);
+  void rehash() {
+    if (segments == null) {
+      throw new CacheClosedException(maybeClosedCache);
+    }
+    completeExpansionWhenLocked();
+    for (int si = 0; si < LOCK_SEGMENTS; si++) {
+      Entry<K, V>[] tab = segments[si];
+      Transfer<K, V> t = new Transfer<>(tab, new Entry[tab.length * 2]);
+      transferChunkWithinLock(t, si, tab.length);
     }
   }
 
-  public void clearWhenLocked() {
-    for (int i = 0; i < segmentSize.length; i++) {
-      segmentSize[i] = 0;
+  @Override
+  public long calcEntryCount() {
+    long count = 0;
+    Entry<K, V>[][] tabs = segments;
+    for (int si = 0; si < LOCK_SEGMENTS; si++) {
+      count += countEntries(tabs[si]);
+      Transfer<K, V> t = transfers[si];
+      if (t != null) {
+        count += countEntries(t.forward.table);
+      }
     }
-    clearOrCloseCount++;
-    initArray();
+    return count;
   }
 
-  public int getClearOrCloseCount() {
-    return clearOrCloseCount;
+  private static long countEntries(Entry[] tab) {
+    long count = 0;
+    for (Entry e : tab) {
+      if (e instanceof Placeholder) {
+        continue;
+      }
+      while (e != null) {
+        count++;
+        e = e.another;
+      }
+    }
+    return count;
   }
 
   /**
-   * Close the cache by discarding the entry table. Assumes total lock.
-   *
-   * <p>Closing will be visible to other threads, because of the guarantees of the locking.
-   * Using the entry table for closing has the advantage that the close check collapses with
-   * the implicit null check and has no additional overhead.
+   * The segment tables. A table contains a {@link ForwardingEntry} for each bucket
+   * already moved by an expansion in progress, which needs to be skipped. Call
+   * {@link #completeExpansionWhenLocked()} to obtain tables without forwarding entries.
    */
-  public void close() {
-    clearOrCloseCount++;
-    entries = null;
+  @Override
+  public Entry<K, V>[][] getTables() {
+    Entry<K, V>[][] tabs = segments;
+    return tabs == null ? null : tabs.clone();
   }
 
   /**
-   * Count the entries in the hash table, by scanning through the hash table.
-   * This is used for integrity checks.
+   * Total number of buckets in all segment tables.
    */
-  public long calcEntryCount() {
+  @Override
+  public long getTableSize() {
+    Entry<K, V>[][] tabs = segments;
+    if (tabs == null) {
+      return 0;
+    }
     long count = 0;
-    for (Entry e : entries) {
-      while (e != null) {
-        count++;
-        e = e.another;
-      }
+    for (Entry<K, V>[] tab : tabs) {
+      count += tab.length;
     }
     return count;
   }
 
   /**
-   * Entry table used by the iterator.
+   * Marks a bucket in the old table that was moved to the new table. There is one instance
+   * for each expansion.
    */
-  public Entry<K, V>[] getEntries() {
-    return entries;
+  private static final class ForwardingEntry<K, V> extends Placeholder<K, V> {
+
+    final Entry<K, V>[] table;
+
+    ForwardingEntry(Entry<K, V>[] table) {
+      this.table = table;
+    }
+
+  }
+
+  /**
+   * State of an incremental expansion of a segment table. Guarded by the segment lock.
+   */
+  private static final class Transfer<K, V> {
+
+    final Entry<K, V>[] src;
+    final ForwardingEntry<K, V> forward;
+    int cursor;
+
+    Transfer(Entry<K, V>[] src, Entry<K, V>[] dst) {
+      this.src = src;
+      forward = new ForwardingEntry<>(dst);
+    }
+
   }
 
 }
@@ -0,0 +1,229 @@
+package org.cache2k.core;
+
+/*-
+ * #%L
+ * cache2k core implementation
+ * %%
+ * Copyright (C) 2000 - 2022 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.core.api.CommonMetrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metrics with a {@link LongAdder} for each counter. Concurrent increments from different
+ * threads go to different, padded cells, so there is no contention on a single field.
+ * Reading a counter sums up the cells. Uses more memory than {@link StandardCommonMetrics},
+ * which is worthwhile for caches with many concurrent accesses on a machine with many cores.
+ *
+ * @author Jens Wilke
+ * @see org.cache2k.core.api.InternalConfig.Builder#stripedMetrics(boolean)
+ */
+public class StripedCommonMetrics implements CommonMetrics.Updater {
+
+  private final LongAdder putNewEntry = new LongAdder();
+  private final LongAdder putHit = new LongAdder();
+  private final LongAdder heapHitButNoRead = new LongAdder();
+  private final LongAdder timerEvent = new LongAdder();
+  private final LongAdder loadMillis = new LongAdder();
+  private final LongAdder refresh = new LongAdder();
+  private final LongAdder readThrough = new LongAdder();
+  private final LongAdder reload = new LongAdder();
+  private final LongAdder loadException = new LongAdder();
+  private final LongAdder suppressedException = new LongAdder();
+  private final LongAdder expiredKept = new LongAdder();
+  private final LongAdder peekMiss = new LongAdder();
+  private final LongAdder peekHitNotFresh = new LongAdder();
+  private final LongAdder refreshHit = new LongAdder();
+  private final LongAdder refreshRejected = new LongAdder();
+  private final LongAdder goneSpin = new LongAdder();
+  private final LongAdder heapHit = new LongAdder();
+
+  @Override
+  public void putNewEntry() {
+    putNewEntry.increment();
+  }
+
+  @Override
+  public long getPutNewEntryCount() {
+    return putNewEntry.sum();
+  }
+
+  @Override
+  public void putHit() {
+    putHit.increment();
+  }
+
+  @Override
+  public long getPutHitCount() {
+    return putHit.sum();
+  }
+
+  @Override
+  public void heapHitButNoRead() {
+    heapHitButNoRead.increment();
+  }
+
+  @Override
+  public long getHeapHitButNoReadCount() {
+    return heapHitButNoRead.sum();
+  }
+
+  @Override
+  public void timerEvent() {
+    timerEvent.increment();
+  }
+
+  @Override
+  public long getTimerEventCount() {
+    return timerEvent.sum();
+  }
+
+  @Override
+  public long getLoadTicks() {
+    return loadMillis.sum();
+  }
+
+  @Override
+  public void refresh(long millis) {
+    refresh.increment();
+    loadMillis.add(millis);
+  }
+
+  @Override
+  public long getRefreshCount() {
+    return refresh.sum();
+  }
+
+  @Override
+  public void readThrough(long millis) {
+    readThrough.increment();
+    loadMillis.add(millis);
+  }
+
+  @Override
+  public long getReadThroughCount() {
+    return readThrough.sum();
+  }
+
+  @Override
+  public void explicitLoad(long millis) {
+    reload.increment();
+    loadMillis.add(millis);
+  }
+
+  @Override
+  public long getExplicitLoadCount() {
+    return reload.sum();
+  }
+
+  @Override
+  public void loadException() {
+    loadException.increment();
+  }
+
+  @Override
+  public long getLoadExceptionCount() {
+    return loadException.sum();
+  }
+
+  @Override
+  public void suppressedException() {
+    suppressedException.increment();
+  }
+
+  @Override
+  public long getSuppressedExceptionCount() {
+    return suppressedException.sum();
+  }
+
+  @Override
+  public void expiredKept() {
+    expiredKept.increment();
+  }
+
+  @Override
+  public long getExpiredKeptCount() {
+    return expiredKept.sum();
+  }
+
+  @Override
+  public void peekMiss() {
+    peekMiss.increment();
+  }
+
+  @Override
+  public long getPeekMissCount() {
+    return peekMiss.sum();
+  }
+
+  @Override
+  public void peekHitNotFresh() {
+    peekHitNotFresh.increment();
+  }
+
+  @Override
+  public long getPeekHitNotFreshCount() {
+    return peekHitNotFresh.sum();
+  }
+
+  @Override
+  public void refreshedHit() {
+    refreshHit.increment();
+  }
+
+  @Override
+  public long getRefreshedHitCount() {
+    return refreshHit.sum();
+  }
+
+  @Override
+  public void refreshRejected() {
+    refreshRejected.increment();
+  }
+
+  @Override
+  public long getRefreshRejectedCount() {
+    return refreshRejected.sum();
+  }
+
+  @Override
+  public void goneSpin() {
+    goneSpin.increment();
+  }
+
+  @Override
+  public long getGoneSpinCount() {
+    return goneSpin.sum();
+  }
+
+  @Override
+  public void heapHit() {
+    heapHit.increment();
+  }
+
+  @Override
+  public long getHeapHitCount() {
+    return heapHit.sum();
+  }
+
+  @Override
+  public boolean isDisabled() {
+    return false;
+  }
+
+}
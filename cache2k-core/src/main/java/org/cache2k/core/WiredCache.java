@@ -26,6 +26,7 @@ import org.cache2k.CacheException;
 import org.cache2k.annotation.Nullable;
 import org.cache2k.config.CacheType;
 import org.cache2k.core.api.CommonMetrics;
+import org.cache2k.core.capacity.ControlledCapacity;
 import org.cache2k.core.api.InternalCacheInfo;
 import org.cache2k.core.eviction.Eviction;
 import org.cache2k.core.eviction.InternalEvictionListener;
@@ -34,6 +35,7 @@ import org.cache2k.io.AsyncBulkCacheLoader;
 import org.cache2k.io.BulkCacheLoader;
 import org.cache2k.io.CacheLoaderException;
 import org.cache2k.operation.TimeReference;
+import org.cache2k.event.CacheEntryEvictedBatchListener;
 import org.cache2k.event.CacheEntryEvictedListener;
 import org.cache2k.event.CacheEntryExpiredListener;
 import org.cache2k.io.AdvancedCacheLoader;
@@ -52,9 +54,12 @@ import org.cache2k.core.operation.Semantic;
 import org.cache2k.core.operation.Operations;
 import org.cache2k.core.log.Log;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
@@ -88,6 +93,7 @@ public class WiredCache<K, V> extends BaseCache<K, V>
   CacheEntryUpdatedListener<K, V>[] syncEntryUpdatedListeners;
   CacheEntryExpiredListener<K, V>[] syncEntryExpiredListeners;
   CacheEntryEvictedListener<K, V>[] syncEntryEvictedListeners;
+  CacheEntryEvictedBatchListener<K, V>[] syncEntryEvictedBatchListeners;
 
   private CommonMetrics.Updater metrics() {
     return heapCache.metrics;
@@ -694,6 +700,11 @@ public class WiredCache<K, V> extends BaseCache<K, V>
     return heapCache.isClosed();
   }
 
+  @Override
+  public void snapshot(Path path) throws IOException {
+    heapCache.snapshot(path);
+  }
+
   public void init() {
     heapCache.timing.setTarget(this);
     heapCache.initWithoutTimerHandler();
@@ -774,6 +785,25 @@ public class WiredCache<K, V> extends BaseCache<K, V>
     }
   }
 
+  @Override
+  public boolean isBatchDelivery() {
+    return syncEntryEvictedBatchListeners != null;
+  }
+
+  /**
+   * Pass the whole chunk to the batch listeners. The entries are already removed.
+   */
+  @Override
+  public void onEvictionFromHeap(List<CacheEntry<K, V>> entries) {
+    for (CacheEntryEvictedBatchListener<K, V> l : syncEntryEvictedBatchListeners) {
+      try {
+        l.onEntriesEvicted(getUserCache(), entries);
+      } catch (Throwable t) {
+        getLog().warn("Exception from eviction listener", t);
+      }
+    }
+  }
+
   @Override
   protected <R> EntryAction<K, V, R> createEntryAction(K key, Entry<K, V> e, Semantic<K, V, R> op) {
     return new MyEntryAction<>(op, key, e);
@@ -846,6 +876,11 @@ public class WiredCache<K, V> extends BaseCache<K, V>
     return heapCache.getTiming();
   }
 
+  @Override
+  public @Nullable ControlledCapacity getControlledCapacity() {
+    return heapCache.getControlledCapacity();
+  }
+
   @Override
   public TimeReference getTimeReference() {
     return heapCache.getTimeReference();
@@ -23,7 +23,9 @@ package org.cache2k.core.api;
 import org.cache2k.Cache;
 import org.cache2k.CacheEntry;
 import org.cache2k.config.CacheType;
+import org.cache2k.annotation.Nullable;
 import org.cache2k.core.ConcurrentMapWrapper;
+import org.cache2k.core.capacity.ControlledCapacity;
 import org.cache2k.core.eviction.Eviction;
 import org.cache2k.core.operation.ExaminationEntry;
 import org.cache2k.core.timing.TimerEventListener;
@@ -31,6 +33,9 @@ import org.cache2k.core.log.Log;
 import org.cache2k.core.timing.Timing;
 import org.cache2k.operation.TimeReference;
 
+import java.io.IOException;
+import java.nio.file.Path;
+
 /**
  * Interface to extended cache functions for the internal components.
  *
@@ -95,6 +100,11 @@ public interface InternalCache<K, V>
 
   Timing getTiming();
 
+  /**
+   * Capacity changed at runtime by a controller or {@code null}, if not controlled.
+   */
+  default @Nullable ControlledCapacity getControlledCapacity() { return null; }
+
   TimeReference getTimeReference();
 
   /**
@@ -113,4 +123,11 @@ public interface InternalCache<K, V>
 
   String getQualifiedName();
 
+  /**
+   * Write the cache contents to the file.
+   *
+   * @see org.cache2k.operation.CacheOperation#snapshot(Path)
+   */
+  void snapshot(Path path) throws IOException;
+
 }
@@ -216,6 +216,14 @@ public interface InternalCacheInfo {
    */
   long getTimerEventCount();
 
+  /**
+   * Count of expiry timer tasks not scheduled, because the expiry is checked lazily on
+   * access. Always 0, if lazy expiry is not enabled.
+   *
+   * @see InternalConfig.Builder#lazyExpiry(boolean)
+   */
+  long getTimerTasksAvoidedCount();
+
   /**
    * Hit rate of the cache
    */
@@ -270,4 +278,10 @@ public interface InternalCacheInfo {
 
   long getScanCount();
 
+  /**
+   * Current number of slots in the hash table. The table expands when entries are added
+   * and shrinks when the number of entries drops, e.g. after a mass eviction.
+   */
+  long getHashTableSize();
+
 }
@@ -26,7 +26,10 @@ import org.cache2k.config.CustomizationReferenceSupplier;
 import org.cache2k.config.CustomizationSupplier;
 import org.cache2k.config.SectionBuilder;
 import org.cache2k.core.StandardCommonMetrics;
+import org.cache2k.core.StripedCommonMetrics;
 import org.cache2k.core.concurrency.ThreadFactoryProvider;
+import org.cache2k.core.eviction.EvictionPolicy;
+import org.cache2k.core.eviction.StandardEvictionPolicy;
 
 /**
  * @author Jens Wilke
@@ -36,13 +39,29 @@ public class InternalConfig implements ConfigSection<InternalConfig, InternalCon
   private static final CommonMetrics.Updater METRICS_BLACKHOLE = new CommonMetrics.BlackHole();
 
   private int evictionSegmentCount = Cache2kConfig.UNSET_INT;
+  private boolean openAddressingHash = false;
+  private boolean primitiveValues = false;
+  private boolean stripedMetrics = false;
+  private boolean admissionFilter = false;
+  private EvictionPolicy evictionPolicy = StandardEvictionPolicy.CLOCK_PRO;
+  private boolean backgroundEviction = false;
+  private long maximumOvershoot = Cache2kConfig.UNSET_LONG;
+  private boolean costAwareEviction = false;
+  private boolean memoryPressureControl = false;
+  private long minimumCapacity = Cache2kConfig.UNSET_LONG;
+  private long maximumCapacity = Cache2kConfig.UNSET_LONG;
+  private boolean adaptiveIdleScan = false;
+  private int idleScanCpuPercent = Cache2kConfig.UNSET_INT;
+  private int timerStripeCount = Cache2kConfig.UNSET_INT;
+  private boolean lazyExpiry = false;
+  private boolean sharedTimer = false;
   private CustomizationSupplier<ThreadFactoryProvider> threadFactoryProvider =
     new CustomizationReferenceSupplier<>(ThreadFactoryProvider.DEFAULT);
   private CustomizationSupplier<CommonMetrics.Updater> commonMetrics = buildContext -> {
     if (buildContext.getConfig().isDisableStatistics()) {
       return METRICS_BLACKHOLE;
     }
-    return new StandardCommonMetrics();
+    return stripedMetrics ? new StripedCommonMetrics() : new StandardCommonMetrics();
   };
 
   public CustomizationSupplier<ThreadFactoryProvider> getThreadFactoryProvider() {
@@ -64,6 +83,182 @@ public class InternalConfig implements ConfigSection<InternalConfig, InternalCon
     this.evictionSegmentCount = evictionSegmentCount;
   }
 
+  public boolean isOpenAddressingHash() {
+    return openAddressingHash;
+  }
+
+  /**
+   * @see Builder#openAddressingHash(boolean)
+   */
+  public void setOpenAddressingHash(boolean openAddressingHash) {
+    this.openAddressingHash = openAddressingHash;
+  }
+
+  public boolean isPrimitiveValues() {
+    return primitiveValues;
+  }
+
+  /**
+   * @see Builder#primitiveValues(boolean)
+   */
+  public void setPrimitiveValues(boolean primitiveValues) {
+    this.primitiveValues = primitiveValues;
+  }
+
+  public boolean isStripedMetrics() {
+    return stripedMetrics;
+  }
+
+  /**
+   * @see Builder#stripedMetrics(boolean)
+   */
+  public void setStripedMetrics(boolean stripedMetrics) {
+    this.stripedMetrics = stripedMetrics;
+  }
+
+  public boolean isAdmissionFilter() {
+    return admissionFilter;
+  }
+
+  /**
+   * @see Builder#admissionFilter(boolean)
+   */
+  public void setAdmissionFilter(boolean admissionFilter) {
+    this.admissionFilter = admissionFilter;
+  }
+
+  public EvictionPolicy getEvictionPolicy() {
+    return evictionPolicy;
+  }
+
+  /**
+   * @see Builder#evictionPolicy(EvictionPolicy)
+   */
+  public void setEvictionPolicy(EvictionPolicy evictionPolicy) {
+    this.evictionPolicy = evictionPolicy;
+  }
+
+  public boolean isBackgroundEviction() {
+    return backgroundEviction;
+  }
+
+  /**
+   * @see Builder#backgroundEviction(boolean)
+   */
+  public void setBackgroundEviction(boolean backgroundEviction) {
+    this.backgroundEviction = backgroundEviction;
+  }
+
+  public long getMaximumOvershoot() {
+    return maximumOvershoot;
+  }
+
+  /**
+   * @see Builder#maximumOvershoot(long)
+   */
+  public void setMaximumOvershoot(long maximumOvershoot) {
+    this.maximumOvershoot = maximumOvershoot;
+  }
+
+  public boolean isCostAwareEviction() {
+    return costAwareEviction;
+  }
+
+  /**
+   * @see Builder#costAwareEviction(boolean)
+   */
+  public void setCostAwareEviction(boolean costAwareEviction) {
+    this.costAwareEviction = costAwareEviction;
+  }
+
+  public boolean isMemoryPressureControl() {
+    return memoryPressureControl;
+  }
+
+  /**
+   * @see Builder#memoryPressureControl(boolean)
+   */
+  public void setMemoryPressureControl(boolean memoryPressureControl) {
+    this.memoryPressureControl = memoryPressureControl;
+  }
+
+  public long getMinimumCapacity() {
+    return minimumCapacity;
+  }
+
+  /**
+   * @see Builder#minimumCapacity(long)
+   */
+  public void setMinimumCapacity(long minimumCapacity) {
+    this.minimumCapacity = minimumCapacity;
+  }
+
+  public long getMaximumCapacity() {
+    return maximumCapacity;
+  }
+
+  /**
+   * @see Builder#maximumCapacity(long)
+   */
+  public void setMaximumCapacity(long maximumCapacity) {
+    this.maximumCapacity = maximumCapacity;
+  }
+
+  public boolean isAdaptiveIdleScan() {
+    return adaptiveIdleScan;
+  }
+
+  /**
+   * @see Builder#adaptiveIdleScan(boolean)
+   */
+  public void setAdaptiveIdleScan(boolean adaptiveIdleScan) {
+    this.adaptiveIdleScan = adaptiveIdleScan;
+  }
+
+  public int getIdleScanCpuPercent() {
+    return idleScanCpuPercent;
+  }
+
+  /**
+   * @see Builder#idleScanCpuPercent(int)
+   */
+  public void setIdleScanCpuPercent(int idleScanCpuPercent) {
+    this.idleScanCpuPercent = idleScanCpuPercent;
+  }
+
+  public int getTimerStripeCount() {
+    return timerStripeCount;
+  }
+
+  /**
+   * @see Builder#timerStripeCount(int)
+   */
+  public void setTimerStripeCount(int timerStripeCount) {
+    this.timerStripeCount = timerStripeCount;
+  }
+
+  public boolean isLazyExpiry() {
+    return lazyExpiry;
+  }
+
+  /**
+   * @see Builder#lazyExpiry(boolean)
+   */
+  public void setLazyExpiry(boolean lazyExpiry) {
+    this.lazyExpiry = lazyExpiry;
+  }
+
+  public boolean isSharedTimer() {
+    return sharedTimer;
+  }
+
+  /**
+   * @see Builder#sharedTimer(boolean)
+   */
+  public void setSharedTimer(boolean sharedTimer) {
+    this.sharedTimer = sharedTimer;
+  }
+
   public CustomizationSupplier<CommonMetrics.Updater> getCommonMetrics() {
     return commonMetrics;
   }
@@ -95,6 +290,186 @@ public class InternalConfig implements ConfigSection<InternalConfig, InternalCon
       return this;
     }
 
+    /**
+     * Use a hash table with open addressing and linear probing instead of the chained hash
+     * table. Lookups need less memory accesses in big caches. Default is {@code false}.
+     */
+    public Builder openAddressingHash(boolean v) {
+      cfg.setOpenAddressingHash(v);
+      return this;
+    }
+
+    /**
+     * Store values of the type {@code Long}, {@code Integer} or {@code Double} as primitive
+     * within the entry, so no boxed value is retained per entry. Values can be read without
+     * boxing via {@link PrimitiveValueCache}. Since values are boxed on each read via the
+     * cache interface, the cache does not return the identical object that was stored.
+     * Default is {@code false}.
+     */
+    public Builder primitiveValues(boolean v) {
+      cfg.setPrimitiveValues(v);
+      return this;
+    }
+
+    /**
+     * Use a counter with striped cells for each metric, see {@link StripedCommonMetrics}.
+     * Avoids contention on the metrics with many cores. Has no effect if
+     * statistics are disabled or the metrics implementation is set via
+     * {@link #commonMetrics(CommonMetrics.Updater)}. Default is {@code false}.
+     */
+    public Builder stripedMetrics(boolean v) {
+      cfg.setStripedMetrics(v);
+      return this;
+    }
+
+    /**
+     * Use a TinyLFU admission filter in front of the eviction algorithm. A new entry
+     * is evicted again, if it is estimated to be accessed less frequently than the
+     * eviction candidate. Improves the hit rate for workloads with scans.
+     * Default is {@code false}.
+     *
+     * @see org.cache2k.core.eviction.FrequencySketch
+     */
+    public Builder admissionFilter(boolean v) {
+      cfg.setAdmissionFilter(v);
+      return this;
+    }
+
+    /**
+     * The eviction algorithm. Default is {@link StandardEvictionPolicy#CLOCK_PRO}.
+     * The policy is used for each eviction segment.
+     */
+    public Builder evictionPolicy(EvictionPolicy v) {
+      cfg.setEvictionPolicy(v);
+      return this;
+    }
+
+    /**
+     * Evict in a separate task using the cache executor. Inserts don't wait for the
+     * eviction and eviction listeners. The cache size may exceed the capacity for a
+     * short time, up to the {@link #maximumOvershoot(long)}. Default is {@code false}.
+     *
+     * @see org.cache2k.core.eviction.BackgroundEviction
+     */
+    public Builder backgroundEviction(boolean v) {
+      cfg.setBackgroundEviction(v);
+      return this;
+    }
+
+    /**
+     * Number of entries, or the weight if a weigher is used, the cache may exceed the
+     * capacity with background eviction. If exceeded, inserting threads evict, too.
+     * Default is 10% of the capacity.
+     */
+    public Builder maximumOvershoot(long v) {
+      cfg.setMaximumOvershoot(v);
+      return this;
+    }
+
+    /**
+     * Measure the load time of each entry and prefer to evict entries that are cheap
+     * to reload. Entries that are not loaded have no cost. Default is {@code false}.
+     *
+     * @see org.cache2k.core.eviction.AbstractEviction#enableCostAwareEviction()
+     */
+    public Builder costAwareEviction(boolean v) {
+      cfg.setCostAwareEviction(v);
+      return this;
+    }
+
+    /**
+     * Shrink the capacity when the heap usage after garbage collection is high and
+     * regrow it when heap is available again, within {@link #minimumCapacity(long)} and
+     * {@link #maximumCapacity(long)}. Default is {@code false}.
+     *
+     * @see org.cache2k.core.capacity.MemoryPressureController
+     */
+    public Builder memoryPressureControl(boolean v) {
+      cfg.setMemoryPressureControl(v);
+      return this;
+    }
+
+    /**
+     * Lower bound of the entry capacity, or the maximum weight if a weigher is used, for
+     * the capacity control at runtime. Default is 10% of the configured capacity.
+     */
+    public Builder minimumCapacity(long v) {
+      cfg.setMinimumCapacity(v);
+      return this;
+    }
+
+    /**
+     * Upper bound of the entry capacity, or the maximum weight if a weigher is used, for
+     * the capacity control at runtime. May be higher than the configured capacity, which
+     * is the initial capacity. Default is the configured capacity.
+     */
+    public Builder maximumCapacity(long v) {
+      cfg.setMaximumCapacity(v);
+      return this;
+    }
+
+    /**
+     * Adapt the idle scan to the cache activity. The scan slows down when there is heavy
+     * traffic on the cache and speeds up when the cache is not used. The time spent
+     * scanning is limited by {@link #idleScanCpuPercent(int)}. Only effective with
+     * {@link org.cache2k.Cache2kBuilder#idleScanTime}. Default is {@code false}.
+     *
+     * @see org.cache2k.core.eviction.IdleScanPacing
+     */
+    public Builder adaptiveIdleScan(boolean v) {
+      cfg.setAdaptiveIdleScan(v);
+      return this;
+    }
+
+    /**
+     * Percentage of one CPU the adaptive idle scan may use. Default is 1 percent.
+     */
+    public Builder idleScanCpuPercent(int v) {
+      cfg.setIdleScanCpuPercent(v);
+      return this;
+    }
+
+    /**
+     * Number of independent timer structures, each with its own lock. More stripes
+     * reduce lock contention of concurrent inserts with expiry, but each stripe needs
+     * memory for its timer wheels. Rounded up to the next power of two. Default is
+     * 1, or depends on the number of processors, if
+     * {@link org.cache2k.Cache2kBuilder#boostConcurrency(boolean)} is enabled.
+     *
+     * @see org.cache2k.core.timing.DefaultTimer
+     */
+    public Builder timerStripeCount(int v) {
+      cfg.setTimerStripeCount(v);
+      return this;
+    }
+
+    /**
+     * Expire without a timer. No timer task is allocated and scheduled per entry,
+     * instead the expiry time is checked when the entry is accessed. Expired entries
+     * stay in the cache until they are replaced, evicted or removed by the idle scan,
+     * so the cache should be bounded or have {@link org.cache2k.Cache2kBuilder#idleScanTime}
+     * set. Expired entries are preferred by the eviction and still count to the entry
+     * count until removed. Cannot be combined with refresh ahead or expiry listeners,
+     * which need a timer. Default is {@code false}.
+     */
+    public Builder lazyExpiry(boolean v) {
+      cfg.setLazyExpiry(v);
+      return this;
+    }
+
+    /**
+     * Use the timer shared by the caches of the cache manager, like all caches do if
+     * {@link org.cache2k.config.Cache2kManagerConfig#setSharedTimer(boolean)} is set.
+     * Only effective with the default time reference, scheduler, executor and timer lag.
+     * Default is {@code false}.
+     *
+     * @see org.cache2k.core.timing.SharedTimer
+     */
+    public Builder sharedTimer(boolean v) {
+      cfg.setSharedTimer(v);
+      return this;
+    }
+
     public Builder threadFactoryProvider(ThreadFactoryProvider v) {
       cfg.setThreadFactoryProvider(new CustomizationReferenceSupplier<>(v));
       return this;
@@ -0,0 +1,58 @@
+package org.cache2k.core.api;
+
+/*-
+ * #%L
+ * cache2k core implementation
+ * %%
+ * Copyright (C) 2000 - 2022 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * Read access to cache values of the types {@code Long}, {@code Integer} or {@code Double}
+ * without boxing. The interface can be retrieved via
+ * {@link org.cache2k.Cache#requestInterface(Class)}.
+ *
+ * <p>The methods have the semantics of {@link org.cache2k.Cache#get(Object)}. If the cache
+ * stores the value as primitive, a hit returns the value without allocating an object.
+ * Otherwise the value is retrieved via {@code get} and converted.
+ *
+ * @author Jens Wilke
+ * @see InternalConfig.Builder#primitiveValues(boolean)
+ */
+public interface PrimitiveValueCache<K> {
+
+  /**
+   * Returns the value mapped to the key, or {@code absentValue} if the value is {@code null}.
+   *
+   * @throws ClassCastException if the value is not a {@link Number}
+   */
+  long getLong(K key, long absentValue);
+
+  /**
+   * Returns the value mapped to the key, or {@code absentValue} if the value is {@code null}.
+   *
+   * @throws ClassCastException if the value is not a {@link Number}
+   */
+  int getInt(K key, int absentValue);
+
+  /**
+   * Returns the value mapped to the key, or {@code absentValue} if the value is {@code null}.
+   *
+   * @throws ClassCastException if the value is not a {@link Number}
+   */
+  double getDouble(K key, double absentValue);
+
+}
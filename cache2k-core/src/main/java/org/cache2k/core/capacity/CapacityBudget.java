@@ -0,0 +1,374 @@
+package org.cache2k.core.capacity;
+
+/*-
+ * #%L
+ * cache2k core implementation
+ * %%
+ * Copyright (C) 2000 - 2022 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.annotation.Nullable;
+import org.cache2k.core.eviction.EvictionMetrics;
+import org.cache2k.core.log.Log;
+import org.cache2k.operation.Scheduler;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * Divides a weight budget among the caches of a manager. Periodically, the capacity
+ * is moved from caches with a low marginal benefit to caches with a high marginal benefit.
+ *
+ * <p>The capacities are only comparable if they have the same unit. The first cache
+ * registered determines whether the budget is a number of entries or a weight. Caches
+ * with the other unit are not added and keep their capacity.
+ *
+ * <p>The marginal benefit is an estimate of the additional hits per unit of capacity, if
+ * the cache had more capacity. The same measure is used for all caches within one
+ * rebalance, so the benefits are comparable:
+ *
+ * <ul>
+ *   <li>A cache that did not evict entries in the period has no benefit, since it does
+ *   not use its current capacity fully.</li>
+ *   <li>If the eviction algorithms of all caches keep a history of evicted entries,
+ *   the benefit is the number of ghost hits in the period divided by the history size.
+ *   A ghost hit is a miss that would have been a hit with a capacity increased by the
+ *   size of the history.</li>
+ *   <li>Otherwise the benefit of every cache is the number of inserts in the period
+ *   divided by the capacity, which is a rough estimate that treats every miss
+ *   as profitable.</li>
+ * </ul>
+ *
+ * <p>Caches with a benefit below {@value #DONOR_BENEFIT_PERCENT} percent of the highest
+ * benefit give up to {@value #DONOR_SHRINK_PERCENT} percent of their capacity, but not
+ * more than {@value #MAXIMUM_TRANSFER_PERCENT} percent of the budget is moved in one
+ * round. The free part of the budget is distributed to the caches proportionally to their
+ * benefit. Small steps make the division converge without oscillation. The capacity of each
+ * cache stays within the bounds of its {@link ControlledCapacity}.
+ *
+ * <p>When a cache is registered and the total capacity exceeds the budget, all caches
+ * shrink proportionally.
+ *
+ * @author Jens Wilke
+ * @see org.cache2k.config.Cache2kManagerConfig#setWeightBudget(long)
+ */
+public class CapacityBudget {
+
+  static final long REBALANCE_INTERVAL_MILLIS = 10_000;
+  static final int DONOR_BENEFIT_PERCENT = 50;
+  static final int DONOR_SHRINK_PERCENT = 20;
+  static final int MAXIMUM_TRANSFER_PERCENT = 5;
+
+  private final Log log = Log.getLog(CapacityBudget.class);
+  private final long budget;
+  private final Map<ControlledCapacity, Member> members = new ConcurrentHashMap<>();
+  private final Object schedulerLock = new Object();
+  private @Nullable Scheduler scheduler;
+  private @Nullable Boolean weighed;
+  private long rebalanceCount;
+  private long transferredCapacity;
+
+  public CapacityBudget(long budget) {
+    if (budget < 1) {
+      throw new IllegalArgumentException("budget must be positive, budget=" + budget);
+    }
+    this.budget = budget;
+  }
+
+  public long getBudget() {
+    return budget;
+  }
+
+  /**
+   * Add a cache. If the total capacity of all caches exceeds the budget, all caches
+   * shrink proportionally.
+   *
+   * @param weighed {@code true}, if the capacity is a maximum weight
+   * @param metrics eviction metrics of the cache, used to estimate the benefit
+   * @return {@code false}, if not added since the capacity unit differs
+   */
+  public synchronized boolean register(ControlledCapacity capacity, boolean weighed,
+                                       Supplier<EvictionMetrics> metrics) {
+    if (members.isEmpty()) {
+      this.weighed = weighed;
+    } else if (this.weighed != weighed) {
+      log.warn("Cache not added to the budget, capacity unit is " +
+        (weighed ? "weight" : "entries") + ", budget unit is " +
+        (this.weighed ? "weight" : "entries") + ", " + capacity);
+      return false;
+    }
+    Member member = new Member(capacity, metrics);
+    member.measure();
+    members.put(capacity, member);
+    Member[] all = members.values().toArray(new Member[0]);
+    long[] target = currentCapacities(all);
+    fitIntoBudget(all, target);
+    apply(all, target);
+    return true;
+  }
+
+  /**
+   * Remove the cache. The capacity is given to the remaining caches on the next rebalance.
+   * Stops the periodic rebalance after the last cache is removed. Does not wait for a
+   * running rebalance, since this is called while the cache is closed.
+   */
+  public void unregister(ControlledCapacity capacity) {
+    members.remove(capacity);
+    synchronized (schedulerLock) {
+      if (members.isEmpty() && scheduler != null) {
+        Scheduler s = scheduler;
+        scheduler = null;
+        if (s instanceof AutoCloseable) {
+          try {
+            ((AutoCloseable) s).close();
+          } catch (Exception ex) {
+            log.warn("Exception closing scheduler", ex);
+          }
+        }
+      }
+    }
+  }
+
+  boolean isRegistered(ControlledCapacity capacity) {
+    return members.containsKey(capacity);
+  }
+
+  /**
+   * Start the periodic rebalance, if not running yet.
+   *
+   * @param schedulerFactory creates the scheduler, which is closed when the last cache
+   *                         is removed
+   */
+  public void startRebalancing(Supplier<Scheduler> schedulerFactory) {
+    synchronized (schedulerLock) {
+      if (scheduler != null || members.isEmpty()) {
+        return;
+      }
+      scheduler = schedulerFactory.get();
+      scheduleRebalance(scheduler);
+    }
+  }
+
+  private void scheduleRebalance(Scheduler s) {
+    try {
+      s.schedule(() -> runScheduledRebalance(s), REBALANCE_INTERVAL_MILLIS);
+    } catch (RejectedExecutionException ignore) {
+      // scheduler was closed concurrently
+    }
+  }
+
+  private void runScheduledRebalance(Scheduler s) {
+    synchronized (schedulerLock) {
+      if (scheduler != s) {
+        return;
+      }
+    }
+    try {
+      rebalance();
+    } catch (Throwable t) {
+      log.warn("Exception during capacity rebalance", t);
+    }
+    synchronized (schedulerLock) {
+      if (scheduler == s) {
+        scheduleRebalance(s);
+      }
+    }
+  }
+
+  /**
+   * Measure the benefit of each cache since the last call and move capacity from caches
+   * with a low benefit to caches with a high benefit.
+   */
+  public synchronized void rebalance() {
+    Member[] all = members.values().toArray(new Member[0]);
+    if (all.length == 0) {
+      return;
+    }
+    rebalanceCount++;
+    boolean allWithHistory = true;
+    for (Member m : all) {
+      m.measure();
+      allWithHistory &= m.hasHistory();
+    }
+    double maxBenefit = 0;
+    for (Member m : all) {
+      m.benefit = allWithHistory ? m.ghostHitBenefit() : m.insertBenefit();
+      maxBenefit = Math.max(maxBenefit, m.benefit);
+    }
+    Arrays.sort(all, Comparator.comparingDouble(m -> m.benefit));
+    long[] target = currentCapacities(all);
+    double threshold = maxBenefit * DONOR_BENEFIT_PERCENT / 100;
+    long quota = Math.max(1, budget * MAXIMUM_TRANSFER_PERCENT / 100);
+    for (int i = 0; i < all.length && all[i].benefit < threshold && quota > 0; i++) {
+      long give = Math.min(quota, Math.max(1, target[i] * DONOR_SHRINK_PERCENT / 100));
+      give = Math.min(give, target[i] - all[i].capacity.getMinimum());
+      if (give > 0) {
+        target[i] -= give;
+        quota -= give;
+      }
+    }
+    long free = fitIntoBudget(all, target);
+    double totalBenefit = 0;
+    for (int i = 0; i < all.length; i++) {
+      if (isReceiver(all[i], target[i], threshold)) {
+        totalBenefit += all[i].benefit;
+      }
+    }
+    for (int i = 0; i < all.length && free > 0; i++) {
+      if (isReceiver(all[i], target[i], threshold)) {
+        long share = (long) (free * (all[i].benefit / totalBenefit));
+        target[i] = Math.min(all[i].capacity.getMaximum(), target[i] + share);
+      }
+    }
+    apply(all, target);
+  }
+
+  /**
+   * The cache gets a share of the free budget, if its benefit is positive and
+   * not far from the highest benefit.
+   */
+  private static boolean isReceiver(Member m, long target, double threshold) {
+    return m.benefit > 0 && m.benefit >= threshold && target < m.capacity.getMaximum();
+  }
+
+  private static long[] currentCapacities(Member[] all) {
+    long[] capacities = new long[all.length];
+    for (int i = 0; i < all.length; i++) {
+      capacities[i] = all[i].capacity.getCapacity();
+    }
+    return capacities;
+  }
+
+  /**
+   * Shrink the target capacities proportionally if they exceed the budget.
+   *
+   * @return the free part of the budget, not negative
+   */
+  private long fitIntoBudget(Member[] all, long[] target) {
+    long total = 0;
+    for (long v : target) {
+      total += v;
+    }
+    if (total <= budget) {
+      return budget - total;
+    }
+    double factor = (double) budget / total;
+    for (int i = 0; i < all.length; i++) {
+      target[i] = Math.max(all[i].capacity.getMinimum(), (long) (target[i] * factor));
+    }
+    return 0;
+  }
+
+  /**
+   * Change the capacity of the caches. Shrink first, so the budget is not exceeded
+   * in between.
+   */
+  private void apply(Member[] all, long[] target) {
+    for (int i = 0; i < all.length; i++) {
+      if (target[i] < all[i].capacity.getCapacity()) {
+        resize(all[i], target[i]);
+      }
+    }
+    for (int i = 0; i < all.length; i++) {
+      if (target[i] > all[i].capacity.getCapacity()) {
+        resize(all[i], target[i]);
+      }
+    }
+  }
+
+  private void resize(Member m, long target) {
+    String reason = String.format("weight budget %d, benefit %.4f", budget, m.benefit);
+    try {
+      transferredCapacity += Math.abs(m.capacity.resize(target, reason));
+    } catch (Throwable t) {
+      log.warn("Exception when changing cache capacity", t);
+    }
+  }
+
+  /**
+   * Sum of the capacity of all registered caches.
+   */
+  public long getAllocated() {
+    long sum = 0;
+    for (ControlledCapacity c : members.keySet()) {
+      sum += c.getCapacity();
+    }
+    return sum;
+  }
+
+  @Override
+  public synchronized String toString() {
+    return "CapacityBudget{budget=" + budget +
+      ", allocated=" + getAllocated() +
+      ", caches=" + members.size() +
+      ", rebalanceCount=" + rebalanceCount +
+      ", transferredCapacity=" + transferredCapacity + "}";
+  }
+
+  /**
+   * A registered cache with the counters at the start of the period.
+   */
+  private static class Member {
+
+    private final ControlledCapacity capacity;
+    private final Supplier<EvictionMetrics> metrics;
+    private long evictedCount;
+    private long ghostHitCount;
+    private long newEntryCount;
+    private long periodEvicted;
+    private long periodGhostHits;
+    private long periodInserts;
+    private long ghostMax;
+    private double benefit;
+
+    Member(ControlledCapacity capacity, Supplier<EvictionMetrics> metrics) {
+      this.capacity = capacity;
+      this.metrics = metrics;
+    }
+
+    /**
+     * Take the counters of the period since the last call.
+     */
+    void measure() {
+      EvictionMetrics m = metrics.get();
+      periodEvicted = m.getEvictedCount() - evictedCount;
+      periodGhostHits = m.getGhostHitCount() - ghostHitCount;
+      periodInserts = m.getNewEntryCount() - newEntryCount;
+      evictedCount = m.getEvictedCount();
+      ghostHitCount = m.getGhostHitCount();
+      newEntryCount = m.getNewEntryCount();
+      ghostMax = m.getGhostMaxSize();
+    }
+
+    boolean hasHistory() {
+      return ghostMax > 0 && ghostMax != Long.MAX_VALUE;
+    }
+
+    double ghostHitBenefit() {
+      return periodEvicted == 0 ? 0 : (double) periodGhostHits / ghostMax;
+    }
+
+    double insertBenefit() {
+      return periodEvicted == 0 ? 0 : (double) periodInserts / capacity.getCapacity();
+    }
+
+  }
+
+}
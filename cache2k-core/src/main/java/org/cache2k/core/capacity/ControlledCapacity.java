@@ -0,0 +1,126 @@
+package org.cache2k.core.capacity;
+
+/*-
+ * #%L
+ * cache2k core implementation
+ * %%
+ * Copyright (C) 2000 - 2022 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.annotation.Nullable;
+import org.cache2k.operation.CacheOperation;
+
+/**
+ * Capacity of a cache, that is changed at runtime by a controller, within a minimum and
+ * maximum bound. The capacity is changed via {@link CacheOperation#changeCapacity(long)}.
+ * The last decision is kept and reported via {@link org.cache2k.operation.CacheInfo}.
+ *
+ * @author Jens Wilke
+ * @see MemoryPressureController
+ */
+public class ControlledCapacity {
+
+  private final CacheOperation operation;
+  private final long minimum;
+  private final long maximum;
+  private long capacity;
+  private long adjustmentCount;
+  private @Nullable String lastDecision;
+
+  /**
+   * @param capacity current capacity of the cache
+   */
+  public ControlledCapacity(CacheOperation operation, long minimum, long maximum, long capacity) {
+    if (minimum < 1 || minimum > maximum) {
+      throw new IllegalArgumentException(
+        "1 <= minimum <= maximum expected, minimum=" + minimum + ", maximum=" + maximum);
+    }
+    this.operation = operation;
+    this.minimum = minimum;
+    this.maximum = maximum;
+    this.capacity = Math.max(minimum, Math.min(maximum, capacity));
+  }
+
+  public long getMinimum() {
+    return minimum;
+  }
+
+  public long getMaximum() {
+    return maximum;
+  }
+
+  public synchronized long getCapacity() {
+    return capacity;
+  }
+
+  /**
+   * Number of capacity changes done by the controller.
+   */
+  public synchronized long getAdjustmentCount() {
+    return adjustmentCount;
+  }
+
+  /**
+   * Description of the last capacity change or {@code null} if never changed.
+   */
+  public synchronized @Nullable String getLastDecision() {
+    return lastDecision;
+  }
+
+  /**
+   * Change the capacity by the factor, limited to the bounds.
+   *
+   * @param reason reason of the change for the reported decision
+   * @return the capacity difference
+   */
+  public synchronized long scale(double factor, String reason) {
+    long current = capacity;
+    long target = (long) (current * factor);
+    if (target == current) {
+      target = factor > 1 ? current + 1 : current - 1;
+    }
+    return resize(target, reason);
+  }
+
+  /**
+   * Change the capacity to the requested value, limited to the bounds. The cache evicts
+   * entries before returning, if the capacity is reduced.
+   *
+   * @param reason reason of the change for the reported decision
+   * @return the capacity difference
+   */
+  public synchronized long resize(long requestedCapacity, String reason) {
+    long target = Math.max(minimum, Math.min(maximum, requestedCapacity));
+    long previous = capacity;
+    if (target == previous) {
+      return 0;
+    }
+    operation.changeCapacity(target);
+    capacity = target;
+    adjustmentCount++;
+    lastDecision = (target < previous ? "shrink " : "grow ") +
+      previous + " -> " + target + ", " + reason;
+    return target - previous;
+  }
+
+  @Override
+  public String toString() {
+    return "ControlledCapacity{minimum=" + minimum + ", maximum=" + maximum +
+      ", capacity=" + getCapacity() + ", adjustmentCount=" + getAdjustmentCount() +
+      ", lastDecision=" + getLastDecision() + "}";
+  }
+
+}
@@ -0,0 +1,284 @@
+package org.cache2k.core.capacity;
+
+/*-
+ * #%L
+ * cache2k core implementation
+ * %%
+ * Copyright (C) 2000 - 2022 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.core.log.Log;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryNotificationInfo;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+/**
+ * Shrinks and regrows the capacity of the registered caches depending on the heap
+ * usage after garbage collection. Caches with a configured minimum and maximum capacity
+ * can use spare heap, and give it back before an {@code OutOfMemoryError} occurs.
+ *
+ * <p>The heap pools that support a collection usage threshold, which is typically the
+ * old generation, are monitored. The controller listens for the notification after
+ * each garbage collection, which is available on the usual JVMs, of the collectors that
+ * collect a monitored pool. A decision is only made if the usage after collection of a
+ * monitored pool changed since the last decision, so collections that do not touch the
+ * monitored pools, like young collections, are ignored. Decisions are at least
+ * {@value #MINIMUM_DECISION_INTERVAL_MILLIS} milliseconds apart, to give the caches time
+ * to release memory. If the usage after garbage collection is above
+ * {@value #HIGH_USAGE_PERCENT} percent of the pool maximum, all registered caches shrink
+ * by {@value #SHRINK_PERCENT} percent. If the usage is below {@value #LOW_USAGE_PERCENT}
+ * percent, the caches grow by {@value #GROW_PERCENT} percent. The gap between the two
+ * thresholds avoids oscillation.
+ *
+ * <p>The collection usage threshold of the pools is a JVM global setting, which is not
+ * changed. A threshold notification set by somebody else is handled like a garbage
+ * collection notification.
+ *
+ * <p>There is one controller per class loader. The listeners are added when the first
+ * cache registers and removed when the last cache unregisters.
+ *
+ * @author Jens Wilke
+ */
+public class MemoryPressureController implements NotificationListener {
+
+  static final int HIGH_USAGE_PERCENT = 85;
+  static final int LOW_USAGE_PERCENT = 60;
+  static final int SHRINK_PERCENT = 20;
+  static final int GROW_PERCENT = 10;
+  static final long MINIMUM_DECISION_INTERVAL_MILLIS = 1000;
+  static final String GC_NOTIFICATION = "com.sun.management.gc.notification";
+
+  private static MemoryPressureController instance;
+
+  /**
+   * The controller for all caches. Listens to the JVM notifications while caches
+   * are registered.
+   */
+  public static synchronized MemoryPressureController getInstance() {
+    if (instance == null) {
+      instance = new MemoryPressureController(true);
+    }
+    return instance;
+  }
+
+  private final Log log = Log.getLog(MemoryPressureController.class);
+  private final Set<ControlledCapacity> caches = new CopyOnWriteArraySet<>();
+  private final List<MemoryPoolMXBean> pools = new ArrayList<>();
+  private final List<NotificationEmitter> emitters = new ArrayList<>();
+  private final boolean listen;
+  private long[] lastCollectionUsed;
+  private long lastDecisionTime = -MINIMUM_DECISION_INTERVAL_MILLIS;
+  private long shrinkCount;
+  private long growCount;
+  private long skippedCount;
+
+  /**
+   * Create a controller without listeners, usage is passed in via
+   * {@link #onMemoryUsage(double)}.
+   */
+  MemoryPressureController() {
+    this(false);
+  }
+
+  private MemoryPressureController(boolean listen) {
+    this.listen = listen;
+  }
+
+  private void install() {
+    Set<String> poolNames = new HashSet<>();
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      if (pool.getType() != MemoryType.HEAP || !pool.isCollectionUsageThresholdSupported()) {
+        continue;
+      }
+      if (pool.getUsage().getMax() <= 0) {
+        continue;
+      }
+      pools.add(pool);
+      poolNames.add(pool.getName());
+    }
+    lastCollectionUsed = collectionUsed();
+    addListener((NotificationEmitter) ManagementFactory.getMemoryMXBean());
+    for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+      if (gc instanceof NotificationEmitter &&
+        Arrays.stream(gc.getMemoryPoolNames()).anyMatch(poolNames::contains)) {
+        addListener((NotificationEmitter) gc);
+      }
+    }
+  }
+
+  private void addListener(NotificationEmitter emitter) {
+    emitter.addNotificationListener(this, null, null);
+    emitters.add(emitter);
+  }
+
+  private void uninstall() {
+    for (NotificationEmitter emitter : emitters) {
+      try {
+        emitter.removeNotificationListener(this);
+      } catch (ListenerNotFoundException ignore) {
+      }
+    }
+    emitters.clear();
+    pools.clear();
+  }
+
+  public synchronized void register(ControlledCapacity cache) {
+    if (caches.add(cache) && listen && emitters.isEmpty()) {
+      install();
+    }
+  }
+
+  public synchronized void unregister(ControlledCapacity cache) {
+    if (caches.remove(cache) && caches.isEmpty()) {
+      uninstall();
+    }
+  }
+
+  boolean isRegistered(ControlledCapacity cache) {
+    return caches.contains(cache);
+  }
+
+  boolean isListening() {
+    return !emitters.isEmpty();
+  }
+
+  @Override
+  public void handleNotification(Notification notification, Object handback) {
+    String type = notification.getType();
+    if (MemoryNotificationInfo.MEMORY_COLLECTION_THRESHOLD_EXCEEDED.equals(type) ||
+      GC_NOTIFICATION.equals(type)) {
+      if (!caches.isEmpty()) {
+        double usage;
+        synchronized (this) {
+          long[] collectionUsed = collectionUsed();
+          usage = usageAfterCollection(collectionUsed);
+          if (!decide(collectionUsed, System.currentTimeMillis())) {
+            return;
+          }
+        }
+        onMemoryUsage(usage);
+      }
+    }
+  }
+
+  /**
+   * Decide about the capacity, if a monitored pool was collected since the last decision
+   * and the minimum interval passed. Otherwise the usage after collection is stale or
+   * the caches had no time to react to the last decision.
+   *
+   * @param collectionUsed used memory after the last collection of each monitored pool
+   * @param now current time in milliseconds
+   * @return {@code true}, if the capacity should be adjusted
+   */
+  synchronized boolean decide(long[] collectionUsed, long now) {
+    if (Arrays.equals(collectionUsed, lastCollectionUsed) ||
+      now - lastDecisionTime < MINIMUM_DECISION_INTERVAL_MILLIS) {
+      skippedCount++;
+      return false;
+    }
+    lastCollectionUsed = collectionUsed;
+    lastDecisionTime = now;
+    return true;
+  }
+
+  private long[] collectionUsed() {
+    long[] used = new long[pools.size()];
+    for (int i = 0; i < used.length; i++) {
+      MemoryUsage afterCollection = pools.get(i).getCollectionUsage();
+      used[i] = afterCollection != null ? afterCollection.getUsed() : -1;
+    }
+    return used;
+  }
+
+  /**
+   * Highest ratio of used memory after garbage collection and maximum memory of the
+   * monitored pools.
+   */
+  private double usageAfterCollection(long[] collectionUsed) {
+    double usage = 0;
+    for (int i = 0; i < collectionUsed.length; i++) {
+      long max = pools.get(i).getUsage().getMax();
+      if (collectionUsed[i] >= 0 && max > 0) {
+        usage = Math.max(usage, (double) collectionUsed[i] / max);
+      }
+    }
+    return usage;
+  }
+
+  /**
+   * Adjust the capacity of all registered caches.
+   *
+   * @param usage ratio of the used heap after garbage collection, between 0 and 1
+   */
+  public void onMemoryUsage(double usage) {
+    String reason = String.format("heap usage after GC %.0f%%", usage * 100);
+    if (usage > HIGH_USAGE_PERCENT / 100D) {
+      long delta = 0;
+      for (ControlledCapacity cache : caches) {
+        delta += scale(cache, 1 - SHRINK_PERCENT / 100D, reason);
+      }
+      if (delta != 0) {
+        synchronized (this) {
+          shrinkCount++;
+        }
+        log.info("Cache capacity reduced by " + -delta + ", " + reason);
+      }
+    } else if (usage < LOW_USAGE_PERCENT / 100D) {
+      long delta = 0;
+      for (ControlledCapacity cache : caches) {
+        delta += scale(cache, 1 + GROW_PERCENT / 100D, reason);
+      }
+      if (delta != 0) {
+        synchronized (this) {
+          growCount++;
+        }
+      }
+    }
+  }
+
+  private long scale(ControlledCapacity cache, double factor, String reason) {
+    try {
+      return cache.scale(factor, reason);
+    } catch (Throwable t) {
+      log.warn("Exception when changing cache capacity", t);
+      return 0;
+    }
+  }
+
+  @Override
+  public synchronized String toString() {
+    return "MemoryPressureController{caches=" + caches.size() +
+      ", pools=" + pools.size() +
+      ", shrinkCount=" + shrinkCount +
+      ", growCount=" + growCount +
+      ", skippedCount=" + skippedCount + "}";
+  }
+
+}
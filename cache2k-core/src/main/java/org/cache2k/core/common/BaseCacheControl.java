@@ -20,14 +20,18 @@ package org.cache2k.core.common;
  * #L%
  */
 
+import org.cache2k.annotation.Nullable;
 import org.cache2k.config.CacheType;
 import org.cache2k.core.api.CommonMetrics;
 import org.cache2k.core.api.InternalCache;
 import org.cache2k.core.api.InternalCacheInfo;
+import org.cache2k.core.capacity.ControlledCapacity;
 import org.cache2k.operation.CacheControl;
 import org.cache2k.operation.CacheStatistics;
 import org.cache2k.operation.TimeReference;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.time.Instant;
 import java.util.concurrent.CompletableFuture;
 
@@ -138,6 +142,18 @@ public class BaseCacheControl implements CacheControl {
     return CompletableFuture.completedFuture(null);
   }
 
+  @Override
+  public CompletableFuture<Void> snapshot(Path path) {
+    CompletableFuture<Void> future = new CompletableFuture<>();
+    try {
+      getCache().snapshot(path);
+      future.complete(null);
+    } catch (IOException | RuntimeException ex) {
+      future.completeExceptionally(ex);
+    }
+    return future;
+  }
+
   @Override
   public boolean isLoaderPresent() {
     return getCache().isLoaderPresent();
@@ -189,4 +205,16 @@ public class BaseCacheControl implements CacheControl {
     return getCache().getTimeReference();
   }
 
+  @Override
+  public long getCapacityAdjustmentCount() {
+    ControlledCapacity capacity = getCache().getControlledCapacity();
+    return capacity != null ? capacity.getAdjustmentCount() : 0;
+  }
+
+  @Override
+  public @Nullable String getLastCapacityAdjustment() {
+    ControlledCapacity capacity = getCache().getControlledCapacity();
+    return capacity != null ? capacity.getLastDecision() : null;
+  }
+
 }
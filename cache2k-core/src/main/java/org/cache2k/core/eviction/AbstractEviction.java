@@ -20,6 +20,7 @@
  * #L%
  */
 
+import org.cache2k.CacheEntry;
 import org.cache2k.config.Cache2kConfig;
 import org.cache2k.core.Entry;
 import org.cache2k.core.ExceptionWrapper;
@@ -27,6 +28,8 @@ import org.cache2k.core.IntegerTo16BitFloatingPoint;
 import org.cache2k.core.api.InternalCacheCloseContext;
 import org.cache2k.operation.Weigher;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.function.Supplier;
 
  /**
@@ -44,6 +47,13 @@ import java.util.function.Supplier;
  * algorithm {@link #findEvictionCandidate()}, mark entry for processing and call
  * the eviction listener,
  *
+ * <p>Optionally a TinyLFU admission filter is used: every new entry is counted in a
+ * {@link FrequencySketch}. When the candidate of the eviction algorithm has a higher
+ * estimated frequency than the most recently inserted entry, the new entry is evicted
+ * instead. Since the entry is already inserted when eviction happens, admission is
+ * decided afterwards. This keeps entries with a long term popularity in the cache
+ * when a scan inserts many entries that are never accessed again.
+ *
  * @author Jens Wilke
  */
 @SuppressWarnings({"WeakerAccess", "SynchronizationOnLocalVariableOrMethodParameter", "unchecked",
@@ -53,6 +63,7 @@ public abstract class AbstractEviction implements Eviction {
   public static final int MINIMAL_CHUNK_SIZE = 4;
   public static final int MAXIMAL_CHUNK_SIZE = 64;
   public static final long MINIMUM_CAPACITY_FOR_CHUNKING = 1000;
+  public static final int MAXIMUM_COST_CREDIT_SKIP = 256;
 
   private final Weigher weigher;
   protected final HeapCacheForEviction heapCache;
@@ -60,6 +71,15 @@ public abstract class AbstractEviction implements Eviction {
   private final InternalEvictionListener listener;
   private final boolean noListenerCall;
   private final boolean noChunking;
+  /**
+   * Frequency of new entries for the admission filter or {@code null} if not enabled.
+   */
+  private final FrequencySketch sketch;
+  /**
+   * The most recently inserted entry, which is the admission candidate. Guarded by lock.
+   */
+  private Entry newcomer;
+  private long admissionRejectedCount;
 
   /**
    * Set when size is reached.
@@ -106,11 +126,38 @@ public abstract class AbstractEviction implements Eviction {
     * @see EvictionMetrics#getIdleNonEvictDrainCount()
     */
    protected long idleNonEvictDrainCount;
+  /**
+   * Triggers the background eviction or {@code null}, if the inserting
+   * thread does the eviction.
+   */
+  private Runnable backgroundEviction;
+  /**
+   * Entries or weight above the capacity, before the inserting thread evicts,
+   * although background eviction is enabled.
+   */
+  private long overshootLimit;
+  private long maxOvershoot;
+  private long overshootEvictionCount;
+  /**
+   * Entries carry a credit based on the load cost, which is spent before they get evicted.
+   */
+  private boolean costAware;
+  private long costCreditSpentCount;
 
    public AbstractEviction(HeapCacheForEviction heapCache, InternalEvictionListener listener,
                           long maxSize, Weigher weigher, long maxWeight,
                           boolean noChunking) {
+     this(heapCache, listener, maxSize, weigher, maxWeight, noChunking, false);
+   }
+
+   /**
+    * @param admissionFilter use the TinyLFU admission filter
+    */
+   public AbstractEviction(HeapCacheForEviction heapCache, InternalEvictionListener listener,
+                          long maxSize, Weigher weigher, long maxWeight,
+                          boolean noChunking, boolean admissionFilter) {
     this.weigher = weigher;
+    sketch = admissionFilter ? new FrequencySketch(maxSize > 0 ? maxSize : 0) : null;
     this.heapCache = heapCache;
     this.listener = listener;
     noListenerCall = listener == InternalEvictionListener.NO_OPERATION;
@@ -140,6 +187,10 @@ public abstract class AbstractEviction implements Eviction {
       if (e.isNotYetInsertedInReplacementList()) {
         insertIntoReplacementList(e);
         newEntryCounter++;
+        if (sketch != null) {
+          sketch.increment(e.hashCode);
+          newcomer = e;
+        }
       } else {
         removeEventually(e);
       }
@@ -280,6 +331,9 @@ public abstract class AbstractEviction implements Eviction {
    * <p>If a weigher is present we might need to evict more than one entry.
    */
   private void evictEventually(int spaceNeeded) {
+    if (backgroundEviction != null && !triggerBackgroundEviction(spaceNeeded)) {
+      return;
+    }
     Entry[] chunk;
     synchronized (lock) {
       chunk = fillEvictionChunk(spaceNeeded);
@@ -301,11 +355,79 @@ public abstract class AbstractEviction implements Eviction {
     }
   }
 
+  /**
+   * Leave the eviction to a background task, which is started via the trigger.
+   * The inserting thread still evicts, if the size or weight exceeds the capacity by
+   * more than the overshoot limit. Called once after construction.
+   */
+  public void enableBackgroundEviction(long overshootLimit, Runnable trigger) {
+    synchronized (lock) {
+      this.overshootLimit = overshootLimit;
+      backgroundEviction = trigger;
+    }
+  }
+
+  /**
+   * Trigger the background eviction, if eviction is needed.
+   *
+   * @return {@code true}, if the overshoot limit is reached and the calling thread
+   *         needs to evict
+   */
+  private boolean triggerBackgroundEviction(int spaceNeeded) {
+    boolean evictInline;
+    synchronized (lock) {
+      if (!isEvictionNeeded(spaceNeeded)) {
+        return false;
+      }
+      long overshoot = isWeigherPresent() ?
+        totalWeight + spaceNeeded - maxWeight :
+        getSize() + spaceNeeded - evictionRunningCount - maxSize;
+      maxOvershoot = Math.max(maxOvershoot, overshoot);
+      evictInline = overshoot > overshootLimit;
+      if (evictInline) {
+        overshootEvictionCount++;
+      }
+    }
+    backgroundEviction.run();
+    return evictInline;
+  }
+
+  /**
+   * Evict until the size is within the capacity. Stops early, if entries cannot be
+   * evicted because they are processed at the moment. With background eviction the
+   * sizes of the eviction algorithm are updated after the capacity is reached, since
+   * the size may be above the capacity before.
+   */
+  @Override
+  public void evictToCapacity() {
+    for (;;) {
+      Entry[] chunk;
+      synchronized (lock) {
+        chunk = fillEvictionChunk(0);
+      }
+      if (chunk == null) {
+        break;
+      }
+      int result = evictChunk(chunk, 0);
+      boolean noProgress = (result >> 1) == 0;
+      boolean needsEviction = (result & 1) > 0;
+      if (noProgress || !needsEviction) {
+        break;
+      }
+    }
+    synchronized (lock) {
+      if (evictionRunningCount == 0 && estimatedEntryCapacity < getSize()) {
+        updatesSizesAfterLimitReached();
+      }
+    }
+  }
+
   private Entry[] fillEvictionChunk(int spaceNeeded) {
     if (!isEvictionNeeded(spaceNeeded)) {
       return null;
     }
-    if (evictionRunningCount == 0 && estimatedEntryCapacity < getSize()) {
+    if (backgroundEviction == null &&
+      evictionRunningCount == 0 && estimatedEntryCapacity < getSize()) {
       updatesSizesAfterLimitReached();
     }
     Entry[] chunk = evictChunkReuse;
@@ -315,11 +437,61 @@ public abstract class AbstractEviction implements Eviction {
     }
     evictionRunningCount += chunk.length;
     for (int i = 0; i < chunk.length; i++) {
-      chunk[i] = findEvictionCandidate();
+      chunk[i] = costAware ? findCostAwareEvictionCandidate() : findEvictionCandidate();
+      if (sketch != null) {
+        chunk[i] = admit(chunk[i]);
+      }
     }
     return chunk;
   }
 
+  /**
+   * Decide whether the newest entry stays in the cache. The estimated frequency of
+   * an entry is the frequency of its insertion plus the hits while in the cache.
+   *
+   * @return the entry to evict
+   */
+  private Entry admit(Entry victim) {
+    Entry candidate = newcomer;
+    newcomer = null;
+    if (candidate == null || candidate == victim || candidate.isRemovedFromReplacementList()) {
+      return victim;
+    }
+    if (estimateFrequency(candidate) < estimateFrequency(victim)) {
+      admissionRejectedCount++;
+      return candidate;
+    }
+    return victim;
+  }
+
+  /**
+   * Called by the eviction algorithm when it detects that the entry was accessed,
+   * which is when the hit counter is examined and reset.
+   *
+   * <p>The admission sketch is not incremented here. The hands pass an entry
+   * a varying number of times, so resident entries would be counted more often than
+   * the newcomers, which are only counted once at insert. The hits of a resident
+   * entry are considered via its hit counter.
+   */
+  protected final void recordAccess(Entry e) {
+    if (costAware) {
+      e.setCostCredit(e.getLoadCost());
+    }
+  }
+
+  /**
+   * The entry had no hits since it was examined the last time or is expired, see
+   * {@link HeapCacheForEviction#isExpired(Entry)}. Expired entries are evicted regardless
+   * of their hits, since they would be a miss on the next access anyway.
+   */
+  protected final boolean isIdleOrExpired(Entry e) {
+    return e.hitCnt == 0 || heapCache.isExpired(e);
+  }
+
+  private long estimateFrequency(Entry e) {
+    return sketch.frequency(e.hashCode) + e.hitCnt;
+  }
+
   private int evictChunk(Entry[] chunk, int spaceNeeded) {
     if (chunk == null) { return 0; }
     int processCount = removeFromHash(chunk);
@@ -381,6 +553,9 @@ public abstract class AbstractEviction implements Eviction {
     estimatedEntryCapacity = getSize();
     updateHotMax();
     resetChunkSize();
+    if (sketch != null) {
+      sketch.ensureCapacity(estimatedEntryCapacity);
+    }
   }
 
    private void resetChunkSize() {
@@ -422,12 +597,17 @@ public abstract class AbstractEviction implements Eviction {
   /**
    * Same as {@link #removeFromHash(Entry[])}
    * Before calling the listener, we need to lock the entry, to keep other
-   * operations or evictions in concurrent tasks away from it.
+   * operations or evictions in concurrent tasks away from it. With batch delivery
+   * the removed entries are copied and passed on after the whole chunk is removed,
+   * so the batch listener is called without any entry in processing state.
    */
+  @SuppressWarnings("unchecked")
   private int removeFromHashWithListener(Entry[] chunk) {
+    List<CacheEntry> evicted = listener.isBatchDelivery() ? new ArrayList<>(chunk.length) : null;
     int processCount = 0;
     for (int i = 0; i < chunk.length; i++) {
       Entry e = chunk[i];
+      if (e == null) { continue; }
       synchronized (e) {
         if (e.isGone() || e.isProcessing()) {
           chunk[i] = null; continue;
@@ -437,10 +617,16 @@ public abstract class AbstractEviction implements Eviction {
       listener.onEvictionFromHeap(e);
       synchronized (e) {
         e.processingDone();
+        if (evicted != null) {
+          evicted.add(heapCache.returnCacheEntry(e));
+        }
         heapCache.removeEntryForEviction(e);
       }
       processCount++;
     }
+    if (evicted != null && !evicted.isEmpty()) {
+      listener.onEvictionFromHeap((List) evicted);
+    }
     return processCount;
   }
 
@@ -475,6 +661,10 @@ public abstract class AbstractEviction implements Eviction {
       int evictionRunningCount = this.evictionRunningCount;
       long scanCount = getScanCount();
       long idleNonEvictDrainCount = this.idleNonEvictDrainCount;
+      long hotMax = getHotMax();
+      long ghostMax = getGhostMax();
+      long ghostHitCount = getGhostHitCount();
+      long maxOvershoot = this.maxOvershoot;
       return new EvictionMetrics() {
         @Override public long getSize() { return size; }
         @Override public long getNewEntryCount() { return newEntryCounter; }
@@ -489,6 +679,10 @@ public abstract class AbstractEviction implements Eviction {
         @Override public int getEvictionRunningCount() { return evictionRunningCount; }
         @Override public long getScanCount() { return scanCount; }
         @Override public long getIdleNonEvictDrainCount() { return idleNonEvictDrainCount; }
+        @Override public long getHotMaxSize() { return hotMax; }
+        @Override public long getGhostMaxSize() { return ghostMax; }
+        @Override public long getGhostHitCount() { return ghostHitCount; }
+        @Override public long getMaxOvershoot() { return maxOvershoot; }
       };
     }
   }
@@ -496,6 +690,86 @@ public abstract class AbstractEviction implements Eviction {
   @Override
   public void close(InternalCacheCloseContext closeContext) { }
 
+  /**
+   * Prefer to evict entries that are cheap to reload, similar to GreedyDual-Size.
+   * The load time of an entry is stored as logarithmic cost class, see
+   * {@link #compressLoadCost(long)}. The cost is a credit that is decreased by one
+   * each time the entry becomes the eviction candidate, so an entry survives as many
+   * additional eviction rounds. The credit is restored when the eviction detects an
+   * access. Called once after construction.
+   */
+  public void enableCostAwareEviction() {
+    synchronized (lock) {
+      costAware = true;
+    }
+  }
+
+  @Override
+  public boolean isLoadCostNeeded() {
+    return costAware;
+  }
+
+  @Override
+  public void updateLoadCost(Entry e, long loadTime) {
+    if (!costAware) {
+      return;
+    }
+    int cost = compressLoadCost(loadTime);
+    synchronized (lock) {
+      e.setLoadCost(cost);
+      e.setCostCredit(cost);
+    }
+  }
+
+  /**
+   * Cost class is the number of significant bits of the load time, e.g. 2 for 2
+   * milliseconds and 11 for 2 seconds with the default time reference.
+   */
+  static int compressLoadCost(long loadTime) {
+    if (loadTime <= 0) {
+      return 0;
+    }
+    return Math.min(Entry.LOAD_COST_MASK, 64 - Long.numberOfLeadingZeros(loadTime));
+  }
+
+  /**
+   * Spend one credit of the candidate. The candidate stays, the eviction
+   * algorithm already moved its hand past it.
+   *
+   * @return true, if the candidate should not be evicted
+   */
+  private boolean spendCostCredit(Entry e) {
+    int credit = e.getCostCredit();
+    if (credit == 0) {
+      return false;
+    }
+    e.setCostCredit(credit - 1);
+    costCreditSpentCount++;
+    return true;
+  }
+
+  /**
+   * Find the next candidate, skipping over entries with cost credit. The eviction
+   * algorithm moves its hand past each returned candidate, so skipping continues with the
+   * next entry. If the algorithm returns a candidate that was already skipped, all
+   * candidates have been looked at, e.g. with a very small cache, and the candidate is
+   * evicted regardless of its credit. Skipping is limited to bound the time spent within
+   * the lock, the credits are spent in the next run.
+   */
+  private Entry findCostAwareEvictionCandidate() {
+    Entry first = findEvictionCandidate();
+    Entry e = first;
+    int skip = MAXIMUM_COST_CREDIT_SKIP;
+    while (skip-- > 0 && spendCostCredit(e)) {
+      Entry next = findEvictionCandidate();
+      if (next == e || next == first) {
+        return next;
+      }
+      e = next;
+    }
+    return e;
+  }
+
    @Override
   public <T> T runLocked(Supplier<T> j) {
     synchronized (lock) {
@@ -517,6 +791,17 @@ public abstract class AbstractEviction implements Eviction {
       }
       s +=
         ", size=" + getSize();
+      if (sketch != null) {
+        s += ", admissionRejected=" + admissionRejectedCount;
+      }
+      if (backgroundEviction != null) {
+        s += ", overshootLimit=" + overshootLimit +
+          ", maxOvershoot=" + maxOvershoot +
+          ", overshootEvictionCount=" + overshootEvictionCount;
+      }
+      if (costAware) {
+        s += ", costCreditSpent=" + costCreditSpentCount;
+      }
       return s;
     }
   }
@@ -560,11 +845,22 @@ public abstract class AbstractEviction implements Eviction {
 
   @Override
   public final long removeAll() {
+    newcomer = null;
     long removedCount = removeAllFromReplacementList();
     totalWeight = 0;
     return removedCount;
   }
 
+  /**
+   * Number of new entries evicted by the admission filter instead of the
+   * candidate chosen by the eviction algorithm.
+   */
+  public long getAdmissionRejectedCount() {
+    synchronized (lock) {
+      return admissionRejectedCount;
+    }
+  }
+
   protected abstract long getSize();
 
   /**
@@ -605,4 +901,34 @@ public abstract class AbstractEviction implements Eviction {
 
   protected abstract long getScanCount();
 
+  /**
+   * Size limit of the hot or protected entries. Guarded by lock.
+   *
+   * @return the limit or -1, if not used by the algorithm
+   * @see EvictionMetrics#getHotMaxSize()
+   */
+  public long getHotMax() {
+    return -1;
+  }
+
+  /**
+   * Maximum number of entries kept in the history of evicted entries. Guarded by lock.
+   *
+   * @return the limit or -1, if not used by the algorithm
+   * @see EvictionMetrics#getGhostMaxSize()
+   */
+  public long getGhostMax() {
+    return -1;
+  }
+
+  /**
+   * Number of entries found in the history of evicted entries. Guarded by lock.
+   *
+   * @return the count or 0, if not used by the algorithm
+   * @see EvictionMetrics#getGhostHitCount()
+   */
+  protected long getGhostHitCount() {
+    return 0;
+  }
+
 }
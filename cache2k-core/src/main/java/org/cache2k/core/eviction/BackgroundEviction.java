@@ -0,0 +1,97 @@
+package org.cache2k.core.eviction;
+
+/*-
+ * #%L
+ * cache2k core implementation
+ * %%
+ * Copyright (C) 2000 - 2022 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.core.api.InternalCacheCloseContext;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs the eviction in a separate task, so inserting threads don't run the eviction
+ * algorithm, remove entries from the hash table or call eviction listeners. Inserts
+ * only trigger the task. The size may exceed the capacity until the task is run. If the
+ * size exceeds the capacity by more than the overshoot limit, the inserting thread
+ * evicts, too.
+ *
+ * @author Jens Wilke
+ * @see AbstractEviction#enableBackgroundEviction(long, Runnable)
+ */
+public class BackgroundEviction extends DelegatingEviction {
+
+  private final Eviction eviction;
+  private final Executor executor;
+  private final AtomicBoolean scheduled = new AtomicBoolean();
+  private final AtomicLong runCount = new AtomicLong();
+  private volatile boolean closed;
+
+  public BackgroundEviction(Eviction eviction, Executor executor) {
+    this.eviction = eviction;
+    this.executor = executor;
+  }
+
+  @Override
+  protected Eviction delegate() {
+    return eviction;
+  }
+
+  /**
+   * Start the eviction task, if not already scheduled. If the executor rejects
+   * the task, the eviction is done by the calling thread.
+   */
+  public void trigger() {
+    if (closed || !scheduled.compareAndSet(false, true)) {
+      return;
+    }
+    try {
+      executor.execute(this::run);
+    } catch (RejectedExecutionException ex) {
+      run();
+    }
+  }
+
+  /**
+   * Reset the scheduled flag before evicting, so entries inserted while
+   * evicting trigger another run.
+   */
+  private void run() {
+    scheduled.set(false);
+    if (closed) {
+      return;
+    }
+    runCount.incrementAndGet();
+    eviction.evictToCapacity();
+  }
+
+  @Override
+  public void close(InternalCacheCloseContext closeContext) {
+    closed = true;
+    super.close(closeContext);
+  }
+
+  @Override
+  public String toString() {
+    return "backgroundEvictionRuns=" + runCount.get() + ", " + super.toString();
+  }
+
+}
@@ -27,14 +27,15 @@ import org.cache2k.core.IntegrityState;
 /**
  * Eviction algorithm inspired from CLOCK Pro with 3 clocks.
  *
- * <p>Uses a static allocation for hot and cold space sizes. No online or dynamic
- * optimization is done yet. However, the hit rate for all measured access traces is better
- * than LRU and resistant to scans.
+ * <p>Uses a static allocation for hot and cold space sizes by default. The hit rate for all
+ * measured access traces is better than LRU and resistant to scans. Optionally, the
+ * hot and cold split is tuned online by a hill climber, see {@link #tune()}.
  *
  * <p>From cache2k version 1.2 to version 1.4 the implementation was simplified and the
  * demotion of hot entries removed. The result achieves similar or better hit rates.
  * Version 2.4 limits the ghost size to 3000 elements. Version 2.6 stops inserting
- * evicted hot entries into ghosts.
+ * evicted hot entries into ghosts. Version 2.8 keeps the ghosts in a compact
+ * {@link GhostHistory} and sizes it in proportion to the capacity again.
  *
  * <p>The Clock-Pro algorithm is explained by the authors in
  * <a href="http://www.ece.eng.wayne.edu/~sjiang/pubs/papers/jiang05_CLOCK-Pro.pdf">CLOCK-Pro:
@@ -47,11 +48,17 @@ import org.cache2k.core.IntegrityState;
 @SuppressWarnings({"WeakerAccess", "rawtypes"})
 public class ClockProPlusEviction extends AbstractEviction {
 
-  static final int MAX_GHOST_ENTRIES = 3_000;
-  static final int GHOST_LOAD_PERCENT = 63;
+  static final int MAX_GHOST_ENTRIES = 1 << 26;
   static final int HOT_MAX_PERCENTAGE = 97;
   static final int HIT_COUNTER_DECREASE_SHIFT = 6;
   static final int GHOST_MAX_PERCENTAGE = 50;
+  static final int TUNE_HOT_MIN_PERMILLE = 500;
+  static final int TUNE_HOT_MAX_PERMILLE = 990;
+  static final int TUNE_STEP_PERMILLE = 20;
+  static final int TUNE_MIN_STEP_PERMILLE = 5;
+  static final double TUNE_RESTART_THRESHOLD = 0.05;
+  static final int TUNE_MIN_PERIOD = 100;
+  static final int TUNE_HIT_SAMPLE_SIZE = 64;
 
   private long hotHits;
   private long coldHits;
@@ -68,42 +75,81 @@ public class ClockProPlusEviction extends AbstractEviction {
   private Entry handCold;
   private Entry handHot;
 
-  private Ghost[] ghosts;
-  private final Ghost ghostHead = new Ghost().shortCircuit();
-  private int ghostSize = 0;
+  private final GhostHistory ghosts = new GhostHistory(1);
   private long hotMax = Long.MAX_VALUE;
-  private long ghostMax = MAX_GHOST_ENTRIES;
+  private long ghostMax = Long.MAX_VALUE;
+
+  private final boolean adaptive;
+  private long tuneCapacity;
+  private int hotMaxPermille = HOT_MAX_PERCENTAGE * 10;
+  private int tuneStep = TUNE_STEP_PERMILLE;
+  private int tuneDirection = 0;
+  private double tunePreviousHitRate = -1;
+  private long tuneInsertCount;
+  private long tuneHitsStart;
+  private long tuneColdHitsStart;
+  private long tuneGhostHitsStart;
+  private long tuneCount;
 
   public ClockProPlusEviction(HeapCacheForEviction heapCache, InternalEvictionListener listener,
                               long maxSize, Weigher weigher, long maxWeight,
                               boolean noChunking) {
-    super(heapCache, listener, maxSize, weigher, maxWeight, noChunking);
+    this(heapCache, listener, maxSize, weigher, maxWeight, noChunking, false);
+  }
+
+  public ClockProPlusEviction(HeapCacheForEviction heapCache, InternalEvictionListener listener,
+                              long maxSize, Weigher weigher, long maxWeight,
+                              boolean noChunking, boolean admissionFilter) {
+    this(heapCache, listener, maxSize, weigher, maxWeight, noChunking, admissionFilter, false);
+  }
+
+  /**
+   * @param adaptive tune the hot and cold space sizes online
+   */
+  public ClockProPlusEviction(HeapCacheForEviction heapCache, InternalEvictionListener listener,
+                              long maxSize, Weigher weigher, long maxWeight,
+                              boolean noChunking, boolean admissionFilter, boolean adaptive) {
+    super(heapCache, listener, maxSize, weigher, maxWeight, noChunking, admissionFilter);
+    this.adaptive = adaptive;
     coldSize = 0;
     hotSize = 0;
     handCold = null;
     handHot = null;
-    ghosts = new Ghost[4];
   }
 
-  private long sumUpListHits(Entry e) {
+  /**
+   * Estimate the hits of the entries in a clock list that are not harvested by a hand yet.
+   * Only up to {@value #TUNE_HIT_SAMPLE_SIZE} entries starting at the hand are inspected and
+   * the result is extrapolated to the list size, so this is constant effort per call.
+   */
+  private static long estimateListHits(Entry e, int size) {
     if (e == null) { return 0; }
     long cnt = 0;
+    int sampled = 0;
     Entry head = e;
     do {
       cnt += e.hitCnt;
+      sampled++;
       e = e.next;
-    } while (e != head);
-    return cnt;
+    } while (e != head && sampled < TUNE_HIT_SAMPLE_SIZE);
+    return cnt * size / sampled;
   }
 
+  @Override
   public long getHotMax() {
     return hotMax;
   }
 
+  @Override
   public long getGhostMax() {
     return ghostMax;
   }
 
+  @Override
+  protected long getGhostHitCount() {
+    return ghostHits;
+  }
+
   /**
    * Updates hot max based on current size. This is called when eviction
    * kicks in so current size is the maximum size this cache should reach
@@ -111,10 +157,67 @@ public class ClockProPlusEviction extends AbstractEviction {
    */
   @Override
   protected void updateHotMax() {
+    if (adaptive) {
+      tuneCapacity = getSize();
+      updateAdaptiveSizes();
+      return;
+    }
     hotMax = getSize() * HOT_MAX_PERCENTAGE / 100;
     ghostMax = getSize() * GHOST_MAX_PERCENTAGE / 100 + 1;
     ghostMax = Math.min(MAX_GHOST_ENTRIES, ghostMax);
-    trimGhostSize();
+    ghosts.setCapacity((int) ghostMax);
+  }
+
+  /**
+   * The ghosts cover the cold space plus the usual percentage of the capacity, so
+   * the ghosts keep detecting entries that would be hits with a bigger cold space.
+   */
+  private void updateAdaptiveSizes() {
+    long size = tuneCapacity;
+    hotMax = size * hotMaxPermille / 1000;
+    ghostMax = size - hotMax + size * GHOST_MAX_PERCENTAGE / 100 + 1;
+    ghostMax = Math.min(MAX_GHOST_ENTRIES, ghostMax);
+    ghosts.setCapacity((int) ghostMax);
+  }
+
+  /**
+   * Hill climber for the hot and cold split, called after inserting as many entries as
+   * the cache holds. The hit rate of the period is compared with the previous period.
+   * If the hit rate dropped, the direction is reversed and the step is halved. After a
+   * bigger change of the hit rate, which indicates a different workload, the climb
+   * continues with the full step. The first step is towards more cold space, if there
+   * were more ghost hits than cold hits. Ghost hits are entries that would have been
+   * hits with a bigger cold space.
+   *
+   * <p>The hit counters are only harvested when the clock hands pass an entry. The hits
+   * of entries not passed yet are estimated by sampling the entries in front of the hands,
+   * see {@link #estimateListHits(Entry, int)}, which avoids scanning all entries.
+   */
+  private void tune() {
+    long hits = hotHits + coldHits +
+      estimateListHits(handHot, hotSize) + estimateListHits(handCold, coldSize);
+    long periodHits = hits - tuneHitsStart;
+    double hitRate = periodHits * 1D / (periodHits + tuneInsertCount);
+    if (tunePreviousHitRate < 0) {
+      long periodGhostHits = ghostHits - tuneGhostHitsStart;
+      long periodColdHits = coldHits - tuneColdHitsStart;
+      tuneDirection = periodGhostHits > periodColdHits ? -1 : 1;
+    } else if (hitRate < tunePreviousHitRate) {
+      tuneDirection = -tuneDirection;
+      tuneStep = Math.max(TUNE_MIN_STEP_PERMILLE, tuneStep >> 1);
+    }
+    if (Math.abs(hitRate - tunePreviousHitRate) > TUNE_RESTART_THRESHOLD) {
+      tuneStep = TUNE_STEP_PERMILLE;
+    }
+    hotMaxPermille = Math.max(TUNE_HOT_MIN_PERMILLE,
+      Math.min(TUNE_HOT_MAX_PERMILLE, hotMaxPermille + tuneDirection * tuneStep));
+    updateAdaptiveSizes();
+    tunePreviousHitRate = hitRate;
+    tuneInsertCount = 0;
+    tuneHitsStart = hits;
+    tuneColdHitsStart = coldHits;
+    tuneGhostHitsStart = ghostHits;
+    tuneCount++;
   }
 
   @Override
@@ -158,7 +261,7 @@ public class ClockProPlusEviction extends AbstractEviction {
   @Override
   public void removeFromReplacementListOnEvict(Entry e) {
     if (!e.isHot()) {
-      insertCopyIntoGhosts(e);
+      ghosts.add(e.hashCode);
     }
     removeFromReplacementList(e);
   }
@@ -186,53 +289,22 @@ public class ClockProPlusEviction extends AbstractEviction {
     }
   }
 
-  private void insertCopyIntoGhosts(Entry e) {
-    int hc = e.hashCode;
-    Ghost g = lookupGhost(hc);
-    if (g != null) {
-      Ghost.moveToFront(ghostHead, g);
-      return;
-    }
-    g = trimGhostSize();
-    if (g == null) {
-      g = new Ghost();
-    }
-    g.hash = hc;
-    insertGhost(g, hc);
-    Ghost.insertInList(ghostHead, g);
-  }
-
-  /**
-   * Reduce ghost size to fit maximum size.
-   *
-   * @return A removed ghost to reuse the object for insert
-   */
-  private Ghost trimGhostSize() {
-    Ghost g = null;
-    while (ghostSize >= getGhostMax()) {
-      g = ghostHead.prev;
-      Ghost.removeFromList(g);
-      boolean f = removeGhost(g, g.hash);
-    }
-    return g;
-  }
-
   public long getSize() {
     return hotSize + coldSize;
   }
 
   @Override
   protected void insertIntoReplacementList(Entry e) {
-    Ghost g = lookupGhost(e.hashCode);
-    if (g != null) {
-      /*
-       * don't remove ghosts here, save object allocations.
-       * removeGhost(g, g.hash);  Ghost.removeFromList(g);
-       */
+    boolean ghostHit = ghosts.contains(e.hashCode);
+    if (ghostHit) {
       ghostHits++;
     }
     e.setScanRound(idleScanRound);
-    if (g != null || (coldSize == 0 && hotSize < getHotMax())) {
+    if (adaptive && hotMax != Long.MAX_VALUE &&
+      ++tuneInsertCount >= Math.max(TUNE_MIN_PERIOD, tuneCapacity)) {
+      tune();
+    }
+    if (e.isHot() || ghostHit || (coldSize == 0 && hotSize < getHotMax())) {
       e.setHot(true);
       hotSize++;
       handHot = Entry.insertIntoTailCyclicList(handHot, e);
@@ -251,7 +323,7 @@ public class ClockProPlusEviction extends AbstractEviction {
   protected Entry findIdleCandidate(int maxScan) {
     if (hotSize > coldSize) {
       Entry e = findIdleInHot(maxScan);
-      return e.hitCnt == 0 ? e : null;
+      return isIdleOrExpired(e) ? e : null;
     }
     if (coldSize > 0) {
       return findEvictionCandidate();
@@ -272,8 +344,7 @@ public class ClockProPlusEviction extends AbstractEviction {
     int initialMaxScan = maxScan;
     Entry hand = handHot;
     while (maxScan-- > 0) {
-      long hitCnt = hand.hitCnt;
-      if (hitCnt == 0) {
+      if (isIdleOrExpired(hand)) {
         handHot = hand.next;
         hotScanCnt += initialMaxScan - maxScan;
         return hand;
@@ -297,6 +368,11 @@ public class ClockProPlusEviction extends AbstractEviction {
     long decrease =
       ((hand.hitCnt + hand.next.hitCnt) >> HIT_COUNTER_DECREASE_SHIFT) + 1;
     while (maxScan-- > 0) {
+      if (heapCache.isExpired(hand)) {
+        coldCandidate = hand;
+        hand = hand.next;
+        break;
+      }
       long hitCnt = hand.hitCnt;
       if (hitCnt < lowestHits) {
         lowestHits = hitCnt;
@@ -306,6 +382,9 @@ public class ClockProPlusEviction extends AbstractEviction {
           break;
         }
       }
+      if (hitCnt > 0) {
+        recordAccess(hand);
+      }
       if (hitCnt < decrease) {
         hand.hitCnt = 0;
         stepOver(hand, 0);
@@ -325,6 +404,8 @@ public class ClockProPlusEviction extends AbstractEviction {
 
   /**
    * Runs cold hand and in turn hot hand to find eviction candidate.
+   * Expired entries are evicted first if found at the hot hand and are not
+   * promoted to hot, see {@link HeapCacheForEviction#isExpired(Entry)}.
    */
   @Override
   protected Entry findEvictionCandidate() {
@@ -332,15 +413,21 @@ public class ClockProPlusEviction extends AbstractEviction {
     if (hotSize > getHotMax() || hand == null) {
       return runHandHot();
     }
+    if (heapCache.isExpired(handHot)) {
+      Entry e = handHot;
+      handHot = e.next;
+      return e;
+    }
     coldRunCnt++;
     int scanCnt = 1;
-    if (hand.hitCnt > 0) {
+    if (hand.hitCnt > 0 && !heapCache.isExpired(hand)) {
       Entry evictFromHot = null;
       do {
         if (hotSize >= getHotMax() && handHot != null) {
           evictFromHot = runHandHot();
         }
         coldHits += hand.hitCnt;
+        recordAccess(hand);
         Entry e = hand;
         hand = Entry.removeFromCyclicList(e);
         coldSize--;
@@ -354,7 +441,7 @@ public class ClockProPlusEviction extends AbstractEviction {
           return evictFromHot;
         }
         scanCnt++;
-      } while (hand != null && hand.hitCnt > 0);
+      } while (hand != null && hand.hitCnt > 0 && !heapCache.isExpired(hand));
     }
     coldScanCnt += scanCnt;
     if (hand == null) {
@@ -372,15 +459,15 @@ public class ClockProPlusEviction extends AbstractEviction {
 
   @Override
   public void checkIntegrity(IntegrityState integrityState) {
-    integrityState.checkEquals("ghostSize == countGhostsInHash()", ghostSize, countGhostsInHash())
+    integrityState
+      .checkEquals("ghosts.getSize() == ghosts.countInTable()",
+        ghosts.getSize(), ghosts.countInTable())
       .check("checkCyclicListIntegrity(handHot)", Entry.checkCyclicListIntegrity(handHot))
       .check("checkCyclicListIntegrity(handCold)", Entry.checkCyclicListIntegrity(handCold))
       .checkEquals("getCyclicListEntryCount(handHot) == hotSize",
         Entry.getCyclicListEntryCount(handHot), hotSize)
       .checkEquals("getCyclicListEntryCount(handCold) == coldSize",
-        Entry.getCyclicListEntryCount(handCold), coldSize)
-      .checkEquals("Ghost.listSize(ghostHead) == ghostSize",
-        Ghost.listSize(ghostHead), ghostSize);
+        Entry.getCyclicListEntryCount(handCold), coldSize);
   }
 
   @Override
@@ -390,11 +477,12 @@ public class ClockProPlusEviction extends AbstractEviction {
         ", coldSize=" + coldSize +
         ", hotSize=" + hotSize +
         ", hotMaxSize=" + getHotMax() +
-        ", ghostSize=" + ghostSize +
+        ", ghostSize=" + ghosts.getSize() +
         ", ghostMaxSize=" + getGhostMax() +
-        ", coldHits=" + (coldHits + sumUpListHits(handCold)) +
-        ", hotHits=" + (hotHits + sumUpListHits(handHot)) +
+        ", coldHits=" + coldHits +
+        ", hotHits=" + hotHits +
         ", ghostHits=" + ghostHits +
+        (adaptive ? ", hotMaxPermille=" + hotMaxPermille + ", tuneCount=" + tuneCount : "") +
         ", coldRunCnt=" + coldRunCnt + // identical to the evictions anyways
         ", coldScanCnt=" + coldScanCnt +
         ", hotRunCnt=" + hotRunCnt +
@@ -402,134 +490,4 @@ public class ClockProPlusEviction extends AbstractEviction {
     }
   }
 
-  private Ghost lookupGhost(int hash) {
-    Ghost[] tab = ghosts;
-    int n = tab.length;
-    int mask = n - 1;
-    int idx = hash & (mask);
-    Ghost e = tab[idx];
-    while (e != null) {
-      if (e.hash == hash) {
-        return e;
-      }
-      e = e.another;
-    }
-    return null;
-  }
-
-  private void insertGhost(Ghost e2, int hash) {
-    Ghost[] tab = ghosts;
-    int n = tab.length;
-    int mask = n - 1;
-    int idx = hash & (mask);
-    e2.another = tab[idx];
-    tab[idx] = e2;
-    ghostSize++;
-    int maxFill = n * GHOST_LOAD_PERCENT / 100;
-    if (ghostSize > maxFill) {
-      expand();
-    }
-  }
-
-  private void expand() {
-    Ghost[] tab = ghosts;
-    int n = tab.length;
-    int mask;
-    int idx;
-    Ghost[] newTab = new Ghost[n * 2];
-    mask = newTab.length - 1;
-    for (Ghost g : tab) {
-      while (g != null) {
-        idx = g.hash & mask;
-        Ghost next = g.another;
-        g.another = newTab[idx];
-        newTab[idx] = g;
-        g = next;
-      }
-    }
-    ghosts = newTab;
-  }
-
-
-  private boolean removeGhost(Ghost g, int hash) {
-    Ghost[] tab = ghosts;
-    int n = tab.length;
-    int mask = n - 1;
-    int idx = hash & (mask);
-    Ghost e = tab[idx];
-    if (e == g) {
-      tab[idx] = e.another;
-      ghostSize--;
-      return true;
-    } else {
-      while (e != null) {
-        Ghost another = e.another;
-        if (another == g) {
-          e.another = another.another;
-          ghostSize--;
-          return true;
-        }
-        e = another;
-      }
-    }
-    return false;
-  }
-
-  private int countGhostsInHash() {
-    int entryCount = 0;
-    for (Ghost e : ghosts) {
-      while (e != null) {
-        entryCount++;
-        e = e.another;
-      }
-    }
-    return entryCount;
-  }
-
-  /**
-   * Ghost representing a entry we have seen and evicted from the cache. We only store
-   * the hash to save memory, since holding the key references may cause a size overhead.
-   */
-  private static class Ghost {
-
-    /** Modified hashcode of the key */
-    int hash;
-    /** Hash table chain */
-    Ghost another;
-    /** LRU double linked list */
-    Ghost next;
-    /** LRU double linked list */
-    Ghost prev;
-
-    Ghost shortCircuit() {
-      return next = prev = this;
-    }
-
-    static void removeFromList(Ghost e) {
-      e.prev.next = e.next;
-      e.next.prev = e.prev;
-      e.next = e.prev = null;
-    }
-
-    static void insertInList(Ghost head, Ghost e) {
-      e.prev = head;
-      e.next = head.next;
-      e.next.prev = e;
-      head.next = e;
-    }
-
-    static void moveToFront(Ghost head, Ghost e) {
-      removeFromList(e);
-      insertInList(head, e);
-    }
-
-    static int listSize(Ghost head) {
-      int count = 0;
-      Ghost e = head;
-      while ((e = e.next) != head) { count++; }
-      return count;
-    }
-
-  }
-
 }
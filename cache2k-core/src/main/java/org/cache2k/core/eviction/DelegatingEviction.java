@@ -55,6 +55,16 @@ public abstract class DelegatingEviction implements Eviction {
     return delegate().updateWeight(e);
   }
 
+  @Override
+  public boolean isLoadCostNeeded() {
+    return delegate().isLoadCostNeeded();
+  }
+
+  @Override
+  public void updateLoadCost(Entry e, long loadTime) {
+    delegate().updateLoadCost(e, loadTime);
+  }
+
   @Override
   public void evictEventuallyBeforeInsertOnSegment(int hashCodeHint) {
     delegate().evictEventuallyBeforeInsertOnSegment(hashCodeHint);
@@ -70,6 +80,11 @@ public abstract class DelegatingEviction implements Eviction {
     delegate().evictEventually();
   }
 
+  @Override
+  public void evictToCapacity() {
+    delegate().evictToCapacity();
+  }
+
   @Override
   public long evictIdleEntries(int maxScan) {
     return delegate().evictIdleEntries(maxScan);
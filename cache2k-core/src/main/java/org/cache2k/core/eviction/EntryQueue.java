@@ -0,0 +1,125 @@
+package org.cache2k.core.eviction;
+
+/*-
+ * #%L
+ * cache2k core implementation
+ * %%
+ * Copyright (C) 2000 - 2022 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.core.Entry;
+
+/**
+ * Queue of entries for the eviction algorithms, based on the cyclic list of the entries.
+ * The head of the list is the oldest entry, the entry before the head is the newest.
+ *
+ * @author Jens Wilke
+ */
+@SuppressWarnings("rawtypes")
+final class EntryQueue {
+
+  private Entry head;
+  private long size;
+  private long scanCount;
+
+  public long getSize() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return head == null;
+  }
+
+  /**
+   * The oldest entry or {@code null} if empty.
+   */
+  public Entry getOldest() {
+    return head;
+  }
+
+  public void add(Entry e) {
+    head = Entry.insertIntoTailCyclicList(head, e);
+    size++;
+  }
+
+  public void remove(Entry e) {
+    head = Entry.removeFromCyclicList(head, e);
+    size--;
+  }
+
+  /**
+   * Move the entry, which must be in this queue, to the newest position.
+   */
+  public void moveToNewest(Entry e) {
+    if (e == head) {
+      head = e.next;
+      return;
+    }
+    remove(e);
+    add(e);
+  }
+
+  /**
+   * Remove all entries without touching the entry locks.
+   *
+   * @return number of removed entries
+   */
+  public long removeAll() {
+    long count = 0;
+    Entry e = head;
+    if (e != null) {
+      do {
+        Entry next = e.next;
+        e.removedFromList();
+        count++;
+        e = next;
+      } while (e != head);
+    }
+    head = null;
+    size = 0;
+    return count;
+  }
+
+  /**
+   * Scan from the oldest entry for an entry without hits. Scanned entries are moved to
+   * the newest position, so subsequent calls return different entries. The hit counter of
+   * entries with hits is reset. Expired entries are returned regardless of their hits.
+   *
+   * @return entry without hits or {@code null}, if not found within the scan limit
+   */
+  public Entry findIdle(int maxScan, int scanRound, HeapCacheForEviction heapCache) {
+    while (maxScan-- > 0 && head != null) {
+      scanCount++;
+      Entry e = head;
+      head = e.next;
+      if (e.hitCnt == 0 || heapCache.isExpired(e)) {
+        return e;
+      }
+      e.hitCnt = 0;
+      e.setScanRound(scanRound);
+    }
+    return null;
+  }
+
+  public long getScanCount() {
+    return scanCount;
+  }
+
+  public boolean checkIntegrity() {
+    return Entry.checkCyclicListIntegrity(head) && Entry.getCyclicListEntryCount(head) == size;
+  }
+
+}
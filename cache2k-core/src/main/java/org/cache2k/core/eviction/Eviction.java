@@ -78,6 +78,14 @@ public interface Eviction extends NeedsClose {
    */
   void evictEventually();
 
+  /**
+   * Evict until the size is within the capacity, checks all segments.
+   * Called by the background eviction.
+   *
+   * @see BackgroundEviction
+   */
+  void evictToCapacity();
+
   /**
    * Scan for idle (no access count since last scan) entries and evict them.
    *
@@ -108,6 +116,21 @@ public interface Eviction extends NeedsClose {
 
   boolean isWeigherPresent();
 
+  /**
+   * True, if the eviction needs the load time of the entries.
+   *
+   * @see #updateLoadCost(Entry, long)
+   */
+  boolean isLoadCostNeeded();
+
+  /**
+   * Record the time it took to load the entry. Called after the loader completed,
+   * the entry lock may be held.
+   *
+   * @param loadTime load time in clock ticks
+   */
+  void updateLoadCost(Entry e, long loadTime);
+
   /**
    * Change the capacity. If capacity is reduced, it will evict entries
    * before returning.
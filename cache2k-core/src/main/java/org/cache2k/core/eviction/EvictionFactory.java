@@ -23,6 +23,7 @@ package org.cache2k.core.eviction;
 import org.cache2k.operation.Weigher;
 import org.cache2k.config.Cache2kConfig;
 import org.cache2k.core.api.InternalCacheBuildContext;
+import org.cache2k.core.api.InternalConfig;
 import org.cache2k.core.SegmentedEviction;
 
 /**
@@ -59,7 +60,8 @@ public class EvictionFactory {
         throw new IllegalArgumentException("entryCapacity of 0 is not supported.");
       }
     }
-    int segmentCountOverride = ctx.internalConfig().getEvictionSegmentCount();
+    InternalConfig internalConfig = ctx.internalConfig();
+    int segmentCountOverride = internalConfig.getEvictionSegmentCount();
     int segmentCount =
       EvictionFactory.determineSegmentCount(
         strictEviction, availableProcessors,
@@ -67,19 +69,58 @@ public class EvictionFactory {
     Eviction[] segments = new Eviction[segmentCount];
     long maxSize = EvictionFactory.determineMaxSize(entryCapacity, segmentCount);
     long maxWeight = EvictionFactory.determineMaxWeight(maximumWeight, segmentCount);
+    boolean admissionFilter = internalConfig.isAdmissionFilter();
+    EvictionPolicy policy = internalConfig.getEvictionPolicy();
     for (int i = 0; i < segments.length; i++) {
-      segments[i]= new ClockProPlusEviction(hc, l, maxSize, weigher, maxWeight, strictEviction);
+      segments[i] = policy.create(hc, l, maxSize, weigher, maxWeight, strictEviction,
+        admissionFilter);
     }
     Eviction eviction = segmentCount == 1 ? segments[0] : new SegmentedEviction(segments);
+    if (internalConfig.isCostAwareEviction()) {
+      for (Eviction segment : segments) {
+        ((AbstractEviction) segment).enableCostAwareEviction();
+      }
+    }
+    if (internalConfig.isBackgroundEviction()) {
+      BackgroundEviction backgroundEviction = new BackgroundEviction(eviction, ctx.getExecutor());
+      long overshootLimit = determineOvershootLimit(internalConfig.getMaximumOvershoot(),
+        weigher != null ? maximumWeight : entryCapacity, segmentCount);
+      for (Eviction segment : segments) {
+        ((AbstractEviction) segment)
+          .enableBackgroundEviction(overshootLimit, backgroundEviction::trigger);
+      }
+      eviction = backgroundEviction;
+    }
     if (config.getIdleScanTime() != null) {
+      IdleScanPacing pacing = null;
+      if (internalConfig.isAdaptiveIdleScan()) {
+        int cpuPercent = internalConfig.getIdleScanCpuPercent();
+        pacing = new IdleScanPacing(
+          cpuPercent < 0 ? IdleScanPacing.DEFAULT_CPU_PERCENT : cpuPercent);
+      }
       IdleScan idleScan =
         new IdleScan(ctx.getTimeReference(), ctx.createScheduler(),
-          eviction, ctx.getTimeReference().toTicks(config.getIdleScanTime()));
+          eviction, ctx.getTimeReference().toTicks(config.getIdleScanTime()),
+          pacing, hc::getHeapHitCount);
       eviction = new IdleScanEviction(eviction, idleScan);
     }
     return eviction;
   }
 
+  /**
+   * Overshoot limit per segment. Default is 10% of the capacity.
+   */
+  public static long determineOvershootLimit(long maximumOvershoot, long capacity,
+                                             int segmentCount) {
+    if (maximumOvershoot < 0) {
+      maximumOvershoot = capacity == Long.MAX_VALUE ? Long.MAX_VALUE : capacity / 10;
+    }
+    if (maximumOvershoot == Long.MAX_VALUE) {
+      return Long.MAX_VALUE;
+    }
+    return (maximumOvershoot + segmentCount - 1) / segmentCount;
+  }
+
   public static long determineMaxSize(long entryCapacity, int segmentCount) {
     if (entryCapacity < 0) {
       return -1;
@@ -93,4 +93,37 @@ public interface EvictionMetrics {
    */
   long getIdleNonEvictDrainCount();
 
+  /**
+   * Current size limit of the hot entries, or protected entries, depending on the
+   * algorithm. Changes over time, if the eviction adapts to the workload.
+   * {@code Long.MAX_VALUE} if the capacity was not reached yet.
+   *
+   * @return the limit or -1, if not used by the algorithm
+   */
+  long getHotMaxSize();
+
+  /**
+   * Current limit of the history of evicted entries.
+   *
+   * @return the limit or -1, if not used by the algorithm
+   */
+  long getGhostMaxSize();
+
+  /**
+   * Number of inserted entries which were found in the history of evicted entries.
+   * A ghost hit is a miss that would have been a hit with more capacity.
+   *
+   * @return the count or 0, if not used by the algorithm
+   */
+  long getGhostHitCount();
+
+  /**
+   * Maximum number of entries or weight above the capacity, when background
+   * eviction is enabled. For multiple eviction segments, this is the sum of the
+   * maximum of each segment.
+   *
+   * @see BackgroundEviction
+   */
+  long getMaxOvershoot();
+
 }
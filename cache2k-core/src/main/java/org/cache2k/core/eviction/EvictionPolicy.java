@@ -0,0 +1,44 @@
+package org.cache2k.core.eviction;
+
+/*-
+ * #%L
+ * cache2k core implementation
+ * %%
+ * Copyright (C) 2000 - 2022 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.operation.Weigher;
+
+/**
+ * Creates the eviction algorithm for one eviction segment. An implementation is
+ * selected per cache via {@link org.cache2k.core.api.InternalConfig.Builder#evictionPolicy}.
+ *
+ * @author Jens Wilke
+ * @see StandardEvictionPolicy
+ */
+@FunctionalInterface
+@SuppressWarnings("rawtypes")
+public interface EvictionPolicy {
+
+  /**
+   * Create the eviction for one segment. Parameters are passed to the
+   * constructor of {@link AbstractEviction}.
+   */
+  AbstractEviction create(HeapCacheForEviction heapCache, InternalEvictionListener listener,
+                          long maxSize, Weigher weigher, long maxWeight,
+                          boolean noChunking, boolean admissionFilter);
+
+}
@@ -0,0 +1,165 @@
+package org.cache2k.core.eviction;
+
+/*-
+ * #%L
+ * cache2k core implementation
+ * %%
+ * Copyright (C) 2000 - 2022 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * Count-min sketch with 4-bit counters to estimate the access frequency of keys
+ * within a time window, as used by the TinyLFU admission policy.
+ *
+ * <p>All counters are packed into one table, 16 counters per long. An item maps to
+ * {@value #DEPTH} counters by double hashing, the frequency is the minimum of them.
+ * An increment only raises the counters that hold the minimum (conservative update),
+ * which keeps the estimate of infrequent items closer to their real frequency.
+ * After a number of increments proportional to the capacity, all counters are halved,
+ * so that the frequency of past accesses decays.
+ *
+ * <p>Not thread safe, used under the eviction lock.
+ *
+ * @author Jens Wilke
+ * @see <a href="https://arxiv.org/abs/1512.00727">TinyLFU: A Highly Efficient Cache Admission
+ *   Policy</a>
+ */
+public class FrequencySketch {
+
+  /**
+   * Maximum value of a counter.
+   */
+  public static final int MAX_FREQUENCY = 15;
+
+  /**
+   * Increments per capacity after which the counters are halved.
+   */
+  static final int SAMPLE_FACTOR = 10;
+
+  /**
+   * Number of counters per item.
+   */
+  static final int DEPTH = 4;
+
+  /**
+   * All bits except the highest bit of every 4-bit counter, to halve all counters
+   * of a long at once.
+   */
+  private static final long LOWER_BITS = ~0x8888888888888888L;
+
+  private long[] table;
+  private int counterMask;
+  private int sampleSize;
+  private int additions;
+  private long resetCount;
+
+  public FrequencySketch(long capacity) {
+    ensureCapacity(capacity);
+  }
+
+  /**
+   * Resize the table for the expected number of distinct items. The counters are
+   * dropped, if the table size changes.
+   */
+  public void ensureCapacity(long capacity) {
+    int maximum = (int) Math.max(1, Math.min(capacity, 1 << 26));
+    int size = Math.max(8, Integer.highestOneBit(maximum - 1) << 1);
+    sampleSize = maximum * SAMPLE_FACTOR;
+    if (table != null && table.length == size) {
+      return;
+    }
+    table = new long[size];
+    counterMask = (size << 4) - 1;
+    additions = 0;
+  }
+
+  /**
+   * Estimated frequency of the item, between 0 and {@value #MAX_FREQUENCY}.
+   */
+  public int frequency(int hashCode) {
+    long hash = spread(hashCode);
+    int h1 = (int) hash;
+    int h2 = (int) (hash >>> 32) | 1;
+    int frequency = MAX_FREQUENCY;
+    for (int i = 0; i < DEPTH; i++) {
+      frequency = Math.min(frequency, counter(h1 + i * h2));
+    }
+    return frequency;
+  }
+
+  /**
+   * Record an access of the item.
+   */
+  public void increment(int hashCode) {
+    long hash = spread(hashCode);
+    int h1 = (int) hash;
+    int h2 = (int) (hash >>> 32) | 1;
+    int minimum = MAX_FREQUENCY;
+    for (int i = 0; i < DEPTH; i++) {
+      minimum = Math.min(minimum, counter(h1 + i * h2));
+    }
+    if (minimum == MAX_FREQUENCY) {
+      return;
+    }
+    for (int i = 0; i < DEPTH; i++) {
+      int position = h1 + i * h2;
+      if (counter(position) == minimum) {
+        position &= counterMask;
+        table[position >>> 4] += 1L << ((position & 15) << 2);
+      }
+    }
+    if (++additions >= sampleSize) {
+      reset();
+    }
+  }
+
+  private int counter(int position) {
+    position &= counterMask;
+    return (int) (table[position >>> 4] >>> ((position & 15) << 2)) & MAX_FREQUENCY;
+  }
+
+  /**
+   * Halve all counters.
+   */
+  private void reset() {
+    for (int i = 0; i < table.length; i++) {
+      table[i] = (table[i] >>> 1) & LOWER_BITS;
+    }
+    additions >>>= 1;
+    resetCount++;
+  }
+
+  /**
+   * Mix the bits of the hash code, so both halves of the result are usable as
+   * independent hashes.
+   */
+  private static long spread(int hashCode) {
+    long hash = hashCode * 0x9e3779b97f4a7c15L;
+    return hash ^ (hash >>> 31);
+  }
+
+  public int getTableSize() {
+    return table.length;
+  }
+
+  /**
+   * Number of times the counters were halved.
+   */
+  public long getResetCount() {
+    return resetCount;
+  }
+
+}
@@ -0,0 +1,189 @@
+package org.cache2k.core.eviction;
+
+/*-
+ * #%L
+ * cache2k core implementation
+ * %%
+ * Copyright (C) 2000 - 2022 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.Arrays;
+
+/**
+ * History of the hash codes of evicted entries with a fixed capacity, used to detect
+ * entries that were evicted recently. Needs 6 to 11 bytes per entry and no objects
+ * are allocated per entry.
+ *
+ * <p>The hash codes are kept in a clock. Adding a hash code that is already in the
+ * history sets its reference bit. When full, the hand moves over the clock, clears the
+ * reference bits and replaces the first hash code without reference bit. This
+ * approximates dropping the least recently added hash code. For the lookup a table
+ * with open addressing and linear probing contains the clock positions.
+ *
+ * @author Jens Wilke
+ */
+final class GhostHistory {
+
+  /**
+   * Marks an empty slot in the table. Positions are stored plus one.
+   */
+  private static final int EMPTY = 0;
+
+  private int[] clock;
+  private long[] referenced;
+  private int hand;
+  private int size;
+  private int[] table;
+  private int mask;
+
+  GhostHistory(int capacity) {
+    allocate(Math.max(1, capacity));
+  }
+
+  private void allocate(int capacity) {
+    clock = new int[capacity];
+    referenced = new long[(capacity + 63) >>> 6];
+    int minTableSize = capacity + capacity / 3;
+    table = new int[Integer.highestOneBit(minTableSize) << 1];
+    mask = table.length - 1;
+    hand = 0;
+    size = 0;
+  }
+
+  /**
+   * Change the capacity. The most recently added hash codes are kept.
+   */
+  public void setCapacity(int capacity) {
+    capacity = Math.max(1, capacity);
+    if (clock.length == capacity) {
+      return;
+    }
+    int count = Math.min(size, capacity);
+    int[] keep = new int[count];
+    int start = size < clock.length ? 0 : hand;
+    int skip = size - count;
+    for (int i = 0; i < count; i++) {
+      keep[i] = clock[(start + skip + i) % clock.length];
+    }
+    allocate(capacity);
+    for (int hashCode : keep) {
+      add(hashCode);
+    }
+  }
+
+  public int getCapacity() {
+    return clock.length;
+  }
+
+  public int getSize() {
+    return size;
+  }
+
+  /**
+   * Add the hash code or set the reference bit, if already present.
+   */
+  public void add(int hashCode) {
+    int slot = find(hashCode);
+    if (slot >= 0) {
+      int pos = table[slot] - 1;
+      referenced[pos >>> 6] |= 1L << pos;
+      return;
+    }
+    int pos;
+    if (size < clock.length) {
+      pos = size++;
+    } else {
+      while ((referenced[hand >>> 6] & 1L << hand) != 0) {
+        referenced[hand >>> 6] &= ~(1L << hand);
+        hand = (hand + 1) % clock.length;
+      }
+      pos = hand;
+      hand = (hand + 1) % clock.length;
+      removeFromTable(find(clock[pos]));
+    }
+    clock[pos] = hashCode;
+    int i = index(hashCode);
+    while (table[i] != EMPTY) {
+      i = (i + 1) & mask;
+    }
+    table[i] = pos + 1;
+  }
+
+  public boolean contains(int hashCode) {
+    return find(hashCode) >= 0;
+  }
+
+  public void clear() {
+    Arrays.fill(table, EMPTY);
+    Arrays.fill(referenced, 0);
+    hand = 0;
+    size = 0;
+  }
+
+  /**
+   * @return table slot of the hash code or -1
+   */
+  private int find(int hashCode) {
+    int i = index(hashCode);
+    int v;
+    while ((v = table[i]) != EMPTY) {
+      if (clock[v - 1] == hashCode) {
+        return i;
+      }
+      i = (i + 1) & mask;
+    }
+    return -1;
+  }
+
+  /**
+   * Clear the table slot and shift the following entries of the probe sequence back.
+   */
+  private void removeFromTable(int i) {
+    int j = i;
+    for (;;) {
+      j = (j + 1) & mask;
+      int v = table[j];
+      if (v == EMPTY) {
+        break;
+      }
+      int k = index(clock[v - 1]);
+      boolean movable = i <= j ? (k <= i || k > j) : (k <= i && k > j);
+      if (movable) {
+        table[i] = v;
+        i = j;
+      }
+    }
+    table[i] = EMPTY;
+  }
+
+  /**
+   * Count entries in the table, for integrity checks.
+   */
+  int countInTable() {
+    int count = 0;
+    for (int v : table) {
+      if (v != EMPTY) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  private int index(int h) {
+    return (h ^ (h >>> 16)) & mask;
+  }
+
+}
@@ -20,7 +20,9 @@ package org.cache2k.core.eviction;
  * #L%
  */
 
+import org.cache2k.CacheEntry;
 import org.cache2k.core.Entry;
+import org.cache2k.core.operation.ExaminationEntry;
 
 /**
  * Interface for the eviction to the heap cache hash. By separating this, the
@@ -31,15 +33,34 @@ import org.cache2k.core.Entry;
  */
 public interface HeapCacheForEviction<K, V> {
 
-  /**
-   * Hash table entry array, used only by random eviction.
-   */
-  Entry<K, V>[] getHashEntries();
-
   /**
    * After removing the entry from the eviction data structure,
    * remove it from the hash table.
    */
   void removeEntryForEviction(Entry<K, V> e);
 
+  /**
+   * Immutable copy of the entry, passed on to the batch eviction listener.
+   */
+  CacheEntry<K, V> returnCacheEntry(ExaminationEntry<K, V> e);
+
+  /**
+   * Number of hits on the heap, used to detect foreground traffic.
+   *
+   * @return the count or 0, if not available
+   */
+  default long getHeapHitCount() {
+    return 0;
+  }
+
+  /**
+   * Entry is expired but not removed, because expiry is checked lazily on access.
+   * Expired entries are preferred for eviction.
+   *
+   * @param e the entry or {@code null}
+   */
+  default boolean isExpired(Entry<K, V> e) {
+    return false;
+  }
+
 }
@@ -21,6 +21,7 @@ package org.cache2k.core.eviction;
  */
 
 import org.cache2k.CacheClosedException;
+import org.cache2k.annotation.Nullable;
 import org.cache2k.core.api.InternalCacheCloseContext;
 import org.cache2k.core.api.NeedsClose;
 import org.cache2k.operation.Scheduler;
@@ -28,6 +29,7 @@ import org.cache2k.operation.TimeReference;
 
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
 
 /**
  * Scans for idle entries. This uses a scheduler to wakeup in regular intervals and adds
@@ -39,6 +41,9 @@ import java.util.concurrent.TimeUnit;
  * If eviction scans are more than needed for a the scan round time, the processing stops
  * and waits for a full round duration.
  *
+ * <p>With {@link IdleScanPacing} the amount of scans in each wakeup adapts to the
+ * foreground traffic of the cache and the scanning time is limited.
+ *
  * @author Jens Wilke
  */
 public class IdleScan implements NeedsClose {
@@ -49,6 +54,8 @@ public class IdleScan implements NeedsClose {
   private final Scheduler scheduler;
   private final TimeReference clock;
   private final Eviction eviction;
+  private final @Nullable IdleScanPacing pacing;
+  private final LongSupplier heapHitCount;
   /** Only for toString output */
   private long lastWakeupTicks;
   private long roundStartTicks = IDLE;
@@ -66,10 +73,22 @@ public class IdleScan implements NeedsClose {
 
   public IdleScan(TimeReference clock, Scheduler scheduler,
                   Eviction eviction, long roundTicks) {
+    this(clock, scheduler, eviction, roundTicks, null, () -> 0);
+  }
+
+  /**
+   * @param pacing adapt the scan to the cache activity, or {@code null}
+   * @param heapHitCount hits of the cache, for detecting foreground traffic
+   */
+  public IdleScan(TimeReference clock, Scheduler scheduler,
+                  Eviction eviction, long roundTicks,
+                  @Nullable IdleScanPacing pacing, LongSupplier heapHitCount) {
     this.scheduler = scheduler;
     this.clock = clock;
     this.eviction = eviction;
     this.roundTicks = roundTicks;
+    this.pacing = pacing;
+    this.heapHitCount = heapHitCount;
     EvictionMetrics metrics = eviction.getMetrics();
     synchronized (this) {
       scheduleIdleWakeup(metrics);
@@ -101,6 +120,7 @@ public class IdleScan implements NeedsClose {
     EvictionMetrics metrics = eviction.getMetrics();
     synchronized (this) {
       long now = clock.ticks();
+      long elapsedTicks = now - lastWakeupTicks;
       lastWakeupTicks = now;
       long expectedScans =
         scansPerRound * (now - roundStartTicks) / roundTicks +
@@ -110,17 +130,31 @@ public class IdleScan implements NeedsClose {
       if (extraScan < -remainingScans || metrics.getSize() == 0) {
         scheduleIdleWakeup(metrics); return;
       }
-      if (extraScan <= 0) { scheduleNextWakeup(wakeupIntervalMillis); return; }
-      if (now >= roundStartTicks + roundTicks) {
+      if (extraScan <= 0 && pacing == null) {
+        scheduleNextWakeup(wakeupIntervalMillis); return;
+      }
+      long dueScans = Math.max(1, scansPerRound * elapsedTicks / roundTicks);
+      if (extraScan > 0 && now >= roundStartTicks + roundTicks) {
         startNewScanRound(now, metrics);
       } else {
         scheduleNextWakeup(wakeupIntervalMillis);
       }
+      if (pacing != null) {
+        long operations = heapHitCount.getAsLong() +
+          metrics.getNewEntryCount() + metrics.getRemovedCount();
+        extraScan = pacing.pace(clock.ticksToMillisCeiling(elapsedTicks), operations,
+          extraScan, dueScans, remainingScans);
+        if (extraScan == 0) { return; }
+      }
     }
     try {
+      long startNanos = pacing != null ? System.nanoTime() : 0;
       long count = eviction.evictIdleEntries(extraScan);
       synchronized (this) {
         evictedCount += count;
+        if (pacing != null) {
+          pacing.recordScan(extraScan, System.nanoTime() - startNanos);
+        }
       }
     } catch (CacheClosedException ignore) { }
   }
@@ -198,7 +232,8 @@ public class IdleScan implements NeedsClose {
       ", idleScanRoundCompleted=" + roundCompleteCount +
       ", idleScanRoundAbort=" + roundAbortCount +
       ", idleEvicted=" + evictedCount +
-      ", idleScanPercent=" + (roundStartTicks == IDLE ? "IDLE" : getIdleScanPercent());
+      ", idleScanPercent=" + (roundStartTicks == IDLE ? "IDLE" : getIdleScanPercent()) +
+      (pacing != null ? ", " + pacing : "");
   }
 
 }
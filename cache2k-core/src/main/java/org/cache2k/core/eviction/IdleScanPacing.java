@@ -0,0 +1,171 @@
+package org.cache2k.core.eviction;
+
+/*-
+ * #%L
+ * cache2k core implementation
+ * %%
+ * Copyright (C) 2000 - 2022 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * Adapts the number of entries the idle scan visits in one wakeup to the activity of the
+ * cache and limits the time spent scanning. The scan is scheduled by {@link IdleScan}
+ * to complete one round in the configured idle scan time. The pacing changes the
+ * scheduled amount:
+ *
+ * <ul>
+ *   <li>If there were no foreground operations since the last wakeup, the scan runs
+ *   ahead of the schedule by {@value #IDLE_SPEEDUP} times the scans due for the elapsed
+ *   time, so the round completes earlier and less work is left for busy periods.</li>
+ *   <li>If there were more than {@value #HEAVY_TRAFFIC_OPERATIONS_PER_SCAN} foreground
+ *   operations per due scan, the scan slows down by factor
+ *   {@value #HEAVY_TRAFFIC_SLOWDOWN}. The missed scans are caught up when the traffic
+ *   calms down. Entries not scanned at the end of a round are scanned in the next
+ *   round.</li>
+ *   <li>The time spent scanning is measured and limited to a percentage of one CPU.
+ *   The unused time is accumulated for up to one second. If the limit is reached, the
+ *   wakeup does not scan.</li>
+ * </ul>
+ *
+ * <p>Foreground operations are heap hits, inserts and removals. Not thread safe, guarded
+ * by the lock of {@link IdleScan}.
+ *
+ * @author Jens Wilke
+ */
+public class IdleScanPacing {
+
+  public static final int DEFAULT_CPU_PERCENT = 1;
+  static final int IDLE_SPEEDUP = 4;
+  static final int HEAVY_TRAFFIC_OPERATIONS_PER_SCAN = 10;
+  static final int HEAVY_TRAFFIC_SLOWDOWN = 4;
+  static final long NANOS_PER_MILLI = 1_000_000;
+  static final long MAXIMUM_BUDGET_MILLIS = 1000;
+
+  private final long nanosPerMilli;
+  private final long maximumBudgetNanos;
+  private long budgetNanos;
+  private long lastOperationCount = -1;
+  /** Due scans under heavy traffic, that are not yet scanned at the reduced rate */
+  private long slowdownCredit;
+  private long scanNanos;
+  private long scanCount;
+  private long speedupCount;
+  private long slowdownCount;
+  private long throttleCount;
+
+  /**
+   * @param cpuPercent percentage of one CPU available for scanning
+   */
+  public IdleScanPacing(int cpuPercent) {
+    if (cpuPercent < 1 || cpuPercent > 100) {
+      throw new IllegalArgumentException("1 <= cpuPercent <= 100 expected, was " + cpuPercent);
+    }
+    nanosPerMilli = NANOS_PER_MILLI * cpuPercent / 100;
+    maximumBudgetNanos = nanosPerMilli * MAXIMUM_BUDGET_MILLIS;
+    budgetNanos = maximumBudgetNanos;
+  }
+
+  /**
+   * Calculate the number of entries to scan in this wakeup.
+   *
+   * @param elapsedMillis time since the last wakeup
+   * @param operationCount current count of foreground operations
+   * @param behindScans scans needed to keep up with the schedule, negative if the
+   *                    scan is ahead of the schedule
+   * @param dueScans scans scheduled for the time since the last wakeup, positive
+   * @param remainingScans scans left in the round after the scheduled scans
+   * @return entries to scan, or 0 if no scan is needed or the CPU limit is reached
+   */
+  public int pace(long elapsedMillis, long operationCount,
+                  long behindScans, long dueScans, long remainingScans) {
+    boolean firstWakeup = lastOperationCount < 0;
+    long operations = firstWakeup ? 0 : operationCount - lastOperationCount;
+    lastOperationCount = operationCount;
+    budgetNanos = Math.min(maximumBudgetNanos, budgetNanos + elapsedMillis * nanosPerMilli);
+    long behind = Math.max(0, behindScans);
+    long scans = behind;
+    if (operations == 0 && !firstWakeup) {
+      scans = Math.min(remainingScans + behindScans, behind + dueScans * IDLE_SPEEDUP);
+      if (scans > behind) {
+        speedupCount++;
+      }
+    } else if (operations > dueScans * HEAVY_TRAFFIC_OPERATIONS_PER_SCAN && behind > 0) {
+      slowdownCredit += dueScans;
+      scans = Math.min(behind, slowdownCredit / HEAVY_TRAFFIC_SLOWDOWN);
+      slowdownCredit -= scans * HEAVY_TRAFFIC_SLOWDOWN;
+      slowdownCount++;
+    } else {
+      slowdownCredit = 0;
+    }
+    if (scans <= 0) {
+      return 0;
+    }
+    if (budgetNanos <= 0) {
+      throttleCount++;
+      return 0;
+    }
+    if (scanCount > 0) {
+      long nanosPerScan = Math.max(1, scanNanos / scanCount);
+      scans = Math.min(scans, Math.max(1, budgetNanos / nanosPerScan));
+    }
+    return (int) Math.min(Integer.MAX_VALUE, scans);
+  }
+
+  /**
+   * Record the cost of a scan.
+   *
+   * @param scanned number of entries scanned
+   * @param nanos time spent
+   */
+  public void recordScan(long scanned, long nanos) {
+    scanCount += scanned;
+    scanNanos += nanos;
+    budgetNanos -= nanos;
+  }
+
+  /** Number of entries scanned by the idle scan */
+  public long getScanCount() {
+    return scanCount;
+  }
+
+  /** Time spent scanning in nanoseconds */
+  public long getScanNanos() {
+    return scanNanos;
+  }
+
+  public long getSpeedupCount() {
+    return speedupCount;
+  }
+
+  public long getSlowdownCount() {
+    return slowdownCount;
+  }
+
+  /** Number of wakeups without scanning, because the CPU limit was reached */
+  public long getThrottleCount() {
+    return throttleCount;
+  }
+
+  @Override
+  public String toString() {
+    return "idleScanCount=" + scanCount +
+      ", idleScanNanosPerEntry=" + (scanCount == 0 ? 0 : scanNanos / scanCount) +
+      ", idleScanSpeedup=" + speedupCount +
+      ", idleScanSlowdown=" + slowdownCount +
+      ", idleScanThrottled=" + throttleCount;
+  }
+
+}
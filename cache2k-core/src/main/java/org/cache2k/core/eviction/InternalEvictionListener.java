@@ -20,8 +20,11 @@ package org.cache2k.core.eviction;
  * #L%
  */
 
+import org.cache2k.CacheEntry;
 import org.cache2k.core.Entry;
 
+import java.util.List;
+
 /**
  * Internal eviction event from eviction. Gets passed on the the application
  * by the cache implementation.
@@ -34,4 +37,18 @@ public interface InternalEvictionListener<K, V> {
 
   void onEvictionFromHeap(Entry<K, V> e);
 
+  /**
+   * {@code true}, if evicted entries are passed on in batches via
+   * {@link #onEvictionFromHeap(List)}, in addition to the call per entry.
+   */
+  default boolean isBatchDelivery() {
+    return false;
+  }
+
+  /**
+   * Called with the copies of a chunk of evicted entries after the entries were removed.
+   * No entry is locked or in processing state, so the call blocks no other operation.
+   */
+  default void onEvictionFromHeap(List<CacheEntry<K, V>> evicted) { }
+
 }
@@ -0,0 +1,197 @@
+package org.cache2k.core.eviction;
+
+/*-
+ * #%L
+ * cache2k core implementation
+ * %%
+ * Copyright (C) 2000 - 2022 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.core.Entry;
+import org.cache2k.core.IntegrityState;
+import org.cache2k.operation.Weigher;
+
+/**
+ * S3-FIFO eviction with a small and a main FIFO queue and a ghost history. New entries
+ * are inserted into the small queue, which takes 10% of the capacity. An entry leaving
+ * the small queue is moved to the main queue, if it was accessed, otherwise it is evicted
+ * and its hash code is recorded in the ghost history. A new entry found in the ghost
+ * history is inserted into the main queue directly. Entries in the main queue are
+ * reinserted while they have hits, with the hit counter capped at 3 and decremented
+ * on each pass. Main queue entries have the hot flag set.
+ *
+ * @author Jens Wilke
+ * @see <a href="https://dl.acm.org/doi/10.1145/3600006.3613147">FIFO queues are all
+ *   you need for cache eviction</a>
+ */
+@SuppressWarnings({"WeakerAccess", "rawtypes"})
+public class S3FifoEviction extends AbstractEviction {
+
+  static final int SMALL_PERCENTAGE = 10;
+  static final int MAX_FREQUENCY = 3;
+
+  private final EntryQueue small = new EntryQueue();
+  private final EntryQueue main = new EntryQueue();
+  private final GhostHistory ghosts = new GhostHistory(1);
+  private long smallMax = Long.MAX_VALUE;
+  private long mainMax = Long.MAX_VALUE;
+  private long ghostHits;
+  private long scanCount;
+
+  public S3FifoEviction(HeapCacheForEviction heapCache, InternalEvictionListener listener,
+                        long maxSize, Weigher weigher, long maxWeight,
+                        boolean noChunking, boolean admissionFilter) {
+    super(heapCache, listener, maxSize, weigher, maxWeight, noChunking, admissionFilter);
+  }
+
+  @Override
+  protected long getSize() {
+    return small.getSize() + main.getSize();
+  }
+
+  @Override
+  protected void insertIntoReplacementList(Entry e) {
+    e.setScanRound(idleScanRound);
+    if (e.isHot()) {
+      main.add(e);
+      return;
+    }
+    if (ghosts.contains(e.hashCode)) {
+      ghostHits++;
+      e.setHot(true);
+      main.add(e);
+      return;
+    }
+    small.add(e);
+  }
+
+  @Override
+  protected void removeFromReplacementList(Entry e) {
+    if (e.isHot()) {
+      main.remove(e);
+    } else {
+      small.remove(e);
+    }
+  }
+
+  /**
+   * Record evicted entries of the small queue in the ghost history.
+   */
+  @Override
+  protected void removeFromReplacementListOnEvict(Entry e) {
+    if (!e.isHot()) {
+      ghosts.add(e.hashCode);
+    }
+    removeFromReplacementList(e);
+  }
+
+  @Override
+  protected long removeAllFromReplacementList() {
+    ghosts.clear();
+    return small.removeAll() + main.removeAll();
+  }
+
+  @Override
+  protected Entry findEvictionCandidate() {
+    for (;;) {
+      scanCount++;
+      if (small.getSize() > smallMax || main.isEmpty()) {
+        Entry e = small.getOldest();
+        if (isIdleOrExpired(e)) {
+          small.moveToNewest(e);
+          return e;
+        }
+        e.hitCnt = 0;
+        recordAccess(e);
+        small.remove(e);
+        e.setHot(true);
+        main.add(e);
+        continue;
+      }
+      Entry e = main.getOldest();
+      if (isIdleOrExpired(e)) {
+        main.moveToNewest(e);
+        return e;
+      }
+      recordAccess(e);
+      e.hitCnt = Math.min(e.hitCnt, MAX_FREQUENCY) - 1;
+      main.moveToNewest(e);
+    }
+  }
+
+  @Override
+  protected Entry findIdleCandidate(int maxScan) {
+    EntryQueue queue = small.getSize() >= main.getSize() ? small : main;
+    return queue.findIdle(maxScan, idleScanRound, heapCache);
+  }
+
+  /**
+   * Update the size of the small queue and the ghost history, which holds
+   * as many entries as the main queue.
+   */
+  @Override
+  protected void updateHotMax() {
+    long size = getSize();
+    smallMax = Math.max(1, size * SMALL_PERCENTAGE / 100);
+    mainMax = size - smallMax;
+    ghosts.setCapacity((int) Math.min(Integer.MAX_VALUE >> 2, mainMax + 1));
+  }
+
+  /**
+   * The main queue, which holds the hot entries.
+   */
+  @Override
+  public long getHotMax() {
+    return mainMax;
+  }
+
+  @Override
+  public long getGhostMax() {
+    return mainMax == Long.MAX_VALUE ? Long.MAX_VALUE : ghosts.getCapacity();
+  }
+
+  @Override
+  protected long getGhostHitCount() {
+    return ghostHits;
+  }
+
+  @Override
+  protected long getScanCount() {
+    return scanCount + small.getScanCount() + main.getScanCount();
+  }
+
+  @Override
+  public void checkIntegrity(IntegrityState integrityState) {
+    integrityState
+      .check("small.checkIntegrity()", small.checkIntegrity())
+      .check("main.checkIntegrity()", main.checkIntegrity())
+      .checkEquals("ghosts.countInTable() == ghosts.getSize()",
+        ghosts.countInTable(), ghosts.getSize());
+  }
+
+  @Override
+  public String toString() {
+    synchronized (lock) {
+      return super.toString() +
+        ", smallSize=" + small.getSize() +
+        ", smallMax=" + smallMax +
+        ", mainSize=" + main.getSize() +
+        ", ghostSize=" + ghosts.getSize() +
+        ", ghostHits=" + ghostHits;
+    }
+  }
+
+}
@@ -0,0 +1,176 @@
+package org.cache2k.core.eviction;
+
+/*-
+ * #%L
+ * cache2k core implementation
+ * %%
+ * Copyright (C) 2000 - 2022 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.core.Entry;
+import org.cache2k.core.IntegrityState;
+import org.cache2k.operation.Weigher;
+
+/**
+ * Segmented LRU eviction with a probation and a protected queue. New entries go into
+ * the probation queue. An entry that was accessed in the probation queue is promoted to
+ * the protected queue, which takes up to 80% of the capacity. Entries leaving the
+ * protected queue are moved back to probation. Entries are evicted from the probation queue.
+ *
+ * <p>Hits are recorded in the entry without a lock, so the recency order is approximated:
+ * entries with hits at the oldest position get a second chance instead of being moved
+ * on each access. Protected entries have the hot flag set.
+ *
+ * @author Jens Wilke
+ */
+@SuppressWarnings({"WeakerAccess", "rawtypes"})
+public class SegmentedLruEviction extends AbstractEviction {
+
+  static final int PROTECTED_PERCENTAGE = 80;
+
+  private final EntryQueue probation = new EntryQueue();
+  private final EntryQueue protectedQueue = new EntryQueue();
+  private long protectedMax = Long.MAX_VALUE;
+  private long scanCount;
+
+  public SegmentedLruEviction(HeapCacheForEviction heapCache, InternalEvictionListener listener,
+                              long maxSize, Weigher weigher, long maxWeight,
+                              boolean noChunking, boolean admissionFilter) {
+    super(heapCache, listener, maxSize, weigher, maxWeight, noChunking, admissionFilter);
+  }
+
+  @Override
+  protected long getSize() {
+    return probation.getSize() + protectedQueue.getSize();
+  }
+
+  @Override
+  protected void insertIntoReplacementList(Entry e) {
+    e.setScanRound(idleScanRound);
+    if (e.isHot()) {
+      protectedQueue.add(e);
+      demoteEventually();
+    } else {
+      probation.add(e);
+    }
+  }
+
+  @Override
+  protected void removeFromReplacementList(Entry e) {
+    if (e.isHot()) {
+      protectedQueue.remove(e);
+    } else {
+      probation.remove(e);
+    }
+  }
+
+  @Override
+  protected void removeFromReplacementListOnEvict(Entry e) {
+    removeFromReplacementList(e);
+  }
+
+  @Override
+  protected long removeAllFromReplacementList() {
+    return probation.removeAll() + protectedQueue.removeAll();
+  }
+
+  @Override
+  protected Entry findEvictionCandidate() {
+    for (;;) {
+      scanCount++;
+      EntryQueue queue = probation.isEmpty() ? protectedQueue : probation;
+      Entry e = queue.getOldest();
+      if (isIdleOrExpired(e)) {
+        queue.moveToNewest(e);
+        return e;
+      }
+      e.hitCnt = 0;
+      recordAccess(e);
+      if (e.isHot()) {
+        protectedQueue.moveToNewest(e);
+      } else {
+        promote(e);
+      }
+    }
+  }
+
+  private void promote(Entry e) {
+    probation.remove(e);
+    e.setHot(true);
+    protectedQueue.add(e);
+    demoteEventually();
+  }
+
+  /**
+   * Move entries from the protected queue to probation, if above the limit.
+   * Entries with hits stay protected.
+   */
+  private void demoteEventually() {
+    while (protectedQueue.getSize() > protectedMax) {
+      scanCount++;
+      Entry e = protectedQueue.getOldest();
+      if (e.hitCnt > 0) {
+        e.hitCnt = 0;
+        recordAccess(e);
+        protectedQueue.moveToNewest(e);
+        continue;
+      }
+      protectedQueue.remove(e);
+      e.setHot(false);
+      probation.add(e);
+    }
+  }
+
+  @Override
+  protected Entry findIdleCandidate(int maxScan) {
+    EntryQueue queue = probation.getSize() >= protectedQueue.getSize() ? probation : protectedQueue;
+    return queue.findIdle(maxScan, idleScanRound, heapCache);
+  }
+
+  @Override
+  protected void updateHotMax() {
+    protectedMax = getSize() * PROTECTED_PERCENTAGE / 100;
+    demoteEventually();
+  }
+
+  @Override
+  public long getHotMax() {
+    return protectedMax;
+  }
+
+  @Override
+  protected long getScanCount() {
+    return scanCount + probation.getScanCount() + protectedQueue.getScanCount();
+  }
+
+  @Override
+  public void checkIntegrity(IntegrityState integrityState) {
+    integrityState
+      .check("probation.checkIntegrity()", probation.checkIntegrity())
+      .check("protectedQueue.checkIntegrity()", protectedQueue.checkIntegrity());
+  }
+
+  @Override
+  public String toString() {
+    synchronized (lock) {
+      return super.toString() +
+        ", probationSize=" + probation.getSize() +
+        ", protectedSize=" + protectedQueue.getSize() +
+        ", protectedMax=" + protectedMax;
+    }
+  }
+
+}
@@ -0,0 +1,129 @@
+package org.cache2k.core.eviction;
+
+/*-
+ * #%L
+ * cache2k core implementation
+ * %%
+ * Copyright (C) 2000 - 2022 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.core.Entry;
+import org.cache2k.core.IntegrityState;
+import org.cache2k.operation.Weigher;
+
+/**
+ * SIEVE eviction. New entries are added at the newest end of a FIFO queue. The hand
+ * moves from the oldest to the newest entry and wraps around. An entry with hits is
+ * kept in place and the hit counter reset, the first entry without hits is evicted.
+ * Unlike CLOCK, retained entries are not moved, so new entries that are not accessed
+ * again are evicted quickly.
+ *
+ * @author Jens Wilke
+ * @see <a href="https://www.usenix.org/conference/nsdi24/presentation/zhang-yazhuo">SIEVE is
+ *   Simpler than LRU: an Efficient Turn-Key Eviction Algorithm for Web Caches</a>
+ */
+@SuppressWarnings({"WeakerAccess", "rawtypes"})
+public class SieveEviction extends AbstractEviction {
+
+  private final EntryQueue queue = new EntryQueue();
+  private Entry hand;
+  private long scanCount;
+
+  public SieveEviction(HeapCacheForEviction heapCache, InternalEvictionListener listener,
+                       long maxSize, Weigher weigher, long maxWeight,
+                       boolean noChunking, boolean admissionFilter) {
+    super(heapCache, listener, maxSize, weigher, maxWeight, noChunking, admissionFilter);
+  }
+
+  @Override
+  protected long getSize() {
+    return queue.getSize();
+  }
+
+  @Override
+  protected void insertIntoReplacementList(Entry e) {
+    e.setScanRound(idleScanRound);
+    queue.add(e);
+  }
+
+  @Override
+  protected void removeFromReplacementList(Entry e) {
+    if (e == hand) {
+      hand = e.next == e ? null : e.next;
+    }
+    queue.remove(e);
+  }
+
+  @Override
+  protected void removeFromReplacementListOnEvict(Entry e) {
+    removeFromReplacementList(e);
+  }
+
+  @Override
+  protected long removeAllFromReplacementList() {
+    hand = null;
+    return queue.removeAll();
+  }
+
+  @Override
+  protected Entry findEvictionCandidate() {
+    Entry e = hand != null ? hand : queue.getOldest();
+    for (;;) {
+      scanCount++;
+      if (isIdleOrExpired(e)) {
+        hand = e.next;
+        return e;
+      }
+      e.hitCnt = 0;
+      recordAccess(e);
+      e = e.next;
+    }
+  }
+
+  @Override
+  protected Entry findIdleCandidate(int maxScan) {
+    Entry e = hand != null ? hand : queue.getOldest();
+    if (e == null) {
+      return null;
+    }
+    while (maxScan-- > 0) {
+      scanCount++;
+      if (isIdleOrExpired(e)) {
+        hand = e.next;
+        return e;
+      }
+      e.hitCnt = 0;
+      e.setScanRound(idleScanRound);
+      e = e.next;
+    }
+    hand = e;
+    return null;
+  }
+
+  @Override
+  protected void updateHotMax() { }
+
+  @Override
+  protected long getScanCount() {
+    return scanCount;
+  }
+
+  @Override
+  public void checkIntegrity(IntegrityState integrityState) {
+    integrityState.check("queue.checkIntegrity()", queue.checkIntegrity());
+  }
+
+}
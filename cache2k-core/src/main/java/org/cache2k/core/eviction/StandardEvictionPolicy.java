@@ -0,0 +1,75 @@
+package org.cache2k.core.eviction;
+
+/*-
+ * #%L
+ * cache2k core implementation
+ * %%
+ * Copyright (C) 2000 - 2022 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.operation.Weigher;
+
+/**
+ * The eviction algorithms available in cache2k.
+ *
+ * @author Jens Wilke
+ */
+@SuppressWarnings("rawtypes")
+public enum StandardEvictionPolicy implements EvictionPolicy {
+
+  /**
+   * The default. Clock-Pro inspired algorithm with hot and cold clocks and ghost entries.
+   */
+  CLOCK_PRO(ClockProPlusEviction::new),
+  /**
+   * Clock-Pro with online tuning of the hot and cold space sizes.
+   */
+  CLOCK_PRO_ADAPTIVE((heapCache, listener, maxSize, weigher, maxWeight, noChunking, filter) ->
+    new ClockProPlusEviction(heapCache, listener, maxSize, weigher, maxWeight, noChunking,
+      filter, true)),
+  /**
+   * Single FIFO queue with a hand that keeps accessed entries in place.
+   */
+  SIEVE(SieveEviction::new),
+  /**
+   * Small and main FIFO queues with a ghost history.
+   */
+  S3_FIFO(S3FifoEviction::new),
+  /**
+   * Probation and protected queue.
+   */
+  SEGMENTED_LRU(SegmentedLruEviction::new),
+  /**
+   * Window queue and segmented LRU main space with a frequency based admission.
+   */
+  W_TINY_LFU(WTinyLfuEviction::new);
+
+  private final EvictionPolicy constructor;
+
+  StandardEvictionPolicy(EvictionPolicy constructor) {
+    this.constructor = constructor;
+  }
+
+  @Override
+  public AbstractEviction create(HeapCacheForEviction heapCache,
+                                 InternalEvictionListener listener,
+                                 long maxSize, Weigher weigher, long maxWeight,
+                                 boolean noChunking, boolean admissionFilter) {
+    return constructor.create(heapCache, listener, maxSize, weigher, maxWeight,
+      noChunking, admissionFilter);
+  }
+
+}
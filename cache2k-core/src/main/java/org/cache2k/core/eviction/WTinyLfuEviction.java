@@ -0,0 +1,254 @@
+package org.cache2k.core.eviction;
+
+/*-
+ * #%L
+ * cache2k core implementation
+ * %%
+ * Copyright (C) 2000 - 2022 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.core.Entry;
+import org.cache2k.core.IntegrityState;
+import org.cache2k.operation.Weigher;
+
+/**
+ * Window TinyLFU eviction. New entries are inserted into a small window queue, which
+ * takes 1% of the capacity. The main space is a segmented LRU with a probation and a
+ * protected queue. An entry leaving the window competes with the oldest probation entry:
+ * the entry with the higher estimated access frequency is kept in probation,
+ * the other one is evicted. The frequency is estimated with a {@link FrequencySketch}
+ * that counts insertions and detected hits.
+ *
+ * <p>Window entries have the eviction flag set, protected entries the hot flag. Hits are
+ * recorded in the entry without a lock, so they are only detected when an entry reaches
+ * the oldest position of its queue. The admission decision is done when eviction
+ * is needed, not when the entry is inserted.
+ *
+ * @author Jens Wilke
+ * @see <a href="https://arxiv.org/abs/1512.00727">TinyLFU: A Highly Efficient Cache
+ *   Admission Policy</a>
+ */
+@SuppressWarnings({"WeakerAccess", "rawtypes"})
+public class WTinyLfuEviction extends AbstractEviction {
+
+  static final int WINDOW_PERCENTAGE = 1;
+  static final int PROTECTED_PERCENTAGE = 80;
+
+  private final EntryQueue window = new EntryQueue();
+  private final EntryQueue probation = new EntryQueue();
+  private final EntryQueue protectedQueue = new EntryQueue();
+  private final FrequencySketch sketch;
+  private long windowMax = Long.MAX_VALUE;
+  private long protectedMax = Long.MAX_VALUE;
+  private long windowRejectedCount;
+  private long scanCount;
+
+  /**
+   * The admission filter is part of the algorithm, so the generic admission filter of
+   * {@link AbstractEviction} is never enabled.
+   */
+  public WTinyLfuEviction(HeapCacheForEviction heapCache, InternalEvictionListener listener,
+                          long maxSize, Weigher weigher, long maxWeight,
+                          boolean noChunking, boolean admissionFilter) {
+    super(heapCache, listener, maxSize, weigher, maxWeight, noChunking, false);
+    sketch = new FrequencySketch(maxSize > 0 ? maxSize : 0);
+  }
+
+  @Override
+  protected long getSize() {
+    return window.getSize() + probation.getSize() + protectedQueue.getSize();
+  }
+
+  @Override
+  protected void insertIntoReplacementList(Entry e) {
+    e.setScanRound(idleScanRound);
+    if (e.isHot()) {
+      protectedQueue.add(e);
+      demoteEventually();
+      return;
+    }
+    sketch.increment(e.hashCode);
+    e.setEvictionFlag(true);
+    window.add(e);
+  }
+
+  @Override
+  protected void removeFromReplacementList(Entry e) {
+    queueOf(e).remove(e);
+  }
+
+  @Override
+  protected void removeFromReplacementListOnEvict(Entry e) {
+    removeFromReplacementList(e);
+  }
+
+  @Override
+  protected long removeAllFromReplacementList() {
+    return window.removeAll() + probation.removeAll() + protectedQueue.removeAll();
+  }
+
+  private EntryQueue queueOf(Entry e) {
+    if (e.isHot()) {
+      return protectedQueue;
+    }
+    return e.isEvictionFlag() ? window : probation;
+  }
+
+  @Override
+  protected Entry findEvictionCandidate() {
+    for (;;) {
+      scanCount++;
+      if (window.getSize() > windowMax) {
+        Entry candidate = window.getOldest();
+        if (!isIdleOrExpired(candidate)) {
+          recordHits(candidate);
+          window.moveToNewest(candidate);
+          continue;
+        }
+        if (probation.isEmpty()) {
+          moveToProbation(candidate);
+          continue;
+        }
+        Entry victim = probation.getOldest();
+        if (!isIdleOrExpired(victim)) {
+          recordHits(victim);
+          promote(victim);
+          continue;
+        }
+        if (heapCache.isExpired(victim) || (!heapCache.isExpired(candidate) &&
+          sketch.frequency(candidate.hashCode) > sketch.frequency(victim.hashCode))) {
+          moveToProbation(candidate);
+          probation.moveToNewest(victim);
+          return victim;
+        }
+        windowRejectedCount++;
+        window.moveToNewest(candidate);
+        return candidate;
+      }
+      EntryQueue queue =
+        !probation.isEmpty() ? probation : !protectedQueue.isEmpty() ? protectedQueue : window;
+      Entry e = queue.getOldest();
+      if (isIdleOrExpired(e)) {
+        queue.moveToNewest(e);
+        return e;
+      }
+      recordHits(e);
+      if (queue == probation) {
+        promote(e);
+      } else {
+        queue.moveToNewest(e);
+      }
+    }
+  }
+
+  private void recordHits(Entry e) {
+    long hits = Math.min(e.hitCnt, FrequencySketch.MAX_FREQUENCY);
+    e.hitCnt = 0;
+    for (long i = 0; i < hits; i++) {
+      sketch.increment(e.hashCode);
+    }
+  }
+
+  private void moveToProbation(Entry e) {
+    window.remove(e);
+    e.setEvictionFlag(false);
+    probation.add(e);
+  }
+
+  private void promote(Entry e) {
+    probation.remove(e);
+    e.setHot(true);
+    protectedQueue.add(e);
+    demoteEventually();
+  }
+
+  /**
+   * Move entries from the protected queue to probation, if above the limit.
+   * Entries with hits stay protected.
+   */
+  private void demoteEventually() {
+    while (protectedQueue.getSize() > protectedMax) {
+      scanCount++;
+      Entry e = protectedQueue.getOldest();
+      if (e.hitCnt > 0) {
+        recordHits(e);
+        protectedQueue.moveToNewest(e);
+        continue;
+      }
+      protectedQueue.remove(e);
+      e.setHot(false);
+      probation.add(e);
+    }
+  }
+
+  @Override
+  protected Entry findIdleCandidate(int maxScan) {
+    EntryQueue queue = window;
+    if (probation.getSize() > queue.getSize()) {
+      queue = probation;
+    }
+    if (protectedQueue.getSize() > queue.getSize()) {
+      queue = protectedQueue;
+    }
+    return queue.findIdle(maxScan, idleScanRound, heapCache);
+  }
+
+  @Override
+  protected void updateHotMax() {
+    long size = getSize();
+    windowMax = Math.max(1, size * WINDOW_PERCENTAGE / 100);
+    protectedMax = (size - windowMax) * PROTECTED_PERCENTAGE / 100;
+    sketch.ensureCapacity(size);
+    while (window.getSize() > windowMax) {
+      moveToProbation(window.getOldest());
+    }
+    demoteEventually();
+  }
+
+  @Override
+  public long getHotMax() {
+    return protectedMax;
+  }
+
+  @Override
+  protected long getScanCount() {
+    return scanCount + window.getScanCount() + probation.getScanCount() +
+      protectedQueue.getScanCount();
+  }
+
+  @Override
+  public void checkIntegrity(IntegrityState integrityState) {
+    integrityState
+      .check("window.checkIntegrity()", window.checkIntegrity())
+      .check("probation.checkIntegrity()", probation.checkIntegrity())
+      .check("protectedQueue.checkIntegrity()", protectedQueue.checkIntegrity());
+  }
+
+  @Override
+  public String toString() {
+    synchronized (lock) {
+      return super.toString() +
+        ", windowSize=" + window.getSize() +
+        ", windowMax=" + windowMax +
+        ", probationSize=" + probation.getSize() +
+        ", protectedSize=" + protectedQueue.getSize() +
+        ", protectedMax=" + protectedMax +
+        ", windowRejected=" + windowRejectedCount +
+        ", sketchResets=" + sketch.getResetCount();
+    }
+  }
+
+}
@@ -21,7 +21,9 @@ package org.cache2k.core.spi;
  */
 
 import org.cache2k.CacheManager;
+import org.cache2k.annotation.Nullable;
 import org.cache2k.config.Cache2kConfig;
+import org.cache2k.config.Cache2kManagerConfig;
 
 /**
  * Plugin interface for the configuration system. Provides a default configuration,
@@ -61,4 +63,11 @@ public interface CacheConfigProvider {
    */
   Iterable<String> getConfiguredCacheNames(CacheManager mgr);
 
+  /**
+   * Configuration of the manager, or {@code null} if not configured.
+   */
+  default @Nullable Cache2kManagerConfig getManagerConfig(CacheManager mgr) {
+    return null;
+  }
+
 }
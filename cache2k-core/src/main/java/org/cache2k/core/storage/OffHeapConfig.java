@@ -0,0 +1,129 @@
+package org.cache2k.core.storage;
+
+/*-
+ * #%L
+ * cache2k core implementation
+ * %%
+ * Copyright (C) 2000 - 2022 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.config.ConfigSection;
+import org.cache2k.config.CustomizationReferenceSupplier;
+import org.cache2k.config.CustomizationSupplier;
+import org.cache2k.config.SectionBuilder;
+
+/**
+ * Configuration section to store the cache values outside the Java heap. The heap entry
+ * keeps the key, the metadata and a reference to the serialized value. Eviction is done
+ * as usual by the entry capacity or the weigher.
+ *
+ * <p>Example: {@code builder.with(OffHeapConfig.class, b -> b.serializer(mySerializer))}.
+ *
+ * @author Jens Wilke
+ * @see OffHeapStorage
+ */
+public class OffHeapConfig implements ConfigSection<OffHeapConfig, OffHeapConfig.Builder> {
+
+  /**
+   * Default size of one slab, 4 MiB.
+   */
+  public static final int DEFAULT_SLAB_SIZE = 4 * 1024 * 1024;
+
+  private CustomizationSupplier<? extends ValueSerializer<?>> serializer;
+  private int slabSize = DEFAULT_SLAB_SIZE;
+  private long maximumBytes = Long.MAX_VALUE;
+
+  public CustomizationSupplier<? extends ValueSerializer<?>> getSerializer() {
+    return serializer;
+  }
+
+  /**
+   * @see Builder#serializer(ValueSerializer)
+   */
+  public void setSerializer(CustomizationSupplier<? extends ValueSerializer<?>> serializer) {
+    this.serializer = serializer;
+  }
+
+  public int getSlabSize() {
+    return slabSize;
+  }
+
+  /**
+   * @see Builder#slabSize(int)
+   */
+  public void setSlabSize(int slabSize) {
+    this.slabSize = slabSize;
+  }
+
+  public long getMaximumBytes() {
+    return maximumBytes;
+  }
+
+  /**
+   * @see Builder#maximumBytes(long)
+   */
+  public void setMaximumBytes(long maximumBytes) {
+    this.maximumBytes = maximumBytes;
+  }
+
+  @Override
+  public Builder builder() {
+    return new Builder(this);
+  }
+
+  public static class Builder implements SectionBuilder<Builder, OffHeapConfig> {
+
+    private final OffHeapConfig cfg;
+
+    public Builder(OffHeapConfig cfg) {
+      this.cfg = cfg;
+    }
+
+    /**
+     * Serializer for the values. Mandatory.
+     */
+    public Builder serializer(ValueSerializer<?> v) {
+      cfg.setSerializer(new CustomizationReferenceSupplier<>(v));
+      return this;
+    }
+
+    /**
+     * Size of one direct buffer the memory is allocated from. Values larger than a slab
+     * are kept on the heap. Default is 4 MiB.
+     */
+    public Builder slabSize(int v) {
+      cfg.setSlabSize(v);
+      return this;
+    }
+
+    /**
+     * Upper bound of the direct memory reserved for the values of the cache. If the limit is
+     * reached, new values are kept on the heap. Eviction should keep the memory usage below
+     * this limit, e.g. by using a weigher based on the serialized size. Default is no limit.
+     */
+    public Builder maximumBytes(long v) {
+      cfg.setMaximumBytes(v);
+      return this;
+    }
+
+    @Override
+    public OffHeapConfig config() {
+      return cfg;
+    }
+
+  }
+
+}
@@ -0,0 +1,40 @@
+package org.cache2k.core.storage;
+
+/*-
+ * #%L
+ * cache2k core implementation
+ * %%
+ * Copyright (C) 2000 - 2022 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * Entry that can reference a value in the off-heap storage. The address of the
+ * block is held in a primitive field, so no object is allocated per value.
+ *
+ * @author Jens Wilke
+ * @see OffHeapStorage
+ */
+public interface OffHeapEntry {
+
+  /**
+   * Address of the block holding the value. Only valid if the value reference in
+   * the entry is an {@link OffHeapValue}.
+   */
+  long getOffHeapAddress();
+
+  void setOffHeapAddress(long address);
+
+}
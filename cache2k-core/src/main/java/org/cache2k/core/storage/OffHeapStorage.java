@@ -0,0 +1,146 @@
+package org.cache2k.core.storage;
+
+/*-
+ * #%L
+ * cache2k core implementation
+ * %%
+ * Copyright (C) 2000 - 2022 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.core.ValueWrapper;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.cache2k.core.Entry;
+import org.cache2k.core.ValueWrapper;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stores the values of a cache outside the Java heap. Values are serialized and copied
+ * into blocks of a {@link SlabAllocator}. The entry keeps the address of the block in a
+ * primitive field, see {@link OffHeapEntry}, and the shared {@link OffHeapValue} of the
+ * allocator as value reference. Exceptions, {@code null} values and wrapped values stay
+ * on the heap. If a value cannot be allocated, because it is larger than a slab or the
+ * memory limit is reached, the value is kept on the heap as well.
+ *
+ * <p>The entry is locked when the methods that modify the storage are called.
+ * Eviction is not affected, the storage holds exactly the values of the entries
+ * that are in the cache.
+ *
+ * @author Jens Wilke
+ * @see OffHeapConfig
+ */
+public class OffHeapStorage<V> {
+
+  private final ValueSerializer<V> serializer;
+  private final int slabSize;
+  private final long maximumBytes;
+  private volatile OffHeapValue.InBlocks blocks;
+  private final AtomicLong rejectedCount = new AtomicLong();
+
+  public OffHeapStorage(ValueSerializer<V> serializer, int slabSize, long maximumBytes) {
+    this.serializer = serializer;
+    this.slabSize = slabSize;
+    this.maximumBytes = maximumBytes;
+    blocks = newBlocks();
+  }
+
+  private OffHeapValue.InBlocks newBlocks() {
+    return new OffHeapValue.InBlocks(this, new SlabAllocator(slabSize, maximumBytes));
+  }
+
+  /**
+   * Store the new value. If the value is moved off the heap, the address is set in
+   * the entry before the returned reference is set, so a reader that sees the
+   * reference sees the address of the value or of a later update.
+   *
+   * @param e the entry, which implements {@link OffHeapEntry}
+   * @param valueOrWrapper the new value or wrapper
+   * @return the object to store in the entry
+   */
+  @SuppressWarnings("unchecked")
+  public Object store(Entry<?, ?> e, Object valueOrWrapper) {
+    if (valueOrWrapper == null || valueOrWrapper instanceof ValueWrapper) {
+      return valueOrWrapper;
+    }
+    byte[] bytes = serializer.serialize((V) valueOrWrapper);
+    OffHeapValue.InBlocks b = blocks;
+    long address = b.getAllocator().allocateBlock(bytes);
+    if (address < 0) {
+      rejectedCount.incrementAndGet();
+      return valueOrWrapper;
+    }
+    ((OffHeapEntry) e).setOffHeapAddress(address);
+    return b;
+  }
+
+  /**
+   * The entry got a new value, release the previous one. Called after the new
+   * value is set in the entry, so a concurrent reader of the previous value
+   * can retry with the current value of the entry.
+   *
+   * @param previous the raw reference previously stored in the entry
+   * @param previousAddress the address the entry held before the update
+   */
+  public void replaced(Object previous, long previousAddress) {
+    if (previous instanceof OffHeapValue.InBlocks) {
+      ((OffHeapValue.InBlocks) previous).free(previousAddress);
+    }
+  }
+
+  /**
+   * The entry was removed from the cache. Copy the bytes to the heap for readers that
+   * still hold the entry and free the block.
+   */
+  public void remove(Entry<?, ?> e) {
+    Object v = e.getRawValueOrWrapper();
+    if (v instanceof OffHeapValue.InBlocks) {
+      OffHeapValue.InBlocks b = (OffHeapValue.InBlocks) v;
+      long address = ((OffHeapEntry) e).getOffHeapAddress();
+      e.setValueOrWrapper(new OffHeapValue.Detached(this, b.read(address)));
+      b.free(address);
+    }
+  }
+
+  V deserialize(byte[] bytes) {
+    return serializer.deserialize(bytes);
+  }
+
+  /**
+   * Drop all values. Entries that are still referenced keep the previous allocator,
+   * its memory is reclaimed by the garbage collector when the last entry is gone.
+   */
+  public void clear() {
+    blocks = newBlocks();
+  }
+
+  public long getUsedBytes() {
+    return blocks.getAllocator().getUsedBytes();
+  }
+
+  public long getReservedBytes() {
+    return blocks.getAllocator().getReservedBytes();
+  }
+
+  /**
+   * Number of values kept on the heap because no block could be allocated.
+   */
+  public long getRejectedCount() {
+    return rejectedCount.get();
+  }
+
+}
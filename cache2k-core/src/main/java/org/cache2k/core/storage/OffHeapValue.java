@@ -0,0 +1,135 @@
+package org.cache2k.core.storage;
+
+/*-
+ * #%L
+ * cache2k core implementation
+ * %%
+ * Copyright (C) 2000 - 2022 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.core.Entry;
+
+/**
+ * Value reference stored in an entry whose value is not held on the heap directly.
+ *
+ * <p>While the entry is in the cache, the reference is the {@link InBlocks} instance of
+ * the current allocator, which is shared by all entries. The address of the block is
+ * held by the entry, see {@link OffHeapEntry}, so no object is allocated per value.
+ * When the entry is removed, the bytes are copied to a {@link Detached} reference before
+ * the block is freed, so a thread that still holds the entry can read the value.
+ *
+ * @author Jens Wilke
+ */
+public abstract class OffHeapValue {
+
+  /**
+   * Read and deserialize the value of the entry.
+   */
+  public abstract Object load(Entry<?, ?> e);
+
+  /**
+   * The value of an entry is stored in a block of the allocator.
+   *
+   * <p>Readers access the entry without the entry lock. A block is freed only after the
+   * entry does not reference it any more and while holding the lock stripe of the
+   * address. A reader takes the stripe lock and checks that the entry still references
+   * the block, so the block cannot be freed and reused while it is read. If the entry
+   * got the same address again, the block holds the current value, so there is no
+   * ABA problem.
+   */
+  static final class InBlocks extends OffHeapValue {
+
+    private static final int LOCK_STRIPES = 64;
+
+    private final OffHeapStorage<?> storage;
+    private final SlabAllocator allocator;
+    private final Object[] locks = new Object[LOCK_STRIPES];
+
+    InBlocks(OffHeapStorage<?> storage, SlabAllocator allocator) {
+      this.storage = storage;
+      this.allocator = allocator;
+      for (int i = 0; i < LOCK_STRIPES; i++) {
+        locks[i] = new Object();
+      }
+    }
+
+    SlabAllocator getAllocator() {
+      return allocator;
+    }
+
+    private Object lock(long address) {
+      return locks[(int) ((address * 0x9E3779B97F4A7C15L) >>> 58)];
+    }
+
+    @Override
+    public Object load(Entry<?, ?> e) {
+      OffHeapEntry oe = (OffHeapEntry) e;
+      for (;;) {
+        long address = oe.getOffHeapAddress();
+        byte[] bytes = null;
+        synchronized (lock(address)) {
+          if (e.getRawValueOrWrapper() != this) {
+            return e.getValueOrWrapper();
+          }
+          if (oe.getOffHeapAddress() == address) {
+            bytes = allocator.readBlock(address);
+          }
+        }
+        if (bytes != null) {
+          return storage.deserialize(bytes);
+        }
+      }
+    }
+
+    /**
+     * Read the block. The entry is locked, so the block is not freed concurrently.
+     */
+    byte[] read(long address) {
+      return allocator.readBlock(address);
+    }
+
+    /**
+     * Free the block, after the entry does not reference it any more.
+     */
+    void free(long address) {
+      synchronized (lock(address)) {
+        allocator.freeBlock(address);
+      }
+    }
+
+  }
+
+  /**
+   * The value of a removed entry, kept on the heap for readers that still hold the entry.
+   */
+  static final class Detached extends OffHeapValue {
+
+    private final OffHeapStorage<?> storage;
+    private final byte[] bytes;
+
+    Detached(OffHeapStorage<?> storage, byte[] bytes) {
+      this.storage = storage;
+      this.bytes = bytes;
+    }
+
+    @Override
+    public Object load(Entry<?, ?> e) {
+      return storage.deserialize(bytes);
+    }
+
+  }
+
+}
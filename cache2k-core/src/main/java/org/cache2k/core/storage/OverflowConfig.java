@@ -0,0 +1,201 @@
+package org.cache2k.core.storage;
+
+/*-
+ * #%L
+ * cache2k core implementation
+ * %%
+ * Copyright (C) 2000 - 2022 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.config.ConfigSection;
+import org.cache2k.config.CustomizationReferenceSupplier;
+import org.cache2k.config.CustomizationSupplier;
+import org.cache2k.config.SectionBuilder;
+
+/**
+ * Configuration section for a second tier for entries evicted from the heap. Evicted
+ * entries are written to a memory mapped file. When the key is requested again, the
+ * entry is moved back to the heap, without calling the loader.
+ *
+ * <p>Example: {@code builder.with(OverflowConfig.class, b -> b.maximumBytes(1L << 30))}.
+ *
+ * <p>Keys and values are serialized with the Java serialization, if no serializer is
+ * specified. The key is stored together with the value in the file.
+ *
+ * @author Jens Wilke
+ * @see OverflowStore
+ */
+public class OverflowConfig implements ConfigSection<OverflowConfig, OverflowConfig.Builder> {
+
+  /**
+   * Default size of the file, 256 MiB.
+   */
+  public static final long DEFAULT_MAXIMUM_BYTES = 256 * 1024 * 1024;
+
+  /**
+   * Default size of one segment, 8 MiB.
+   */
+  public static final int DEFAULT_SEGMENT_SIZE = 8 * 1024 * 1024;
+
+  private String directory;
+  private long maximumBytes = DEFAULT_MAXIMUM_BYTES;
+  private long maximumEntries = Long.MAX_VALUE;
+  private int segmentSize = DEFAULT_SEGMENT_SIZE;
+  private CustomizationSupplier<? extends ValueSerializer<?>> keySerializer;
+  private CustomizationSupplier<? extends ValueSerializer<?>> valueSerializer;
+
+  public String getDirectory() {
+    return directory;
+  }
+
+  /**
+   * @see Builder#directory(String)
+   */
+  public void setDirectory(String directory) {
+    this.directory = directory;
+  }
+
+  public long getMaximumBytes() {
+    return maximumBytes;
+  }
+
+  /**
+   * @see Builder#maximumBytes(long)
+   */
+  public void setMaximumBytes(long maximumBytes) {
+    this.maximumBytes = maximumBytes;
+  }
+
+  public long getMaximumEntries() {
+    return maximumEntries;
+  }
+
+  /**
+   * @see Builder#maximumEntries(long)
+   */
+  public void setMaximumEntries(long maximumEntries) {
+    this.maximumEntries = maximumEntries;
+  }
+
+  public int getSegmentSize() {
+    return segmentSize;
+  }
+
+  /**
+   * @see Builder#segmentSize(int)
+   */
+  public void setSegmentSize(int segmentSize) {
+    this.segmentSize = segmentSize;
+  }
+
+  public CustomizationSupplier<? extends ValueSerializer<?>> getKeySerializer() {
+    return keySerializer;
+  }
+
+  /**
+   * @see Builder#keySerializer(ValueSerializer)
+   */
+  public void setKeySerializer(
+    CustomizationSupplier<? extends ValueSerializer<?>> keySerializer) {
+    this.keySerializer = keySerializer;
+  }
+
+  public CustomizationSupplier<? extends ValueSerializer<?>> getValueSerializer() {
+    return valueSerializer;
+  }
+
+  /**
+   * @see Builder#valueSerializer(ValueSerializer)
+   */
+  public void setValueSerializer(
+    CustomizationSupplier<? extends ValueSerializer<?>> valueSerializer) {
+    this.valueSerializer = valueSerializer;
+  }
+
+  @Override
+  public Builder builder() {
+    return new Builder(this);
+  }
+
+  public static class Builder implements SectionBuilder<Builder, OverflowConfig> {
+
+    private final OverflowConfig cfg;
+
+    public Builder(OverflowConfig cfg) {
+      this.cfg = cfg;
+    }
+
+    /**
+     * Directory for the file. The file is created when the cache is built and deleted
+     * when it is closed. Default is the temporary directory.
+     */
+    public Builder directory(String v) {
+      cfg.setDirectory(v);
+      return this;
+    }
+
+    /**
+     * Size of the file. If the file is full, the oldest segment is dropped.
+     * Default is 256 MiB.
+     */
+    public Builder maximumBytes(long v) {
+      cfg.setMaximumBytes(v);
+      return this;
+    }
+
+    /**
+     * Maximum number of entries in the overflow tier. The index keeps the hash code
+     * and file position per entry on the heap, this limits the memory used by the
+     * index. Default is no limit.
+     */
+    public Builder maximumEntries(long v) {
+      cfg.setMaximumEntries(v);
+      return this;
+    }
+
+    /**
+     * The file is written and dropped in segments of this size. Values larger than
+     * a segment are not stored. Default is 8 MiB.
+     */
+    public Builder segmentSize(int v) {
+      cfg.setSegmentSize(v);
+      return this;
+    }
+
+    /**
+     * Serializer for the keys.
+     */
+    public Builder keySerializer(ValueSerializer<?> v) {
+      cfg.setKeySerializer(new CustomizationReferenceSupplier<>(v));
+      return this;
+    }
+
+    /**
+     * Serializer for the values.
+     */
+    public Builder valueSerializer(ValueSerializer<?> v) {
+      cfg.setValueSerializer(new CustomizationReferenceSupplier<>(v));
+      return this;
+    }
+
+    @Override
+    public OverflowConfig config() {
+      return cfg;
+    }
+
+  }
+
+}
@@ -0,0 +1,628 @@
+package org.cache2k.core.storage;
+
+/*-
+ * #%L
+ * cache2k core implementation
+ * %%
+ * Copyright (C) 2000 - 2022 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Second tier for entries evicted from the heap, stored in a memory mapped file.
+ *
+ * <p>The file is divided in segments which are written sequentially like a log. When
+ * the last segment is full, writing continues at the first segment and the entries
+ * stored there are dropped. So the eviction of the tier is first in, first out by segment.
+ * A key is either in the heap or in the overflow tier: when an entry is created in
+ * the heap, the key is removed from the tier via {@link #take(Object, long)}.
+ *
+ * <p>A record consists of the hash code of the key, the key length, the value length,
+ * {@code -1} for a {@code null} value, the expiry time in ticks of the cache clock, the
+ * serialized key and the serialized value. The index on the heap holds only the hash
+ * code and the file position per entry, in primitive arrays that are striped by the
+ * hash code. The key is compared by reading it from the record.
+ *
+ * <p>The eviction only queues the entry, serialization and writing is done by a task
+ * in the executor. Until the record is written, the entry is kept in a pending map and
+ * taken from there. The miss path, {@link #containsKey(Object)}, does not lock if the
+ * index stripe is not modified concurrently.
+ *
+ * @author Jens Wilke
+ * @see OverflowConfig
+ */
+public class OverflowStore<K, V> implements Closeable {
+
+  /**
+   * Expiry time for entries that do not expire.
+   */
+  public static final long ETERNAL = Long.MAX_VALUE;
+
+  static final int RECORD_HEADER_SIZE = 4 + 4 + 4 + 8;
+
+  /**
+   * Maximum number of entries waiting to be written. If the writing task does not
+   * keep up, further evicted entries are dropped.
+   */
+  static final int MAXIMUM_PENDING = 100_000;
+
+  private static final int STRIPE_BITS = 6;
+
+  private final ValueSerializer<K> keySerializer;
+  private final ValueSerializer<V> valueSerializer;
+  private final Executor executor;
+  private final Path file;
+  private final int segmentSize;
+  private final long maximumEntries;
+  private final MappedByteBuffer[] segments;
+  /**
+   * End of the last record written to the segment.
+   */
+  private final int[] segmentEnd;
+  private final Stripe[] stripes = new Stripe[1 << STRIPE_BITS];
+  private final ConcurrentHashMap<K, Pending<K, V>> pending = new ConcurrentHashMap<>();
+  private final Queue<Pending<K, V>> writeQueue = new ConcurrentLinkedQueue<>();
+  private final AtomicBoolean writeScheduled = new AtomicBoolean();
+  private final AtomicLong entryCount = new AtomicLong();
+  private volatile boolean closed;
+  /**
+   * Segment written to.
+   */
+  private int current;
+  /**
+   * Oldest segment containing entries, identical to current if only one segment is used.
+   */
+  private int oldest;
+  private int position;
+  private final AtomicLong demoteCount = new AtomicLong();
+  private final AtomicLong hitCount = new AtomicLong();
+  private final AtomicLong expiredCount = new AtomicLong();
+  private final AtomicLong evictedCount = new AtomicLong();
+  private final AtomicLong rejectedCount = new AtomicLong();
+
+  public OverflowStore(ValueSerializer<K> keySerializer, ValueSerializer<V> valueSerializer,
+                       Path directory, long maximumBytes, int segmentSize, long maximumEntries,
+                       Executor executor) throws IOException {
+    if (maximumBytes < segmentSize * 2L) {
+      segmentSize = (int) (maximumBytes / 2);
+    }
+    if (segmentSize < RECORD_HEADER_SIZE) {
+      throw new IllegalArgumentException("Overflow file too small, maximumBytes=" + maximumBytes);
+    }
+    this.keySerializer = keySerializer;
+    this.valueSerializer = valueSerializer;
+    this.executor = executor;
+    this.segmentSize = segmentSize;
+    this.maximumEntries = maximumEntries;
+    for (int i = 0; i < stripes.length; i++) {
+      stripes[i] = new Stripe();
+    }
+    int segmentCount = (int) Math.min(Integer.MAX_VALUE, maximumBytes / segmentSize);
+    segments = new MappedByteBuffer[segmentCount];
+    segmentEnd = new int[segmentCount];
+    file = directory == null ?
+      Files.createTempFile("cache2k-overflow", ".dat") :
+      Files.createTempFile(directory, "cache2k-overflow", ".dat");
+    try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+      raf.setLength((long) segmentCount * segmentSize);
+      FileChannel channel = raf.getChannel();
+      for (int i = 0; i < segmentCount; i++) {
+        segments[i] =
+          channel.map(FileChannel.MapMode.READ_WRITE, (long) i * segmentSize, segmentSize);
+      }
+    } catch (IOException ex) {
+      Files.deleteIfExists(file);
+      throw ex;
+    }
+  }
+
+  static int spread(int h) {
+    h *= 0x9E3779B9;
+    return h ^ h >>> 16;
+  }
+
+  private Stripe stripe(int hash) {
+    return stripes[hash >>> (32 - STRIPE_BITS)];
+  }
+
+  /**
+   * Queue the entry evicted from the heap. The key and value are serialized and written
+   * by a task in the executor. A value that cannot be serialized or is larger than a
+   * segment is dropped.
+   *
+   * @param expiryTime point in time in ticks or {@link #ETERNAL}
+   */
+  public void demote(K key, V value, long expiryTime) {
+    if (closed) {
+      return;
+    }
+    if (pending.mappingCount() >= MAXIMUM_PENDING) {
+      rejectedCount.incrementAndGet();
+      return;
+    }
+    Pending<K, V> p = new Pending<>(key, value, expiryTime);
+    pending.put(key, p);
+    writeQueue.add(p);
+    if (writeScheduled.compareAndSet(false, true)) {
+      try {
+        executor.execute(this::writePending);
+      } catch (RejectedExecutionException ex) {
+        writePending();
+      }
+    }
+  }
+
+  /**
+   * Write the queued entries. Reset the scheduled flag before writing, so entries
+   * queued while writing start another run.
+   */
+  private void writePending() {
+    writeScheduled.set(false);
+    Pending<K, V> p;
+    while (!closed && (p = writeQueue.poll()) != null) {
+      if (pending.get(p.key) != p) {
+        continue;
+      }
+      byte[] keyBytes;
+      byte[] valueBytes = null;
+      try {
+        keyBytes = keySerializer.serialize(p.key);
+        if (p.value != null) {
+          valueBytes = valueSerializer.serialize(p.value);
+        }
+      } catch (RuntimeException ex) {
+        reject(p);
+        continue;
+      }
+      write(p, keyBytes, valueBytes);
+    }
+  }
+
+  private void reject(Pending<K, V> p) {
+    int hash = spread(p.key.hashCode());
+    Stripe s = stripe(hash);
+    long stamp = s.lock.writeLock();
+    try {
+      if (pending.remove(p.key, p)) {
+        rejectedCount.incrementAndGet();
+      }
+    } finally {
+      s.lock.unlockWrite(stamp);
+    }
+  }
+
+  /**
+   * Append the record and add it to the index, if the entry was not taken meanwhile.
+   */
+  private synchronized void write(Pending<K, V> p, byte[] keyBytes, byte[] valueBytes) {
+    int valueLength = valueBytes == null ? 0 : valueBytes.length;
+    int size = RECORD_HEADER_SIZE + keyBytes.length + valueLength;
+    if (size > segmentSize) {
+      reject(p);
+      return;
+    }
+    if (position + size > segmentSize) {
+      advance();
+    }
+    int hash = spread(p.key.hashCode());
+    ByteBuffer buf = segments[current];
+    buf.putInt(position, hash);
+    buf.putInt(position + 4, keyBytes.length);
+    buf.putInt(position + 8, valueBytes == null ? -1 : valueLength);
+    buf.putLong(position + 12, p.expiryTime);
+    ByteBuffer dup = buf.duplicate();
+    dup.position(position + RECORD_HEADER_SIZE);
+    dup.put(keyBytes);
+    if (valueBytes != null) {
+      dup.put(valueBytes);
+    }
+    long address = ((long) current << 32) | position;
+    Stripe s = stripe(hash);
+    long stamp = s.lock.writeLock();
+    try {
+      if (!pending.remove(p.key, p)) {
+        return;
+      }
+      long previous = find(s, hash, p.key);
+      if (previous >= 0) {
+        s.remove(hash, previous);
+      } else {
+        entryCount.incrementAndGet();
+      }
+      s.add(hash, address);
+    } finally {
+      s.lock.unlockWrite(stamp);
+    }
+    position += size;
+    segmentEnd[current] = position;
+    demoteCount.incrementAndGet();
+    while (entryCount.get() > maximumEntries) {
+      dropOldestSegment();
+    }
+  }
+
+  /**
+   * Address of the record for the key or -1. Called with the stripe locked.
+   */
+  private long find(Stripe s, int hash, K key) {
+    long[] table = s.table;
+    int mask = (table.length >> 1) - 1;
+    for (int i = hash & mask; table[i * 2 + 1] != 0; i = (i + 1) & mask) {
+      if ((int) table[i * 2] == hash) {
+        long address = table[i * 2 + 1] - 1;
+        if (key.equals(keySerializer.deserialize(readKey(address)))) {
+          return address;
+        }
+      }
+    }
+    return -1;
+  }
+
+  private byte[] readKey(long address) {
+    ByteBuffer buf = segments[(int) (address >>> 32)];
+    int offset = (int) address;
+    byte[] bytes = new byte[buf.getInt(offset + 4)];
+    ByteBuffer dup = buf.duplicate();
+    dup.position(offset + RECORD_HEADER_SIZE);
+    dup.get(bytes);
+    return bytes;
+  }
+
+  /**
+   * True if the tier may contain an entry for the key. It may be expired or it may be
+   * another key with the same hash code, in which case {@link #take(Object, long)}
+   * returns {@code null}. Does not lock, unless the index stripe is modified concurrently.
+   */
+  public boolean containsKey(K key) {
+    int hash = spread(key.hashCode());
+    Stripe s = stripe(hash);
+    long stamp = s.lock.tryOptimisticRead();
+    boolean found = s.containsHash(hash);
+    if (!s.lock.validate(stamp)) {
+      stamp = s.lock.readLock();
+      try {
+        found = s.containsHash(hash);
+      } finally {
+        s.lock.unlockRead(stamp);
+      }
+    }
+    return found || pending.containsKey(key);
+  }
+
+  /**
+   * Remove the entry from the tier.
+   *
+   * @return the entry or {@code null} if not present or expired
+   */
+  public Demoted<V> take(K key, long now) {
+    int hash = spread(key.hashCode());
+    Stripe s = stripe(hash);
+    long expiryTime;
+    byte[] bytes;
+    long stamp = s.lock.writeLock();
+    try {
+      Pending<K, V> p = pending.remove(key);
+      if (p != null) {
+        return taken(p.value, p.expiryTime, now);
+      }
+      long address = find(s, hash, key);
+      if (address < 0) {
+        return null;
+      }
+      s.remove(hash, address);
+      entryCount.decrementAndGet();
+      ByteBuffer buf = segments[(int) (address >>> 32)];
+      int offset = (int) address;
+      int keyLength = buf.getInt(offset + 4);
+      int valueLength = buf.getInt(offset + 8);
+      expiryTime = buf.getLong(offset + 12);
+      if (expiryTime <= now || valueLength < 0) {
+        return taken(null, expiryTime, now);
+      }
+      bytes = new byte[valueLength];
+      ByteBuffer dup = buf.duplicate();
+      dup.position(offset + RECORD_HEADER_SIZE + keyLength);
+      dup.get(bytes);
+    } finally {
+      s.lock.unlockWrite(stamp);
+    }
+    hitCount.incrementAndGet();
+    return new Demoted<>(valueSerializer.deserialize(bytes), expiryTime);
+  }
+
+  private Demoted<V> taken(V value, long expiryTime, long now) {
+    if (expiryTime <= now) {
+      expiredCount.incrementAndGet();
+      return null;
+    }
+    hitCount.incrementAndGet();
+    return new Demoted<>(value, expiryTime);
+  }
+
+  /**
+   * Continue writing at the next segment. If all segments are in use, the oldest
+   * segment is dropped.
+   */
+  private void advance() {
+    int next = (current + 1) % segments.length;
+    if (next == oldest) {
+      dropOldestSegment();
+    }
+    current = next;
+    position = 0;
+  }
+
+  /**
+   * Remove the records of the oldest segment from the index. The records are read
+   * from the file, so no list of keys is kept per segment. A record that was taken
+   * is not in the index any more.
+   */
+  private void dropOldestSegment() {
+    int s = oldest;
+    ByteBuffer buf = segments[s];
+    int end = segmentEnd[s];
+    int offset = 0;
+    while (offset < end) {
+      int hash = buf.getInt(offset);
+      int size = RECORD_HEADER_SIZE + buf.getInt(offset + 4) + Math.max(0, buf.getInt(offset + 8));
+      Stripe stripe = stripe(hash);
+      long stamp = stripe.lock.writeLock();
+      try {
+        if (stripe.remove(hash, ((long) s << 32) | offset)) {
+          entryCount.decrementAndGet();
+          evictedCount.incrementAndGet();
+        }
+      } finally {
+        stripe.lock.unlockWrite(stamp);
+      }
+      offset += size;
+    }
+    segmentEnd[s] = 0;
+    if (s == current) {
+      position = 0;
+    } else {
+      oldest = (s + 1) % segments.length;
+    }
+  }
+
+  /**
+   * Drop all entries.
+   */
+  public synchronized void clear() {
+    for (Stripe s : stripes) {
+      long stamp = s.lock.writeLock();
+      try {
+        s.clear();
+      } finally {
+        s.lock.unlockWrite(stamp);
+      }
+    }
+    pending.clear();
+    writeQueue.clear();
+    entryCount.set(0);
+    Arrays.fill(segmentEnd, 0);
+    current = oldest = position = 0;
+  }
+
+  /**
+   * Drop all entries and delete the file. The mapped memory stays valid after the
+   * channel is closed and is released by the garbage collector.
+   */
+  @Override
+  public synchronized void close() throws IOException {
+    closed = true;
+    clear();
+    Files.deleteIfExists(file);
+  }
+
+  public Path getFile() {
+    return file;
+  }
+
+  public int getSegmentCount() {
+    return segments.length;
+  }
+
+  /**
+   * Number of entries in the file and entries waiting to be written.
+   */
+  public long getEntryCount() {
+    return entryCount.get() + pending.mappingCount();
+  }
+
+  public long getDemoteCount() {
+    return demoteCount.get();
+  }
+
+  /**
+   * Number of entries moved back to the heap.
+   */
+  public long getHitCount() {
+    return hitCount.get();
+  }
+
+  public long getExpiredCount() {
+    return expiredCount.get();
+  }
+
+  /**
+   * Number of entries dropped because the tier was full.
+   */
+  public long getEvictedCount() {
+    return evictedCount.get();
+  }
+
+  /**
+   * Number of entries not stored, because the value is too large, cannot be serialized
+   * or too many entries are waiting to be written.
+   */
+  public long getRejectedCount() {
+    return rejectedCount.get();
+  }
+
+  /**
+   * Entry taken from the tier.
+   */
+  public static final class Demoted<V> {
+
+    private final V value;
+    private final long expiryTime;
+
+    Demoted(V value, long expiryTime) {
+      this.value = value;
+      this.expiryTime = expiryTime;
+    }
+
+    public V getValue() {
+      return value;
+    }
+
+    public long getExpiryTime() {
+      return expiryTime;
+    }
+
+  }
+
+  /**
+   * Evicted entry waiting to be written.
+   */
+  private static final class Pending<K, V> {
+
+    final K key;
+    final V value;
+    final long expiryTime;
+
+    Pending(K key, V value, long expiryTime) {
+      this.key = key;
+      this.value = value;
+      this.expiryTime = expiryTime;
+    }
+
+  }
+
+  /**
+   * Part of the index. Open addressing with linear probing in one array, holding the
+   * hash code and the address plus one of a record per slot. Zero marks a free slot.
+   * Several records may have the same hash code.
+   */
+  static final class Stripe {
+
+    private static final int INITIAL_SLOTS = 16;
+
+    final StampedLock lock = new StampedLock();
+    long[] table = new long[INITIAL_SLOTS * 2];
+    int size;
+
+    /**
+     * Called without a lock by an optimistic reader, so the probing is bounded by
+     * the table size.
+     */
+    boolean containsHash(int hash) {
+      long[] t = table;
+      int mask = (t.length >> 1) - 1;
+      for (int i = hash & mask, n = 0; n <= mask && t[i * 2 + 1] != 0; i = (i + 1) & mask, n++) {
+        if ((int) t[i * 2] == hash) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    void add(int hash, long address) {
+      if ((size + 1) * 3 > table.length) {
+        resize(table.length);
+      }
+      insert(table, hash, address + 1);
+      size++;
+    }
+
+    private static void insert(long[] t, int hash, long addressPlusOne) {
+      int mask = (t.length >> 1) - 1;
+      int i = hash & mask;
+      while (t[i * 2 + 1] != 0) {
+        i = (i + 1) & mask;
+      }
+      t[i * 2] = hash;
+      t[i * 2 + 1] = addressPlusOne;
+    }
+
+    private void resize(int slots) {
+      long[] t = new long[slots * 2];
+      long[] old = table;
+      for (int i = 0; i < old.length; i += 2) {
+        if (old[i + 1] != 0) {
+          insert(t, (int) old[i], old[i + 1]);
+        }
+      }
+      table = t;
+    }
+
+    /**
+     * Remove the slot with the hash and address. Following slots are shifted back, so
+     * no deletion marker is needed.
+     */
+    boolean remove(int hash, long address) {
+      long[] t = table;
+      int mask = (t.length >> 1) - 1;
+      int i = hash & mask;
+      for (; t[i * 2 + 1] != 0; i = (i + 1) & mask) {
+        if ((int) t[i * 2] == hash && t[i * 2 + 1] == address + 1) {
+          break;
+        }
+      }
+      if (t[i * 2 + 1] == 0) {
+        return false;
+      }
+      int free = i;
+      for (int j = (i + 1) & mask; t[j * 2 + 1] != 0; j = (j + 1) & mask) {
+        int home = (int) t[j * 2] & mask;
+        if (((j - home) & mask) >= ((j - free) & mask)) {
+          t[free * 2] = t[j * 2];
+          t[free * 2 + 1] = t[j * 2 + 1];
+          free = j;
+        }
+      }
+      t[free * 2] = 0;
+      t[free * 2 + 1] = 0;
+      size--;
+      return true;
+    }
+
+    void clear() {
+      table = new long[INITIAL_SLOTS * 2];
+      size = 0;
+    }
+
+  }
+
+}
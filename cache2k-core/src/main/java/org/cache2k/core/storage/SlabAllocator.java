@@ -0,0 +1,235 @@
+package org.cache2k.core.storage;
+
+/*-
+ * #%L
+ * cache2k core implementation
+ * %%
+ * Copyright (C) 2000 - 2022 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Allocates blocks of memory within direct byte buffers of a fixed size, the slabs.
+ * A request is rounded up to the next size class. Size classes grow by a quarter of the
+ * next lower power of two, so the memory lost per block is at most 25%. Freed blocks are
+ * kept in a free list per size class and reused for requests of the same class. Slabs are
+ * never released, the memory is reclaimed when the allocator is not referenced any more.
+ *
+ * <p>An address contains the slab index in the upper and the offset in the lower 32 bits.
+ * Allocation and freeing is synchronized, reading and writing of blocks is not. The
+ * caller needs to make sure that a block is not freed while it is read.
+ *
+ * @author Jens Wilke
+ */
+public final class SlabAllocator {
+
+  /**
+   * Smallest size class in bytes.
+   */
+  public static final int MIN_BLOCK_SIZE = 64;
+
+  /**
+   * Bytes of the length prefix of a block written by {@link #allocateBlock(byte[])}.
+   */
+  public static final int BLOCK_HEADER_SIZE = 4;
+
+  private final int slabSize;
+  private final long maximumBytes;
+  private final int[] classSizes;
+  private final long[][] freeLists;
+  private final int[] freeCounts;
+  private volatile ByteBuffer[] slabs = new ByteBuffer[0];
+  private int slabOffset;
+  private long usedBytes;
+
+  /**
+   * @param slabSize size of one direct buffer
+   * @param maximumBytes upper bound of the memory reserved by all slabs
+   */
+  public SlabAllocator(int slabSize, long maximumBytes) {
+    if (slabSize < MIN_BLOCK_SIZE) {
+      throw new IllegalArgumentException("slab size too small: " + slabSize);
+    }
+    this.slabSize = slabSize;
+    this.maximumBytes = maximumBytes;
+    classSizes = calculateClassSizes(slabSize);
+    freeLists = new long[classSizes.length][];
+    freeCounts = new int[classSizes.length];
+    slabOffset = slabSize;
+  }
+
+  static int[] calculateClassSizes(int slabSize) {
+    int[] sizes = new int[64];
+    int count = 0;
+    int size = MIN_BLOCK_SIZE;
+    while (size < slabSize) {
+      if (count == sizes.length) {
+        sizes = Arrays.copyOf(sizes, count * 2);
+      }
+      sizes[count++] = size;
+      size += Integer.highestOneBit(size) >> 2;
+    }
+    sizes = Arrays.copyOf(sizes, count + 1);
+    sizes[count] = slabSize;
+    return sizes;
+  }
+
+  /**
+   * Index of the smallest size class that can hold the requested size, or -1 if
+   * the request is larger than a slab.
+   */
+  int sizeClass(int size) {
+    int idx = Arrays.binarySearch(classSizes, size);
+    if (idx < 0) {
+      idx = -idx - 1;
+    }
+    return idx < classSizes.length ? idx : -1;
+  }
+
+  /**
+   * Allocate a block for the requested number of bytes.
+   *
+   * @return address of the block or -1 if the request is larger than a slab or
+   *         the maximum memory is reached
+   */
+  public synchronized long allocate(int size) {
+    int cls = sizeClass(size);
+    if (cls < 0) {
+      return -1;
+    }
+    int blockSize = classSizes[cls];
+    long address;
+    if (freeCounts[cls] > 0) {
+      address = freeLists[cls][--freeCounts[cls]];
+    } else {
+      if (slabOffset + blockSize > slabSize && !addSlab()) {
+        return -1;
+      }
+      address = ((long) (slabs.length - 1) << 32) | slabOffset;
+      slabOffset += blockSize;
+    }
+    usedBytes += blockSize;
+    return address;
+  }
+
+  /**
+   * Add a new slab. Returns false if the maximum memory is reached or the JVM has
+   * no direct memory left.
+   */
+  private boolean addSlab() {
+    ByteBuffer[] current = slabs;
+    if ((long) (current.length + 1) * slabSize > maximumBytes) {
+      return false;
+    }
+    ByteBuffer buffer;
+    try {
+      buffer = ByteBuffer.allocateDirect(slabSize);
+    } catch (OutOfMemoryError err) {
+      return false;
+    }
+    ByteBuffer[] extended = Arrays.copyOf(current, current.length + 1);
+    extended[current.length] = buffer;
+    slabs = extended;
+    slabOffset = 0;
+    return true;
+  }
+
+  /**
+   * Return the block to the free list of its size class.
+   *
+   * @param size the size that was requested when the block was allocated
+   */
+  public synchronized void free(long address, int size) {
+    int cls = sizeClass(size);
+    long[] list = freeLists[cls];
+    int count = freeCounts[cls];
+    if (list == null) {
+      list = freeLists[cls] = new long[16];
+    } else if (count == list.length) {
+      list = freeLists[cls] = Arrays.copyOf(list, count * 2);
+    }
+    list[count] = address;
+    freeCounts[cls] = count + 1;
+    usedBytes -= classSizes[cls];
+  }
+
+  /**
+   * Allocate a block and write the bytes with a length prefix, so the block can be
+   * read and freed with the address only.
+   *
+   * @return address of the block or -1 if no block could be allocated
+   */
+  public long allocateBlock(byte[] bytes) {
+    long address = allocate(bytes.length + BLOCK_HEADER_SIZE);
+    if (address >= 0) {
+      ByteBuffer buffer = slabs[(int) (address >>> 32)].duplicate();
+      buffer.position((int) address);
+      buffer.putInt(bytes.length);
+      buffer.put(bytes);
+    }
+    return address;
+  }
+
+  /**
+   * Read the bytes of a block allocated by {@link #allocateBlock(byte[])}.
+   */
+  public byte[] readBlock(long address) {
+    ByteBuffer buffer = slabs[(int) (address >>> 32)].duplicate();
+    buffer.position((int) address);
+    byte[] bytes = new byte[buffer.getInt()];
+    buffer.get(bytes);
+    return bytes;
+  }
+
+  /**
+   * Free a block allocated by {@link #allocateBlock(byte[])}.
+   */
+  public void freeBlock(long address) {
+    int length = slabs[(int) (address >>> 32)].getInt((int) address);
+    free(address, length + BLOCK_HEADER_SIZE);
+  }
+
+  public void write(long address, byte[] bytes) {
+    ByteBuffer buffer = slabs[(int) (address >>> 32)].duplicate();
+    buffer.position((int) address);
+    buffer.put(bytes);
+  }
+
+  public byte[] read(long address, int size) {
+    ByteBuffer buffer = slabs[(int) (address >>> 32)].duplicate();
+    buffer.position((int) address);
+    byte[] bytes = new byte[size];
+    buffer.get(bytes);
+    return bytes;
+  }
+
+  /**
+   * Bytes of all allocated blocks, including the rounding to the size class.
+   */
+  public synchronized long getUsedBytes() {
+    return usedBytes;
+  }
+
+  /**
+   * Bytes of direct memory reserved by the slabs.
+   */
+  public long getReservedBytes() {
+    return (long) slabs.length * slabSize;
+  }
+
+}
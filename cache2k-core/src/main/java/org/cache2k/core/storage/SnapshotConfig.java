@@ -0,0 +1,120 @@
+package org.cache2k.core.storage;
+
+/*-
+ * #%L
+ * cache2k core implementation
+ * %%
+ * Copyright (C) 2000 - 2022 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.config.ConfigSection;
+import org.cache2k.config.CustomizationReferenceSupplier;
+import org.cache2k.config.CustomizationSupplier;
+import org.cache2k.config.SectionBuilder;
+
+/**
+ * Configuration section for cache snapshots. A snapshot is written via
+ * {@link org.cache2k.operation.CacheOperation#snapshot(java.nio.file.Path)}. If a restore
+ * file is configured and exists, its contents are inserted when the cache is built,
+ * without calling the loader.
+ *
+ * <p>Keys and values are serialized with the Java serialization, if no serializer
+ * is specified.
+ *
+ * @author Jens Wilke
+ * @see SnapshotFile
+ */
+public class SnapshotConfig implements ConfigSection<SnapshotConfig, SnapshotConfig.Builder> {
+
+  private String restoreFile;
+  private CustomizationSupplier<? extends ValueSerializer<?>> keySerializer;
+  private CustomizationSupplier<? extends ValueSerializer<?>> valueSerializer;
+
+  public String getRestoreFile() {
+    return restoreFile;
+  }
+
+  /**
+   * @see Builder#restoreFile(String)
+   */
+  public void setRestoreFile(String restoreFile) {
+    this.restoreFile = restoreFile;
+  }
+
+  public CustomizationSupplier<? extends ValueSerializer<?>> getKeySerializer() {
+    return keySerializer;
+  }
+
+  /**
+   * @see Builder#keySerializer(ValueSerializer)
+   */
+  public void setKeySerializer(CustomizationSupplier<? extends ValueSerializer<?>> keySerializer) {
+    this.keySerializer = keySerializer;
+  }
+
+  public CustomizationSupplier<? extends ValueSerializer<?>> getValueSerializer() {
+    return valueSerializer;
+  }
+
+  /**
+   * @see Builder#valueSerializer(ValueSerializer)
+   */
+  public void setValueSerializer(
+    CustomizationSupplier<? extends ValueSerializer<?>> valueSerializer) {
+    this.valueSerializer = valueSerializer;
+  }
+
+  @Override
+  public Builder builder() {
+    return new Builder(this);
+  }
+
+  public static class Builder implements SectionBuilder<Builder, SnapshotConfig> {
+
+    private final SnapshotConfig cfg;
+
+    public Builder(SnapshotConfig cfg) {
+      this.cfg = cfg;
+    }
+
+    /**
+     * Snapshot file to restore the cache contents from when the cache is built.
+     * A missing file is ignored. A file that cannot be read is logged as warning and the
+     * cache starts empty.
+     */
+    public Builder restoreFile(String v) {
+      cfg.setRestoreFile(v);
+      return this;
+    }
+
+    public Builder keySerializer(ValueSerializer<?> v) {
+      cfg.setKeySerializer(new CustomizationReferenceSupplier<>(v));
+      return this;
+    }
+
+    public Builder valueSerializer(ValueSerializer<?> v) {
+      cfg.setValueSerializer(new CustomizationReferenceSupplier<>(v));
+      return this;
+    }
+
+    @Override
+    public SnapshotConfig config() {
+      return cfg;
+    }
+
+  }
+
+}
@@ -0,0 +1,268 @@
+package org.cache2k.core.storage;
+
+/*-
+ * #%L
+ * cache2k core implementation
+ * %%
+ * Copyright (C) 2000 - 2022 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * File format of a cache snapshot. The file is written and read sequentially through a
+ * buffer. After the header each entry is stored as a record containing flags, the expiry
+ * time in milliseconds since epoch, the serialized key and the serialized value. A trailer
+ * with the record count marks a complete file.
+ *
+ * <p>The writer writes to a temporary file, which replaces the target file on
+ * {@link Writer#commit()}, so an existing snapshot is never left incomplete.
+ *
+ * @author Jens Wilke
+ */
+public final class SnapshotFile {
+
+  static final int MAGIC = 0x43324b53;
+  static final int VERSION = 1;
+  static final int BUFFER_SIZE = 64 * 1024;
+  static final int FLAG_HOT = 1;
+  static final int FLAG_NULL_VALUE = 2;
+  static final int FLAG_END = 0x80;
+
+  /**
+   * Expiry time of an entry that does not expire.
+   */
+  public static final long ETERNAL = Long.MAX_VALUE;
+
+  private SnapshotFile() { }
+
+  public static final class Writer implements Closeable {
+
+    private final Path path;
+    private final Path tempPath;
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private long count;
+    private boolean committed;
+
+    public Writer(Path path) throws IOException {
+      this.path = path;
+      tempPath = path.resolveSibling(path.getFileName() + ".tmp");
+      channel = FileChannel.open(tempPath, StandardOpenOption.CREATE,
+        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+      buffer.putInt(MAGIC).putInt(VERSION);
+    }
+
+    /**
+     * Write a record.
+     *
+     * @param value serialized value or {@code null}
+     */
+    public void write(boolean hot, long expiryMillis, byte[] key, byte[] value)
+      throws IOException {
+      int flags = (hot ? FLAG_HOT : 0) | (value == null ? FLAG_NULL_VALUE : 0);
+      ensureSpace(1 + 8 + 4);
+      buffer.put((byte) flags).putLong(expiryMillis).putInt(key.length);
+      put(key);
+      if (value != null) {
+        ensureSpace(4);
+        buffer.putInt(value.length);
+        put(value);
+      }
+      count++;
+    }
+
+    private void put(byte[] bytes) throws IOException {
+      if (bytes.length > buffer.remaining()) {
+        flush();
+        if (bytes.length > buffer.capacity()) {
+          ByteBuffer wrapped = ByteBuffer.wrap(bytes);
+          while (wrapped.hasRemaining()) {
+            channel.write(wrapped);
+          }
+          return;
+        }
+      }
+      buffer.put(bytes);
+    }
+
+    private void ensureSpace(int size) throws IOException {
+      if (buffer.remaining() < size) {
+        flush();
+      }
+    }
+
+    private void flush() throws IOException {
+      buffer.flip();
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+      buffer.clear();
+    }
+
+    public long getCount() {
+      return count;
+    }
+
+    /**
+     * Write the trailer and replace the target file with the written file.
+     */
+    public void commit() throws IOException {
+      ensureSpace(1 + 8);
+      buffer.put((byte) FLAG_END).putLong(count);
+      flush();
+      channel.force(true);
+      channel.close();
+      Files.move(tempPath, path,
+        StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      committed = true;
+    }
+
+    /**
+     * Close the file. If not committed, the temporary file is removed.
+     */
+    @Override
+    public void close() throws IOException {
+      if (committed) {
+        return;
+      }
+      channel.close();
+      Files.deleteIfExists(tempPath);
+    }
+
+  }
+
+  public static final class Reader implements Closeable {
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private long count;
+    private boolean hot;
+    private long expiryMillis;
+    private byte[] key;
+    private byte[] value;
+
+    public Reader(Path path) throws IOException {
+      channel = FileChannel.open(path, StandardOpenOption.READ);
+      buffer.flip();
+      require(8);
+      if (buffer.getInt() != MAGIC) {
+        channel.close();
+        throw new IOException("Not a cache snapshot: " + path);
+      }
+      int version = buffer.getInt();
+      if (version != VERSION) {
+        channel.close();
+        throw new IOException("Unsupported snapshot version " + version + ": " + path);
+      }
+    }
+
+    /**
+     * Read the next record.
+     *
+     * @return {@code false} if the trailer is reached
+     * @throws IOException if the file is truncated or invalid
+     */
+    public boolean next() throws IOException {
+      require(1);
+      int flags = buffer.get() & 0xff;
+      if (flags == FLAG_END) {
+        require(8);
+        if (buffer.getLong() != count) {
+          throw new IOException("Snapshot record count mismatch");
+        }
+        return false;
+      }
+      require(8 + 4);
+      hot = (flags & FLAG_HOT) != 0;
+      expiryMillis = buffer.getLong();
+      key = readBytes(buffer.getInt());
+      if ((flags & FLAG_NULL_VALUE) != 0) {
+        value = null;
+      } else {
+        require(4);
+        value = readBytes(buffer.getInt());
+      }
+      count++;
+      return true;
+    }
+
+    private byte[] readBytes(int size) throws IOException {
+      if (size < 0) {
+        throw new IOException("Invalid length in snapshot");
+      }
+      byte[] bytes = new byte[size];
+      int pos = Math.min(size, buffer.remaining());
+      buffer.get(bytes, 0, pos);
+      if (pos < size) {
+        ByteBuffer wrapped = ByteBuffer.wrap(bytes, pos, size - pos);
+        while (wrapped.hasRemaining()) {
+          if (channel.read(wrapped) < 0) {
+            throw new EOFException("Snapshot truncated");
+          }
+        }
+      }
+      return bytes;
+    }
+
+    private void require(int size) throws IOException {
+      if (buffer.remaining() >= size) {
+        return;
+      }
+      buffer.compact();
+      while (buffer.position() < size) {
+        if (channel.read(buffer) < 0) {
+          throw new EOFException("Snapshot truncated");
+        }
+      }
+      buffer.flip();
+    }
+
+    public boolean isHot() {
+      return hot;
+    }
+
+    public long getExpiryMillis() {
+      return expiryMillis;
+    }
+
+    public byte[] getKey() {
+      return key;
+    }
+
+    /**
+     * Serialized value or {@code null}
+     */
+    public byte[] getValue() {
+      return value;
+    }
+
+    @Override
+    public void close() throws IOException {
+      channel.close();
+    }
+
+  }
+
+}
@@ -0,0 +1,43 @@
+package org.cache2k.core.storage;
+
+/*-
+ * #%L
+ * cache2k core implementation
+ * %%
+ * Copyright (C) 2000 - 2022 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * Converts values to bytes and back for storing them outside the Java heap.
+ * Implementations need to be thread safe.
+ *
+ * @author Jens Wilke
+ * @see OffHeapConfig
+ */
+public interface ValueSerializer<V> {
+
+  /**
+   * Convert the value to bytes. The returned array is not modified or retained by the cache.
+   */
+  byte[] serialize(V value);
+
+  /**
+   * Create the value from the bytes. The array is exclusive to this call and may
+   * be used by the returned value.
+   */
+  V deserialize(byte[] bytes);
+
+}
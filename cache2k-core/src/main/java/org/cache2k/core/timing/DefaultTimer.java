@@ -22,9 +22,11 @@ package org.cache2k.core.timing;
 
 import org.cache2k.CacheClosedException;
 import org.cache2k.core.api.InternalCacheCloseContext;
+import org.cache2k.core.log.Log;
 import org.cache2k.operation.TimeReference;
 import org.cache2k.operation.Scheduler;
 
+import java.util.Arrays;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
@@ -38,6 +40,12 @@ import java.util.concurrent.locks.ReentrantLock;
  * event is inserted. The later scheduler event is not needed any more, but we
  * do not delete scheduler events in this case.
  *
+ * <p>The timer tasks can be split into stripes of independent timer structures, each
+ * with its own lock, so inserting threads do not contend on a single lock. The stripe
+ * of a task is selected by the hash code of its entry. All stripes share the scheduler
+ * wakeup. The next wakeup is determined while holding the locks of all stripes, which
+ * happens only once per timer event.
+ *
  * @author Jens Wilke
  */
 public class DefaultTimer implements Timer {
@@ -52,11 +60,22 @@ public class DefaultTimer implements Timer {
    * common, we cover these on the first level.
    */
   public static final int DEFAULT_SLOTS_PER_WHEEL = 921;
+  /**
+   * Upper limit of stripes determined by the processor count.
+   */
+  public static final int MAXIMUM_STRIPE_COUNT = 16;
+  /**
+   * Maximum number of due tasks removed from a stripe within one lock acquisition
+   * and run as batch.
+   */
+  static final int BATCH_SIZE = 1024;
 
-  private final Lock lock = new ReentrantLock();
+  private final Stripe[] stripes;
+  private final int stripeMask;
+  /** Guards the scheduled wakeup, taken after the lock of a stripe */
+  private final Object wakeupLock = new Object();
   private final TimeReference clock;
   private final Scheduler scheduler;
-  private final TimerStructure structure;
   /**
    * Lag time to gather timer tasks for more efficient execution.
    */
@@ -79,7 +98,24 @@ public class DefaultTimer implements Timer {
   }
 
   public DefaultTimer(TimeReference c, Scheduler scheduler, long lagTicks, int steps) {
-    structure = new TimerWheels(c.ticks() + 1, lagTicks + 1, steps);
+    this(c, scheduler, lagTicks, steps, 1);
+  }
+
+  /**
+   * @param stripeCount number of independent timer structures, a power of two
+   */
+  public DefaultTimer(TimeReference c, Scheduler scheduler, long lagTicks, int steps,
+                      int stripeCount) {
+    if (Integer.bitCount(stripeCount) != 1) {
+      throw new IllegalArgumentException("stripe count must be a power of two, was " +
+        stripeCount);
+    }
+    long startTime = c.ticks() + 1;
+    stripes = new Stripe[stripeCount];
+    for (int i = 0; i < stripeCount; i++) {
+      stripes[i] = new Stripe(new TimerWheels(startTime, lagTicks + 1, steps));
+    }
+    stripeMask = stripeCount - 1;
     this.lagTicks = lagTicks;
     this.clock = c;
     this.scheduler = scheduler;
@@ -101,16 +137,22 @@ public class DefaultTimer implements Timer {
       executeImmediately(task);
       return;
     }
-    lock.lock();
+    int hash = task.stripeHash();
+    int index = (hash ^ hash >>> 16) & stripeMask;
+    task.stripe = index;
+    Stripe stripe = stripes[index];
+    stripe.lock.lock();
     try {
-      long slotTime = structure.schedule(task, time);
+      long slotTime = stripe.structure.schedule(task, time);
       if (slotTime != 0) {
-        rescheduleEventually(slotTime);
+        synchronized (wakeupLock) {
+          rescheduleEventually(slotTime);
+        }
         return;
       }
       executeImmediately(task);
     } finally {
-      lock.unlock();
+      stripe.lock.unlock();
     }
   }
 
@@ -132,6 +174,7 @@ public class DefaultTimer implements Timer {
 
   @Override
   public void cancel(TimerTask t) {
+    Lock lock = stripes[t.stripe].lock;
     lock.lock();
     try {
       t.cancel();
@@ -152,14 +195,37 @@ public class DefaultTimer implements Timer {
    */
   @Override
   public void cancelAll() {
-    lock.lock();
-    try {
-      structure.cancelAll();
-    } finally {
-      lock.unlock();
+    for (Stripe stripe : stripes) {
+      stripe.lock.lock();
+      try {
+        stripe.structure.cancelAll();
+      } finally {
+        stripe.lock.unlock();
+      }
     }
   }
 
+  /**
+   * Number of stripes, a power of two. One stripe, if not configured otherwise
+   * or if concurrency is boosted, the processor count up to {@value #MAXIMUM_STRIPE_COUNT}.
+   *
+   * @param stripeCountOverride configured stripe count or -1
+   */
+  public static int determineStripeCount(boolean boostConcurrency, int availableProcessors,
+                                         int stripeCountOverride) {
+    if (stripeCountOverride > 0) {
+      return 1 << (32 - Integer.numberOfLeadingZeros(stripeCountOverride - 1));
+    }
+    if (boostConcurrency) {
+      return Integer.highestOneBit(Math.min(MAXIMUM_STRIPE_COUNT, availableProcessors));
+    }
+    return 1;
+  }
+
+  public int getStripeCount() {
+    return stripes.length;
+  }
+
   @Override
   public void close(InternalCacheCloseContext closeContext) {
     cancelAll();
@@ -173,29 +239,72 @@ public class DefaultTimer implements Timer {
    * running concurrently
    */
   private void timeReachedEvent(long currentTime) {
-    while (true) {
-      TimerTask task;
-      lock.lock();
+    TimerTask[] batch = new TimerTask[BATCH_SIZE];
+    try {
+      for (Stripe stripe : stripes) {
+        runDueTasks(stripe, currentTime, batch);
+      }
+    } finally {
+      scheduleNextWakeupOfStripes();
+    }
+  }
+
+  /**
+   * Schedule the wakeup for the earliest task in all stripes.
+   */
+  private void scheduleNextWakeupOfStripes() {
+    for (Stripe stripe : stripes) {
+      stripe.lock.lock();
+    }
+    try {
+      long nextTime = Long.MAX_VALUE;
+      for (Stripe stripe : stripes) {
+        nextTime = Math.min(nextTime, stripe.structure.nextRun());
+      }
+      synchronized (wakeupLock) {
+        scheduleNextWakeup(nextTime);
+      }
+    } finally {
+      for (Stripe stripe : stripes) {
+        stripe.lock.unlock();
+      }
+    }
+  }
+
+  /**
+   * Remove the due tasks in chunks of the batch size and run them. Tasks may process
+   * following tasks of the batch together, see {@link TimerTask#runBatch}. An exception
+   * of a task is logged and the processing continues with the next task, since the
+   * tasks of the batch are removed from the timer structure already.
+   */
+  private static void runDueTasks(Stripe stripe, long currentTime, TimerTask[] batch) {
+    int count;
+    do {
+      count = 0;
+      stripe.lock.lock();
       try {
-        task = structure.removeNextToRun(currentTime);
+        TimerTask task;
+        while (count < batch.length &&
+          (task = stripe.structure.removeNextToRun(currentTime)) != null) {
+          task.execute();
+          batch[count++] = task;
+        }
       } finally {
-        lock.unlock();
+        stripe.lock.unlock();
       }
-      if (task != null) {
-        task.execute();
-        task.action();
-      } else {
-        long nextTime;
-        lock.lock();
-        try {
-          nextTime = structure.nextRun();
-          scheduleNextWakeup(nextTime);
-        } finally {
-          lock.unlock();
+      try {
+        for (int i = 0; i < count; ) {
+          try {
+            i = batch[i].runBatch(batch, i, count);
+          } catch (Throwable t) {
+            Log.getLog(DefaultTimer.class).warn("Exception in timer task: " + batch[i], t);
+            i++;
+          }
         }
-        break;
+      } finally {
+        Arrays.fill(batch, 0, count, null);
       }
-    }
+    } while (count == batch.length);
   }
 
   /**
@@ -237,4 +346,15 @@ public class DefaultTimer implements Timer {
     }
   }
 
+  private static final class Stripe {
+
+    private final Lock lock = new ReentrantLock();
+    private final TimerStructure structure;
+
+    Stripe(TimerStructure structure) {
+      this.structure = structure;
+    }
+
+  }
+
 }
@@ -0,0 +1,89 @@
+package org.cache2k.core.timing;
+
+/*-
+ * #%L
+ * cache2k core implementation
+ * %%
+ * Copyright (C) 2000 - 2022 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.annotation.Nullable;
+import org.cache2k.core.api.InternalCacheBuildContext;
+import org.cache2k.core.api.InternalCacheCloseContext;
+
+/**
+ * Timer shared by the caches of a cache manager. The caches need no timer structure
+ * of their own and have one common scheduler wakeup. Each timer task references its
+ * cache, so the tasks are routed to the cache when they run. The timer is created when
+ * the first cache acquires it and closed when the last cache releases it.
+ *
+ * <p>The timer uses the time reference and scheduler of the first cache, so only caches
+ * with the default time reference, scheduler and executor should share a timer.
+ *
+ * @author Jens Wilke
+ * @see org.cache2k.config.Cache2kManagerConfig#setSharedTimer(boolean)
+ */
+public class SharedTimer {
+
+  private final Object lock = new Object();
+  private @Nullable Timer timer;
+  private int usageCount;
+
+  /**
+   * Return the shared timer and create it if not present.
+   */
+  public Timer acquire(InternalCacheBuildContext<?, ?> ctx) {
+    synchronized (lock) {
+      if (timer == null) {
+        int stripeCount = DefaultTimer.determineStripeCount(true,
+          Runtime.getRuntime().availableProcessors(), ctx.internalConfig().getTimerStripeCount());
+        timer = new DefaultTimer(ctx.getTimeReference(), ctx.createScheduler(),
+          DefaultTimer.DEFAULT_TIMER_LAG_MILLIS, DefaultTimer.DEFAULT_SLOTS_PER_WHEEL,
+          stripeCount);
+      }
+      usageCount++;
+      return timer;
+    }
+  }
+
+  /**
+   * Called by a cache that acquired the timer when it is closed. The tasks of the
+   * cache need to be cancelled before. Closes the timer with the last user.
+   */
+  public void release(InternalCacheCloseContext closeContext) {
+    synchronized (lock) {
+      if (--usageCount == 0) {
+        timer.close(closeContext);
+        timer = null;
+      }
+    }
+  }
+
+  /**
+   * Number of caches using the timer.
+   */
+  public int getUsageCount() {
+    synchronized (lock) {
+      return usageCount;
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "SharedTimer{usageCount=" + getUsageCount() + "}";
+  }
+
+}
@@ -21,12 +21,15 @@ package org.cache2k.core.timing;
  */
 
 import org.cache2k.CacheEntry;
+import org.cache2k.CacheManager;
 import org.cache2k.annotation.Nullable;
 import org.cache2k.config.Cache2kConfig;
 import org.cache2k.core.AccessWrapper;
+import org.cache2k.core.CacheManagerImpl;
 import org.cache2k.core.api.InternalCacheBuildContext;
 import org.cache2k.core.api.InternalCacheCloseContext;
 import org.cache2k.core.Entry;
+import org.cache2k.core.HeapCache;
 import org.cache2k.core.ExceptionWrapper;
 import org.cache2k.expiry.RefreshAheadPolicy;
 import org.cache2k.operation.TimeReference;
@@ -36,6 +39,8 @@ import org.cache2k.expiry.ExpiryTimeValues;
 import org.cache2k.io.LoadExceptionInfo;
 import org.cache2k.io.ResiliencePolicy;
 
+import java.util.concurrent.atomic.LongAdder;
+
 /**
  * Expiry time is constant
  *
@@ -48,8 +53,13 @@ public class StaticTiming<K, V> extends Timing<K, V> {
   protected final boolean sharpExpiry;
   @Nullable protected final RefreshAheadPolicy<? super K, ? super V, Object> refreshAheadPolicy;
   protected final long expiryTicks;
-  private final Timer timer;
+  /** Timer for expiry and refresh, {@code null} with lazy expiry */
+  @Nullable private final Timer timer;
+  /** Present, if the timer is shared with other caches of the manager */
+  @Nullable private final SharedTimer sharedTimer;
   private TimerEventListener<K, V> target;
+  /** Timer tasks not scheduled because of lazy expiry */
+  private final LongAdder timerTasksAvoided = new LongAdder();
 
   StaticTiming(InternalCacheBuildContext<K, V> buildContext,
                ResiliencePolicy<K, V> resiliencePolicy) {
@@ -72,13 +82,48 @@ public class StaticTiming<K, V> extends Timing<K, V> {
         buildContext.createCustomization(buildContext.getConfig().getRefreshAheadPolicy());
     }
     sharpExpiry = cfg.isSharpExpiry();
-    if (cfg.getTimerLag() == null) {
-      timer = new DefaultTimer(clock, buildContext.createScheduler());
-    } else {
-      timer =
-        new DefaultTimer(clock, buildContext.createScheduler(), clock.toTicks(cfg.getTimerLag()));
-    }
     this.resiliencePolicy = resiliencePolicy;
+    if (buildContext.internalConfig().isLazyExpiry()) {
+      if (refreshAheadPolicy != null) {
+        throw new IllegalArgumentException("lazyExpiry cannot be combined with refresh ahead");
+      }
+      timer = null;
+      sharedTimer = null;
+      return;
+    }
+    sharedTimer = findSharedTimer(buildContext);
+    if (sharedTimer != null) {
+      timer = sharedTimer.acquire(buildContext);
+      return;
+    }
+    long lagTicks = cfg.getTimerLag() == null ?
+      DefaultTimer.DEFAULT_TIMER_LAG_MILLIS : clock.toTicks(cfg.getTimerLag());
+    int stripeCount = DefaultTimer.determineStripeCount(cfg.isBoostConcurrency(),
+      Runtime.getRuntime().availableProcessors(),
+      buildContext.internalConfig().getTimerStripeCount());
+    timer = new DefaultTimer(clock, buildContext.createScheduler(), lagTicks,
+      DefaultTimer.DEFAULT_SLOTS_PER_WHEEL, stripeCount);
+  }
+
+  /**
+   * The shared timer of the cache manager, if enabled and the cache uses the defaults
+   * for time reference, scheduler, executor and timer lag, otherwise {@code null}.
+   */
+  static @Nullable SharedTimer findSharedTimer(InternalCacheBuildContext<?, ?> ctx) {
+    CacheManager manager = ctx.getCacheManager();
+    if (!(manager instanceof CacheManagerImpl)) {
+      return null;
+    }
+    CacheManagerImpl managerImpl = (CacheManagerImpl) manager;
+    if (!ctx.internalConfig().isSharedTimer() && !managerImpl.isSharedTimerConfigured()) {
+      return null;
+    }
+    Cache2kConfig<?, ?> cfg = ctx.getConfig();
+    if (cfg.getTimeReference() != null || cfg.getScheduler() != null ||
+      cfg.getExecutor() != null || cfg.getTimerLag() != null) {
+      return null;
+    }
+    return managerImpl.getSharedTimer();
   }
 
   @Override
@@ -86,15 +131,38 @@ public class StaticTiming<K, V> extends Timing<K, V> {
     this.target = target;
   }
 
+  /**
+   * Expiry timer tasks not scheduled, because the expiry is checked lazily on access.
+   */
+  @Override
+  public long getTimerTasksAvoidedCount() {
+    return timerTasksAvoided.sum();
+  }
+
+  /**
+   * Cancel all tasks, if the timer is not shared. The tasks in a shared timer are
+   * cancelled per entry by the cache.
+   */
   @Override
   public void cancelAll() {
-    timer.cancelAll();
+    if (timer != null && sharedTimer == null) {
+      timer.cancelAll();
+    }
+  }
+
+  @Override
+  public boolean isTimerShared() {
+    return sharedTimer != null;
   }
 
   @Override
   public void close(InternalCacheCloseContext closeContext) {
     closeContext.closeCustomization(resiliencePolicy, "resiliencePolicy");
-    timer.close(closeContext);
+    if (sharedTimer != null) {
+      sharedTimer.release(closeContext);
+    } else if (timer != null) {
+      timer.close(closeContext);
+    }
   }
 
   @Override
@@ -142,6 +210,9 @@ public class StaticTiming<K, V> extends Timing<K, V> {
    * {@link Entry#EXPIRED} is returned. Callers need to check that and may
    * be remove the entry consequently from the cache.
    *
+   * <p>With lazy expiry no timer is started. The negative expiry time
+   * enforces a time check when the entry is accessed.
+   *
    * @param e          the entry
    * @param expiryTime expiry time with special values as defined in {@link ExpiryTimeValues}
    *
@@ -169,6 +240,10 @@ public class StaticTiming<K, V> extends Timing<K, V> {
     if (absExpiryTime <= now) {
       return expiredEventuallyStartBackgroundRefresh(e, expiryTime < 0);
     }
+    if (timer == null) {
+      timerTasksAvoided.increment();
+      return -absExpiryTime;
+    }
     if (refreshTime > 0) {
       e.setTask(new Tasks.RefreshTimerTask<K, V>().to(target, e));
       scheduleTask(refreshTime, e);
@@ -191,8 +266,8 @@ public class StaticTiming<K, V> extends Timing<K, V> {
     Tasks<K, V> tsk = (Tasks<K, V>) e.getTask();
     if (tsk != null) {
       timer.cancel(tsk);
+      e.setTask(null);
     }
-    e.setTask(null);
   }
 
   @Override
@@ -254,13 +329,14 @@ public class StaticTiming<K, V> extends Timing<K, V> {
   }
 
   @Override
-  public Object wrapLoadValueForRefresh(RefreshAheadPolicy.Context<Object> ctx ,
+  public Object wrapLoadValueForRefresh(HeapCache<K, V> cache,
+                                        RefreshAheadPolicy.Context<Object> ctx,
                                         Entry<K, V> e, Object valueOrException) {
     if (refreshAheadPolicy == null) {
       return valueOrException;
     }
     int requiredAccessCount = refreshAheadPolicy.requiredHits(ctx);
-    return AccessWrapper.of(e, (V) valueOrException, requiredAccessCount);
+    return AccessWrapper.of(cache, e, (V) valueOrException, requiredAccessCount);
   }
 
 }
@@ -22,6 +22,7 @@ package org.cache2k.core.timing;
 
 import org.cache2k.CacheClosedException;
 import org.cache2k.core.Entry;
+import org.cache2k.core.log.Log;
 
 /**
  * @author Jens Wilke
@@ -60,18 +61,33 @@ abstract class Tasks<K, V> extends TimerTask {
     return entry;
   }
 
+  /**
+   * Tasks of one entry are always in the same stripe.
+   */
+  @Override
+  protected int stripeHash() {
+    return entry.hashCode;
+  }
+
   public abstract void fire();
 
+  /**
+   * Exceptions are logged to the cache, so the timer continues with the other tasks.
+   */
   protected final void action() {
     try {
       fire();
     } catch (CacheClosedException ignore) {
     } catch (Throwable t) {
-      throw new RuntimeException("Exception in event processing," +
-        " for cache: " + getTarget().getName(), t);
+      logException(getTarget(), t);
     }
   }
 
+  static void logException(TimerEventListener<?, ?> target, Throwable t) {
+    target.getLog().warn("Exception in timer event processing, for cache: " +
+      target.getName(), t);
+  }
+
   static class RefreshTimerTask<K, V> extends Tasks<K, V> {
     public void fire() {
       getTarget().timerEventRefresh(getEntry(), this);
@@ -82,6 +98,43 @@ abstract class Tasks<K, V> extends TimerTask {
     public void fire() {
       getTarget().timerEventExpireEntry(getEntry(), this);
     }
+
+    /**
+     * Collect the following expiry tasks of the same cache and pass them to the
+     * cache in one call. With a shared timer the tasks of different caches are mixed,
+     * so tasks of the same cache are moved forward in the batch.
+     */
+    @SuppressWarnings("unchecked")
+    @Override
+    int runBatch(TimerTask[] batch, int index, int count) {
+      TimerEventListener<K, V> target = getTarget();
+      int end = index + 1;
+      for (int i = end; i < count; i++) {
+        TimerTask t = batch[i];
+        if (t instanceof ExpireTimerTask && ((ExpireTimerTask<?, ?>) t).getTarget() == target) {
+          batch[i] = batch[end];
+          batch[end++] = t;
+        }
+      }
+      if (end - index == 1) {
+        action();
+        return end;
+      }
+      Entry<K, V>[] entries = new Entry[end - index];
+      Object[] tasks = new Object[end - index];
+      for (int i = 0; i < entries.length; i++) {
+        ExpireTimerTask<K, V> t = (ExpireTimerTask<K, V>) batch[index + i];
+        entries[i] = t.getEntry();
+        tasks[i] = t;
+      }
+      try {
+        target.timerEventExpireEntries(entries, tasks);
+      } catch (CacheClosedException ignore) {
+      } catch (Throwable t) {
+        logException(target, t);
+      }
+      return end;
+    }
   }
 
   static class RefreshExpireTimerTask<K, V> extends Tasks<K, V> {
@@ -20,8 +20,10 @@ package org.cache2k.core.timing;
  * #L%
  */
 
+import org.cache2k.CacheClosedException;
 import org.cache2k.core.Entry;
 import org.cache2k.core.api.InternalCache;
+import org.cache2k.core.log.Log;
 
 /**
  * Notifications from the {@link Timing} to the {@link InternalCache} upon timer
@@ -37,6 +39,11 @@ public interface TimerEventListener<K, V> {
    */
   String getName();
 
+  /**
+   * Log for exceptions in timer event processing.
+   */
+  Log getLog();
+
   /**
    * Called by the timer when an entry is expired or before actual expiry
    * when the entry needs to switch into sharp expiry mode. The actual action
@@ -47,6 +54,27 @@ public interface TimerEventListener<K, V> {
    */
   void timerEventExpireEntry(Entry<K, V> e, Object task);
 
+  /**
+   * Called by the timer with the expiry tasks of this target that are due within
+   * the same timer event, e.g. after a bulk load. The default expires entry by entry.
+   * An exception is logged and does not stop the expiry of the remaining entries.
+   *
+   * @param entries the entries to expire
+   * @param tasks the timer task of the entry at the same position, see
+   *              {@link #timerEventExpireEntry(Entry, Object)}
+   */
+  default void timerEventExpireEntries(Entry<K, V>[] entries, Object[] tasks) {
+    for (int i = 0; i < entries.length; i++) {
+      try {
+        timerEventExpireEntry(entries[i], tasks[i]);
+      } catch (CacheClosedException ex) {
+        throw ex;
+      } catch (Throwable t) {
+        getLog().warn("Exception in timer event processing, for cache: " + getName(), t);
+      }
+    }
+  }
+
   /**
    * The entry should be refreshed.
    *
@@ -30,6 +30,8 @@ public abstract class TimerTask implements Runnable {
   private static final long UNSCHEDULED = -1;
   long time = UNSCHEDULED;
   TimerTask next, prev = null;
+  /** Index of the timer stripe the task is scheduled in */
+  int stripe;
   void insert(TimerTask t) { t.next = next; t.prev = this; next.prev = t; next = t; }
   void remove() { prev.next = next; next.prev = prev; next = prev = null; }
   void execute() { prev = this; }
@@ -43,11 +45,33 @@ public abstract class TimerTask implements Runnable {
     @Override protected void action() { }
   }
 
+  /**
+   * Hash code for selecting the timer stripe.
+   *
+   * @see DefaultTimer
+   */
+  protected int stripeHash() {
+    return System.identityHashCode(this);
+  }
+
   /**
    * The action to be performed by this timer task.
    */
   protected abstract void action();
 
+  /**
+   * Run this task and eventually following tasks in the batch that can be processed
+   * together. The batch contains tasks that were due in the same timer event and are
+   * removed from the timer structure already.
+   *
+   * @param index position of this task in the batch
+   * @return position of the next task in the batch that is not run yet
+   */
+  int runBatch(TimerTask[] batch, int index, int count) {
+    action();
+    return index + 1;
+  }
+
   /**
    * Not thread save to use directly, use {@link Timer#cancel(TimerTask)}
    * It can happen that cancel is called on a task that is already
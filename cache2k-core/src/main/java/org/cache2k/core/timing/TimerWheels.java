@@ -20,12 +20,17 @@ package org.cache2k.core.timing;
  * #L%
  */
 
+import java.util.Arrays;
+
 /**
  * Hierarchical timer wheel implementation. The implementation is flexible and
  * can work with variable delta time per time slot and variable slots per wheel
  * level.
  *
- * <p>This implementation is rather simple and has opportunities to improve performance.
+ * <p>Each wheel keeps a bitmap of occupied slots, so the next occupied slot is found
+ * by scanning the bitmap words instead of each slot. A task is cancelled by
+ * unlinking it from its slot, without updating the bitmap, so a bit may be set for an
+ * empty slot. The bit is cleared when the empty slot is found during a search.
  *
  * @author Jens Wilke
  */
@@ -69,11 +74,14 @@ public class TimerWheels implements TimerStructure {
     private long nextNoon;
     private final long slotDelta;
     private final TimerTask[] slots;
+    /** Bit set if slot may be occupied */
+    private final long[] occupied;
     private int index;
 
     Wheel(long time, long slotDelta, int slotCount) {
       this.slotDelta = slotDelta;
       slots = new TimerTask[slotCount];
+      occupied = new long[(slotCount + 63) >>> 6];
       initArray();
       atNoon(time);
     }
@@ -104,6 +112,30 @@ public class TimerWheels implements TimerStructure {
     private void cancel() {
       up = null;
       initArray();
+      Arrays.fill(occupied, 0);
+    }
+
+    /**
+     * Index of the next slot starting at {@code from}, that has its occupied bit set, or
+     * the slot count, if there is none.
+     */
+    int nextOccupied(int from) {
+      int word = from >>> 6;
+      if (word >= occupied.length) {
+        return slots.length;
+      }
+      long bits = occupied[word] & (-1L << from);
+      while (bits == 0) {
+        if (++word == occupied.length) {
+          return slots.length;
+        }
+        bits = occupied[word];
+      }
+      return (word << 6) + Long.numberOfTrailingZeros(bits);
+    }
+
+    private void clearOccupied(int i) {
+      occupied[i >>> 6] &= ~(1L << i);
     }
 
     /**
@@ -123,10 +155,11 @@ public class TimerWheels implements TimerStructure {
      * at an upper level needs to split up.
      */
     long nextToRun() {
-      for (int i = index; i < slots.length; i++) {
+      for (int i = nextOccupied(index); i < slots.length; i = nextOccupied(i + 1)) {
         if (slots[i].isOccupied()) {
           return executionTime(i);
         }
+        clearOccupied(i);
       }
       if (up == null) {
         return Long.MAX_VALUE;
@@ -139,27 +172,40 @@ public class TimerWheels implements TimerStructure {
      * If execution time for the current slot is reached, return the tasks in it.
      * We don't need to compare the actual time in the task.
      * If all tasks are completed within the slot and the time is past the
-     * slot execution time, we move the slot index forward.
+     * slot execution time, we move the slot index forward to the next occupied slot,
+     * or as far as the time allows.
      */
     public TimerTask removeNextToRun(long time) {
-      long hand = executionTime(index);
-      if (time >= hand) {
-        while (true) {
-          TimerTask head = slots[index];
-          if (head.isOccupied()) {
-            TimerTask t = head.next;
-            t.remove();
-            return t;
-          }
-          hand = hand + slotDelta;
-          if (time >= hand) {
-            moveHand();
-            continue;
+      if (time < executionTime(index)) {
+        return null;
+      }
+      while (true) {
+        TimerTask head = slots[index];
+        if (head.isOccupied()) {
+          TimerTask t = head.next;
+          t.remove();
+          if (!head.isOccupied()) {
+            clearOccupied(index);
           }
-          break;
+          return t;
+        }
+        clearOccupied(index);
+        long lastDue = (time - executionTime(0)) / slotDelta;
+        int next = nextOccupied(index + 1);
+        if (next < slots.length && next <= lastDue) {
+          index = next;
+          continue;
+        }
+        if (lastDue < slots.length) {
+          index = (int) lastDue;
+          return null;
+        }
+        index = slots.length - 1;
+        moveHand();
+        if (time < executionTime(index)) {
+          return null;
         }
       }
-      return null;
     }
 
     /**
@@ -214,6 +260,7 @@ public class TimerWheels implements TimerStructure {
     private void insert(TimerTask t) {
       int idx = (int) ((t.time - noon) / slotDelta);
       slots[idx].insert(t);
+      occupied[idx >>> 6] |= 1L << idx;
     }
 
   }
@@ -27,6 +27,7 @@ import org.cache2k.core.api.InternalCacheBuildContext;
 import org.cache2k.core.api.InternalCacheCloseContext;
 import org.cache2k.core.Entry;
 import org.cache2k.core.ExceptionWrapper;
+import org.cache2k.core.HeapCache;
 import org.cache2k.core.api.NeedsClose;
 import org.cache2k.expiry.ExpiryPolicy;
 import org.cache2k.expiry.RefreshAheadPolicy;
@@ -87,6 +88,18 @@ public abstract class Timing<K, V> implements NeedsClose {
    */
   public void cancelAll() { }
 
+  /**
+   * The timer is shared with other caches, so {@link #cancelAll()} has no effect and
+   * the cache needs to cancel the timer of each entry.
+   */
+  public boolean isTimerShared() { return false; }
+
+  /**
+   * Number of expiry timer tasks that were not scheduled, because the expiry is checked
+   * lazily on access.
+   */
+  public long getTimerTasksAvoidedCount() { return 0; }
+
   @Override
   public void close(InternalCacheCloseContext closeContext) { }
 
@@ -143,9 +156,10 @@ public abstract class Timing<K, V> implements NeedsClose {
   /**
    * Called after value was loaded, triggered by the user. Wraps the value if
    * necessary into {@link org.cache2k.core.AccessWrapper} if refresh
-   * is enabled.
+   * is enabled. The wrapper stores the unwrapped value via the cache.
    */
-  public Object wrapLoadValueForRefresh(RefreshAheadPolicy.Context<Object> ctx, Entry<K, V> e,
+  public Object wrapLoadValueForRefresh(HeapCache<K, V> cache,
+                                        RefreshAheadPolicy.Context<Object> ctx, Entry<K, V> e,
                                         Object valueOrException) {
     return valueOrException;
   }
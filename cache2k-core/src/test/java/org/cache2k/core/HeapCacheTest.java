@@ -22,8 +22,12 @@ package org.cache2k.core;
 
 import org.cache2k.Cache;
 import org.cache2k.Cache2kBuilder;
+import org.cache2k.core.api.InternalCache;
+import org.cache2k.core.api.InternalConfig;
+import org.cache2k.operation.CacheOperation;
 import org.junit.Test;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatCode;
 
 /**
@@ -42,4 +46,36 @@ public class HeapCacheTest {
     ).isInstanceOf(UnsupportedOperationException.class);
   }
 
+  @Test
+  public void hashTableShrinksAfterCapacityChange() {
+    hashTableShrinksAfterCapacityChange(false);
+  }
+
+  @Test
+  public void openAddressingHashTableShrinksAfterCapacityChange() {
+    hashTableShrinksAfterCapacityChange(true);
+  }
+
+  private static void hashTableShrinksAfterCapacityChange(boolean openAddressing) {
+    Cache<Integer, Integer> c = Cache2kBuilder.of(Integer.class, Integer.class)
+      .entryCapacity(100_000)
+      .with(InternalConfig.class, b -> b.openAddressingHash(openAddressing))
+      .build();
+    InternalCache<Integer, Integer> ic = c.requestInterface(InternalCache.class);
+    long initialSize = ic.getInfo().getHashTableSize();
+    for (int i = 0; i < 100_000; i++) {
+      c.put(i, i);
+    }
+    long expandedSize = ic.getInfo().getHashTableSize();
+    assertThat(expandedSize).isGreaterThan(100_000);
+    c.requestInterface(CacheOperation.class).changeCapacity(100);
+    long shrunkSize = ic.getInfo().getHashTableSize();
+    assertThat(shrunkSize).isLessThan(expandedSize / 100);
+    assertThat(c.asMap().size()).isEqualTo(100);
+    ic.checkIntegrity();
+    c.clear();
+    assertThat(ic.getInfo().getHashTableSize()).isEqualTo(initialSize);
+    c.close();
+  }
+
 }
@@ -24,9 +24,11 @@ import org.assertj.core.api.Assertions;
 import org.cache2k.Cache;
 import org.cache2k.Cache2kBuilder;
 import org.cache2k.core.api.CommonMetrics;
+import org.cache2k.core.api.InternalCache;
 import org.cache2k.core.api.InternalConfig;
 import org.cache2k.core.concurrency.ThreadFactoryProvider;
 import org.cache2k.operation.CacheControl;
+import org.cache2k.operation.CacheStatistics;
 import org.junit.Test;
 
 import java.util.Arrays;
@@ -92,4 +94,34 @@ public class InternalConfigTest {
     cache.close();
   }
 
+  @Test
+  public void stripedMetrics() throws Exception {
+    Cache<Integer, Integer> cache =
+      Cache2kBuilder.of(Integer.class, Integer.class)
+        .with(InternalConfig.class, b -> b.stripedMetrics(true))
+        .build();
+    HeapCache<?, ?> hc = (HeapCache<?, ?>) cache.requestInterface(InternalCache.class);
+    assertThat(hc.metrics).isInstanceOf(StripedCommonMetrics.class);
+    cache.put(1, 1);
+    int threads = 4;
+    int count = 10_000;
+    Thread[] ta = new Thread[threads];
+    for (int i = 0; i < threads; i++) {
+      ta[i] = new Thread(() -> {
+        for (int j = 0; j < count; j++) {
+          cache.get(1);
+        }
+      });
+      ta[i].start();
+    }
+    for (Thread t : ta) {
+      t.join();
+    }
+    CacheStatistics statistics = CacheControl.of(cache).sampleStatistics();
+    assertThat(statistics.getPutCount()).isEqualTo(1);
+    assertThat(statistics.getGetCount()).isEqualTo(threads * count);
+    assertThat(statistics.getMissCount()).isEqualTo(0);
+    cache.close();
+  }
+
 }
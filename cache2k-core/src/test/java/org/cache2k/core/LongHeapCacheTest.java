@@ -0,0 +1,111 @@
+package org.cache2k.core;
+
+/*-
+ * #%L
+ * cache2k core implementation
+ * %%
+ * Copyright (C) 2000 - 2022 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.Cache;
+import org.cache2k.Cache2kBuilder;
+import org.cache2k.CacheEntry;
+import org.cache2k.core.api.InternalCache;
+import org.cache2k.core.api.InternalConfig;
+import org.cache2k.testing.category.FastTests;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Jens Wilke
+ */
+@Category(FastTests.class)
+public class LongHeapCacheTest {
+
+  @Test
+  public void builderSelectsLongHeapCache() {
+    Cache<Long, String> cache = Cache2kBuilder.of(Long.class, String.class).build();
+    assertThat(cache.requestInterface(HeapCache.class)).isInstanceOf(LongHeapCache.class);
+    cache.close();
+  }
+
+  @Test
+  public void collidingKeys() {
+    check(Cache2kBuilder.of(Long.class, String.class)
+      .entryCapacity(10_000)
+      .build());
+  }
+
+  @Test
+  public void collidingKeysOpenAddressing() {
+    check(Cache2kBuilder.of(Long.class, String.class)
+      .entryCapacity(10_000)
+      .with(InternalConfig.class, b -> b.openAddressingHash(true))
+      .build());
+  }
+
+  @Test
+  public void loaderReceivesKey() {
+    Cache<Long, String> cache = Cache2kBuilder.of(Long.class, String.class)
+      .loader(Object::toString)
+      .build();
+    long key = (123L << 32) | 123;
+    assertThat(cache.get(key)).isEqualTo(Long.toString(key));
+    assertThat(cache.get(0L)).isEqualTo("0");
+    assertThat(cache.peekEntry(key).getKey()).isEqualTo(key);
+    cache.close();
+  }
+
+  /**
+   * Keys {@code (i << 32) | i} all have the hash code 0 and {@code i << 32} has the hash code
+   * {@code i}, so entries with equal hash codes but different keys are present in the table.
+   */
+  private static void check(Cache<Long, String> cache) {
+    int count = 1_000;
+    for (long i = 0; i < count; i++) {
+      cache.put(i, "a" + i);
+      cache.put((i << 32) | i, "b" + i);
+      cache.put(i << 32, "c" + i);
+    }
+    for (long i = 1; i < count; i++) {
+      assertThat(cache.peek(i)).isEqualTo("a" + i);
+      assertThat(cache.peek((i << 32) | i)).isEqualTo("b" + i);
+      assertThat(cache.peek(i << 32)).isEqualTo("c" + i);
+    }
+    assertThat(cache.peek(0L)).isEqualTo("c0");
+    assertThat(cache.asMap().size()).isEqualTo(count * 3 - 2);
+    for (long i = 1; i < count; i += 2) {
+      cache.remove((i << 32) | i);
+    }
+    assertThat(cache.containsKey(1L << 32 | 1)).isFalse();
+    assertThat(cache.containsKey(2L << 32 | 2)).isTrue();
+    assertThat(cache.containsKey(1L << 32)).isTrue();
+    Set<Long> keys = new HashSet<>();
+    for (CacheEntry<Long, String> e : cache.entries()) {
+      assertThat(keys.add(e.getKey())).isTrue();
+      assertThat(cache.peek(e.getKey())).isEqualTo(e.getValue());
+    }
+    assertThat(keys).hasSize(count * 3 - 2 - count / 2);
+    ((InternalCache<?, ?>) cache.requestInterface(InternalCache.class)).checkIntegrity();
+    cache.close();
+  }
+
+}
@@ -0,0 +1,159 @@
+package org.cache2k.core;
+
+/*-
+ * #%L
+ * cache2k core implementation
+ * %%
+ * Copyright (C) 2000 - 2022 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.Cache;
+import org.cache2k.Cache2kBuilder;
+import org.cache2k.core.api.InternalCache;
+import org.cache2k.core.api.InternalConfig;
+import org.cache2k.testing.category.FastTests;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.cache2k.core.StampedHashTest.insert;
+import static org.cache2k.core.StampedHashTest.lookup;
+
+/**
+ * @author Jens Wilke
+ */
+@Category(FastTests.class)
+public class OpenAddressingHashTest {
+
+  @Test
+  public void insertLookupRemove() {
+    OpenAddressingHash<Integer, Integer> ht = new OpenAddressingHash<>(null);
+    int count = 10_000;
+    for (int i = 0; i < count; i++) {
+      insert(ht, i);
+    }
+    assertThat(ht.getSize()).isEqualTo(count);
+    assertThat(ht.getRehashCount()).isGreaterThan(0);
+    for (int i = 0; i < count; i++) {
+      assertThat(lookup(ht, i).getKey()).isEqualTo(i);
+    }
+    assertThat(lookup(ht, count)).isNull();
+    for (int i = 0; i < count; i += 3) {
+      assertThat(ht.remove(lookup(ht, i))).isTrue();
+    }
+    for (int i = 0; i < count; i++) {
+      if (i % 3 == 0) {
+        assertThat(lookup(ht, i)).isNull();
+      } else {
+        assertThat(lookup(ht, i)).isNotNull();
+      }
+    }
+    assertThat(ht.runTotalLocked(ht::calcEntryCount)).isEqualTo(ht.getSize());
+  }
+
+  /**
+   * Continuous insert and remove keeps the table size, removed slots are reused or
+   * dropped by a rebuild.
+   */
+  @Test
+  public void insertRemoveKeepsTableSize() {
+    OpenAddressingHash<Integer, Integer> ht = new OpenAddressingHash<>(null);
+    int window = 1000;
+    for (int i = 0; i < window; i++) {
+      insert(ht, i);
+    }
+    long slots = 0;
+    for (int i = window; i < 100_000; i++) {
+      insert(ht, i);
+      assertThat(ht.remove(lookup(ht, i - window))).isTrue();
+      if (i == window * 2) {
+        slots = ht.getTableSize();
+      }
+    }
+    assertThat(ht.getSize()).isEqualTo(window);
+    assertThat(ht.getTableSize()).isLessThanOrEqualTo(slots * 2);
+    assertThat(ht.runTotalLocked(ht::calcEntryCount)).isEqualTo(window);
+  }
+
+  @Test
+  public void clearAndClose() {
+    OpenAddressingHash<Integer, Integer> ht = new OpenAddressingHash<>(null);
+    for (int i = 0; i < 100; i++) {
+      insert(ht, i);
+    }
+    ht.runTotalLocked(() -> {
+      ht.clearWhenLocked();
+      return null;
+    });
+    assertThat(ht.getSize()).isEqualTo(0);
+    assertThat(lookup(ht, 1)).isNull();
+    ht.runTotalLocked(() -> {
+      ht.close();
+      return null;
+    });
+    assertThat(ht.getTables()).isNull();
+  }
+
+  @Test
+  public void cacheWithOpenAddressing() {
+    Cache<Integer, Integer> cache = Cache2kBuilder.of(Integer.class, Integer.class)
+      .entryCapacity(5_000)
+      .with(InternalConfig.class, b -> b.openAddressingHash(true))
+      .build();
+    checkCache(cache);
+  }
+
+  @Test
+  public void objectKeyCacheWithOpenAddressing() {
+    Cache<String, Integer> cache = Cache2kBuilder.of(String.class, Integer.class)
+      .entryCapacity(5_000)
+      .with(InternalConfig.class, b -> b.openAddressingHash(true))
+      .build();
+    assertThat(((HeapCache<?, ?>) cache.requestInterface(HeapCache.class)).hash)
+      .isInstanceOf(OpenAddressingHash.class);
+    for (int i = 0; i < 10_000; i++) {
+      cache.put(Integer.toString(i), i);
+    }
+    assertThat(cache.asMap().size()).isEqualTo(5_000);
+    cache.remove("9999");
+    assertThat(cache.containsKey("9999")).isFalse();
+    assertThat(cache.peek("9998")).isEqualTo(9998);
+    ((InternalCache<?, ?>) cache.requestInterface(InternalCache.class)).checkIntegrity();
+    cache.close();
+  }
+
+  private static void checkCache(Cache<Integer, Integer> cache) {
+    for (int i = 0; i < 4_000; i++) {
+      cache.put(i, i);
+    }
+    for (int i = 0; i < 4_000; i += 2) {
+      cache.remove(i);
+    }
+    Set<Integer> keys = new HashSet<>();
+    for (Integer k : cache.keys()) {
+      assertThat(keys.add(k)).isTrue();
+    }
+    assertThat(keys).hasSize(2_000);
+    assertThat(cache.peek(1)).isEqualTo(1);
+    assertThat(cache.peek(2)).isNull();
+    ((InternalCache<?, ?>) cache.requestInterface(InternalCache.class)).checkIntegrity();
+    cache.close();
+  }
+
+}
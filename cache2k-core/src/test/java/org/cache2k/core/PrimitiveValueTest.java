@@ -0,0 +1,172 @@
+package org.cache2k.core;
+
+/*-
+ * #%L
+ * cache2k core implementation
+ * %%
+ * Copyright (C) 2000 - 2022 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.Cache;
+import org.cache2k.Cache2kBuilder;
+import org.cache2k.core.api.InternalCache;
+import org.cache2k.core.api.InternalConfig;
+import org.cache2k.core.api.PrimitiveValueCache;
+import org.cache2k.testing.category.FastTests;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * @author Jens Wilke
+ */
+@Category(FastTests.class)
+public class PrimitiveValueTest {
+
+  @Test
+  public void longValues() {
+    Cache<String, Long> cache = Cache2kBuilder.of(String.class, Long.class)
+      .with(InternalConfig.class, b -> b.primitiveValues(true))
+      .build();
+    PrimitiveValueCache<String> pc = cache.requestInterface(PrimitiveValueCache.class);
+    cache.put("a", Long.MAX_VALUE);
+    cache.put("b", -4711L);
+    assertThat(rawValue(cache, "a")).isSameAs(PrimitiveValue.LONG);
+    assertThat(pc.getLong("a", 0)).isEqualTo(Long.MAX_VALUE);
+    assertThat(pc.getLong("b", 0)).isEqualTo(-4711L);
+    assertThat(pc.getLong("c", -1)).isEqualTo(-1);
+    assertThat(cache.get("a")).isEqualTo(Long.MAX_VALUE);
+    assertThat(cache.peekEntry("b").getValue()).isEqualTo(-4711L);
+    assertThat(cache.asMap().containsValue(-4711L)).isTrue();
+    assertThat(cache.replaceIfEquals("b", -4711L, 1L)).isTrue();
+    assertThat(pc.getLong("b", 0)).isEqualTo(1L);
+    InternalCache<?, ?> ic = cache.requestInterface(InternalCache.class);
+    long getCount = ic.getInfo().getGetCount();
+    long missCount = ic.getInfo().getMissCount();
+    pc.getLong("a", 0);
+    pc.getLong("c", 0);
+    assertThat(ic.getInfo().getGetCount()).isEqualTo(getCount + 2);
+    assertThat(ic.getInfo().getMissCount()).isEqualTo(missCount + 1);
+    checkIntegrity(cache);
+    cache.close();
+  }
+
+  @Test
+  public void intValuesWithIntKeys() {
+    Cache<Integer, Integer> cache = Cache2kBuilder.of(Integer.class, Integer.class)
+      .with(InternalConfig.class, b -> b.primitiveValues(true))
+      .build();
+    PrimitiveValueCache<Integer> pc = cache.requestInterface(PrimitiveValueCache.class);
+    for (int i = 0; i < 1000; i++) {
+      cache.put(i, i * 1000);
+    }
+    for (int i = 0; i < 1000; i++) {
+      assertThat(pc.getInt(i, -1)).isEqualTo(i * 1000);
+      assertThat(cache.peek(i)).isEqualTo(i * 1000);
+    }
+    assertThat(rawValue(cache, 7)).isSameAs(PrimitiveValue.INT);
+    checkIntegrity(cache);
+    cache.close();
+  }
+
+  @Test
+  public void doubleValuesWithLongKeys() {
+    Cache<Long, Double> cache = Cache2kBuilder.of(Long.class, Double.class)
+      .with(InternalConfig.class, b -> b.primitiveValues(true))
+      .build();
+    PrimitiveValueCache<Long> pc = cache.requestInterface(PrimitiveValueCache.class);
+    cache.put(1L, 0.25);
+    cache.put(2L, Double.NaN);
+    assertThat(rawValue(cache, 1L)).isSameAs(PrimitiveValue.DOUBLE);
+    assertThat(pc.getDouble(1L, 0)).isEqualTo(0.25);
+    assertThat(pc.getDouble(2L, 0)).isNaN();
+    assertThat(pc.getDouble(3L, 1.5)).isEqualTo(1.5);
+    assertThat(cache.peek(1L)).isEqualTo(0.25);
+    assertThat(cache.requestInterface(HeapCache.class)).isInstanceOf(LongHeapCache.class);
+    checkIntegrity(cache);
+    cache.close();
+  }
+
+  @Test
+  public void loaderAndException() {
+    Cache<Long, Long> cache = Cache2kBuilder.of(Long.class, Long.class)
+      .with(InternalConfig.class, b -> b.primitiveValues(true))
+      .loader(key -> {
+        if (key < 0) {
+          throw new IllegalArgumentException();
+        }
+        return key * 2;
+      })
+      .build();
+    PrimitiveValueCache<Long> pc = cache.requestInterface(PrimitiveValueCache.class);
+    assertThat(pc.getLong(21L, 0)).isEqualTo(42);
+    assertThat(pc.getLong(21L, 0)).isEqualTo(42);
+    assertThatThrownBy(() -> pc.getLong(-1L, 0)).isInstanceOf(RuntimeException.class);
+    cache.put(-1L, 7L);
+    assertThat(pc.getLong(-1L, 0)).isEqualTo(7);
+    checkIntegrity(cache);
+    cache.close();
+  }
+
+  @Test
+  public void disabledByDefault() {
+    Cache<String, Long> cache = Cache2kBuilder.of(String.class, Long.class).build();
+    Long value = 4711L;
+    cache.put("a", value);
+    assertThat(cache.peek("a")).isSameAs(value);
+    assertThat(cache.requestInterface(PrimitiveValueCache.class).getLong("a", 0)).isEqualTo(4711L);
+    cache.close();
+  }
+
+  @Test
+  public void objectValuesFallback() {
+    Cache<String, Number> cache = Cache2kBuilder.of(String.class, Number.class).build();
+    PrimitiveValueCache<String> pc = cache.requestInterface(PrimitiveValueCache.class);
+    cache.put("a", 123);
+    assertThat(rawValue(cache, "a")).isEqualTo(123);
+    assertThat(pc.getLong("a", 0)).isEqualTo(123);
+    assertThat(pc.getDouble("a", 0)).isEqualTo(123.0);
+    assertThat(pc.getInt("b", -1)).isEqualTo(-1);
+    cache.close();
+  }
+
+  @Test
+  public void wiredCache() {
+    Cache<String, Long> cache = Cache2kBuilder.of(String.class, Long.class)
+      .with(InternalConfig.class, b -> b.primitiveValues(true))
+      .addListener((org.cache2k.event.CacheEntryCreatedListener<String, Long>) (c, e) -> { })
+      .build();
+    PrimitiveValueCache<String> pc = cache.requestInterface(PrimitiveValueCache.class);
+    cache.put("a", 1234L);
+    assertThat(pc.getLong("a", 0)).isEqualTo(1234L);
+    cache.close();
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <K> Object rawValue(Cache<K, ?> cache, K key) {
+    HeapCache<K, ?> hc = cache.requestInterface(HeapCache.class);
+    int hash = HeapCache.spreadHash(key.hashCode());
+    return hc.lookupEntryNoHitRecord(key, hash, hc.toStoredHashCodeOrKey(key, hash))
+      .getRawValueOrWrapper();
+  }
+
+  private static void checkIntegrity(Cache<?, ?> cache) {
+    ((InternalCache<?, ?>) cache.requestInterface(InternalCache.class)).checkIntegrity();
+  }
+
+}
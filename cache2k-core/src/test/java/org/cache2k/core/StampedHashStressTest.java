@@ -0,0 +1,129 @@
+package org.cache2k.core;
+
+/*-
+ * #%L
+ * cache2k core implementation
+ * %%
+ * Copyright (C) 2000 - 2022 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.pinpoint.stress.ThreadingStressTester;
+import org.cache2k.testing.category.SlowTests;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.cache2k.core.StampedHashTest.insert;
+import static org.cache2k.core.StampedHashTest.lookup;
+import static org.cache2k.test.core.TestingParameters.MAX_FINISH_WAIT_MILLIS;
+
+/**
+ * Concurrent inserts, lookups and removes while the hash table expands
+ * incrementally.
+ *
+ * @author Jens Wilke
+ */
+@Category(SlowTests.class)
+public class StampedHashStressTest {
+
+  protected SegmentedHash<Integer, Integer> createHash() {
+    return new StampedHash<>(null);
+  }
+
+  /**
+   * Writers insert disjoint key ranges, readers check that every key reported as inserted
+   * is found, while the table doubles several times.
+   */
+  @Test
+  public void insertAndLookupWhileExpanding() {
+    final int threads = 4;
+    final int perThread = 250_000;
+    SegmentedHash<Integer, Integer> ht = createHash();
+    AtomicInteger offset = new AtomicInteger();
+    AtomicIntegerArray inserted = new AtomicIntegerArray(threads);
+    AtomicInteger writersDone = new AtomicInteger();
+    Runnable writer = () -> {
+      int slot = offset.getAndIncrement();
+      int start = slot * perThread;
+      for (int i = 0; i < perThread; i++) {
+        insert(ht, start + i);
+        inserted.lazySet(slot, i + 1);
+      }
+      writersDone.incrementAndGet();
+    };
+    Runnable reader = () -> {
+      while (writersDone.get() < threads) {
+        for (int slot = 0; slot < threads; slot++) {
+          int limit = inserted.get(slot);
+          int start = slot * perThread;
+          for (int i = Math.max(0, limit - 1000); i < limit; i++) {
+            assertThat(lookup(ht, start + i))
+              .as("inserted entry present")
+              .isNotNull();
+          }
+        }
+      }
+    };
+    ThreadingStressTester tst = new ThreadingStressTester();
+    tst.setOneShotMode(true);
+    tst.setOneShotTimeoutMillis(MAX_FINISH_WAIT_MILLIS);
+    tst.addTask(threads, writer);
+    tst.addTask(threads, reader);
+    tst.run();
+    ht.runTotalLocked(() -> {
+      ht.completeExpansionWhenLocked();
+      return null;
+    });
+    assertThat(ht.getRehashCount()).isGreaterThan(5);
+    assertThat(ht.getSize()).isEqualTo(threads * perThread);
+    assertThat(ht.runTotalLocked(ht::calcEntryCount)).isEqualTo(threads * perThread);
+    for (int i = 0; i < threads * perThread; i++) {
+      assertThat(lookup(ht, i)).isNotNull();
+    }
+  }
+
+  /**
+   * Insert and remove in parallel, the table needs to be consistent at the end.
+   */
+  @Test
+  public void insertRemoveWhileExpanding() {
+    final int threads = 4;
+    final int perThread = 100_000;
+    SegmentedHash<Integer, Integer> ht = createHash();
+    AtomicInteger offset = new AtomicInteger();
+    Runnable insertAndRemove = () -> {
+      int start = offset.getAndAdd(perThread);
+      for (int i = start; i < start + perThread; i++) {
+        insert(ht, i);
+        if ((i & 1) == 0) {
+          assertThat(ht.remove(lookup(ht, i))).isTrue();
+        }
+      }
+    };
+    ThreadingStressTester tst = new ThreadingStressTester();
+    tst.setOneShotMode(true);
+    tst.setOneShotTimeoutMillis(MAX_FINISH_WAIT_MILLIS);
+    tst.addTask(threads, insertAndRemove);
+    tst.run();
+    long expected = threads * perThread / 2;
+    assertThat(ht.getSize()).isEqualTo(expected);
+    assertThat(ht.runTotalLocked(ht::calcEntryCount)).isEqualTo(expected);
+  }
+
+}
@@ -26,6 +26,8 @@ import org.cache2k.testing.category.FastTests;
 import org.junit.Test;
 import org.junit.experimental.categories.Category;
 
+import java.util.concurrent.locks.StampedLock;
+
 /**
  * @author Jens Wilke
  */
@@ -50,4 +52,153 @@ public class StampedHashTest {
     }
   }
 
+  /**
+   * Insert entries, which triggers incremental expansions. All entries need to be
+   * present during and after the expansion.
+   */
+  @Test
+  public void testIncrementalExpansion() {
+    StampedHash<Integer, Integer> ht = new StampedHash<>(null);
+    int count = 12345;
+    boolean seenExpanding = false;
+    for (int i = 0; i < count; i++) {
+      insert(ht, i);
+      seenExpanding |= ht.isExpanding();
+      if (ht.isExpanding() && (i & 63) == 0) {
+        for (int k = 0; k <= i; k++) {
+          assertThat(lookup(ht, k)).isNotNull();
+        }
+      }
+    }
+    assertThat(seenExpanding).isTrue();
+    assertThat(ht.getRehashCount()).isGreaterThan(0);
+    assertThat(ht.getSize()).isEqualTo(count);
+    assertThat(ht.runTotalLocked(ht::calcEntryCount)).isEqualTo(count);
+    for (int i = 0; i < count; i++) {
+      assertThat(lookup(ht, i).getKey()).isEqualTo(i);
+    }
+  }
+
+  /**
+   * Remove entries and clear while an expansion is in progress.
+   */
+  @Test
+  public void testRemoveAndClearWhileExpanding() {
+    StampedHash<Integer, Integer> ht = new StampedHash<>(null);
+    int i = 0;
+    while (!ht.isExpanding()) {
+      insert(ht, i++);
+    }
+    for (int k = 0; k < i; k += 2) {
+      assertThat(ht.remove(lookup(ht, k))).isTrue();
+    }
+    assertThat(ht.runTotalLocked(ht::calcEntryCount)).isEqualTo(ht.getSize());
+    ht.runTotalLocked(() -> {
+      ht.clearWhenLocked();
+      return null;
+    });
+    assertThat(ht.isExpanding()).isFalse();
+    assertThat(ht.getSize()).isEqualTo(0);
+    insert(ht, 4711);
+    assertThat(lookup(ht, 4711)).isNotNull();
+  }
+
+  /**
+   * An expansion completes when entries are only read after the expansion started.
+   */
+  @Test
+  public void testExpansionCompletesWithLookups() {
+    StampedHash<Integer, Integer> ht = new StampedHash<>(null);
+    int count = 0;
+    while (!ht.isExpanding() || ht.getTableSize() < 1000) {
+      insert(ht, count++);
+    }
+    int rehashCount = ht.getRehashCount();
+    for (int i = 0; i < count; i++) {
+      assertThat(lookup(ht, i)).isNotNull();
+    }
+    assertThat(ht.isExpanding()).isFalse();
+    assertThat(ht.getRehashCount()).isGreaterThan(rehashCount);
+    assertThat(ht.runTotalLocked(ht::calcEntryCount)).isEqualTo(count);
+  }
+
+  /**
+   * Keys that all map to the first segment only expand the first segment table.
+   */
+  @Test
+  public void testSkewedExpansionOnlyExpandsHotSegment() {
+    StampedHash<Integer, Integer> ht = new StampedHash<>(null);
+    long initialBuckets = ht.getTableSize();
+    int count = 10_000;
+    for (int i = 0; i < count; i++) {
+      insert(ht, i * SegmentedHash.LOCK_SEGMENTS);
+    }
+    Entry<Integer, Integer>[][] tables = ht.runTotalLocked(() -> {
+      ht.completeExpansionWhenLocked();
+      return ht.getTables();
+    });
+    assertThat(tables[0].length).isGreaterThanOrEqualTo(count);
+    for (int si = 1; si < tables.length; si++) {
+      assertThat(tables[si].length).isEqualTo(tables[1].length);
+    }
+    assertThat(ht.getTableSize() - tables[0].length)
+      .isLessThan(initialBuckets);
+    for (int i = 0; i < count; i++) {
+      assertThat(lookup(ht, i * SegmentedHash.LOCK_SEGMENTS)).isNotNull();
+    }
+  }
+
+  /**
+   * Removing most of the entries shrinks the tables, only when the fill drops far below
+   * the expansion limit.
+   */
+  @Test
+  public void testShrink() {
+    StampedHash<Integer, Integer> ht = new StampedHash<>(null);
+    long initialSize = ht.getTableSize();
+    int count = 100_000;
+    for (int i = 0; i < count; i++) {
+      insert(ht, i);
+    }
+    ht.runTotalLocked(() -> {
+      ht.completeExpansionWhenLocked();
+      return null;
+    });
+    long expandedSize = ht.getTableSize();
+    for (int i = 0; i < count / 4; i++) {
+      assertThat(ht.remove(lookup(ht, i))).isTrue();
+    }
+    assertThat(ht.getTableSize())
+      .as("no shrink at three quarters of the fill")
+      .isEqualTo(expandedSize);
+    for (int i = count / 4; i < count - 10; i++) {
+      assertThat(ht.remove(lookup(ht, i))).isTrue();
+    }
+    assertThat(ht.getTableSize()).isLessThan(expandedSize / 100);
+    assertThat(ht.getTableSize()).isGreaterThanOrEqualTo(initialSize);
+    assertThat(ht.getSize()).isEqualTo(10);
+    assertThat(ht.runTotalLocked(ht::calcEntryCount)).isEqualTo(10);
+    for (int i = count - 10; i < count; i++) {
+      assertThat(lookup(ht, i)).isNotNull();
+    }
+  }
+
+  static Entry<Integer, Integer> lookup(SegmentedHash<Integer, Integer> ht, int key) {
+    int hc = HeapCache.spreadHash(Integer.hashCode(key));
+    return ht.lookup(key, hc, hc);
+  }
+
+  static void insert(SegmentedHash<Integer, Integer> ht, int key) {
+    int hc = HeapCache.spreadHash(Integer.hashCode(key));
+    Entry<Integer, Integer> e = new Entry<>(key, hc);
+    StampedLock l = ht.getSegmentLock(hc);
+    long stamp = l.writeLock();
+    try {
+      ht.insertWithinLock(e, hc, hc);
+    } finally {
+      l.unlockWrite(stamp);
+    }
+    ht.checkExpand(hc);
+  }
+
 }
@@ -0,0 +1,180 @@
+package org.cache2k.core.capacity;
+
+/*-
+ * #%L
+ * cache2k core implementation
+ * %%
+ * Copyright (C) 2000 - 2022 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.Cache;
+import org.cache2k.core.api.InternalCache;
+import org.cache2k.core.eviction.Eviction;
+import org.cache2k.operation.CacheControl;
+import org.cache2k.testing.category.FastTests;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+
+/**
+ * @author Jens Wilke
+ */
+@Category(FastTests.class)
+public class CapacityBudgetTest {
+
+  @Rule
+  public final TestCaches caches = new TestCaches();
+
+  private final Random random = new Random(1802);
+
+  private static ControlledCapacity register(CapacityBudget budget, Cache<?, ?> cache) {
+    CacheControl control = CacheControl.of(cache);
+    long capacity = control.getCapacityLimit();
+    ControlledCapacity controlled =
+      new ControlledCapacity(control, Math.max(1, capacity / 10), budget.getBudget(), capacity);
+    Eviction eviction = ((InternalCache<?, ?>) cache).getEviction();
+    assertThat(budget.register(controlled, eviction.isWeigherPresent(), eviction::getMetrics))
+      .isTrue();
+    return controlled;
+  }
+
+  /**
+   * Random access to a key range bigger than the capacity, a bigger capacity
+   * yields more hits.
+   */
+  private void reuse(Cache<Integer, Integer> cache, int keyRange) {
+    for (int i = 0; i < 10_000; i++) {
+      cache.computeIfAbsent(random.nextInt(keyRange), k -> k);
+    }
+  }
+
+  private int scanStart = 0;
+
+  /**
+   * Every key is used only once, capacity is useless.
+   */
+  private void scan(Cache<Integer, Integer> cache) {
+    for (int i = 0; i < 10_000; i++) {
+      cache.computeIfAbsent(scanStart++, k -> k);
+    }
+  }
+
+  @Test
+  public void registerShrinksToFitBudget() {
+    CapacityBudget budget = new CapacityBudget(1000);
+    ControlledCapacity c1 = register(budget, caches.build(1000));
+    assertThat(c1.getCapacity()).isEqualTo(1000);
+    ControlledCapacity c2 = register(budget, caches.build(1000));
+    assertThat(c1.getCapacity()).isEqualTo(500);
+    assertThat(c2.getCapacity()).isEqualTo(500);
+    assertThat(budget.getAllocated()).isEqualTo(1000);
+  }
+
+  @Test
+  public void moveCapacityFromScanToReuse() {
+    CapacityBudget budget = new CapacityBudget(2000);
+    Cache<Integer, Integer> hot = caches.build(1000);
+    Cache<Integer, Integer> cold = caches.build(1000);
+    ControlledCapacity hotCapacity = register(budget, hot);
+    ControlledCapacity coldCapacity = register(budget, cold);
+    for (int round = 0; round < 10; round++) {
+      reuse(hot, 1600);
+      scan(cold);
+      budget.rebalance();
+      assertThat(budget.getAllocated()).isLessThanOrEqualTo(2000);
+    }
+    assertThat(hotCapacity.getCapacity()).isGreaterThan(1300);
+    assertThat(coldCapacity.getCapacity()).isLessThan(700);
+    assertThat(hotCapacity.getLastDecision()).startsWith("grow").contains("weight budget 2000");
+    assertThat(coldCapacity.getLastDecision()).startsWith("shrink");
+    assertThat(budget.toString()).contains("rebalanceCount=10");
+  }
+
+  /**
+   * A cache that does not evict does not need more capacity and gives some to a cache
+   * with benefit.
+   */
+  @Test
+  public void idleCacheShrinks() {
+    CapacityBudget budget = new CapacityBudget(2000);
+    Cache<Integer, Integer> hot = caches.build(1000);
+    Cache<Integer, Integer> idle = caches.build(1000);
+    ControlledCapacity hotCapacity = register(budget, hot);
+    ControlledCapacity idleCapacity = register(budget, idle);
+    reuse(hot, 1600);
+    budget.rebalance();
+    assertThat(idleCapacity.getCapacity())
+      .as("shrinks by 5% of the budget at most")
+      .isEqualTo(900);
+    assertThat(hotCapacity.getCapacity()).isEqualTo(1100);
+  }
+
+  @Test
+  public void noBenefitNoChange() {
+    CapacityBudget budget = new CapacityBudget(2000);
+    ControlledCapacity c1 = register(budget, caches.build(1000));
+    ControlledCapacity c2 = register(budget, caches.build(1000));
+    budget.rebalance();
+    assertThat(c1.getAdjustmentCount()).isEqualTo(0);
+    assertThat(c2.getAdjustmentCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void unregisterFreesBudget() {
+    CapacityBudget budget = new CapacityBudget(2000);
+    Cache<Integer, Integer> hot = caches.build(1000);
+    ControlledCapacity hotCapacity = register(budget, hot);
+    ControlledCapacity other = register(budget, caches.build(1000));
+    budget.unregister(other);
+    assertThat(budget.isRegistered(other)).isFalse();
+    assertThat(budget.getAllocated()).isEqualTo(1000);
+    reuse(hot, 1600);
+    budget.rebalance();
+    assertThat(hotCapacity.getCapacity()).isEqualTo(2000);
+  }
+
+  /**
+   * A weighed cache is not added to a budget of entry capacities.
+   */
+  @Test
+  public void differentUnitNotAdded() {
+    CapacityBudget budget = new CapacityBudget(2000);
+    ControlledCapacity c1 = register(budget, caches.build(1000));
+    Cache<Integer, Integer> weighed = caches.build(b -> b
+      .weigher((key, value) -> 1)
+      .maximumWeight(1000));
+    CacheControl control = CacheControl.of(weighed);
+    ControlledCapacity c2 = new ControlledCapacity(control, 100, 2000, 1000);
+    Eviction eviction = ((InternalCache<?, ?>) weighed).getEviction();
+    assertThat(eviction.isWeigherPresent()).isTrue();
+    assertThat(budget.register(c2, true, eviction::getMetrics)).isFalse();
+    assertThat(budget.isRegistered(c2)).isFalse();
+    assertThat(budget.isRegistered(c1)).isTrue();
+    assertThat(budget.getAllocated()).isEqualTo(1000);
+  }
+
+  @Test
+  public void illegalBudget() {
+    assertThatCode(() -> new CapacityBudget(0))
+      .isInstanceOf(IllegalArgumentException.class);
+  }
+
+}
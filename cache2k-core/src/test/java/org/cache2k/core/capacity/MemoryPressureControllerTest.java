@@ -0,0 +1,198 @@
+package org.cache2k.core.capacity;
+
+/*-
+ * #%L
+ * cache2k core implementation
+ * %%
+ * Copyright (C) 2000 - 2022 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.Cache;
+import org.cache2k.core.api.InternalCache;
+import org.cache2k.core.api.InternalConfig;
+import org.cache2k.operation.CacheControl;
+import org.cache2k.operation.CacheInfo;
+import org.cache2k.testing.category.FastTests;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+
+/**
+ * @author Jens Wilke
+ */
+@Category(FastTests.class)
+public class MemoryPressureControllerTest {
+
+  @Rule
+  public final TestCaches caches = new TestCaches();
+
+  private Cache<Integer, Integer> buildFilled(long capacity) {
+    Cache<Integer, Integer> cache = caches.build(capacity);
+    for (int i = 0; i < capacity; i++) {
+      cache.put(i, i);
+    }
+    return cache;
+  }
+
+  private static ControlledCapacity control(Cache<?, ?> cache, long minimum, long maximum) {
+    CacheControl control = CacheControl.of(cache);
+    return new ControlledCapacity(control, minimum, maximum, control.getCapacityLimit());
+  }
+
+  @Test
+  public void shrinkDownToMinimum() {
+    Cache<Integer, Integer> cache = buildFilled(1000);
+    MemoryPressureController controller = new MemoryPressureController();
+    ControlledCapacity capacity = control(cache, 500, 1000);
+    controller.register(capacity);
+    controller.onMemoryUsage(0.9);
+    assertThat(capacity.getCapacity()).isEqualTo(800);
+    assertThat(CacheInfo.of(cache).getEntryCapacity()).isBetween(800L, 820L);
+    assertThat(CacheInfo.of(cache).getSize()).isLessThanOrEqualTo(820);
+    controller.onMemoryUsage(0.9);
+    controller.onMemoryUsage(0.9);
+    assertThat(capacity.getCapacity()).isEqualTo(512);
+    controller.onMemoryUsage(0.9);
+    controller.onMemoryUsage(0.9);
+    assertThat(capacity.getCapacity()).isEqualTo(500);
+    assertThat(CacheInfo.of(cache).getEntryCapacity())
+      .as("rounded up to segment count")
+      .isBetween(500L, 520L);
+    assertThat(capacity.getAdjustmentCount()).isEqualTo(4);
+    assertThat(capacity.getLastDecision()).isEqualTo("shrink 512 -> 500, heap usage after GC 90%");
+    assertThat(controller.toString()).contains("shrinkCount=4");
+  }
+
+  @Test
+  public void growUpToMaximum() {
+    Cache<Integer, Integer> cache = buildFilled(1000);
+    MemoryPressureController controller = new MemoryPressureController();
+    ControlledCapacity capacity = control(cache, 100, 1200);
+    controller.register(capacity);
+    controller.onMemoryUsage(0.3);
+    assertThat(capacity.getCapacity()).isEqualTo(1100);
+    controller.onMemoryUsage(0.3);
+    controller.onMemoryUsage(0.3);
+    assertThat(capacity.getCapacity()).isEqualTo(1200);
+    assertThat(CacheInfo.of(cache).getEntryCapacity()).isBetween(1200L, 1220L);
+    assertThat(capacity.getLastDecision()).startsWith("grow 1100 -> 1200");
+    assertThat(controller.toString()).contains("growCount=2");
+  }
+
+  @Test
+  public void keepBetweenThresholds() {
+    Cache<Integer, Integer> cache = buildFilled(1000);
+    MemoryPressureController controller = new MemoryPressureController();
+    ControlledCapacity capacity = control(cache, 100, 2000);
+    controller.register(capacity);
+    controller.onMemoryUsage(0.7);
+    assertThat(capacity.getCapacity()).isEqualTo(1000);
+    assertThat(capacity.getAdjustmentCount()).isEqualTo(0);
+    assertThat(capacity.getLastDecision()).isNull();
+  }
+
+  @Test
+  public void unregistered() {
+    Cache<Integer, Integer> cache = buildFilled(1000);
+    MemoryPressureController controller = new MemoryPressureController();
+    ControlledCapacity capacity = control(cache, 100, 2000);
+    controller.register(capacity);
+    controller.unregister(capacity);
+    controller.onMemoryUsage(0.9);
+    assertThat(capacity.getCapacity()).isEqualTo(1000);
+  }
+
+  @Test
+  public void illegalBounds() {
+    Cache<Integer, Integer> cache = buildFilled(10);
+    assertThatCode(() -> control(cache, 0, 10))
+      .isInstanceOf(IllegalArgumentException.class);
+    assertThatCode(() -> control(cache, 20, 10))
+      .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  /**
+   * Registered with the global controller via the configuration, decision visible
+   * in the cache info.
+   */
+  @Test
+  public void configuredAndReportedInCacheInfo() {
+    Cache<Integer, Integer> cache = caches.build(b -> b
+      .entryCapacity(1000)
+      .with(InternalConfig.class, cfg -> cfg
+        .memoryPressureControl(true)
+        .minimumCapacity(100)));
+    ControlledCapacity capacity = ((InternalCache<?, ?>) cache).getControlledCapacity();
+    assertThat(capacity).isNotNull();
+    assertThat(capacity.getMinimum()).isEqualTo(100);
+    assertThat(capacity.getMaximum()).isEqualTo(1000);
+    MemoryPressureController controller = MemoryPressureController.getInstance();
+    assertThat(controller.isRegistered(capacity)).isTrue();
+    controller.onMemoryUsage(0.99);
+    CacheInfo info = CacheInfo.of(cache);
+    assertThat(info.getCapacityAdjustmentCount()).isGreaterThanOrEqualTo(1);
+    assertThat(info.getLastCapacityAdjustment()).isNotNull();
+    cache.close();
+    assertThat(controller.isRegistered(capacity)).isFalse();
+  }
+
+  /**
+   * No decision on a stale usage after collection or within the minimum interval.
+   */
+  @Test
+  public void decideOnlyAfterCollectionAndInterval() {
+    MemoryPressureController controller = new MemoryPressureController();
+    long interval = MemoryPressureController.MINIMUM_DECISION_INTERVAL_MILLIS;
+    assertThat(controller.decide(new long[]{100}, 0)).isTrue();
+    assertThat(controller.decide(new long[]{100}, interval * 5))
+      .as("no collection of the monitored pool")
+      .isFalse();
+    assertThat(controller.decide(new long[]{200}, interval * 5)).isTrue();
+    assertThat(controller.decide(new long[]{300}, interval * 5 + 1))
+      .as("within minimum interval")
+      .isFalse();
+    assertThat(controller.decide(new long[]{300}, interval * 6)).isTrue();
+    assertThat(controller.toString()).contains("skippedCount=2");
+  }
+
+  /**
+   * The global controller removes its JVM listeners when the last cache is closed.
+   */
+  @Test
+  public void listenersRemovedAfterLastCache() {
+    Cache<Integer, Integer> cache = caches.build(b -> b
+      .entryCapacity(1000)
+      .with(InternalConfig.class, cfg -> cfg
+        .memoryPressureControl(true)
+        .minimumCapacity(100)));
+    MemoryPressureController controller = MemoryPressureController.getInstance();
+    assertThat(controller.isListening()).isTrue();
+    cache.close();
+    assertThat(controller.isListening()).isFalse();
+  }
+
+  @Test
+  public void notControlled() {
+    Cache<Integer, Integer> cache = buildFilled(10);
+    assertThat(((InternalCache<?, ?>) cache).getControlledCapacity()).isNull();
+    assertThat(CacheInfo.of(cache).getCapacityAdjustmentCount()).isEqualTo(0);
+    assertThat(CacheInfo.of(cache).getLastCapacityAdjustment()).isNull();
+  }
+
+}
@@ -0,0 +1,57 @@
+package org.cache2k.core.capacity;
+
+/*-
+ * #%L
+ * cache2k core implementation
+ * %%
+ * Copyright (C) 2000 - 2022 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.Cache;
+import org.cache2k.Cache2kBuilder;
+import org.junit.rules.ExternalResource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Builds the caches of a test and closes them after the test.
+ *
+ * @author Jens Wilke
+ */
+class TestCaches extends ExternalResource {
+
+  private final List<Cache<?, ?>> caches = new ArrayList<>();
+
+  Cache<Integer, Integer> build(long capacity) {
+    return build(b -> b.entryCapacity(capacity));
+  }
+
+  Cache<Integer, Integer> build(Consumer<Cache2kBuilder<Integer, Integer>> customize) {
+    Cache<Integer, Integer> cache = Cache2kBuilder.of(Integer.class, Integer.class)
+      .setup(customize)
+      .build();
+    caches.add(cache);
+    return cache;
+  }
+
+  @Override
+  protected void after() {
+    caches.forEach(Cache::close);
+  }
+
+}
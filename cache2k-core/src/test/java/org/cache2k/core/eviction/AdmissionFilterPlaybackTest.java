@@ -0,0 +1,142 @@
+package org.cache2k.core.eviction;
+
+/*-
+ * #%L
+ * cache2k core implementation
+ * %%
+ * Copyright (C) 2000 - 2022 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.Cache;
+import org.cache2k.Cache2kBuilder;
+import org.cache2k.core.api.InternalConfig;
+import org.cache2k.testing.category.FastTests;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Replay synthetic access traces with and without the TinyLFU admission filter
+ * and compare the hit rates. Results with capacity 1000:
+ *
+ * <pre>
+ * | Trace | Clock-Pro | Clock-Pro with admission filter |
+ * | zipf  | 64.26     | 64.52                           |
+ * | scan  | 50.75     | 51.54                           |
+ * </pre>
+ *
+ * @author Jens Wilke
+ */
+@Category(FastTests.class)
+public class AdmissionFilterPlaybackTest {
+
+  static final boolean STAT_OUTPUT = false;
+  static final int CAPACITY = 1000;
+
+  /**
+   * Skewed accesses to 10000 keys.
+   */
+  static int[] zipfTrace() {
+    return zipf(new Random(4711), 10_000, 0.9, 200_000);
+  }
+
+  /**
+   * Skewed accesses to 10000 keys, after 5000 accesses a scan of 2000 keys. Each key
+   * of the scan is accessed twice, e.g. read and updated by a batch job, and never again.
+   */
+  static int[] scanTrace() {
+    int[] popular = zipf(new Random(4711), 10_000, 0.9, 200_000);
+    int scanLength = 2_000;
+    int interval = 5_000;
+    int[] trace = new int[popular.length + popular.length / interval * scanLength * 2];
+    int scanKey = 1_000_000;
+    int j = 0;
+    for (int i = 0; i < popular.length; i++) {
+      trace[j++] = popular[i];
+      if (i % interval == interval - 1) {
+        for (int k = 0; k < scanLength; k++) {
+          trace[j++] = scanKey;
+          trace[j++] = scanKey++;
+        }
+      }
+    }
+    return trace;
+  }
+
+  static int[] zipf(Random random, int keys, double skew, int length) {
+    double[] cumulative = new double[keys];
+    double sum = 0;
+    for (int i = 0; i < keys; i++) {
+      sum += 1 / Math.pow(i + 1, skew);
+      cumulative[i] = sum;
+    }
+    int[] trace = new int[length];
+    for (int i = 0; i < length; i++) {
+      double v = random.nextDouble() * sum;
+      int idx = Arrays.binarySearch(cumulative, v);
+      trace[i] = idx >= 0 ? idx : -idx - 1;
+    }
+    return trace;
+  }
+
+  static double hitRate(int[] trace, boolean admissionFilter) {
+    Cache<Integer, Integer> cache = Cache2kBuilder.of(Integer.class, Integer.class)
+      .entryCapacity(CAPACITY)
+      .strictEviction(true)
+      .with(InternalConfig.class, b -> b.admissionFilter(admissionFilter))
+      .build();
+    long hits = 0;
+    for (int key : trace) {
+      if (cache.peek(key) != null) {
+        hits++;
+      } else {
+        cache.put(key, key);
+      }
+    }
+    if (STAT_OUTPUT) {
+      System.out.println(cache);
+    }
+    cache.close();
+    return hits * 100D / trace.length;
+  }
+
+  @Test
+  public void scanPollutedWorkload() {
+    int[] trace = scanTrace();
+    double withoutFilter = hitRate(trace, false);
+    double withFilter = hitRate(trace, true);
+    if (STAT_OUTPUT) {
+      System.out.printf("| scan | %.2f | %.2f |%n", withoutFilter, withFilter);
+    }
+    assertThat(withFilter).isGreaterThan(withoutFilter + 0.5);
+  }
+
+  @Test
+  public void zipfWorkload() {
+    int[] trace = zipfTrace();
+    double withoutFilter = hitRate(trace, false);
+    double withFilter = hitRate(trace, true);
+    if (STAT_OUTPUT) {
+      System.out.printf("| zipf | %.2f | %.2f |%n", withoutFilter, withFilter);
+    }
+    assertThat(withFilter).isGreaterThan(withoutFilter - 1);
+  }
+
+}
@@ -0,0 +1,176 @@
+package org.cache2k.core.eviction;
+
+/*-
+ * #%L
+ * cache2k core implementation
+ * %%
+ * Copyright (C) 2000 - 2022 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.Cache;
+import org.cache2k.Cache2kBuilder;
+import org.cache2k.core.api.InternalCache;
+import org.cache2k.core.api.InternalConfig;
+import org.cache2k.event.CacheEntryEvictedListener;
+import org.cache2k.testing.category.FastTests;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Jens Wilke
+ */
+@Category(FastTests.class)
+public class BackgroundEvictionTest {
+
+  static final int CAPACITY = 100;
+
+  private final Queue<Runnable> tasks = new ArrayDeque<>();
+  private final AtomicInteger evictedCount = new AtomicInteger();
+
+  private Cache2kBuilder<Integer, Integer> builder(long maximumOvershoot) {
+    return Cache2kBuilder.of(Integer.class, Integer.class)
+      .eternal(true)
+      .strictEviction(true)
+      .executor(tasks::add)
+      .addListener((CacheEntryEvictedListener<Integer, Integer>) (cache, entry) ->
+        evictedCount.incrementAndGet())
+      .with(InternalConfig.class, b -> b
+        .backgroundEviction(true)
+        .maximumOvershoot(maximumOvershoot));
+  }
+
+  private void runTasks() {
+    Runnable r;
+    while ((r = tasks.poll()) != null) {
+      r.run();
+    }
+  }
+
+  private static EvictionMetrics metrics(Cache<?, ?> cache) {
+    return ((InternalCache<?, ?>) cache).getEviction().getMetrics();
+  }
+
+  @Test
+  public void insertOnlyTriggers() {
+    Cache<Integer, Integer> cache = builder(50).entryCapacity(CAPACITY).build();
+    for (int i = 0; i < CAPACITY + 20; i++) {
+      cache.put(i, i);
+    }
+    assertThat(cache.asMap().size()).isEqualTo(CAPACITY + 20);
+    assertThat(evictedCount.get()).isEqualTo(0);
+    assertThat(tasks).hasSize(1);
+    runTasks();
+    assertThat(cache.asMap().size()).isEqualTo(CAPACITY);
+    assertThat(evictedCount.get()).isEqualTo(20);
+    assertThat(metrics(cache).getMaxOvershoot()).isEqualTo(20);
+    assertThat(cache.toString()).contains("backgroundEvictionRuns=1");
+    ((InternalCache<?, ?>) cache).checkIntegrity();
+    cache.close();
+  }
+
+  /**
+   * The inserting thread evicts, if the background eviction does not keep up.
+   */
+  @Test
+  public void overshootLimit() {
+    Cache<Integer, Integer> cache = builder(10).entryCapacity(CAPACITY).build();
+    for (int i = 0; i < CAPACITY * 3; i++) {
+      cache.put(i, i);
+      assertThat(cache.asMap().size()).isLessThanOrEqualTo(CAPACITY + 10);
+    }
+    assertThat(evictedCount.get()).isGreaterThan(0);
+    assertThat(metrics(cache).getMaxOvershoot()).isEqualTo(11);
+    assertThat(cache.toString()).contains("overshootEvictionCount=");
+    runTasks();
+    assertThat(cache.asMap().size()).isEqualTo(CAPACITY);
+    ((InternalCache<?, ?>) cache).checkIntegrity();
+    cache.close();
+  }
+
+  @Test
+  public void defaultOvershootLimit() {
+    Cache<Integer, Integer> cache = builder(-1).entryCapacity(CAPACITY).build();
+    for (int i = 0; i < CAPACITY * 3; i++) {
+      cache.put(i, i);
+      assertThat(cache.asMap().size()).isLessThanOrEqualTo(CAPACITY + CAPACITY / 10);
+    }
+    runTasks();
+    assertThat(cache.asMap().size()).isEqualTo(CAPACITY);
+    cache.close();
+  }
+
+  @Test
+  public void weigher() {
+    Cache<Integer, Integer> cache = builder(100)
+      .weigher((key, value) -> 10)
+      .maximumWeight(CAPACITY * 10)
+      .build();
+    for (int i = 0; i < CAPACITY + 5; i++) {
+      cache.put(i, i);
+    }
+    assertThat(evictedCount.get()).isEqualTo(0);
+    runTasks();
+    assertThat(cache.asMap().size()).isEqualTo(CAPACITY);
+    assertThat(metrics(cache).getTotalWeight()).isEqualTo(CAPACITY * 10);
+    assertThat(metrics(cache).getMaxOvershoot()).isEqualTo(50);
+    cache.close();
+  }
+
+  /**
+   * Eviction runs with the whole policy after the first background run,
+   * entries with hits survive a stream of new entries.
+   */
+  @Test
+  public void frequentlyUsedEntriesStay() {
+    Cache<Integer, Integer> cache = builder(-1).entryCapacity(CAPACITY).build();
+    int newKey = 1_000;
+    for (int round = 0; round < 100; round++) {
+      for (int i = 0; i < 10; i++) {
+        if (cache.peek(i) == null) {
+          cache.put(i, i);
+        }
+      }
+      for (int i = 0; i < 10; i++) {
+        cache.put(newKey, newKey);
+        newKey++;
+      }
+      runTasks();
+    }
+    for (int i = 0; i < 10; i++) {
+      assertThat(cache.containsKey(i)).isTrue();
+    }
+    ((InternalCache<?, ?>) cache).checkIntegrity();
+    cache.close();
+  }
+
+  @Test
+  public void noTriggerAfterClose() {
+    Cache<Integer, Integer> cache = builder(50).entryCapacity(CAPACITY).build();
+    for (int i = 0; i < CAPACITY + 1; i++) {
+      cache.put(i, i);
+    }
+    cache.close();
+    runTasks();
+    assertThat(evictedCount.get()).isEqualTo(0);
+  }
+
+}
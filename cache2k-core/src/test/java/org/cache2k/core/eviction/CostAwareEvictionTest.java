@@ -0,0 +1,246 @@
+package org.cache2k.core.eviction;
+
+/*-
+ * #%L
+ * cache2k core implementation
+ * %%
+ * Copyright (C) 2000 - 2022 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.Cache;
+import org.cache2k.Cache2kBuilder;
+import org.cache2k.core.Entry;
+import org.cache2k.core.api.InternalConfig;
+import org.cache2k.event.CacheEntryCreatedListener;
+import org.cache2k.operation.TimeReference;
+import org.cache2k.testing.category.FastTests;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.cache2k.core.eviction.AbstractEviction.compressLoadCost;
+import static org.cache2k.core.eviction.AdmissionFilterPlaybackTest.zipf;
+
+/**
+ * Tests for the cost aware eviction. The playback loads every tenth key with a cost of
+ * 2 seconds and the others with 2 milliseconds. Total loader time in seconds with
+ * capacity 1000:
+ *
+ * <pre>
+ * | Policy             | Standard | Cost aware | Saved |
+ * | CLOCK_PRO          | 14320    | 10821      | 24.4% |
+ * | CLOCK_PRO_ADAPTIVE | 14347    | 10835      | 24.5% |
+ * | SIEVE              | 14421    | 11034      | 23.5% |
+ * | S3_FIFO            | 14762    | 10703      | 27.5% |
+ * | SEGMENTED_LRU      | 14876    | 12490      | 16.0% |
+ * | W_TINY_LFU         | 14301    | 11851      | 17.1% |
+ * </pre>
+ *
+ * @author Jens Wilke
+ */
+@Category(FastTests.class)
+public class CostAwareEvictionTest {
+
+  static final boolean STAT_OUTPUT = false;
+  static final int CAPACITY = 1000;
+  static final long EXPENSIVE = 2000;
+  static final long CHEAP = 2;
+
+  @Test
+  public void compressLoadCostLogarithmic() {
+    assertThat(compressLoadCost(-1)).isEqualTo(0);
+    assertThat(compressLoadCost(0)).isEqualTo(0);
+    assertThat(compressLoadCost(1)).isEqualTo(1);
+    assertThat(compressLoadCost(2)).isEqualTo(2);
+    assertThat(compressLoadCost(3)).isEqualTo(2);
+    assertThat(compressLoadCost(2000)).isEqualTo(11);
+    assertThat(compressLoadCost(Long.MAX_VALUE)).isEqualTo(Entry.LOAD_COST_MASK);
+  }
+
+  /**
+   * Cost and credit share the integer with the other eviction data.
+   */
+  @Test
+  public void costBitsIndependent() {
+    Entry<Integer, Integer> e = new Entry<>();
+    e.setHot(true);
+    e.setEvictionFlag(true);
+    e.setScanRound(Entry.SCAN_ROUND_MASK);
+    e.setCompressedWeight(0xffff);
+    e.setLoadCost(11);
+    e.setCostCredit(Entry.LOAD_COST_MASK);
+    assertThat(e.getLoadCost()).isEqualTo(11);
+    assertThat(e.getCostCredit()).isEqualTo(Entry.LOAD_COST_MASK);
+    e.setCostCredit(0);
+    assertThat(e.isHot()).isTrue();
+    assertThat(e.isEvictionFlag()).isTrue();
+    assertThat(e.getScanRound()).isEqualTo(Entry.SCAN_ROUND_MASK);
+    assertThat(e.getCompressedWeight()).isEqualTo(0xffff);
+    assertThat(e.getLoadCost()).isEqualTo(11);
+    assertThat(e.getCostCredit()).isEqualTo(0);
+  }
+
+  static long cost(int key) {
+    return key % 10 == 7 ? EXPENSIVE : CHEAP;
+  }
+
+  /**
+   * Replay a skewed trace via the loader and return the total loader time.
+   */
+  static long loaderTime(int[] trace, EvictionPolicy policy, boolean costAware) {
+    return loaderTime(trace, policy, costAware, false);
+  }
+
+  /**
+   * @param wired add a listener, so loads go through the wired cache
+   */
+  static long loaderTime(int[] trace, EvictionPolicy policy, boolean costAware,
+                         boolean wired) {
+    ManualClock clock = new ManualClock();
+    Cache2kBuilder<Integer, Integer> builder = Cache2kBuilder.of(Integer.class, Integer.class);
+    if (wired) {
+      builder.addListener((CacheEntryCreatedListener<Integer, Integer>) (c, e) -> { });
+    }
+    Cache<Integer, Integer> cache = builder
+      .timeReference(clock)
+      .entryCapacity(CAPACITY)
+      .strictEviction(true)
+      .loader(key -> {
+        clock.advance(cost(key));
+        return key;
+      })
+      .with(InternalConfig.class, b -> b
+        .evictionPolicy(policy)
+        .costAwareEviction(costAware))
+      .build();
+    for (int key : trace) {
+      cache.get(key);
+    }
+    if (STAT_OUTPUT) {
+      System.out.println(cache);
+    }
+    cache.close();
+    return clock.ticks();
+  }
+
+  static int[] trace() {
+    return zipf(new Random(1802), 10_000, 0.9, 200_000);
+  }
+
+  @Test
+  public void loaderTimeSaved() {
+    int[] trace = trace();
+    for (StandardEvictionPolicy policy : StandardEvictionPolicy.values()) {
+      long standard = loaderTime(trace, policy, false);
+      long costAware = loaderTime(trace, policy, true);
+      if (STAT_OUTPUT) {
+        System.out.printf("| %s | %d | %d | %.1f%% |%n", policy,
+          standard / 1000, costAware / 1000, (standard - costAware) * 100D / standard);
+      }
+      assertThat(costAware)
+        .as(policy + " saves loader time")
+        .isLessThan(standard * 9 / 10);
+    }
+  }
+
+  @Test
+  public void loaderTimeSavedWiredCache() {
+    int[] trace = trace();
+    long standard = loaderTime(trace, StandardEvictionPolicy.CLOCK_PRO, false, true);
+    long costAware = loaderTime(trace, StandardEvictionPolicy.CLOCK_PRO, true, true);
+    assertThat(costAware).isLessThan(standard * 9 / 10);
+  }
+
+  /**
+   * With a single entry the eviction returns the identical candidate again. The
+   * candidate is evicted after spending one credit instead of spending all.
+   */
+  @Test
+  public void sameCandidateEvicted() {
+    ManualClock clock = new ManualClock();
+    Cache<Integer, Integer> cache = Cache2kBuilder.of(Integer.class, Integer.class)
+      .timeReference(clock)
+      .entryCapacity(1)
+      .strictEviction(true)
+      .loader(key -> {
+        clock.advance(EXPENSIVE);
+        return key;
+      })
+      .with(InternalConfig.class, b -> b.costAwareEviction(true))
+      .build();
+    int count = 100;
+    for (int i = 0; i < count; i++) {
+      cache.get(i);
+    }
+    String s = cache.toString();
+    Matcher m = Pattern.compile("costCreditSpent=(\\d+)").matcher(s);
+    assertThat(m.find()).as(s).isTrue();
+    assertThat(Long.parseLong(m.group(1))).isLessThan(count);
+    cache.close();
+  }
+
+  /**
+   * Without loads there is no cost, the eviction is identical.
+   */
+  @Test
+  public void noLoadNoCost() {
+    int[] trace = trace();
+    long[] hits = new long[2];
+    for (int i = 0; i < hits.length; i++) {
+      boolean costAware = i == 1;
+      Cache<Integer, Integer> cache = Cache2kBuilder.of(Integer.class, Integer.class)
+        .entryCapacity(CAPACITY)
+        .strictEviction(true)
+        .with(InternalConfig.class, b -> b.costAwareEviction(costAware))
+        .build();
+      for (int key : trace) {
+        if (cache.peek(key) != null) {
+          hits[i]++;
+        } else {
+          cache.put(key, key);
+        }
+      }
+      cache.close();
+    }
+    assertThat(hits[1]).isEqualTo(hits[0]);
+  }
+
+  static class ManualClock extends TimeReference.Milliseconds {
+
+    private final AtomicLong ticks = new AtomicLong();
+
+    void advance(long millis) {
+      ticks.addAndGet(millis);
+    }
+
+    @Override
+    public long ticks() {
+      return ticks.get();
+    }
+
+    @Override
+    public void sleep(long ticks) {
+      advance(ticks);
+    }
+
+  }
+
+}
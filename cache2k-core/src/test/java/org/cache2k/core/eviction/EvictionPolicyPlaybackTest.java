@@ -0,0 +1,203 @@
+package org.cache2k.core.eviction;
+
+/*-
+ * #%L
+ * cache2k core implementation
+ * %%
+ * Copyright (C) 2000 - 2022 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.Cache;
+import org.cache2k.Cache2kBuilder;
+import org.cache2k.core.api.InternalCache;
+import org.cache2k.core.api.InternalConfig;
+import org.cache2k.testing.category.FastTests;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.cache2k.core.eviction.AdmissionFilterPlaybackTest.scanTrace;
+import static org.cache2k.core.eviction.AdmissionFilterPlaybackTest.zipf;
+import static org.cache2k.core.eviction.AdmissionFilterPlaybackTest.zipfTrace;
+
+/**
+ * Replay synthetic access traces with all eviction policies and compare the hit rates.
+ * Results with capacity 1000:
+ *
+ * <pre>
+ * | Trace    | Clock-Pro | Clock-Pro adaptive | SIEVE | S3-FIFO | SLRU  | W-TinyLFU |
+ * | zipf     | 64.26     | 64.03              | 62.78 | 63.12   | 63.00 | 64.45     |
+ * | scan     | 50.75     | 51.04              | 48.24 | 50.66   | 46.01 | 57.02     |
+ * | loop     | 66.68     | 59.73              | 0.00  | 23.28   | 0.00  | 80.43     |
+ * | shifting | 52.66     | 53.91              | 46.64 | 56.37   | 51.93 | 49.99     |
+ * </pre>
+ *
+ * @author Jens Wilke
+ */
+@Category(FastTests.class)
+public class EvictionPolicyPlaybackTest {
+
+  static final boolean STAT_OUTPUT = false;
+  static final int CAPACITY = 1000;
+
+  /**
+   * Keys 0 to 1199 accessed in a loop, 1.2 times the cache capacity. LRU has no hits.
+   */
+  static int[] loopTrace() {
+    int[] trace = new int[100_000];
+    for (int i = 0; i < trace.length; i++) {
+      trace[i] = i % 1_200;
+    }
+    return trace;
+  }
+
+  /**
+   * Skewed accesses to a hot set that moves to different keys every 20000 accesses.
+   */
+  static int[] shiftingTrace() {
+    int[] trace = zipf(new Random(4711), 10_000, 0.9, 200_000);
+    for (int i = 0; i < trace.length; i++) {
+      trace[i] += i / 20_000 * 10_000;
+    }
+    return trace;
+  }
+
+  static Cache<Integer, Integer> build(EvictionPolicy policy) {
+    return Cache2kBuilder.of(Integer.class, Integer.class)
+      .entryCapacity(CAPACITY)
+      .strictEviction(true)
+      .with(InternalConfig.class, b -> b.evictionPolicy(policy))
+      .build();
+  }
+
+  static double hitRate(int[] trace, EvictionPolicy policy) {
+    Cache<Integer, Integer> cache = build(policy);
+    long hits = 0;
+    for (int key : trace) {
+      if (cache.peek(key) != null) {
+        hits++;
+      } else {
+        cache.put(key, key);
+      }
+    }
+    if (STAT_OUTPUT) {
+      System.out.println(cache);
+    }
+    cache.close();
+    return hits * 100D / trace.length;
+  }
+
+  static Map<StandardEvictionPolicy, Double> run(String name, int[] trace) {
+    Map<StandardEvictionPolicy, Double> result = new EnumMap<>(StandardEvictionPolicy.class);
+    StringBuilder sb = new StringBuilder("| " + name + " |");
+    for (StandardEvictionPolicy policy : StandardEvictionPolicy.values()) {
+      double rate = hitRate(trace, policy);
+      result.put(policy, rate);
+      sb.append(String.format(" %.2f |", rate));
+    }
+    if (STAT_OUTPUT) {
+      System.out.println(sb);
+    }
+    return result;
+  }
+
+  @Test
+  public void zipfWorkload() {
+    Map<StandardEvictionPolicy, Double> result = run("zipf", zipfTrace());
+    assertThat(result.values()).allMatch(v -> v > 55);
+    assertThat(result.get(StandardEvictionPolicy.W_TINY_LFU))
+      .isGreaterThan(result.get(StandardEvictionPolicy.SEGMENTED_LRU) - 1);
+    assertThat(result.get(StandardEvictionPolicy.CLOCK_PRO_ADAPTIVE))
+      .isGreaterThan(result.get(StandardEvictionPolicy.CLOCK_PRO) - 1);
+  }
+
+  @Test
+  public void scanWorkload() {
+    Map<StandardEvictionPolicy, Double> result = run("scan", scanTrace());
+    assertThat(result.values()).allMatch(v -> v > 40);
+    assertThat(result.get(StandardEvictionPolicy.W_TINY_LFU))
+      .isGreaterThan(result.get(StandardEvictionPolicy.SEGMENTED_LRU) + 5);
+  }
+
+  @Test
+  public void loopWorkload() {
+    Map<StandardEvictionPolicy, Double> result = run("loop", loopTrace());
+    assertThat(result.get(StandardEvictionPolicy.CLOCK_PRO)).isGreaterThan(50);
+    assertThat(result.get(StandardEvictionPolicy.W_TINY_LFU)).isGreaterThan(50);
+    assertThat(result.get(StandardEvictionPolicy.S3_FIFO))
+      .isGreaterThan(result.get(StandardEvictionPolicy.SIEVE));
+  }
+
+  @Test
+  public void shiftingWorkload() {
+    Map<StandardEvictionPolicy, Double> result = run("shifting", shiftingTrace());
+    assertThat(result.values()).allMatch(v -> v > 40);
+    assertThat(result.get(StandardEvictionPolicy.CLOCK_PRO_ADAPTIVE))
+      .isGreaterThan(result.get(StandardEvictionPolicy.CLOCK_PRO));
+  }
+
+  /**
+   * The tuned hot and ghost limits are visible in the eviction metrics.
+   */
+  @Test
+  public void adaptiveLimitsInMetrics() {
+    EvictionMetrics metrics = playbackMetrics(StandardEvictionPolicy.CLOCK_PRO);
+    assertThat(metrics.getHotMaxSize()).isEqualTo(CAPACITY * 97 / 100);
+    assertThat(metrics.getGhostMaxSize()).isEqualTo(CAPACITY / 2 + 1);
+    metrics = playbackMetrics(StandardEvictionPolicy.CLOCK_PRO_ADAPTIVE);
+    assertThat(metrics.getHotMaxSize())
+      .isBetween(CAPACITY / 2L, CAPACITY * 99L / 100)
+      .isNotEqualTo(CAPACITY * 97 / 100);
+    assertThat(metrics.getGhostMaxSize())
+      .isEqualTo(CAPACITY - metrics.getHotMaxSize() + CAPACITY / 2 + 1);
+  }
+
+  /**
+   * The Clock-Pro ghost history grows with the capacity.
+   */
+  @Test
+  public void ghostsProportionalToCapacity() {
+    int capacity = 20_000;
+    Cache<Integer, Integer> cache = Cache2kBuilder.of(Integer.class, Integer.class)
+      .entryCapacity(capacity)
+      .strictEviction(true)
+      .build();
+    for (int i = 0; i < capacity * 3; i++) {
+      cache.put(i, i);
+    }
+    EvictionMetrics metrics = ((InternalCache<?, ?>) cache).getEviction().getMetrics();
+    assertThat(metrics.getGhostMaxSize()).isEqualTo(capacity / 2 + 1);
+    assertThat(cache.toString()).contains("ghostSize=" + (capacity / 2 + 1));
+    cache.close();
+  }
+
+  static EvictionMetrics playbackMetrics(EvictionPolicy policy) {
+    Cache<Integer, Integer> cache = build(policy);
+    for (int key : shiftingTrace()) {
+      if (cache.peek(key) == null) {
+        cache.put(key, key);
+      }
+    }
+    EvictionMetrics metrics = ((InternalCache<?, ?>) cache).getEviction().getMetrics();
+    cache.close();
+    return metrics;
+  }
+
+}
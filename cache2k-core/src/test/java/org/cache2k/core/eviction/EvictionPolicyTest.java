@@ -0,0 +1,204 @@
+package org.cache2k.core.eviction;
+
+/*-
+ * #%L
+ * cache2k core implementation
+ * %%
+ * Copyright (C) 2000 - 2022 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.Cache;
+import org.cache2k.Cache2kBuilder;
+import org.cache2k.core.api.InternalCache;
+import org.cache2k.core.api.InternalConfig;
+import org.cache2k.testing.SimulatedClock;
+import org.cache2k.testing.category.FastTests;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.cache2k.core.eviction.IdleScanTest.START_OFFSET_MILLIS;
+import static org.cache2k.core.eviction.IdleScanTest.range;
+
+/**
+ * Basic eviction behavior that must hold for every eviction policy.
+ *
+ * @author Jens Wilke
+ */
+@Category(FastTests.class) @RunWith(Parameterized.class)
+public class EvictionPolicyTest {
+
+  private final StandardEvictionPolicy policy;
+
+  public EvictionPolicyTest(StandardEvictionPolicy policy) {
+    this.policy = policy;
+  }
+
+  @Parameterized.Parameters(name = "{0}")
+  public static Collection<Object[]> data() {
+    return Arrays.asList(new Object[][]{
+      {StandardEvictionPolicy.CLOCK_PRO},
+      {StandardEvictionPolicy.CLOCK_PRO_ADAPTIVE},
+      {StandardEvictionPolicy.SIEVE},
+      {StandardEvictionPolicy.S3_FIFO},
+      {StandardEvictionPolicy.SEGMENTED_LRU},
+      {StandardEvictionPolicy.W_TINY_LFU}
+    });
+  }
+
+  private Cache2kBuilder<Integer, Integer> builder() {
+    return Cache2kBuilder.of(Integer.class, Integer.class)
+      .eternal(true)
+      .with(InternalConfig.class, b -> b.evictionPolicy(policy));
+  }
+
+  private static void checkIntegrity(Cache<?, ?> cache) {
+    ((InternalCache<?, ?>) cache).checkIntegrity();
+  }
+
+  @Test
+  public void capacity1() {
+    Cache<Integer, Integer> c = builder().entryCapacity(1).build();
+    for (int i = 0; i < 10; i++) {
+      c.put(i, i);
+      c.put(i, i);
+      assertThat(c.containsKey(i)).isTrue();
+    }
+    assertThat(c.asMap().size()).isEqualTo(1);
+    checkIntegrity(c);
+    c.close();
+  }
+
+  @Test
+  public void capacityRespected() {
+    int size = 100;
+    Cache<Integer, Integer> c = builder().entryCapacity(size).strictEviction(true).build();
+    Random random = new Random(1802);
+    for (int i = 0; i < size * 50; i++) {
+      int key = random.nextInt(size * 3);
+      if (c.peek(key) == null) {
+        c.put(key, key);
+      }
+      assertThat(c.asMap().size()).isLessThanOrEqualTo(size);
+    }
+    assertThat(c.asMap().size()).isEqualTo(size);
+    checkIntegrity(c);
+    c.close();
+  }
+
+  @Test
+  public void weigher() {
+    long maxWeight = 1000;
+    Cache<Integer, Integer> c = builder()
+      .weigher((key, value) -> 1 + (value % 7))
+      .maximumWeight(maxWeight)
+      .strictEviction(true)
+      .build();
+    Random random = new Random(1802);
+    for (int i = 0; i < 10_000; i++) {
+      int key = random.nextInt(1_000);
+      if (c.peek(key) == null) {
+        c.put(key, key);
+      }
+    }
+    long weight = c.asMap().values().stream().mapToLong(v -> 1 + (v % 7)).sum();
+    assertThat(weight).isLessThanOrEqualTo(maxWeight);
+    checkIntegrity(c);
+    c.close();
+  }
+
+  /**
+   * Entries accessed repeatedly stay in the cache while a stream of new entries passes by.
+   */
+  @Test
+  public void frequentlyUsedEntriesStay() {
+    int size = 100;
+    Cache<Integer, Integer> c = builder().entryCapacity(size).strictEviction(true).build();
+    int newKey = 1_000;
+    for (int round = 0; round < 100; round++) {
+      for (int i = 0; i < 10; i++) {
+        if (c.peek(i) == null) {
+          c.put(i, i);
+        }
+      }
+      for (int i = 0; i < 10; i++) {
+        c.put(newKey, newKey);
+        newKey++;
+      }
+    }
+    for (int i = 0; i < 10; i++) {
+      assertThat(c.containsKey(i)).as("key " + i).isTrue();
+    }
+    checkIntegrity(c);
+    c.close();
+  }
+
+  @Test
+  public void removeAndClear() {
+    int size = 100;
+    Cache<Integer, Integer> c = builder().entryCapacity(size).build();
+    for (int i = 0; i < size * 2; i++) {
+      c.put(i, i);
+      c.peek(i - 10);
+    }
+    for (int i = 0; i < size * 2; i += 2) {
+      c.remove(i);
+    }
+    checkIntegrity(c);
+    c.clear();
+    assertThat(c.asMap().size()).isEqualTo(0);
+    checkIntegrity(c);
+    for (int i = 0; i < size * 2; i++) {
+      c.put(i, i);
+    }
+    assertThat(c.asMap().size()).isLessThanOrEqualTo(size);
+    checkIntegrity(c);
+    c.close();
+  }
+
+  @Test
+  public void idleScan() throws InterruptedException, ExecutionException {
+    SimulatedClock clock = new SimulatedClock(true, START_OFFSET_MILLIS);
+    Cache<Integer, Integer> c = builder()
+      .timeReference(clock)
+      .scheduler(clock)
+      .executor(clock.wrapExecutor(Runnable::run))
+      .idleScanTime(1_000, MILLISECONDS)
+      .strictEviction(true)
+      .loader(k -> k)
+      .build();
+    c.loadAll(range(1_000, 10)).get();
+    clock.sleep(500);
+    c.loadAll(range(2_000, 10)).get();
+    clock.sleep(500);
+    assertThat(c.asMap().size()).isEqualTo(20);
+    for (int i = 0; i < 6; i++) {
+      clock.sleep(500);
+    }
+    assertThat(c.asMap().size()).isEqualTo(0);
+    checkIntegrity(c);
+    c.close();
+  }
+
+}
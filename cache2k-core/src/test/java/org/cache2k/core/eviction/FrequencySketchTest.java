@@ -0,0 +1,83 @@
+package org.cache2k.core.eviction;
+
+/*-
+ * #%L
+ * cache2k core implementation
+ * %%
+ * Copyright (C) 2000 - 2022 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.testing.category.FastTests;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Jens Wilke
+ */
+@Category(FastTests.class)
+public class FrequencySketchTest {
+
+  @Test
+  public void countUpToMaximum() {
+    FrequencySketch sketch = new FrequencySketch(1000);
+    assertThat(sketch.getTableSize()).isEqualTo(1024);
+    assertThat(sketch.frequency(4711)).isEqualTo(0);
+    for (int i = 1; i <= 20; i++) {
+      sketch.increment(4711);
+      assertThat(sketch.frequency(4711)).isEqualTo(Math.min(i, FrequencySketch.MAX_FREQUENCY));
+    }
+  }
+
+  @Test
+  public void frequentItemsEstimatedHigher() {
+    FrequencySketch sketch = new FrequencySketch(1000);
+    for (int i = 0; i < 500; i++) {
+      sketch.increment(i);
+      if (i < 50) {
+        sketch.increment(i);
+        sketch.increment(i);
+      }
+    }
+    int low = 0;
+    for (int i = 0; i < 50; i++) {
+      assertThat(sketch.frequency(i)).isGreaterThanOrEqualTo(3);
+    }
+    for (int i = 50; i < 500; i++) {
+      if (sketch.frequency(i) == 1) {
+        low++;
+      }
+    }
+    assertThat(low).isGreaterThan(400);
+  }
+
+  @Test
+  public void aging() {
+    FrequencySketch sketch = new FrequencySketch(10);
+    for (int i = 0; i < 10; i++) {
+      sketch.increment(123);
+    }
+    assertThat(sketch.frequency(123)).isEqualTo(10);
+    int count = 0;
+    while (sketch.getResetCount() == 0) {
+      sketch.increment(count++ + 1000);
+    }
+    assertThat(count).isLessThanOrEqualTo(10 * FrequencySketch.SAMPLE_FACTOR);
+    assertThat(sketch.frequency(123)).isEqualTo(5);
+  }
+
+}
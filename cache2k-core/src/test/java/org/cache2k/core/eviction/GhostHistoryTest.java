@@ -0,0 +1,138 @@
+package org.cache2k.core.eviction;
+
+/*-
+ * #%L
+ * cache2k core implementation
+ * %%
+ * Copyright (C) 2000 - 2022 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.testing.category.FastTests;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Jens Wilke
+ */
+@Category(FastTests.class)
+public class GhostHistoryTest {
+
+  @Test
+  public void oldestIsDropped() {
+    GhostHistory h = new GhostHistory(100);
+    for (int i = 0; i < 150; i++) {
+      h.add(i * 4711);
+    }
+    assertThat(h.getSize()).isEqualTo(100);
+    assertThat(h.countInTable()).isEqualTo(100);
+    for (int i = 0; i < 50; i++) {
+      assertThat(h.contains(i * 4711)).isFalse();
+    }
+    for (int i = 50; i < 150; i++) {
+      assertThat(h.contains(i * 4711)).isTrue();
+    }
+  }
+
+  /**
+   * Colliding hash codes and zero, which is stored differently.
+   */
+  @Test
+  public void collisions() {
+    GhostHistory h = new GhostHistory(10);
+    for (int i = 0; i < 1000; i++) {
+      h.add(i << 20);
+      assertThat(h.contains(i << 20)).isTrue();
+      assertThat(h.countInTable()).isEqualTo(h.getSize());
+    }
+    for (int i = 990; i < 1000; i++) {
+      assertThat(h.contains(i << 20)).isTrue();
+    }
+    assertThat(h.contains(5 << 20)).isFalse();
+  }
+
+  @Test
+  public void clearAndCapacity() {
+    GhostHistory h = new GhostHistory(10);
+    h.add(1);
+    h.clear();
+    assertThat(h.contains(1)).isFalse();
+    assertThat(h.getSize()).isEqualTo(0);
+    h.setCapacity(0);
+    assertThat(h.getCapacity()).isEqualTo(1);
+    h.add(1);
+    h.add(2);
+    assertThat(h.contains(1)).isFalse();
+    assertThat(h.contains(2)).isTrue();
+  }
+
+  /**
+   * A hash code added again is kept, when the clock passes it the first time.
+   */
+  @Test
+  public void referencedIsKept() {
+    GhostHistory h = new GhostHistory(10);
+    for (int i = 0; i < 10; i++) {
+      h.add(i);
+    }
+    h.add(0);
+    h.add(100);
+    assertThat(h.contains(0)).isTrue();
+    assertThat(h.contains(1)).isFalse();
+    assertThat(h.contains(100)).isTrue();
+    assertThat(h.getSize()).isEqualTo(10);
+  }
+
+  @Test
+  public void resizeKeepsNewest() {
+    GhostHistory h = new GhostHistory(100);
+    for (int i = 0; i < 150; i++) {
+      h.add(i);
+    }
+    h.setCapacity(30);
+    assertThat(h.getSize()).isEqualTo(30);
+    assertThat(h.countInTable()).isEqualTo(30);
+    assertThat(h.contains(119)).isFalse();
+    for (int i = 120; i < 150; i++) {
+      assertThat(h.contains(i)).isTrue();
+    }
+    h.setCapacity(1000);
+    assertThat(h.getSize()).isEqualTo(30);
+    for (int i = 0; i < 1000; i++) {
+      h.add(i + 1000);
+    }
+    assertThat(h.getSize()).isEqualTo(1000);
+    assertThat(h.contains(149)).isFalse();
+    assertThat(h.countInTable()).isEqualTo(1000);
+  }
+
+  /**
+   * The table always has empty slots, so a lookup of a missing hash code terminates.
+   */
+  @Test
+  public void smallCapacities() {
+    for (int capacity = 1; capacity < 10; capacity++) {
+      GhostHistory h = new GhostHistory(capacity);
+      for (int i = 0; i < capacity * 3; i++) {
+        h.add(i);
+      }
+      assertThat(h.getSize()).isEqualTo(capacity);
+      assertThat(h.contains(-1)).isFalse();
+    }
+  }
+
+}
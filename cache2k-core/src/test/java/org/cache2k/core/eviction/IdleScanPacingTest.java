@@ -0,0 +1,110 @@
+package org.cache2k.core.eviction;
+
+/*-
+ * #%L
+ * cache2k core implementation
+ * %%
+ * Copyright (C) 2000 - 2022 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.testing.category.FastTests;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.cache2k.core.eviction.IdleScanPacing.*;
+
+/**
+ * @author Jens Wilke
+ */
+@Category(FastTests.class)
+public class IdleScanPacingTest {
+
+  @Test
+  public void scheduledWithModerateTraffic() {
+    IdleScanPacing pacing = new IdleScanPacing(1);
+    assertThat(pacing.pace(10, 1000, 50, 50, 1000)).isEqualTo(50);
+    assertThat(pacing.pace(10, 1100, 50, 50, 1000)).isEqualTo(50);
+    assertThat(pacing.pace(10, 1200, -10, 50, 1000))
+      .as("ahead of schedule")
+      .isEqualTo(0);
+    assertThat(pacing.getSpeedupCount()).isEqualTo(0);
+    assertThat(pacing.getSlowdownCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void speedupWhenIdle() {
+    IdleScanPacing pacing = new IdleScanPacing(1);
+    pacing.pace(10, 1000, 50, 50, 1000);
+    assertThat(pacing.pace(10, 1000, 50, 50, 1000)).isEqualTo(50 + 50 * IDLE_SPEEDUP);
+    assertThat(pacing.pace(10, 1000, -100, 50, 1000))
+      .as("continue ahead of schedule")
+      .isEqualTo(50 * IDLE_SPEEDUP);
+    assertThat(pacing.pace(10, 1000, -100, 50, 120))
+      .as("not more than left in the round")
+      .isEqualTo(20);
+    assertThat(pacing.pace(10, 1000, -100, 50, 100))
+      .as("round complete")
+      .isEqualTo(0);
+    assertThat(pacing.getSpeedupCount()).isEqualTo(3);
+  }
+
+  @Test
+  public void slowdownWithHeavyTraffic() {
+    IdleScanPacing pacing = new IdleScanPacing(1);
+    pacing.pace(10, 0, 50, 50, 1000);
+    long heavy = 50 * HEAVY_TRAFFIC_OPERATIONS_PER_SCAN + 1;
+    assertThat(pacing.pace(10, heavy, 50, 50, 1000)).isEqualTo(12);
+    assertThat(pacing.pace(10, heavy * 2, 88, 50, 1000))
+      .as("missed scans are not caught up, reduced rate is kept")
+      .isEqualTo(13);
+    assertThat(pacing.pace(10, heavy * 3, 125, 1, 1000))
+      .as("less than one scan per wakeup")
+      .isEqualTo(0);
+    assertThat(pacing.pace(10, heavy * 3 + 10, 126, 50, 1000))
+      .as("catch up after traffic calms down")
+      .isEqualTo(126);
+    assertThat(pacing.getSlowdownCount()).isEqualTo(3);
+  }
+
+  /**
+   * 1% CPU is 10 milliseconds per second. After spending the accumulated budget
+   * scanning, the scan stops until time passed.
+   */
+  @Test
+  public void throttleAtCpuLimit() {
+    IdleScanPacing pacing = new IdleScanPacing(1);
+    pacing.pace(10, 1000, 50, 50, 1000);
+    pacing.recordScan(50, 20 * NANOS_PER_MILLI);
+    assertThat(pacing.pace(10, 1100, 50, 50, 1000)).isEqualTo(0);
+    assertThat(pacing.getThrottleCount()).isEqualTo(1);
+    assertThat(pacing.pace(2000, 1200, 50, 50, 1000))
+      .as("accumulated budget of 10 milliseconds for 25 entries at 400 microseconds")
+      .isEqualTo(25);
+    assertThat(pacing.getScanNanos()).isEqualTo(20 * NANOS_PER_MILLI);
+    assertThat(pacing.toString()).contains("idleScanNanosPerEntry=400000");
+  }
+
+  @Test
+  public void illegalPercent() {
+    assertThatCode(() -> new IdleScanPacing(0))
+      .isInstanceOf(IllegalArgumentException.class);
+    assertThatCode(() -> new IdleScanPacing(101))
+      .isInstanceOf(IllegalArgumentException.class);
+  }
+
+}
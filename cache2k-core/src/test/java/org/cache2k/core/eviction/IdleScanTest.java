@@ -22,6 +22,7 @@ package org.cache2k.core.eviction;
 
 import org.cache2k.Cache;
 import org.cache2k.Cache2kBuilder;
+import org.cache2k.core.api.InternalConfig;
 import org.cache2k.testing.SimulatedClock;
 import org.cache2k.testing.category.FastTests;
 import org.junit.Test;
@@ -155,6 +156,57 @@ public class IdleScanTest {
     cache.close();
   }
 
+  private static Cache<Integer, Integer> buildAdaptive(SimulatedClock clock) {
+    return of(Integer.class, Integer.class)
+      .timeReference(clock)
+      .scheduler(clock)
+      .executor(clock.wrapExecutor(Runnable::run))
+      .idleScanTime(1_000, MILLISECONDS)
+      .strictEviction(true)
+      .loader(k -> k)
+      .with(InternalConfig.class, b -> b.adaptiveIdleScan(true))
+      .build();
+  }
+
+  /**
+   * Without adaptive pacing the idle entries are evicted after two rounds, see
+   * {@link #idleScanTwoRounds()}. When the cache is not used, the second round completes
+   * earlier.
+   */
+  @Test
+  public void adaptiveSpeedupWhenIdle() throws InterruptedException, ExecutionException {
+    SimulatedClock clock = new SimulatedClock(true, START_OFFSET_MILLIS);
+    Cache<Integer, Integer> cache = buildAdaptive(clock);
+    cache.loadAll(range(1_000, 100)).get();
+    clock.sleep(1_000);
+    assertThat(cache.asMap().size()).isEqualTo(100);
+    clock.sleep(500);
+    assertThat(cache.asMap().size()).isEqualTo(0);
+    assertThat(cache.toString()).contains("idleScanCount=100").doesNotContain("idleScanSpeedup=0");
+    cache.close();
+  }
+
+  /**
+   * Constant traffic on one entry slows down the scan.
+   */
+  @Test
+  public void adaptiveSlowdownWithTraffic() throws InterruptedException, ExecutionException {
+    SimulatedClock clock = new SimulatedClock(true, START_OFFSET_MILLIS);
+    Cache<Integer, Integer> cache = buildAdaptive(clock);
+    cache.loadAll(range(1_000, 100)).get();
+    for (int i = 0; i < 400; i++) {
+      clock.sleep(5);
+      for (int j = 0; j < 100; j++) {
+        cache.get(1_000);
+      }
+    }
+    assertThat(cache.asMap().size())
+      .as("without traffic all idle entries are evicted at this time")
+      .isGreaterThan(50);
+    assertThat(cache.toString()).doesNotContain("idleScanSlowdown=0");
+    cache.close();
+  }
+
   static Iterable<Integer> range(int from, int count) {
     int to = from + count;
     return new AbstractCollection<Integer>() {
@@ -0,0 +1,87 @@
+package org.cache2k.core.storage;
+
+/*-
+ * #%L
+ * cache2k core implementation
+ * %%
+ * Copyright (C) 2000 - 2022 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.Cache;
+import org.cache2k.Cache2kBuilder;
+import org.cache2k.core.api.InternalCache;
+import org.cache2k.pinpoint.stress.ThreadingStressTester;
+import org.cache2k.testing.category.SlowTests;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.cache2k.core.storage.OffHeapStorageTest.STRING_SERIALIZER;
+
+/**
+ * Concurrent updates, removals and evictions free and reuse blocks while
+ * other threads read. A reader must never see the bytes of another value.
+ *
+ * @author Jens Wilke
+ */
+@Category(SlowTests.class)
+public class OffHeapStorageStressTest {
+
+  private static final int KEY_SPACE = 2000;
+
+  @Test
+  public void readWhileBlocksAreReused() {
+    Cache<Integer, String> cache = Cache2kBuilder.of(Integer.class, String.class)
+      .entryCapacity(KEY_SPACE / 2)
+      .with(OffHeapConfig.class, b -> b.serializer(STRING_SERIALIZER).slabSize(64 * 1024))
+      .build();
+    Runnable writer = () -> {
+      ThreadLocalRandom random = ThreadLocalRandom.current();
+      int key = random.nextInt(KEY_SPACE);
+      if (random.nextInt(10) == 0) {
+        cache.remove(key);
+      } else {
+        cache.put(key, value(key, random.nextInt(200)));
+      }
+    };
+    Runnable reader = () -> {
+      int key = ThreadLocalRandom.current().nextInt(KEY_SPACE);
+      String v = cache.peek(key);
+      if (v != null) {
+        assertThat(v).startsWith(key + ":");
+      }
+    };
+    ThreadingStressTester tst = new ThreadingStressTester();
+    tst.setTestTimeMillis(1000);
+    tst.addTask(2, writer);
+    tst.addTask(4, reader);
+    tst.run();
+    ((InternalCache<?, ?>) cache.requestInterface(InternalCache.class)).checkIntegrity();
+    cache.close();
+  }
+
+  private static String value(int key, int padding) {
+    StringBuilder sb = new StringBuilder();
+    sb.append(key).append(':');
+    for (int i = 0; i < padding; i++) {
+      sb.append('x');
+    }
+    return sb.toString();
+  }
+
+}
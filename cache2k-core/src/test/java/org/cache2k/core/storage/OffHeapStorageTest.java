@@ -0,0 +1,221 @@
+package org.cache2k.core.storage;
+
+/*-
+ * #%L
+ * cache2k core implementation
+ * %%
+ * Copyright (C) 2000 - 2022 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.Cache;
+import org.cache2k.Cache2kBuilder;
+import org.cache2k.CacheEntry;
+import org.cache2k.core.ConcurrentEntryIterator;
+import org.cache2k.core.Entry;
+import org.cache2k.core.HeapCache;
+import org.cache2k.core.WiredCache;
+import org.cache2k.core.api.InternalCache;
+import org.cache2k.testing.category.FastTests;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+
+/**
+ * @author Jens Wilke
+ */
+@Category(FastTests.class)
+public class OffHeapStorageTest {
+
+  static final ValueSerializer<String> STRING_SERIALIZER = new ValueSerializer<String>() {
+    @Override
+    public byte[] serialize(String value) {
+      return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public String deserialize(byte[] bytes) {
+      return new String(bytes, StandardCharsets.UTF_8);
+    }
+  };
+
+  @Test
+  public void stringValues() {
+    Cache<Integer, String> cache = Cache2kBuilder.of(Integer.class, String.class)
+      .entryCapacity(1000)
+      .with(OffHeapConfig.class, b -> b.serializer(STRING_SERIALIZER).slabSize(64 * 1024))
+      .build();
+    OffHeapStorage<?> storage = storage(cache);
+    for (int i = 0; i < 2000; i++) {
+      cache.put(i, "value" + i);
+    }
+    assertThat(cache.asMap().size()).isEqualTo(1000);
+    assertThat(storage.getUsedBytes()).isEqualTo(1000 * SlabAllocator.MIN_BLOCK_SIZE);
+    for (CacheEntry<Integer, String> e : cache.entries()) {
+      assertThat(e.getValue()).isEqualTo("value" + e.getKey());
+    }
+    cache.put(1999, "replaced");
+    assertThat(cache.peek(1999)).isEqualTo("replaced");
+    assertThat(cache.replaceIfEquals(1999, "replaced", "again")).isTrue();
+    assertThat(cache.get(1999)).isEqualTo("again");
+    cache.remove(1999);
+    assertThat(cache.containsKey(1999)).isFalse();
+    assertThat(storage.getUsedBytes()).isEqualTo(999 * SlabAllocator.MIN_BLOCK_SIZE);
+    ((InternalCache<?, ?>) cache.requestInterface(InternalCache.class)).checkIntegrity();
+    cache.clear();
+    assertThat(storage.getUsedBytes()).isEqualTo(0);
+    cache.put(1, "one");
+    assertThat(cache.peek(1)).isEqualTo("one");
+    cache.close();
+  }
+
+  /**
+   * A value that is read by a thread that still holds the entry after the removal is
+   * copied to the heap before the block is freed.
+   */
+  @Test
+  public void valueReadableAfterRemoval() {
+    Cache<Integer, String> cache = Cache2kBuilder.of(Integer.class, String.class)
+      .with(OffHeapConfig.class, b -> b.serializer(STRING_SERIALIZER))
+      .build();
+    cache.put(1, "one");
+    CacheEntry<Integer, String> entry = cache.peekEntry(1);
+    cache.remove(1);
+    cache.put(2, "two");
+    assertThat(entry.getValue()).isEqualTo("one");
+    assertThat(cache.peek(2)).isEqualTo("two");
+    cache.close();
+  }
+
+  /**
+   * The entry holds the address of the block and the shared reference of the allocator.
+   */
+  @Test
+  public void noObjectPerValue() {
+    Cache<Integer, String> cache = Cache2kBuilder.of(Integer.class, String.class)
+      .with(OffHeapConfig.class, b -> b.serializer(STRING_SERIALIZER))
+      .build();
+    cache.put(1, "one");
+    cache.put(2, "two");
+    assertThat(rawValue(cache, 1)).isInstanceOf(OffHeapValue.class);
+    assertThat(rawValue(cache, 1)).isSameAs(rawValue(cache, 2));
+    assertThat(cache.peek(1)).isEqualTo("one");
+    assertThat(cache.peek(2)).isEqualTo("two");
+    cache.close();
+  }
+
+  /**
+   * A loaded value is wrapped for refresh ahead and stays on the heap. After the first
+   * access the value is unwrapped and moved to the off-heap storage.
+   */
+  @Test
+  public void refreshAheadValueMovedAfterAccess() {
+    Cache<Integer, String> cache = Cache2kBuilder.of(Integer.class, String.class)
+      .loader(k -> "value" + k)
+      .refreshAhead(true)
+      .expireAfterWrite(5, TimeUnit.MINUTES)
+      .with(OffHeapConfig.class, b -> b.serializer(STRING_SERIALIZER))
+      .build();
+    OffHeapStorage<?> storage = storage(cache);
+    assertThat(cache.get(1)).isEqualTo("value1");
+    assertThat(storage.getUsedBytes()).isEqualTo(0);
+    assertThat(cache.get(1)).isEqualTo("value1");
+    assertThat(storage.getUsedBytes()).isEqualTo(SlabAllocator.MIN_BLOCK_SIZE);
+    assertThat(rawValue(cache, 1)).isInstanceOf(OffHeapValue.class);
+    assertThat(cache.get(1)).isEqualTo("value1");
+    cache.close();
+  }
+
+  @Test
+  public void largeValuesWithWeigher() {
+    Cache<Integer, String> cache = Cache2kBuilder.of(Integer.class, String.class)
+      .weigher((Integer key, String value) -> value.length())
+      .maximumWeight(100 * 1024)
+      .with(OffHeapConfig.class, b -> b.serializer(STRING_SERIALIZER).slabSize(64 * 1024))
+      .build();
+    OffHeapStorage<?> storage = storage(cache);
+    for (int i = 0; i < 500; i++) {
+      cache.put(i, value(i, 1000 + i));
+    }
+    assertThat(cache.asMap().size()).isLessThan(500);
+    assertThat(storage.getUsedBytes()).isLessThanOrEqualTo(100 * 1024 * 5 / 4);
+    assertThat(cache.peek(499)).isEqualTo(value(499, 1499));
+    ((InternalCache<?, ?>) cache.requestInterface(InternalCache.class)).checkIntegrity();
+    cache.close();
+  }
+
+  @Test
+  public void valueKeptOnHeapIfLimitReached() {
+    Cache<Integer, String> cache = Cache2kBuilder.of(Integer.class, String.class)
+      .with(OffHeapConfig.class, b -> b.serializer(STRING_SERIALIZER).slabSize(1024).maximumBytes(1024))
+      .build();
+    OffHeapStorage<?> storage = storage(cache);
+    cache.put(1, value(1, 1024 - SlabAllocator.BLOCK_HEADER_SIZE));
+    cache.put(2, value(2, 2000));
+    cache.put(3, value(3, 10));
+    assertThat(storage.getRejectedCount()).isEqualTo(2);
+    assertThat(cache.peek(2)).isEqualTo(value(2, 2000));
+    assertThat(cache.peek(3)).isEqualTo(value(3, 10));
+    cache.remove(1);
+    cache.put(4, value(4, 1000));
+    assertThat(storage.getRejectedCount()).isEqualTo(2);
+    assertThat(cache.peek(4)).isEqualTo(value(4, 1000));
+    cache.close();
+  }
+
+  @Test
+  public void serializerMissing() {
+    assertThatCode(() -> Cache2kBuilder.of(Integer.class, String.class)
+      .with(OffHeapConfig.class, b -> { })
+      .build())
+      .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  private static String value(int i, int length) {
+    char[] chars = new char[length];
+    Arrays.fill(chars, (char) ('a' + i % 26));
+    return new String(chars);
+  }
+
+  private static Object rawValue(Cache<Integer, ?> cache, int key) {
+    ConcurrentEntryIterator<?, ?> it = heapCache(cache).iterateAllHeapEntries();
+    Entry<?, ?> e;
+    while ((e = it.next()) != null) {
+      if (e.getKey().equals(key)) {
+        return e.getRawValueOrWrapper();
+      }
+    }
+    return null;
+  }
+
+  private static OffHeapStorage<?> storage(Cache<?, ?> cache) {
+    return heapCache(cache).getOffHeapStorage();
+  }
+
+  private static HeapCache<?, ?> heapCache(Cache<?, ?> cache) {
+    InternalCache<?, ?> ic = cache.requestInterface(InternalCache.class);
+    if (ic instanceof WiredCache) {
+      return ((WiredCache<?, ?>) ic).getHeapCache();
+    }
+    return (HeapCache<?, ?>) ic;
+  }
+
+}
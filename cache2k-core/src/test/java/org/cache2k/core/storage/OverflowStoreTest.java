@@ -0,0 +1,281 @@
+package org.cache2k.core.storage;
+
+/*-
+ * #%L
+ * cache2k core implementation
+ * %%
+ * Copyright (C) 2000 - 2022 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.Cache;
+import org.cache2k.Cache2kBuilder;
+import org.cache2k.core.HeapCache;
+import org.cache2k.core.api.InternalCache;
+import org.cache2k.testing.category.FastTests;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.cache2k.core.storage.OffHeapStorageTest.STRING_SERIALIZER;
+
+/**
+ * @author Jens Wilke
+ */
+@Category(FastTests.class)
+public class OverflowStoreTest {
+
+  private OverflowStore<Integer, String> store;
+
+  @After
+  public void tearDown() throws IOException {
+    if (store != null) {
+      store.close();
+      assertThat(Files.exists(store.getFile())).isFalse();
+    }
+  }
+
+  /**
+   * Four bytes per key, to calculate the records per segment.
+   */
+  static final ValueSerializer<Integer> INT_SERIALIZER = new ValueSerializer<Integer>() {
+    @Override
+    public byte[] serialize(Integer value) {
+      return ByteBuffer.allocate(4).putInt(value).array();
+    }
+
+    @Override
+    public Integer deserialize(byte[] bytes) {
+      return ByteBuffer.wrap(bytes).getInt();
+    }
+  };
+
+  /**
+   * Store that writes in the calling thread, so the effect of a demote is visible
+   * immediately.
+   */
+  private OverflowStore<Integer, String> store(long maximumBytes, int segmentSize,
+                                               long maximumEntries) throws IOException {
+    return store = new OverflowStore<>(INT_SERIALIZER, STRING_SERIALIZER, null,
+      maximumBytes, segmentSize, maximumEntries, Runnable::run);
+  }
+
+  @Test
+  public void demoteAndTake() throws IOException {
+    store(4096, 1024, Long.MAX_VALUE);
+    store.demote(1, "one", OverflowStore.ETERNAL);
+    store.demote(2, null, 100);
+    assertThat(store.getEntryCount()).isEqualTo(2);
+    assertThat(store.containsKey(1)).isTrue();
+    OverflowStore.Demoted<String> d = store.take(1, 0);
+    assertThat(d.getValue()).isEqualTo("one");
+    assertThat(d.getExpiryTime()).isEqualTo(OverflowStore.ETERNAL);
+    assertThat(store.take(1, 0)).isNull();
+    d = store.take(2, 99);
+    assertThat(d.getValue()).isNull();
+    assertThat(d.getExpiryTime()).isEqualTo(100);
+    assertThat(store.getHitCount()).isEqualTo(2);
+  }
+
+  @Test
+  public void expiredIsDropped() throws IOException {
+    store(4096, 1024, Long.MAX_VALUE);
+    store.demote(1, "one", 100);
+    assertThat(store.take(1, 100)).isNull();
+    assertThat(store.getExpiredCount()).isEqualTo(1);
+    assertThat(store.containsKey(1)).isFalse();
+  }
+
+  @Test
+  public void oldestSegmentIsDropped() throws IOException {
+    store(4 * 100, 100, Long.MAX_VALUE);
+    int recordsPerSegment = 100 / (OverflowStore.RECORD_HEADER_SIZE + 4 + 8);
+    int count = recordsPerSegment * 10;
+    for (int i = 0; i < count; i++) {
+      store.demote(i, String.format("%08d", i), OverflowStore.ETERNAL);
+    }
+    assertThat(store.getEntryCount())
+      .isGreaterThanOrEqualTo(3 * recordsPerSegment)
+      .isLessThanOrEqualTo(4 * recordsPerSegment);
+    assertThat(store.getEvictedCount()).isEqualTo(count - store.getEntryCount());
+    assertThat(store.containsKey(0)).isFalse();
+    assertThat(store.take(count - 1, 0).getValue()).isEqualTo(String.format("%08d", count - 1));
+  }
+
+  @Test
+  public void replacedKeyIsNotDroppedWithOldSegment() throws IOException {
+    store(4 * 100, 100, Long.MAX_VALUE);
+    store.demote(0, "old", OverflowStore.ETERNAL);
+    for (int i = 1; i < 20; i++) {
+      store.demote(i, "filler", OverflowStore.ETERNAL);
+    }
+    store.demote(0, "new", OverflowStore.ETERNAL);
+    for (int i = 20; i < 25; i++) {
+      store.demote(i, "filler", OverflowStore.ETERNAL);
+    }
+    assertThat(store.take(0, 0).getValue()).isEqualTo("new");
+  }
+
+  @Test
+  public void entryLimit() throws IOException {
+    store(1024 * 1024, 1024, 100);
+    for (int i = 0; i < 1000; i++) {
+      store.demote(i, "x", OverflowStore.ETERNAL);
+    }
+    assertThat(store.getEntryCount()).isLessThanOrEqualTo(100);
+    assertThat(store.containsKey(999)).isTrue();
+  }
+
+  @Test
+  public void tooLargeIsRejected() throws IOException {
+    store(4096, 1024, Long.MAX_VALUE);
+    store.demote(1, new String(new char[2000]), OverflowStore.ETERNAL);
+    assertThat(store.containsKey(1)).isFalse();
+    assertThat(store.getRejectedCount()).isEqualTo(1);
+  }
+
+  /**
+   * The demote only queues the entry. An entry taken before the writing task runs
+   * is returned from memory and not written.
+   */
+  @Test
+  public void takeBeforeWritten() throws IOException {
+    List<Runnable> tasks = new ArrayList<>();
+    AtomicInteger serializeCount = new AtomicInteger();
+    ValueSerializer<String> countingSerializer = new ValueSerializer<String>() {
+      @Override
+      public byte[] serialize(String value) {
+        serializeCount.incrementAndGet();
+        return STRING_SERIALIZER.serialize(value);
+      }
+
+      @Override
+      public String deserialize(byte[] bytes) {
+        return STRING_SERIALIZER.deserialize(bytes);
+      }
+    };
+    store = new OverflowStore<>(INT_SERIALIZER, countingSerializer, null,
+      4096, 1024, Long.MAX_VALUE, tasks::add);
+    store.demote(1, "one", OverflowStore.ETERNAL);
+    store.demote(2, "two", OverflowStore.ETERNAL);
+    assertThat(serializeCount.get()).isEqualTo(0);
+    assertThat(tasks).hasSize(1);
+    assertThat(store.containsKey(1)).isTrue();
+    assertThat(store.getEntryCount()).isEqualTo(2);
+    assertThat(store.take(1, 0).getValue()).isEqualTo("one");
+    tasks.get(0).run();
+    assertThat(serializeCount.get()).isEqualTo(1);
+    assertThat(store.getDemoteCount()).isEqualTo(1);
+    assertThat(store.containsKey(1)).isFalse();
+    assertThat(store.take(2, 0).getValue()).isEqualTo("two");
+  }
+
+  @Test
+  public void stripeWithEqualHashes() {
+    OverflowStore.Stripe s = new OverflowStore.Stripe();
+    for (int i = 0; i < 100; i++) {
+      s.add(i % 3 == 0 ? 4711 : i, i);
+    }
+    assertThat(s.remove(4711, 33)).isTrue();
+    assertThat(s.remove(4711, 33)).isFalse();
+    assertThat(s.remove(4711, 34)).isFalse();
+    for (int i = 0; i < 100; i++) {
+      if (i != 33) {
+        assertThat(s.remove(i % 3 == 0 ? 4711 : i, i)).isTrue();
+      }
+    }
+    assertThat(s.size).isEqualTo(0);
+    assertThat(s.containsHash(4711)).isFalse();
+  }
+
+  @Test
+  public void tooSmall() {
+    assertThatCode(() -> store(10, 1024, Long.MAX_VALUE))
+      .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  public void cacheGetsEvictedEntriesWithoutLoad() {
+    AtomicInteger loadCount = new AtomicInteger();
+    Cache<Integer, String> cache = Cache2kBuilder.of(Integer.class, String.class)
+      .entryCapacity(100)
+      .loader(k -> { loadCount.incrementAndGet(); return "loaded" + k; })
+      .with(OverflowConfig.class, b -> b.valueSerializer(STRING_SERIALIZER)
+        .maximumBytes(1024 * 1024).segmentSize(64 * 1024))
+      .build();
+    OverflowStore<Integer, ?> store = overflowStore(cache);
+    for (int i = 0; i < 1000; i++) {
+      cache.put(i, "value" + i);
+    }
+    assertThat(cache.asMap().size()).isLessThanOrEqualTo(100);
+    assertThat(store.getEntryCount()).isGreaterThanOrEqualTo(900);
+    for (int i = 0; i < 1000; i++) {
+      assertThat(cache.get(i)).isEqualTo("value" + i);
+    }
+    assertThat(loadCount.get()).isEqualTo(0);
+    assertThat(store.getHitCount()).isGreaterThanOrEqualTo(900);
+    ((InternalCache<?, ?>) cache.requestInterface(InternalCache.class)).checkIntegrity();
+    cache.close();
+  }
+
+  @Test
+  public void cacheOperationsSeeOverflow() throws IOException {
+    Path dir = Files.createTempDirectory("cache2k-overflow");
+    Cache<Integer, String> cache = Cache2kBuilder.of(Integer.class, String.class)
+      .entryCapacity(10)
+      .with(OverflowConfig.class, b -> b.directory(dir.toString()))
+      .build();
+    OverflowStore<Integer, ?> store = overflowStore(cache);
+    assertThat(store.getFile().getParent()).isEqualTo(dir);
+    for (int i = 0; i < 100; i++) {
+      cache.put(i, "value" + i);
+    }
+    int[] keys = new int[3];
+    for (int i = 0, j = 0; j < keys.length; i++) {
+      if (store.containsKey(i)) {
+        keys[j++] = i;
+      }
+    }
+    assertThat(cache.peek(keys[0])).isEqualTo("value" + keys[0]);
+    assertThat(store.containsKey(keys[0])).isFalse();
+    cache.remove(keys[1]);
+    assertThat(store.containsKey(keys[1])).isFalse();
+    assertThat(cache.containsKey(keys[1])).isFalse();
+    cache.put(keys[2], "new");
+    assertThat(store.containsKey(keys[2])).isFalse();
+    assertThat(cache.peek(keys[2])).isEqualTo("new");
+    cache.clear();
+    assertThat(store.getEntryCount()).isEqualTo(0);
+    cache.close();
+    assertThat(Files.exists(store.getFile())).isFalse();
+    Files.delete(dir);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <K> OverflowStore<K, ?> overflowStore(Cache<K, ?> cache) {
+    return ((HeapCache<K, ?>) cache.requestInterface(InternalCache.class)).getOverflowStore();
+  }
+
+}
@@ -0,0 +1,94 @@
+package org.cache2k.core.storage;
+
+/*-
+ * #%L
+ * cache2k core implementation
+ * %%
+ * Copyright (C) 2000 - 2022 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.testing.category.FastTests;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Jens Wilke
+ */
+@Category(FastTests.class)
+public class SlabAllocatorTest {
+
+  @Test
+  public void classSizes() {
+    int[] sizes = SlabAllocator.calculateClassSizes(1024);
+    assertThat(sizes).containsExactly(64, 80, 96, 112, 128, 160, 192, 224, 256,
+      320, 384, 448, 512, 640, 768, 896, 1024);
+  }
+
+  @Test
+  public void allocateWriteRead() {
+    SlabAllocator a = new SlabAllocator(1024, Long.MAX_VALUE);
+    byte[] bytes = new byte[100];
+    Arrays.fill(bytes, (byte) 7);
+    long address = a.allocate(bytes.length);
+    a.write(address, bytes);
+    assertThat(a.read(address, bytes.length)).isEqualTo(bytes);
+    assertThat(a.getUsedBytes()).isEqualTo(112);
+    assertThat(a.getReservedBytes()).isEqualTo(1024);
+  }
+
+  @Test
+  public void freedBlockIsReused() {
+    SlabAllocator a = new SlabAllocator(1024, Long.MAX_VALUE);
+    long a1 = a.allocate(100);
+    long a2 = a.allocate(100);
+    assertThat(a2).isNotEqualTo(a1);
+    a.free(a1, 100);
+    assertThat(a.getUsedBytes()).isEqualTo(112);
+    assertThat(a.allocate(99)).isEqualTo(a1);
+  }
+
+  @Test
+  public void limits() {
+    SlabAllocator a = new SlabAllocator(1024, 2048);
+    assertThat(a.allocate(1025)).isEqualTo(-1);
+    assertThat(a.allocate(1024)).isEqualTo(0);
+    long second = a.allocate(600);
+    assertThat(second >>> 32).isEqualTo(1);
+    assertThat(a.allocate(600)).isEqualTo(-1);
+    a.free(second, 600);
+    assertThat(a.allocate(600)).isEqualTo(second);
+  }
+
+  @Test
+  public void blockWithLengthPrefix() {
+    SlabAllocator a = new SlabAllocator(1024, Long.MAX_VALUE);
+    byte[] bytes = new byte[100];
+    Arrays.fill(bytes, (byte) 7);
+    long address = a.allocateBlock(bytes);
+    assertThat(a.readBlock(address)).isEqualTo(bytes);
+    assertThat(a.getUsedBytes()).isEqualTo(112);
+    a.freeBlock(address);
+    assertThat(a.getUsedBytes()).isEqualTo(0);
+    assertThat(a.allocateBlock(new byte[1024 - SlabAllocator.BLOCK_HEADER_SIZE]))
+      .isGreaterThanOrEqualTo(0);
+    assertThat(a.allocateBlock(new byte[1024])).isEqualTo(-1);
+  }
+
+}
@@ -0,0 +1,211 @@
+package org.cache2k.core.storage;
+
+/*-
+ * #%L
+ * cache2k core implementation
+ * %%
+ * Copyright (C) 2000 - 2022 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.Cache;
+import org.cache2k.Cache2kBuilder;
+import org.cache2k.core.ConcurrentEntryIterator;
+import org.cache2k.core.Entry;
+import org.cache2k.core.HeapCache;
+import org.cache2k.core.api.InternalCache;
+import org.cache2k.operation.CacheControl;
+import org.cache2k.processor.MutableCacheEntry;
+import org.cache2k.testing.category.FastTests;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * @author Jens Wilke
+ */
+@Category(FastTests.class)
+public class SnapshotTest {
+
+  private Path dir;
+  private Path file;
+
+  @Before
+  public void setUp() throws IOException {
+    dir = Files.createTempDirectory("cache2k-snapshot");
+    file = dir.resolve("cache.snapshot");
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    try (Stream<Path> s = Files.walk(dir)) {
+      s.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+    }
+  }
+
+  private Cache2kBuilder<Integer, String> builder(AtomicInteger loadCount) {
+    return Cache2kBuilder.of(Integer.class, String.class)
+      .entryCapacity(100)
+      .expireAfterWrite(5, TimeUnit.MINUTES)
+      .loader(k -> { loadCount.incrementAndGet(); return "loaded" + k; })
+      .with(SnapshotConfig.class, b -> b.restoreFile(file.toString()));
+  }
+
+  @Test
+  public void roundTrip() throws Exception {
+    AtomicInteger loadCount = new AtomicInteger();
+    Cache<Integer, String> cache = builder(loadCount).build();
+    for (int i = 0; i < 50; i++) {
+      cache.put(i, "value" + i);
+    }
+    cache.invoke(7, e -> e.setValue("short").setExpiryTime(e.getStartTime() + 1));
+    CacheControl.of(cache).snapshot(file).get();
+    long expiry = cache.invoke(8, MutableCacheEntry::getExpiryTime);
+    cache.close();
+    assertThat(Files.exists(file)).isTrue();
+    cache = builder(loadCount).build();
+    assertThat(cache.containsKey(7))
+      .as("expired entry not restored")
+      .isFalse();
+    assertThat(cache.asMap().size()).isEqualTo(49);
+    for (int i = 8; i < 50; i++) {
+      assertThat(cache.peek(i)).isEqualTo("value" + i);
+    }
+    long restoredExpiry = cache.invoke(8, MutableCacheEntry::getExpiryTime);
+    assertThat(restoredExpiry)
+      .as("expiry time restored")
+      .isEqualTo(expiry);
+    assertThat(loadCount.get()).isEqualTo(0);
+    cache.close();
+  }
+
+  @Test
+  public void missingFileStartsEmpty() {
+    Cache<Integer, String> cache = builder(new AtomicInteger()).build();
+    assertThat(cache.asMap()).isEmpty();
+    cache.close();
+  }
+
+  @Test
+  public void corruptFileStartsEmpty() throws IOException {
+    Files.write(file, "not a snapshot".getBytes(StandardCharsets.UTF_8));
+    Cache<Integer, String> cache = builder(new AtomicInteger()).build();
+    assertThat(cache.asMap()).isEmpty();
+    cache.put(1, "ok");
+    assertThat(cache.peek(1)).isEqualTo("ok");
+    cache.close();
+  }
+
+  @Test
+  public void truncatedFileRestoresPartially() throws Exception {
+    Cache<Integer, String> cache = builder(new AtomicInteger()).build();
+    for (int i = 0; i < 50; i++) {
+      cache.put(i, "value" + i);
+    }
+    CacheControl.of(cache).snapshot(file).get();
+    cache.close();
+    byte[] bytes = Files.readAllBytes(file);
+    Files.write(file, Arrays.copyOf(bytes, bytes.length / 2));
+    cache = builder(new AtomicInteger()).build();
+    assertThat(cache.asMap().size()).isBetween(1, 49);
+    cache.close();
+  }
+
+  /**
+   * A serialization error completes the future exceptionally and is not thrown.
+   */
+  @Test
+  public void valueNotSerializable() {
+    Cache<Integer, Object> cache = Cache2kBuilder.of(Integer.class, Object.class).build();
+    cache.put(1, new Object());
+    CompletableFuture<Void> future = CacheControl.of(cache).snapshot(file);
+    assertThat(future).isCompletedExceptionally();
+    assertThatThrownBy(future::get).hasCauseInstanceOf(UncheckedIOException.class);
+    cache.close();
+  }
+
+  @Test
+  public void hotEntriesStayHot() throws Exception {
+    Cache<Integer, String> cache = builder(new AtomicInteger()).build();
+    for (int i = 0; i < 200; i++) {
+      cache.put(i, "value" + i);
+      cache.get(i % 20);
+    }
+    Set<Integer> hot = hotKeys(cache);
+    assertThat(hot).isNotEmpty();
+    CacheControl.of(cache).snapshot(file).get();
+    cache.close();
+    cache = builder(new AtomicInteger()).build();
+    assertThat(hotKeys(cache)).containsAll(hot);
+    cache.close();
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Set<Integer> hotKeys(Cache<Integer, String> cache) {
+    HeapCache<Integer, String> hc =
+      (HeapCache<Integer, String>) cache.requestInterface(InternalCache.class);
+    Set<Integer> set = new HashSet<>();
+    ConcurrentEntryIterator<Integer, String> it = hc.iterateAllHeapEntries();
+    while (it.hasNext()) {
+      Entry<Integer, String> e = it.next();
+      if (e.isHot()) {
+        set.add(e.getKey());
+      }
+    }
+    return set;
+  }
+
+  @Test
+  public void fileRoundTrip() throws IOException {
+    byte[] large = new byte[200 * 1024];
+    large[large.length - 1] = 42;
+    try (SnapshotFile.Writer w = new SnapshotFile.Writer(file)) {
+      w.write(true, SnapshotFile.ETERNAL, new byte[]{1}, large);
+      w.write(false, 4711, new byte[]{2}, null);
+      w.commit();
+    }
+    try (SnapshotFile.Reader r = new SnapshotFile.Reader(file)) {
+      assertThat(r.next()).isTrue();
+      assertThat(r.isHot()).isTrue();
+      assertThat(r.getExpiryMillis()).isEqualTo(SnapshotFile.ETERNAL);
+      assertThat(r.getValue()).isEqualTo(large);
+      assertThat(r.next()).isTrue();
+      assertThat(r.isHot()).isFalse();
+      assertThat(r.getExpiryMillis()).isEqualTo(4711);
+      assertThat(r.getKey()).containsExactly(2);
+      assertThat(r.getValue()).isNull();
+      assertThat(r.next()).isFalse();
+    }
+  }
+
+}
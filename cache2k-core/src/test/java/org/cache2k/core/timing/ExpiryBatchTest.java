@@ -0,0 +1,108 @@
+package org.cache2k.core.timing;
+
+/*-
+ * #%L
+ * cache2k core implementation
+ * %%
+ * Copyright (C) 2000 - 2022 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.Cache;
+import org.cache2k.Cache2kBuilder;
+import org.cache2k.test.util.TestingBase;
+import org.cache2k.testing.SimulatedClock;
+import org.cache2k.testing.category.FastTests;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.function.Consumer;
+
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Expiry of many entries within the same timer event, which is processed in
+ * batches by the cache.
+ *
+ * @author Jens Wilke
+ */
+@Category(FastTests.class)
+public class ExpiryBatchTest extends TestingBase {
+
+  static final int COUNT = DefaultTimer.BATCH_SIZE * 3 + 17;
+
+  final SimulatedClock clock = new SimulatedClock(true, 1000);
+
+  { setClock(clock); }
+
+  Cache<Integer, Integer> build(Consumer<Cache2kBuilder<Integer, Integer>> customize) {
+    return builder()
+      .executor(clock.wrapExecutor(Runnable::run))
+      .entryCapacity(COUNT * 2)
+      .expireAfterWrite(5, MINUTES)
+      .setup(customize)
+      .build();
+  }
+
+  @Test
+  public void bulkExpiry() {
+    Cache<Integer, Integer> c = build(b -> { });
+    for (int i = 0; i < COUNT; i++) {
+      c.put(i, i);
+    }
+    sleep(MINUTES.toMillis(6));
+    assertThat(c.asMap()).isEmpty();
+    assertThat(getInfo().getExpiredCount()).isEqualTo(COUNT);
+    assertThat(getInfo().getTimerEventCount()).isEqualTo(COUNT);
+    c.put(1, 2);
+    assertThat(c.peek(1)).isEqualTo(2);
+  }
+
+  /**
+   * Entries updated after the initial put have a new timer task, the batch
+   * only expires the entries with the original task.
+   */
+  @Test
+  public void updatedEntriesNotExpired() {
+    Cache<Integer, Integer> c = build(b -> { });
+    for (int i = 0; i < COUNT; i++) {
+      c.put(i, i);
+    }
+    sleep(MINUTES.toMillis(3));
+    for (int i = 0; i < COUNT; i += 2) {
+      c.put(i, i);
+    }
+    sleep(MINUTES.toMillis(3));
+    assertThat(c.asMap()).hasSize(COUNT / 2 + 1);
+    assertThat(c.containsKey(0)).isTrue();
+    assertThat(c.containsKey(1)).isFalse();
+    sleep(MINUTES.toMillis(3));
+    assertThat(c.asMap()).isEmpty();
+  }
+
+  @Test
+  public void keepDataAfterExpired() {
+    Cache<Integer, Integer> c = build(b -> b.keepDataAfterExpired(true));
+    for (int i = 0; i < COUNT; i++) {
+      c.put(i, i);
+    }
+    sleep(MINUTES.toMillis(6));
+    assertThat(c.peek(1)).isNull();
+    assertThat(getInfo().getSize()).isEqualTo(COUNT);
+    assertThat(getInfo().getExpiredCount()).isEqualTo(COUNT);
+  }
+
+}
@@ -0,0 +1,171 @@
+package org.cache2k.core.timing;
+
+/*-
+ * #%L
+ * cache2k core implementation
+ * %%
+ * Copyright (C) 2000 - 2022 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.Cache;
+import org.cache2k.Cache2kBuilder;
+import org.cache2k.core.api.InternalConfig;
+import org.cache2k.core.eviction.StandardEvictionPolicy;
+import org.cache2k.event.CacheEntryExpiredListener;
+import org.cache2k.test.util.TestingBase;
+import org.cache2k.testing.SimulatedClock;
+import org.cache2k.testing.category.FastTests;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.function.Consumer;
+
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+
+/**
+ * Expiry without timer, checked on access.
+ *
+ * @author Jens Wilke
+ */
+@Category(FastTests.class)
+public class LazyExpiryTest extends TestingBase {
+
+  final SimulatedClock clock = new SimulatedClock(true, 1000);
+
+  { setClock(clock); }
+
+  Cache<Integer, Integer> build(Consumer<Cache2kBuilder<Integer, Integer>> customize) {
+    return builder()
+      .executor(clock.wrapExecutor(Runnable::run))
+      .expireAfterWrite(5, MINUTES)
+      .with(InternalConfig.class, b -> b.lazyExpiry(true))
+      .setup(customize)
+      .build();
+  }
+
+  @Test
+  public void expiredOnAccess() {
+    Cache<Integer, Integer> c = build(b -> { });
+    for (int i = 0; i < 100; i++) {
+      c.put(i, i);
+    }
+    assertThat(getInternalCache().getEntryState(1)).doesNotContain("timerState");
+    sleep(MINUTES.toMillis(4));
+    assertThat(c.peek(1)).isEqualTo(1);
+    assertThat(c.asMap()).hasSize(100);
+    sleep(MINUTES.toMillis(2));
+    assertThat(c.peek(1)).isNull();
+    assertThat(c.containsKey(2)).isFalse();
+    assertThat(c.keys()).isEmpty();
+    assertThat(getInfo().getTimerEventCount()).isEqualTo(0);
+    c.put(1, 2);
+    assertThat(c.peek(1)).isEqualTo(2);
+  }
+
+  @Test
+  public void expiredWithLoader() {
+    int[] loads = new int[1];
+    Cache<Integer, Integer> c = build(b -> b.loader(k -> { loads[0]++; return k; }));
+    assertThat(c.get(1)).isEqualTo(1);
+    assertThat(c.get(1)).isEqualTo(1);
+    assertThat(loads[0]).isEqualTo(1);
+    sleep(MINUTES.toMillis(6));
+    assertThat(c.get(1)).isEqualTo(1);
+    assertThat(loads[0]).isEqualTo(2);
+  }
+
+  /**
+   * Expired entries are preferred for eviction, the entries that are still valid stay.
+   */
+  @Test
+  public void expiredReclaimedByEviction() {
+    Cache<Integer, Integer> c = build(b -> b.entryCapacity(100));
+    for (int i = 0; i < 100; i++) {
+      c.put(i, i);
+    }
+    sleep(MINUTES.toMillis(3));
+    for (int i = 100; i < 150; i++) {
+      c.put(i, i);
+      c.get(i);
+    }
+    sleep(MINUTES.toMillis(3));
+    for (int i = 150; i < 200; i++) {
+      c.put(i, i);
+    }
+    for (int i = 100; i < 200; i++) {
+      assertThat(c.containsKey(i)).as("key " + i).isTrue();
+    }
+  }
+
+  /**
+   * Every eviction policy evicts expired entries first, even if they had hits.
+   */
+  @Test
+  public void expiredWithHitsReclaimedByEviction() {
+    for (StandardEvictionPolicy policy : StandardEvictionPolicy.values()) {
+      Cache<Integer, Integer> c = build(b -> b
+        .entryCapacity(100)
+        .with(InternalConfig.class, cfg -> cfg.evictionPolicy(policy)));
+      for (int i = 0; i < 100; i++) {
+        c.put(i, i);
+        c.get(i);
+      }
+      sleep(MINUTES.toMillis(6));
+      for (int i = 100; i < 150; i++) {
+        c.put(i, i);
+      }
+      for (int i = 100; i < 150; i++) {
+        assertThat(c.containsKey(i)).as(policy + ", key " + i).isTrue();
+      }
+    }
+  }
+
+  @Test
+  public void timerTasksAvoidedCounted() {
+    Cache<Integer, Integer> c = build(b -> { });
+    for (int i = 0; i < 100; i++) {
+      c.put(i, i);
+    }
+    assertThat(getInfo().getTimerTasksAvoidedCount()).isEqualTo(100);
+    assertThat(getInfo().toString()).contains("timerAvoided=100");
+  }
+
+  @Test
+  public void expiredReclaimedByIdleScan() {
+    Cache<Integer, Integer> c = build(b -> b.idleScanTime(1, MINUTES));
+    for (int i = 0; i < 100; i++) {
+      c.put(i, i);
+    }
+    sleep(MINUTES.toMillis(20));
+    assertThat(getInfo().getSize()).isEqualTo(0);
+  }
+
+  @Test
+  public void refreshAheadRejected() {
+    assertThatCode(() -> build(b -> b.refreshAhead(true).loader(k -> k)))
+      .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  public void expiryListenerRejected() {
+    assertThatCode(() -> build(b -> b.addListener(
+      (CacheEntryExpiredListener<Integer, Integer>) (c, e) -> { })))
+      .isInstanceOf(IllegalArgumentException.class);
+  }
+
+}
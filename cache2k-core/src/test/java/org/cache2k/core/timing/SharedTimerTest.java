@@ -0,0 +1,135 @@
+package org.cache2k.core.timing;
+
+/*-
+ * #%L
+ * cache2k core implementation
+ * %%
+ * Copyright (C) 2000 - 2022 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.Cache;
+import org.cache2k.Cache2kBuilder;
+import org.cache2k.CacheManager;
+import org.cache2k.core.CacheManagerImpl;
+import org.cache2k.core.api.InternalCache;
+import org.cache2k.core.api.InternalConfig;
+import org.cache2k.testing.SimulatedClock;
+import org.cache2k.testing.category.FastTests;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Caches of a manager sharing one timer.
+ *
+ * @author Jens Wilke
+ */
+@Category(FastTests.class)
+public class SharedTimerTest {
+
+  final CacheManager manager = CacheManager.getInstance(getClass().getName());
+
+  @After
+  public void tearDown() {
+    manager.close();
+  }
+
+  SharedTimer sharedTimer() {
+    return ((CacheManagerImpl) manager).getSharedTimer();
+  }
+
+  Cache2kBuilder<Integer, Integer> builder(String name) {
+    return Cache2kBuilder.of(Integer.class, Integer.class)
+      .manager(manager)
+      .name(name)
+      .with(InternalConfig.class, b -> b.sharedTimer(true));
+  }
+
+  @Test
+  public void acquireAndRelease() {
+    Cache<Integer, Integer> c1 = builder("c1").expireAfterWrite(5, MINUTES).build();
+    Cache<Integer, Integer> c2 = builder("c2").expireAfterWrite(5, MINUTES).build();
+    Cache<Integer, Integer> eternal = builder("eternal").eternal(true).build();
+    assertThat(sharedTimer().getUsageCount()).isEqualTo(2);
+    c1.close();
+    assertThat(sharedTimer().getUsageCount()).isEqualTo(1);
+    c2.close();
+    eternal.close();
+    assertThat(sharedTimer().getUsageCount()).isEqualTo(0);
+    Cache<Integer, Integer> c3 = builder("c3").expireAfterWrite(5, MINUTES).build();
+    assertThat(sharedTimer().getUsageCount()).isEqualTo(1);
+    c3.close();
+  }
+
+  /**
+   * A cache with its own time reference has its own timer.
+   */
+  @Test
+  public void notSharedWithCustomClock() {
+    SimulatedClock clock = new SimulatedClock(true, 1000);
+    builder("simulated").expireAfterWrite(5, MINUTES)
+      .timeReference(clock)
+      .scheduler(clock)
+      .build();
+    assertThat(sharedTimer().getUsageCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void expiryInAllCaches() throws InterruptedException {
+    Cache<Integer, Integer> c1 = builder("c1").expireAfterWrite(1, MILLISECONDS).build();
+    Cache<Integer, Integer> c2 = builder("c2").expireAfterWrite(1, MILLISECONDS).build();
+    for (int i = 0; i < 100; i++) {
+      c1.put(i, i);
+      c2.put(i, i);
+    }
+    awaitEmpty(c1);
+    awaitEmpty(c2);
+  }
+
+  /**
+   * Clear and close of one cache cancel only the timer tasks of that cache.
+   */
+  @Test
+  public void clearAndCloseCancelOwnTasks() throws InterruptedException {
+    Cache<Integer, Integer> c1 = builder("c1").expireAfterWrite(5, MINUTES).build();
+    Cache<Integer, Integer> c2 = builder("c2").expireAfterWrite(1, MILLISECONDS).build();
+    Cache<Integer, Integer> c3 = builder("c3").expireAfterWrite(5, MINUTES).build();
+    c1.put(1, 1);
+    c3.put(1, 1);
+    assertThat(c1.requestInterface(InternalCache.class).getEntryState(1))
+      .contains("timerState=ExpireTimerTask");
+    c1.clear();
+    c1.put(2, 2);
+    c3.close();
+    assertThat(c1.containsKey(2)).isTrue();
+    c2.put(1, 1);
+    awaitEmpty(c2);
+    assertThat(c1.containsKey(2)).isTrue();
+  }
+
+  static void awaitEmpty(Cache<Integer, Integer> c) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + MINUTES.toMillis(1);
+    while (c.requestInterface(InternalCache.class).getTotalEntryCount() > 0) {
+      assertThat(System.currentTimeMillis()).isLessThan(deadline);
+      Thread.sleep(10);
+    }
+  }
+
+}
@@ -0,0 +1,139 @@
+package org.cache2k.core.timing;
+
+/*-
+ * #%L
+ * cache2k core implementation
+ * %%
+ * Copyright (C) 2000 - 2022 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.Cache;
+import org.cache2k.Cache2kBuilder;
+import org.cache2k.core.api.InternalConfig;
+import org.cache2k.testing.SimulatedClock;
+import org.cache2k.testing.category.FastTests;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.cache2k.core.timing.DefaultTimer.determineStripeCount;
+
+/**
+ * Run the timer tests with multiple stripes and test concurrent scheduling.
+ *
+ * @author Jens Wilke
+ */
+@Category(FastTests.class)
+public class StripedTimerTest extends TimerTest {
+
+  static final int THREAD_COUNT = 8;
+  static final int TASKS_PER_THREAD = 10_000;
+
+  @Override
+  int getStripeCount() {
+    return 4;
+  }
+
+  @Test
+  public void stripeCount() {
+    assertThat(determineStripeCount(false, 48, -1)).isEqualTo(1);
+    assertThat(determineStripeCount(true, 6, -1)).isEqualTo(4);
+    assertThat(determineStripeCount(true, 48, -1)).isEqualTo(DefaultTimer.MAXIMUM_STRIPE_COUNT);
+    assertThat(determineStripeCount(false, 1, 3)).isEqualTo(4);
+    init(100, 10, 10);
+    assertThat(((DefaultTimer) timer).getStripeCount()).isEqualTo(4);
+    assertThatCode(() -> new DefaultTimer(clock, clock, 10, 10, 3))
+      .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  /**
+   * Concurrent inserts and cancels in all stripes, followed by running the timer.
+   * Every task not cancelled is executed once.
+   */
+  @Test
+  public void concurrentScheduleAndCancel() throws InterruptedException {
+    long startTime = 100;
+    long lagMillis = 10;
+    long maxTime = startTime + 1000;
+    init(startTime, lagMillis);
+    List<List<MyTimerTask>> cancelled = new ArrayList<>();
+    List<List<MyTimerTask>> remaining = new ArrayList<>();
+    List<Thread> threads = new ArrayList<>();
+    for (int i = 0; i < THREAD_COUNT; i++) {
+      List<MyTimerTask> cancelledByThread = new ArrayList<>();
+      List<MyTimerTask> remainingByThread = new ArrayList<>();
+      cancelled.add(cancelledByThread);
+      remaining.add(remainingByThread);
+      Random random = new Random(i);
+      threads.add(new Thread(() -> {
+        for (int j = 0; j < TASKS_PER_THREAD; j++) {
+          MyTimerTask t = new MyTimerTask();
+          t.scheduleTime = startTime + 1 + random.nextInt((int) (maxTime - startTime));
+          timer.schedule(t, t.scheduleTime);
+          if (j % 3 == 0) {
+            timer.cancel(t);
+            cancelledByThread.add(t);
+          } else {
+            remainingByThread.add(t);
+          }
+        }
+      }));
+    }
+    threads.forEach(Thread::start);
+    for (Thread t : threads) {
+      t.join();
+    }
+    for (long time = startTime; time <= maxTime + lagMillis; time++) {
+      clock.run(time);
+    }
+    int expectedCount = 0;
+    for (List<MyTimerTask> l : remaining) {
+      assertThat(l).allMatch(t -> t.executed);
+      expectedCount += l.size();
+    }
+    for (List<MyTimerTask> l : cancelled) {
+      assertThat(l).noneMatch(t -> t.executed);
+    }
+    assertThat(executed).hasSize(expectedCount);
+  }
+
+  @Test
+  public void cacheWithStripedTimer() throws InterruptedException {
+    SimulatedClock clock = new SimulatedClock(true, 1000);
+    Cache<Integer, Integer> cache = Cache2kBuilder.of(Integer.class, Integer.class)
+      .timeReference(clock)
+      .scheduler(clock)
+      .executor(clock.wrapExecutor(Runnable::run))
+      .expireAfterWrite(5, TimeUnit.MINUTES)
+      .with(InternalConfig.class, b -> b.timerStripeCount(4))
+      .build();
+    for (int i = 0; i < 100; i++) {
+      cache.put(i, i);
+    }
+    clock.sleep(TimeUnit.MINUTES.toMillis(4));
+    assertThat(cache.asMap()).hasSize(100);
+    clock.sleep(TimeUnit.MINUTES.toMillis(2));
+    assertThat(cache.asMap()).isEmpty();
+    cache.close();
+  }
+
+}
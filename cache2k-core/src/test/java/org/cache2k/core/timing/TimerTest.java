@@ -25,6 +25,9 @@ import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.assertj.core.api.Assertions.assertThat;
 import org.assertj.core.api.Condition;
+import org.cache2k.core.Entry;
+import org.cache2k.core.log.Log;
+import org.cache2k.core.log.Log.SuppressionCounter;
 import org.cache2k.operation.TimeReference;
 import org.cache2k.operation.Scheduler;
 import org.cache2k.testing.SimulatedClock;
@@ -42,6 +45,8 @@ import java.util.concurrent.CopyOnWriteArrayList;
 import static org.assertj.core.api.Assertions.fail;
 import static org.cache2k.Cache2kBuilder.forUnknownTypes;
 import static org.cache2k.config.Cache2kConfig.EXPIRY_ETERNAL;
+import static org.cache2k.core.log.Log.deregisterSuppression;
+import static org.cache2k.core.log.Log.registerSuppression;
 import static org.cache2k.core.timing.TimerTask.Sentinel;
 
 /**
@@ -56,14 +61,20 @@ public class TimerTest {
   Timer timer;
   MyClock clock;
 
+  /**
+   * Number of timer stripes, overridden by {@link StripedTimerTest}
+   */
+  int getStripeCount() {
+    return 1;
+  }
+
   void init(long startTime, long lagMillis, int steps) {
     clock = new MyClock(startTime);
-    timer = new DefaultTimer(clock, clock, lagMillis, steps);
+    timer = new DefaultTimer(clock, clock, lagMillis, steps, getStripeCount());
   }
 
   void init(long startTime, long lagMillis) {
-    clock = new MyClock(startTime);
-    timer = new DefaultTimer(clock, clock, lagMillis);
+    init(startTime, lagMillis, DefaultTimer.DEFAULT_SLOTS_PER_WHEEL);
   }
 
   List<MyTimerTask> schedule(long... times) {
@@ -340,6 +351,71 @@ public class TimerTest {
     schedule(clock.ticks() + 100L * 1000 * 60 * 60 * 24 * 365);
   }
 
+  /**
+   * An exception of one task does not stop the other tasks of the same batch and
+   * the next wakeup is scheduled.
+   */
+  @Test
+  public void exceptionInTaskContinuesWithBatch() {
+    init(0, 1);
+    SuppressionCounter log = new SuppressionCounter();
+    registerSuppression(DefaultTimer.class.getName(), log);
+    try {
+      List<MyTimerTask> before = schedule(10, 10);
+      timer.schedule(new TimerTask() {
+        @Override
+        protected void action() {
+          throw new IllegalStateException("test");
+        }
+      }, 10);
+      List<MyTimerTask> after = schedule(10, 10, 20);
+      clock.run(10);
+      assertThat(log.getWarnCount()).isEqualTo(1);
+      assertThat(executed).containsAll(before).contains(after.get(0), after.get(1));
+      assertThat(after.get(2).executed).isFalse();
+      clock.run(20);
+      assertThat(after.get(2).executed).isTrue();
+    } finally {
+      deregisterSuppression(DefaultTimer.class.getName());
+    }
+  }
+
+  /**
+   * Expiry tasks of one cache are run together. When the expiry of one entry
+   * fails, the other entries still expire and the exception is logged to the cache.
+   */
+  @Test
+  public void exceptionInExpiryContinuesWithBatch() {
+    init(0, 1);
+    SuppressionCounter log = new SuppressionCounter();
+    List<Integer> expired = new ArrayList<>();
+    TimerEventListener<Integer, Integer> target = new TimerEventListener<Integer, Integer>() {
+      @Override
+      public String getName() { return "test"; }
+      @Override
+      public Log getLog() { return log; }
+      @Override
+      public void timerEventExpireEntry(Entry<Integer, Integer> e, Object task) {
+        if (e.getKey() == 3) {
+          throw new IllegalStateException("test");
+        }
+        expired.add(e.getKey());
+      }
+      @Override
+      public void timerEventRefresh(Entry<Integer, Integer> e, Object task) { }
+      @Override
+      public void timerEventProbationTerminated(Entry<Integer, Integer> e, Object task) { }
+    };
+    int count = 7;
+    for (int i = 0; i < count; i++) {
+      timer.schedule(new Tasks.ExpireTimerTask<Integer, Integer>()
+        .to(target, new Entry<>(i, i)), 10);
+    }
+    clock.run(10);
+    assertThat(log.getWarnCount()).isEqualTo(1);
+    assertThat(expired).containsExactlyInAnyOrder(0, 1, 2, 4, 5, 6);
+  }
+
   @Test
   public void config() {
     long lag = hashCode();
@@ -0,0 +1,139 @@
+package org.cache2k.core.timing;
+
+/*-
+ * #%L
+ * cache2k core implementation
+ * %%
+ * Copyright (C) 2000 - 2022 headissue GmbH, Munich
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.cache2k.testing.category.FastTests;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test the timer wheel data structure directly, especially the skipping
+ * of empty slots via the occupied bitmap.
+ *
+ * @author Jens Wilke
+ */
+@Category(FastTests.class)
+public class TimerWheelsTest {
+
+  static final int SLOTS = DefaultTimer.DEFAULT_SLOTS_PER_WHEEL;
+
+  TimerWheels wheels = new TimerWheels(0, 10, SLOTS);
+
+  static class Task extends TimerTask {
+    @Override
+    protected void action() { }
+  }
+
+  Task schedule(long time) {
+    Task t = new Task();
+    assertThat(wheels.schedule(t, time)).isGreaterThan(0);
+    return t;
+  }
+
+  @Test
+  public void sparseSlots() {
+    Task t1 = schedule(15);
+    Task t2 = schedule(SLOTS * 10 - 5);
+    assertThat(wheels.nextRun()).isEqualTo(19);
+    assertThat(wheels.removeNextToRun(19)).isSameAs(t1);
+    assertThat(wheels.removeNextToRun(19)).isNull();
+    assertThat(wheels.nextRun()).isEqualTo(SLOTS * 10 - 1);
+    assertThat(wheels.removeNextToRun(SLOTS * 10 - 2)).isNull();
+    assertThat(wheels.removeNextToRun(SLOTS * 10 - 1)).isSameAs(t2);
+    assertThat(wheels.nextRun()).isEqualTo(Long.MAX_VALUE);
+  }
+
+  /**
+   * Cancel unlinks the task without touching the bitmap, the stale bit is ignored.
+   */
+  @Test
+  public void cancelledSlotSkipped() {
+    Task t1 = schedule(1234);
+    Task t2 = schedule(5678);
+    assertThat(wheels.nextRun()).isEqualTo(1239);
+    t1.cancel();
+    assertThat(wheels.nextRun()).isEqualTo(5679);
+    assertThat(wheels.removeNextToRun(10000)).isSameAs(t2);
+    assertThat(wheels.removeNextToRun(10000)).isNull();
+  }
+
+  @Test
+  public void upperWheel() {
+    long far = SLOTS * 10L * SLOTS * 3 + 17;
+    Task t1 = schedule(far);
+    assertThat(wheels.removeNextToRun(far - 100)).isNull();
+    assertThat(wheels.nextRun()).isBetween(far - 100, far + 2);
+    assertThat(wheels.removeNextToRun(far + 1)).isNull();
+    assertThat(wheels.nextRun()).isEqualTo(far + 2);
+    assertThat(wheels.removeNextToRun(far + 2)).isSameAs(t1);
+  }
+
+  /**
+   * Random schedule and cancel. Each remaining task is returned exactly once
+   * and not before its time.
+   */
+  @Test
+  public void randomScheduleAndCancel() {
+    Random random = new Random(1802);
+    List<Task> tasks = new ArrayList<>();
+    Set<Task> cancelled = new HashSet<>();
+    Set<Task> removed = new HashSet<>();
+    long now = 0;
+    for (int round = 0; round < 1000; round++) {
+      for (int i = 0; i < 10; i++) {
+        long time = now + 10 + random.nextInt(SLOTS * 30);
+        tasks.add(schedule(time));
+      }
+      for (int i = 0; i < 3; i++) {
+        Task t = tasks.get(random.nextInt(tasks.size()));
+        if (!removed.contains(t) && cancelled.add(t)) {
+          t.cancel();
+        }
+      }
+      now += random.nextInt(SLOTS * 2);
+      long nextRun = wheels.nextRun();
+      Task t;
+      while ((t = (Task) wheels.removeNextToRun(now)) != null) {
+        assertThat(t.time).isLessThanOrEqualTo(now);
+        assertThat(nextRun).isLessThanOrEqualTo(now);
+        assertThat(cancelled).doesNotContain(t);
+        assertThat(removed.add(t)).isTrue();
+      }
+    }
+    now += SLOTS * 40;
+    Task t;
+    while ((t = (Task) wheels.removeNextToRun(now)) != null) {
+      assertThat(cancelled).doesNotContain(t);
+      assertThat(removed.add(t)).isTrue();
+    }
+    assertThat(removed.size() + cancelled.size()).isEqualTo(tasks.size());
+    assertThat(wheels.nextRun()).isEqualTo(Long.MAX_VALUE);
+  }
+
+}
@@ -23,8 +23,10 @@ package org.cache2k.test.core;
 import org.cache2k.Cache;
 import org.cache2k.Cache2kBuilder;
 import org.cache2k.CacheClosedException;
+import org.cache2k.CacheEntry;
 import org.cache2k.core.api.InternalCache;
 import org.cache2k.testing.SimulatedClock;
+import org.cache2k.event.CacheEntryEvictedBatchListener;
 import org.cache2k.event.CacheEntryEvictedListener;
 import org.cache2k.test.util.CacheRule;
 import org.cache2k.test.util.Condition;
@@ -47,6 +49,8 @@ import static org.cache2k.Cache2kBuilder.of;
 import static org.cache2k.expiry.ExpiryTimeValues.ETERNAL;
 import static org.cache2k.test.core.StaticUtil.*;
 
+import java.util.List;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CountDownLatch;
@@ -287,6 +291,97 @@ public class ListenerTest {
     await(() -> callCount.get() >= 1);
   }
 
+  /**
+   * Eviction happens in chunks, the batch listener gets more than one entry at once.
+   * The per entry listener of the same object is called as well, per entry and before
+   * the batch listener.
+   */
+  @Test
+  public void evictedBatchListenerCalledWithChunk() {
+    final int capacity = 2000;
+    AtomicInteger batchCount = new AtomicInteger();
+    AtomicInteger batchEntryCount = new AtomicInteger();
+    AtomicInteger maxBatchSize = new AtomicInteger();
+    AtomicInteger entryCount = new AtomicInteger();
+    AtomicInteger notNotifiedCount = new AtomicInteger();
+    Set<Integer> notified = ConcurrentHashMap.newKeySet();
+    class Listener implements CacheEntryEvictedBatchListener<Integer, Integer>,
+      CacheEntryEvictedListener<Integer, Integer> {
+      @Override
+      public void onEntriesEvicted(Cache<Integer, Integer> cache,
+                                   List<CacheEntry<Integer, Integer>> entries) {
+        assertThat(entries).isNotEmpty();
+        batchCount.incrementAndGet();
+        batchEntryCount.addAndGet(entries.size());
+        maxBatchSize.accumulateAndGet(entries.size(), Math::max);
+        entries.stream()
+          .filter(e -> !notified.contains(e.getKey()))
+          .forEach(e -> notNotifiedCount.incrementAndGet());
+      }
+      @Override
+      public void onEntryEvicted(Cache<Integer, Integer> cache,
+                                 CacheEntry<Integer, Integer> entry) {
+        entryCount.incrementAndGet();
+        notified.add(entry.getKey());
+      }
+    }
+    Cache<Integer, Integer> c = target.cache(b -> b
+      .addListener(new Listener())
+      .entryCapacity(capacity));
+    for (int i = 0; i < capacity * 2; i++) {
+      c.put(i, i);
+    }
+    int evicted = capacity * 2 - c.asMap().size();
+    assertThat(evicted).isGreaterThan(0);
+    assertThat(batchEntryCount.get()).isEqualTo(evicted);
+    assertThat(entryCount.get()).isEqualTo(evicted);
+    assertThat(notNotifiedCount.get()).isEqualTo(0);
+    assertThat(maxBatchSize.get()).isGreaterThan(1);
+    assertThat(batchCount.get()).isLessThan(evicted);
+  }
+
+  /**
+   * Entries are removed before the batch listener is called, so an operation on an
+   * evicted key does not wait for the listener.
+   */
+  @Test
+  public void evictedBatchListenerCalledAfterRemoval() {
+    final int capacity = 2000;
+    AtomicInteger presentCount = new AtomicInteger();
+    AtomicInteger batchEntryCount = new AtomicInteger();
+    Cache<Integer, Integer> c = target.cache(b -> b
+      .addListener((CacheEntryEvictedBatchListener<Integer, Integer>) (c1, entries) -> {
+        for (CacheEntry<Integer, Integer> e : entries) {
+          assertThat(e.getValue()).isEqualTo(e.getKey());
+          if (c1.containsKey(e.getKey())) {
+            presentCount.incrementAndGet();
+          }
+        }
+        batchEntryCount.addAndGet(entries.size());
+      })
+      .entryCapacity(capacity));
+    for (int i = 0; i < capacity * 2; i++) {
+      c.put(i, i);
+    }
+    assertThat(batchEntryCount.get()).isEqualTo(capacity * 2 - c.asMap().size());
+    assertThat(presentCount.get()).isEqualTo(0);
+  }
+
+  @Test
+  public void asyncEvictedBatchListenerCalled() {
+    final int capacity = 2000;
+    AtomicInteger batchEntryCount = new AtomicInteger();
+    Cache<Integer, Integer> c = target.cache(b -> b
+      .addAsyncListener((CacheEntryEvictedBatchListener<Integer, Integer>)
+        (c1, entries) -> batchEntryCount.addAndGet(entries.size()))
+      .entryCapacity(capacity));
+    for (int i = 0; i < capacity * 2; i++) {
+      c.put(i, i);
+    }
+    int evicted = capacity * 2 - c.asMap().size();
+    await(() -> batchEntryCount.get() == evicted);
+  }
+
   @Test
   public void syncEvictedListenerDoesNotBlockCacheOps() {
     AtomicInteger callCount = new AtomicInteger();
@@ -108,6 +108,16 @@ public interface CacheControlMXBean {
    */
   Date getClearedTime();
 
+  /**
+   * @see CacheInfo#getCapacityAdjustmentCount()
+   */
+  long getCapacityAdjustmentCount();
+
+  /**
+   * @see CacheInfo#getLastCapacityAdjustment()
+   */
+  String getLastCapacityAdjustment();
+
   /**
    * @see CacheOperation#clear()
    */
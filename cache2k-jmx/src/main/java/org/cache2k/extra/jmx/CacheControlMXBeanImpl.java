@@ -100,6 +100,16 @@ class CacheControlMXBeanImpl implements CacheControlMXBean {
     return v != null ? Date.from(v) : null;
   }
 
+  @Override
+  public long getCapacityAdjustmentCount() {
+    return getCacheControl().getCapacityAdjustmentCount();
+  }
+
+  @Override
+  public String getLastCapacityAdjustment() {
+    return getCacheControl().getLastCapacityAdjustment();
+  }
+
   @Override
   public String getImplementation() {
     return getCacheControl().getImplementation();
@@ -121,10 +121,12 @@ public class JmxSupportTest {
     checkAttribute("CapacityLimit", 1802L);
     checkAttribute("MaximumWeight", -1L);
     checkAttribute("TotalWeight", 0L);
-    checkAttribute("Implementation", "HeapCache");
+    checkAttribute("Implementation", "LongHeapCache");
     checkAttribute("ClearedTime", null);
     checkAttribute("LoaderPresent", false);
     checkAttribute("WeigherPresent", false);
+    checkAttribute("CapacityAdjustmentCount", 0L);
+    checkAttribute("LastCapacityAdjustment", null);
     assertThat(((Date) retrieve("CreatedTime")).compareTo(beforeCreation) >= 0)
       .as("reasonable CreatedTime")
       .isTrue();